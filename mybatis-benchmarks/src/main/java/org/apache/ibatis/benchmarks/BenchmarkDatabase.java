@@ -0,0 +1,112 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.apache.ibatis.benchmarks.stub.StubDriver;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+
+/**
+ * The databases a benchmark can run against. {@link #STUB} measures framework overhead only,
+ * {@link #HSQLDB} adds the cost of a real (in-memory) JDBC driver for comparison.
+ */
+public enum BenchmarkDatabase {
+
+  STUB {
+    @Override
+    Properties connectionProperties(int rows, int groupSize) {
+      return properties(StubDriver.class.getName(), StubDriver.url(rows, groupSize), "", "");
+    }
+  },
+
+  HSQLDB {
+    @Override
+    Properties connectionProperties(int rows, int groupSize) throws IOException, SQLException {
+      String url = "jdbc:hsqldb:mem:benchmark_" + rows + "_" + groupSize;
+      Properties props = properties("org.hsqldb.jdbc.JDBCDriver", url, "sa", "");
+      try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+        ScriptRunner runner = new ScriptRunner(connection);
+        runner.setAutoCommit(true);
+        runner.setStopOnError(true);
+        runner.setLogWriter(null);
+        try (Reader reader = Resources.getResourceAsReader(SCHEMA)) {
+          runner.runScript(reader);
+        }
+        loadData(connection, rows, groupSize);
+      }
+      return props;
+    }
+  };
+
+  public static final String CONFIG = "org/apache/ibatis/benchmarks/mybatis-config.xml";
+  public static final String SCHEMA = "org/apache/ibatis/benchmarks/schema-hsqldb.sql";
+
+  abstract Properties connectionProperties(int rows, int groupSize) throws IOException, SQLException;
+
+  /**
+   * Builds a factory whose queries return <code>rows</code> rows, <code>groupSize</code> posts per blog.
+   */
+  public SqlSessionFactory createSqlSessionFactory(int rows, int groupSize) throws IOException, SQLException {
+    Properties props = connectionProperties(rows, groupSize);
+    try (Reader reader = Resources.getResourceAsReader(CONFIG)) {
+      return new SqlSessionFactoryBuilder().build(reader, props);
+    }
+  }
+
+  private static Properties properties(String driver, String url, String username, String password) {
+    Properties props = new Properties();
+    props.setProperty("driver", driver);
+    props.setProperty("url", url);
+    props.setProperty("username", username);
+    props.setProperty("password", password);
+    return props;
+  }
+
+  private static void loadData(Connection connection, int rows, int groupSize) throws SQLException {
+    connection.setAutoCommit(false);
+    try (PreparedStatement blog = connection.prepareStatement("insert into blog (id, title, content) values (?, ?, ?)");
+         PreparedStatement post = connection.prepareStatement("insert into post (id, blog_id, subject) values (?, ?, ?)")) {
+      for (int i = 0; i < rows; i++) {
+        int id = i / groupSize + 1;
+        int postId = i + 1;
+        if (i % groupSize == 0) {
+          blog.setInt(1, id);
+          blog.setString(2, "Blog #" + id);
+          blog.setString(3, "Content of blog #" + id);
+          blog.addBatch();
+        }
+        post.setInt(1, postId);
+        post.setInt(2, id);
+        post.setString(3, "Post #" + postId);
+        post.addBatch();
+      }
+      blog.executeBatch();
+      post.executeBatch();
+    }
+    connection.commit();
+  }
+
+}
@@ -0,0 +1,91 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.benchmarks.domain.Blog;
+import org.apache.ibatis.benchmarks.domain.Post;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CopyStrategy;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a hit on a read-write (<code>readOnly="false"</code>) second level cache holding a list of
+ * blogs with their posts, for each way of copying the cached value.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CopyOnReadBenchmark {
+
+  @Param({ "SERIALIZE_JAVA", "SERIALIZE", "DEEP_COPY" })
+  public String copy;
+
+  @Param({ "1", "10", "100" })
+  public int blogs;
+
+  private Cache cache;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    CacheBuilder builder = new CacheBuilder("benchmark").readWrite(true);
+    if ("SERIALIZE_JAVA".equals(copy)) {
+      builder.serializer(new JavaCacheSerializer());
+    } else {
+      builder.copyStrategy(CopyStrategy.valueOf(copy));
+    }
+    cache = builder.build();
+    List<Blog> value = new ArrayList<>();
+    for (int i = 0; i < blogs; i++) {
+      Blog blog = new Blog();
+      blog.setId(i);
+      blog.setTitle("Blog " + i);
+      blog.setContent("Content of blog " + i);
+      List<Post> posts = new ArrayList<>();
+      for (int j = 0; j < 10; j++) {
+        posts.add(new Post(i * 10 + j, i, "Post " + j));
+      }
+      blog.setPosts(posts);
+      value.add(blog);
+    }
+    cache.putObject("key", value);
+  }
+
+  @Benchmark
+  public Object hit() {
+    return cache.getObject("key");
+  }
+
+}
@@ -0,0 +1,78 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.benchmarks.domain.BlogQuery;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@code DynamicSqlSource.getBoundSql}: evaluating if/choose/where/foreach and parsing
+ * the generated text for <code>#{}</code> placeholders.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamicSqlSourceBenchmark {
+
+  @Param({ "0", "10", "100", "1000" })
+  public int ids;
+
+  private SqlSource sqlSource;
+  private BlogQuery query;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    SqlSessionFactory sqlSessionFactory = BenchmarkDatabase.STUB.createSqlSessionFactory(1, 1);
+    sqlSource = sqlSessionFactory.getConfiguration()
+        .getMappedStatement("org.apache.ibatis.benchmarks.mapper.BlogMapper.findBlogs").getSqlSource();
+    query = new BlogQuery();
+    query.setTitle("Blog%");
+    query.setMinId(1);
+    query.setOrderBy("title");
+    List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < ids; i++) {
+      values.add(i);
+    }
+    query.setIds(values);
+  }
+
+  @Benchmark
+  public BoundSql getBoundSql() {
+    return sqlSource.getBoundSql(query);
+  }
+
+}
@@ -0,0 +1,94 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.benchmarks.domain.Post;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@code getBoundSql} for a <code>foreach</code> over large collections: an <code>IN</code> list
+ * of scalars and a multi-row insert of beans, with and without <code>compileDynamicSql</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForEachBenchmark {
+
+  @Param({ "100", "1000", "10000" })
+  public int size;
+
+  @Param({ "false", "true" })
+  public boolean compiled;
+
+  private SqlSource selectBlogsByIds;
+  private SqlSource insertPosts;
+  private Map<String, Object> ids;
+  private Map<String, Object> posts;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    SqlSessionFactory sqlSessionFactory = BenchmarkDatabase.STUB.createSqlSessionFactory(1, 1);
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    configuration.setCompileDynamicSql(compiled);
+    selectBlogsByIds = configuration
+        .getMappedStatement("org.apache.ibatis.benchmarks.mapper.BlogMapper.selectBlogsByIds").getSqlSource();
+    insertPosts = configuration
+        .getMappedStatement("org.apache.ibatis.benchmarks.mapper.BlogMapper.insertPosts").getSqlSource();
+    List<Integer> idList = new ArrayList<>();
+    List<Post> postList = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      idList.add(i);
+      postList.add(new Post(i, i % 10, "Post " + i));
+    }
+    ids = Collections.singletonMap("list", idList);
+    posts = Collections.singletonMap("list", postList);
+  }
+
+  @Benchmark
+  public BoundSql selectByIds() {
+    return selectBlogsByIds.getBoundSql(ids);
+  }
+
+  @Benchmark
+  public BoundSql insertPosts() {
+    return insertPosts.getBoundSql(posts);
+  }
+
+}
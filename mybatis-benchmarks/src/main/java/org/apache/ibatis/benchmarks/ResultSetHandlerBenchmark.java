@@ -0,0 +1,102 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per row mapping cost of {@code DefaultResultSetHandler.handleResultSets}, measured without
+ * the executor and statement handler around it. Rows come from the stub driver.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetHandlerBenchmark {
+
+  @Param({ "100", "1000" })
+  public int rows;
+
+  @Param({ "1", "10" })
+  public int groupSize;
+
+  private SqlSession sqlSession;
+  private Configuration configuration;
+  private Connection connection;
+  private MappedStatement simple;
+  private MappedStatement nested;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    sqlSession = BenchmarkDatabase.STUB.createSqlSessionFactory(rows, groupSize).openSession();
+    configuration = sqlSession.getConfiguration();
+    connection = sqlSession.getConnection();
+    simple = configuration.getMappedStatement("org.apache.ibatis.benchmarks.mapper.BlogMapper.selectBlogs");
+    nested = configuration.getMappedStatement("org.apache.ibatis.benchmarks.mapper.BlogMapper.selectBlogsWithPosts");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    sqlSession.close();
+  }
+
+  @Benchmark
+  public List<Object> simpleResultMap() throws SQLException {
+    return handleResultSets(simple);
+  }
+
+  @Benchmark
+  public List<Object> nestedResultMap() throws SQLException {
+    return handleResultSets(nested);
+  }
+
+  private List<Object> handleResultSets(MappedStatement ms) throws SQLException {
+    BoundSql boundSql = ms.getBoundSql(null);
+    ResultSetHandler handler = configuration.newResultSetHandler(null, ms, RowBounds.DEFAULT,
+        configuration.newParameterHandler(ms, null, boundSql), null, boundSql);
+    try (PreparedStatement stmt = connection.prepareStatement(boundSql.getSql())) {
+      stmt.execute();
+      return handler.handleResultSets(stmt);
+    }
+  }
+
+}
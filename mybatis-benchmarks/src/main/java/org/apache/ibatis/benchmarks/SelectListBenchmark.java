@@ -0,0 +1,76 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.session.SqlSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end cost of {@code DefaultSqlSession.selectList}: executor, statement handler,
+ * parameter handler and result set handling.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectListBenchmark {
+
+  @Param({ "STUB", "HSQLDB" })
+  public BenchmarkDatabase database;
+
+  @Param({ "1", "100", "1000" })
+  public int rows;
+
+  private SqlSession sqlSession;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    sqlSession = database.createSqlSessionFactory(rows, 10).openSession();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    sqlSession.close();
+  }
+
+  @Benchmark
+  public List<Object> selectList() {
+    return sqlSession.selectList("org.apache.ibatis.benchmarks.mapper.BlogMapper.selectBlogs");
+  }
+
+  @Benchmark
+  public List<Object> selectListWithNestedResultMap() {
+    return sqlSession.selectList("org.apache.ibatis.benchmarks.mapper.BlogMapper.selectBlogsWithPosts");
+  }
+
+}
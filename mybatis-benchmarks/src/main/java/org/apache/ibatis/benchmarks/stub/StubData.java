@@ -0,0 +1,89 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks.stub;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The synthetic rows served by {@link StubDriver}. Values are created once per data set and
+ * shared by every result set so the driver does not allocate while rows are mapped.
+ *
+ * <pre>
+ *   ID           INTEGER   row / groupSize + 1
+ *   TITLE        VARCHAR   "Blog #" + ID
+ *   CONTENT      VARCHAR   "Content of blog #" + ID
+ *   POST_ID      INTEGER   row + 1
+ *   POST_SUBJECT VARCHAR   "Post #" + POST_ID
+ * </pre>
+ */
+public final class StubData {
+
+  static final String[] COLUMN_NAMES = { "ID", "TITLE", "CONTENT", "POST_ID", "POST_SUBJECT" };
+  static final int[] COLUMN_TYPES = { Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.INTEGER, Types.VARCHAR };
+  static final String[] COLUMN_CLASS_NAMES = { Integer.class.getName(), String.class.getName(), String.class.getName(),
+      Integer.class.getName(), String.class.getName() };
+
+  private static final Map<String, Integer> COLUMN_INDEXES = new HashMap<>();
+  private static final Map<Long, StubData> DATA_SETS = new ConcurrentHashMap<>();
+
+  static {
+    for (int i = 0; i < COLUMN_NAMES.length; i++) {
+      COLUMN_INDEXES.put(COLUMN_NAMES[i], i + 1);
+      COLUMN_INDEXES.put(COLUMN_NAMES[i].toLowerCase(Locale.ENGLISH), i + 1);
+    }
+  }
+
+  private final Object[][] rows;
+
+  private StubData(int rowCount, int groupSize) {
+    rows = new Object[rowCount][];
+    for (int i = 0; i < rowCount; i++) {
+      int id = i / groupSize + 1;
+      int postId = i + 1;
+      rows[i] = new Object[] { id, "Blog #" + id, "Content of blog #" + id, postId, "Post #" + postId };
+    }
+  }
+
+  public static StubData of(int rowCount, int groupSize) {
+    long key = ((long) rowCount << 32) | groupSize;
+    return DATA_SETS.computeIfAbsent(key, k -> new StubData(rowCount, Math.max(1, groupSize)));
+  }
+
+  public int getRowCount() {
+    return rows.length;
+  }
+
+  Object getValue(int row, int columnIndex) {
+    return rows[row][columnIndex - 1];
+  }
+
+  static int findColumn(String label) throws SQLException {
+    Integer index = COLUMN_INDEXES.get(label);
+    if (index == null) {
+      index = COLUMN_INDEXES.get(label.toUpperCase(Locale.ENGLISH));
+    }
+    if (index == null) {
+      throw new SQLException("Unknown column '" + label + "'");
+    }
+    return index;
+  }
+
+}
@@ -0,0 +1,104 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks.stub;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A JDBC driver that never talks to a database. Every query returns the same synthetic rows,
+ * so the time spent in a benchmark is the time spent in MyBatis itself.
+ * <p>
+ * URL format: <code>jdbc:stub:rows=100;groupSize=10</code>. Rows are sorted by the <code>ID</code>
+ * column and every <code>groupSize</code> consecutive rows share the same <code>ID</code>, which
+ * lets nested result maps collapse them into one parent object.
+ *
+ * @see StubData
+ */
+public class StubDriver implements Driver {
+
+  public static final String URL_PREFIX = "jdbc:stub:";
+
+  static {
+    try {
+      DriverManager.registerDriver(new StubDriver());
+    } catch (SQLException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  public static String url(int rows, int groupSize) {
+    return URL_PREFIX + "rows=" + rows + ";groupSize=" + groupSize;
+  }
+
+  @Override
+  public Connection connect(String url, Properties info) throws SQLException {
+    if (!acceptsURL(url)) {
+      return null;
+    }
+    int rows = 1;
+    int groupSize = 1;
+    for (String pair : url.substring(URL_PREFIX.length()).split(";")) {
+      String[] keyValue = pair.split("=");
+      if (keyValue.length != 2) {
+        continue;
+      }
+      if ("rows".equals(keyValue[0])) {
+        rows = Integer.parseInt(keyValue[1]);
+      } else if ("groupSize".equals(keyValue[0])) {
+        groupSize = Integer.parseInt(keyValue[1]);
+      }
+    }
+    return StubJdbc.newConnection(StubData.of(rows, groupSize), url);
+  }
+
+  @Override
+  public boolean acceptsURL(String url) {
+    return url != null && url.startsWith(URL_PREFIX);
+  }
+
+  @Override
+  public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+    return new DriverPropertyInfo[0];
+  }
+
+  @Override
+  public int getMajorVersion() {
+    return 1;
+  }
+
+  @Override
+  public int getMinorVersion() {
+    return 0;
+  }
+
+  @Override
+  public boolean jdbcCompliant() {
+    return false;
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException();
+  }
+
+}
@@ -0,0 +1,316 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks.stub;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Proxy based implementations of the JDBC interfaces used by MyBatis. Only the methods that the
+ * framework calls are implemented, everything else returns the default value of its return type.
+ */
+final class StubJdbc {
+
+  private StubJdbc() {
+    // Prevent Instantiation of Static Class
+  }
+
+  static Connection newConnection(StubData data, String url) {
+    return newProxy(Connection.class, new ConnectionHandler(data, url));
+  }
+
+  private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+    return type.cast(Proxy.newProxyInstance(StubJdbc.class.getClassLoader(), new Class<?>[] { type }, handler));
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    if (!type.isPrimitive() || type == void.class) {
+      return null;
+    } else if (type == boolean.class) {
+      return false;
+    } else if (type == char.class) {
+      return '\0';
+    } else if (type == byte.class) {
+      return (byte) 0;
+    } else if (type == short.class) {
+      return (short) 0;
+    } else if (type == int.class) {
+      return 0;
+    } else if (type == long.class) {
+      return 0L;
+    } else if (type == float.class) {
+      return 0f;
+    } else {
+      return 0d;
+    }
+  }
+
+  private abstract static class StubHandler implements InvocationHandler {
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "equals":
+          return proxy == args[0];
+        case "toString":
+          return getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+        case "isWrapperFor":
+          return false;
+        case "unwrap":
+          throw new SQLException("Not a wrapper");
+        default:
+          return handle(proxy, method, args);
+      }
+    }
+
+    abstract Object handle(Object proxy, Method method, Object[] args) throws SQLException;
+
+  }
+
+  private static class ConnectionHandler extends StubHandler {
+
+    private final StubData data;
+    private final String url;
+    private boolean autoCommit = true;
+    private boolean closed;
+
+    ConnectionHandler(StubData data, String url) {
+      this.data = data;
+      this.url = url;
+    }
+
+    @Override
+    Object handle(Object proxy, Method method, Object[] args) {
+      switch (method.getName()) {
+        case "createStatement":
+        case "prepareStatement":
+        case "prepareCall":
+          return newProxy(CallableStatement.class, new StatementHandler(data, (Connection) proxy));
+        case "getAutoCommit":
+          return autoCommit;
+        case "setAutoCommit":
+          autoCommit = (Boolean) args[0];
+          return null;
+        case "close":
+          closed = true;
+          return null;
+        case "isClosed":
+          return closed;
+        case "isValid":
+          return !closed;
+        case "getMetaData":
+          return newProxy(DatabaseMetaData.class, new DatabaseMetaDataHandler(url, (Connection) proxy));
+        default:
+          return defaultValue(method.getReturnType());
+      }
+    }
+  }
+
+  private static class DatabaseMetaDataHandler extends StubHandler {
+
+    private final String url;
+    private final Connection connection;
+
+    DatabaseMetaDataHandler(String url, Connection connection) {
+      this.url = url;
+      this.connection = connection;
+    }
+
+    @Override
+    Object handle(Object proxy, Method method, Object[] args) {
+      switch (method.getName()) {
+        case "getURL":
+          return url;
+        case "getConnection":
+          return connection;
+        case "getDatabaseProductName":
+          return "Stub";
+        case "supportsBatchUpdates":
+          return true;
+        default:
+          return defaultValue(method.getReturnType());
+      }
+    }
+  }
+
+  private static class StatementHandler extends StubHandler {
+
+    private final StubData data;
+    private final Connection connection;
+    private ResultSet resultSet;
+    private int batchCount;
+
+    StatementHandler(StubData data, Connection connection) {
+      this.data = data;
+      this.connection = connection;
+    }
+
+    @Override
+    Object handle(Object proxy, Method method, Object[] args) {
+      switch (method.getName()) {
+        case "executeQuery":
+          return newResultSet(proxy);
+        case "execute":
+          resultSet = newResultSet(proxy);
+          return true;
+        case "getResultSet":
+          ResultSet current = resultSet;
+          resultSet = null;
+          return current;
+        case "getMoreResults":
+          resultSet = null;
+          return false;
+        case "getUpdateCount":
+          return -1;
+        case "executeUpdate":
+          return 1;
+        case "executeLargeUpdate":
+          return 1L;
+        case "addBatch":
+          batchCount++;
+          return null;
+        case "clearBatch":
+          batchCount = 0;
+          return null;
+        case "executeBatch":
+          int[] counts = new int[batchCount];
+          Arrays.fill(counts, 1);
+          batchCount = 0;
+          return counts;
+        case "getGeneratedKeys":
+          return newProxy(ResultSet.class, new ResultSetHandler(StubData.of(0, 1), proxy));
+        case "getConnection":
+          return connection;
+        default:
+          return defaultValue(method.getReturnType());
+      }
+    }
+
+    private ResultSet newResultSet(Object statement) {
+      return newProxy(ResultSet.class, new ResultSetHandler(data, statement));
+    }
+  }
+
+  private static class ResultSetHandler extends StubHandler {
+
+    private final StubData data;
+    private final Object statement;
+    private int row = -1;
+    private boolean wasNull;
+    private boolean closed;
+
+    ResultSetHandler(StubData data, Object statement) {
+      this.data = data;
+      this.statement = statement;
+    }
+
+    @Override
+    Object handle(Object proxy, Method method, Object[] args) throws SQLException {
+      String name = method.getName();
+      if (name.startsWith("get") && args != null && args.length >= 1
+          && (args[0] instanceof String || args[0] instanceof Integer)
+          && !"getStatement".equals(name)) {
+        return getValue(name, args[0]);
+      }
+      switch (name) {
+        case "next":
+          return ++row < data.getRowCount();
+        case "wasNull":
+          return wasNull;
+        case "close":
+          closed = true;
+          return null;
+        case "isClosed":
+          return closed;
+        case "getType":
+          return ResultSet.TYPE_FORWARD_ONLY;
+        case "getStatement":
+          return statement;
+        case "getMetaData":
+          return newProxy(ResultSetMetaData.class, new ResultSetMetaDataHandler());
+        case "findColumn":
+          return StubData.findColumn((String) args[0]);
+        default:
+          return defaultValue(method.getReturnType());
+      }
+    }
+
+    private Object getValue(String getter, Object column) throws SQLException {
+      int columnIndex = column instanceof String ? StubData.findColumn((String) column) : (Integer) column;
+      Object value = data.getValue(row, columnIndex);
+      wasNull = value == null;
+      switch (getter) {
+        case "getString":
+        case "getNString":
+          return value == null ? null : value.toString();
+        case "getInt":
+          return value == null ? 0 : ((Number) value).intValue();
+        case "getLong":
+          return value == null ? 0L : ((Number) value).longValue();
+        case "getShort":
+          return value == null ? (short) 0 : ((Number) value).shortValue();
+        case "getByte":
+          return value == null ? (byte) 0 : ((Number) value).byteValue();
+        case "getDouble":
+          return value == null ? 0d : ((Number) value).doubleValue();
+        case "getFloat":
+          return value == null ? 0f : ((Number) value).floatValue();
+        case "getBigDecimal":
+          return value == null ? null : new BigDecimal(value.toString());
+        case "getBoolean":
+          return value != null && ((Number) value).intValue() != 0;
+        case "getObject":
+          return value;
+        default:
+          throw new SQLException("Unsupported getter " + getter);
+      }
+    }
+  }
+
+  private static class ResultSetMetaDataHandler extends StubHandler {
+
+    @Override
+    Object handle(Object proxy, Method method, Object[] args) {
+      switch (method.getName()) {
+        case "getColumnCount":
+          return StubData.COLUMN_NAMES.length;
+        case "getColumnLabel":
+        case "getColumnName":
+          return StubData.COLUMN_NAMES[(Integer) args[0] - 1];
+        case "getColumnType":
+          return StubData.COLUMN_TYPES[(Integer) args[0] - 1];
+        case "getColumnClassName":
+          return StubData.COLUMN_CLASS_NAMES[(Integer) args[0] - 1];
+        case "isNullable":
+          return ResultSetMetaData.columnNullable;
+        default:
+          return defaultValue(method.getReturnType());
+      }
+    }
+  }
+
+}
@@ -63,4 +63,12 @@ public @interface Options {
   String keyColumn() default "";
 
   String resultSets() default "";
+
+  /**
+   * Comma separated cache tags (usually table names) the statement reads, or writes for an insert, update or
+   * delete. They are used by caches with tag invalidation, see {@link org.apache.ibatis.cache.decorators.TaggedCache}.
+   *
+   * @since 3.5.3
+   */
+  String cacheTags() default "";
 }
@@ -115,6 +115,7 @@ public class MapperBuilderAssistant extends BaseBuilder {
                 .size(size)
                 .readWrite(readWrite)
                 .blocking(blocking)
+                .statistics(configuration.isCacheStatisticsEnabled())
                 .properties(props)
                 .build();
         configuration.addCache(cache);
@@ -242,6 +243,38 @@ public class MapperBuilderAssistant extends BaseBuilder {
             String databaseId,
             LanguageDriver lang,
             String resultSets) {
+        return addMappedStatement(
+                id, sqlSource, statementType, sqlCommandType, fetchSize, timeout,
+                parameterMap, parameterType, resultMap, resultType, resultSetType,
+                flushCache, useCache, resultOrdered, keyGenerator, keyProperty,
+                keyColumn, databaseId, lang, resultSets, null);
+    }
+
+    /**
+     * @since 3.5.3
+     */
+    public MappedStatement addMappedStatement(
+            String id,
+            SqlSource sqlSource,
+            StatementType statementType,
+            SqlCommandType sqlCommandType,
+            Integer fetchSize,
+            Integer timeout,
+            String parameterMap,
+            Class<?> parameterType,
+            String resultMap,
+            Class<?> resultType,
+            ResultSetType resultSetType,
+            boolean flushCache,
+            boolean useCache,
+            boolean resultOrdered,
+            KeyGenerator keyGenerator,
+            String keyProperty,
+            String keyColumn,
+            String databaseId,
+            LanguageDriver lang,
+            String resultSets,
+            String cacheTags) {
 
         if (unresolvedCacheRef) {
             throw new IncompleteElementException("Cache-ref not yet resolved");
@@ -264,6 +297,7 @@ public class MapperBuilderAssistant extends BaseBuilder {
                 .lang(lang)
                 .resultOrdered(resultOrdered)
                 .resultSets(resultSets)
+                .cacheTags(cacheTags)
                 .resultMaps(getStatementResultMaps(resultMap, resultType, id))
                 .resultSetType(resultSetType)
                 .flushCacheRequired(valueOrDefault(flushCache, !isSelect))
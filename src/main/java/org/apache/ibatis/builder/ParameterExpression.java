@@ -35,10 +35,38 @@ public class ParameterExpression extends HashMap<String, String> {
 
   private static final long serialVersionUID = -2417552199605158680L;
 
+  private final String content;
+
   public ParameterExpression(String expression) {
+    this.content = expression;
     parse(expression);
   }
 
+  private ParameterExpression(ParameterExpression source, String property, String content) {
+    super(source);
+    this.content = content;
+    put("property", property);
+  }
+
+  /**
+   * @return the parsed text, i.e. what is between <code>#{</code> and <code>}</code>
+   * @since 3.5.3
+   */
+  public String getContent() {
+    return content;
+  }
+
+  /**
+   * Returns a copy of this expression for another property, without parsing it again.
+   *
+   * @param property the new property
+   * @param content the text of the new expression, which differs from this one only by the property
+   * @since 3.5.3
+   */
+  public ParameterExpression withProperty(String property, String content) {
+    return new ParameterExpression(this, property, content);
+  }
+
   private void parse(String expression) {
     int p = skipWS(expression, 0);
     if (expression.charAt(p) == '(') {
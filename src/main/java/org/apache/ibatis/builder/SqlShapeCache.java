@@ -0,0 +1,141 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.mapping.ParameterMapping;
+
+/**
+ * The parameter mappings of the distinct SQL shapes built by a dynamic statement.
+ * <p>
+ * Most dynamic statements build only a few distinct SQL texts. For each of them, the cache keeps the parsed
+ * placeholders and, for each combination of parameter types, the parameter mappings, so that
+ * {@link SqlSourceBuilder} neither parses the SQL nor resolves the type handlers again. Both are bounded, and
+ * evict with the <code>TINY_LFU</code> policy of {@link ConcurrentCache}, so that a statement building a new
+ * text on every call (e.g. an <code>IN</code> list of varying size) does not flush the shapes that are reused.
+ *
+ * @since 3.5.3
+ * @see org.apache.ibatis.session.Configuration#setDynamicSqlShapeCacheSize(int)
+ */
+public class SqlShapeCache {
+
+  private final Cache shapes;
+  private final Cache parameterMappings;
+
+  public SqlShapeCache(int size) {
+    this.shapes = newCache(size);
+    this.parameterMappings = newCache(size);
+  }
+
+  private static Cache newCache(int size) {
+    ConcurrentCache cache = new ConcurrentCache(SqlShapeCache.class.getName());
+    cache.setSize(size);
+    cache.setEvictionPolicy(ConcurrentCache.TINY_LFU);
+    return cache;
+  }
+
+  /**
+   * @return the number of cached lists of parameter mappings
+   */
+  public int getSize() {
+    return parameterMappings.getSize();
+  }
+
+  Shape getShape(String originalSql) {
+    return (Shape) shapes.getObject(originalSql);
+  }
+
+  void putShape(String originalSql, Shape shape) {
+    shapes.putObject(originalSql, shape);
+  }
+
+  @SuppressWarnings("unchecked")
+  List<ParameterMapping> getParameterMappings(Key key) {
+    return (List<ParameterMapping>) parameterMappings.getObject(key);
+  }
+
+  void putParameterMappings(Key key, List<ParameterMapping> mappings) {
+    parameterMappings.putObject(key, mappings);
+  }
+
+  /**
+   * A SQL text, parsed.
+   */
+  static final class Shape {
+    private final String sql;
+    private final List<ParameterExpression> parameterExpressions;
+
+    Shape(String sql, List<ParameterExpression> parameterExpressions) {
+      this.sql = sql;
+      this.parameterExpressions = parameterExpressions;
+    }
+
+    String getSql() {
+      return sql;
+    }
+
+    List<ParameterExpression> getParameterExpressions() {
+      return parameterExpressions;
+    }
+  }
+
+  /**
+   * A SQL text (or a SQL with <code>?</code> and the content of its placeholders), with the type of the parameter
+   * object and the types of the properties of the placeholders, which are all the parameter mappings depend on.
+   */
+  static final class Key {
+    private final String sql;
+    private final String[] contents;
+    private final Class<?> parameterType;
+    private final Class<?>[] propertyTypes;
+    private final int hashCode;
+
+    Key(String sql, String[] contents, Class<?> parameterType, Class<?>[] propertyTypes) {
+      this.sql = sql;
+      this.contents = contents;
+      this.parameterType = parameterType;
+      this.propertyTypes = propertyTypes;
+      int result = sql.hashCode();
+      result = 31 * result + Arrays.hashCode(contents);
+      result = 31 * result + parameterType.hashCode();
+      result = 31 * result + Arrays.hashCode(propertyTypes);
+      this.hashCode = result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return hashCode == other.hashCode && parameterType == other.parameterType && sql.equals(other.sql)
+          && Arrays.equals(propertyTypes, other.propertyTypes) && Arrays.equals(contents, other.contents);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+}
@@ -46,6 +46,100 @@ public class SqlSourceBuilder extends BaseBuilder {
     return new StaticSqlSource(configuration, sql, handler.getParameterMappings());
   }
 
+  /**
+   * Builds the static SQL source of a SQL whose placeholders have already been parsed and replaced by <code>?</code>.
+   *
+   * @param sql the SQL, with a <code>?</code> for each placeholder
+   * @param parameterExpressions the placeholders, in the order of their <code>?</code>
+   * @since 3.5.3
+   */
+  public SqlSource build(String sql, List<ParameterExpression> parameterExpressions, Class<?> parameterType, Map<String, Object> additionalParameters) {
+    ParameterMappingTokenHandler handler = new ParameterMappingTokenHandler(configuration, parameterType, additionalParameters);
+    List<ParameterMapping> parameterMappings = new ArrayList<>(parameterExpressions.size());
+    for (ParameterExpression parameterExpression : parameterExpressions) {
+      parameterMappings.add(handler.buildParameterMapping(parameterExpression));
+    }
+    return new StaticSqlSource(configuration, sql, parameterMappings);
+  }
+
+  /**
+   * Like {@link #parse(String, Class, Map)}, reusing the parsed placeholders and the parameter mappings of the same
+   * SQL and parameter types from the cache.
+   *
+   * @param shapeCache the cache, or null to parse the SQL
+   * @since 3.5.3
+   */
+  public SqlSource parse(String originalSql, Class<?> parameterType, Map<String, Object> additionalParameters, SqlShapeCache shapeCache) {
+    if (shapeCache == null) {
+      return parse(originalSql, parameterType, additionalParameters);
+    }
+    SqlShapeCache.Shape shape = shapeCache.getShape(originalSql);
+    if (shape == null) {
+      List<ParameterExpression> parameterExpressions = new ArrayList<>();
+      String sql = new GenericTokenParser("#{", "}", content -> {
+        parameterExpressions.add(parseParameterExpression(content));
+        return "?";
+      }).parse(originalSql);
+      shape = new SqlShapeCache.Shape(sql, parameterExpressions);
+      shapeCache.putShape(originalSql, shape);
+    }
+    // the original SQL holds the content of the placeholders
+    return build(shape.getSql(), shape.getParameterExpressions(), originalSql, null, parameterType, additionalParameters, shapeCache);
+  }
+
+  /**
+   * Like {@link #build(String, List, Class, Map)}, reusing the parameter mappings of the same SQL and parameter
+   * types from the cache.
+   *
+   * @param shapeCache the cache, or null to build the parameter mappings
+   * @since 3.5.3
+   */
+  public SqlSource build(String sql, List<ParameterExpression> parameterExpressions, Class<?> parameterType, Map<String, Object> additionalParameters, SqlShapeCache shapeCache) {
+    if (shapeCache == null) {
+      return build(sql, parameterExpressions, parameterType, additionalParameters);
+    }
+    String[] contents = new String[parameterExpressions.size()];
+    for (int i = 0; i < contents.length; i++) {
+      contents[i] = parameterExpressions.get(i).getContent();
+    }
+    return build(sql, parameterExpressions, sql, contents, parameterType, additionalParameters, shapeCache);
+  }
+
+  private SqlSource build(String sql, List<ParameterExpression> parameterExpressions, String keySql, String[] keyContents,
+      Class<?> parameterType, Map<String, Object> additionalParameters, SqlShapeCache shapeCache) {
+    ParameterMappingTokenHandler handler = new ParameterMappingTokenHandler(configuration, parameterType, additionalParameters);
+    Class<?>[] propertyTypes = new Class<?>[parameterExpressions.size()];
+    for (int i = 0; i < propertyTypes.length; i++) {
+      propertyTypes[i] = handler.resolvePropertyType(parameterExpressions.get(i));
+    }
+    SqlShapeCache.Key key = new SqlShapeCache.Key(keySql, keyContents, parameterType, propertyTypes);
+    List<ParameterMapping> parameterMappings = shapeCache.getParameterMappings(key);
+    if (parameterMappings == null) {
+      parameterMappings = new ArrayList<>(propertyTypes.length);
+      for (int i = 0; i < propertyTypes.length; i++) {
+        parameterMappings.add(handler.buildParameterMapping(parameterExpressions.get(i), propertyTypes[i]));
+      }
+      shapeCache.putParameterMappings(key, parameterMappings);
+    }
+    // the mappings are shared, the list is not
+    return new StaticSqlSource(configuration, sql, new ArrayList<>(parameterMappings));
+  }
+
+  /**
+   * Parses the content of a <code>#{}</code> placeholder.
+   *
+   * @since 3.5.3
+   */
+  public static ParameterExpression parseParameterExpression(String content) {
+    try {
+      return new ParameterExpression(content);
+    } catch (BuilderException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new BuilderException("Parsing error was found in mapping #{" + content + "}.  Check syntax #{property|(expression), var1=value1, var2=value2, ...} ", ex);
+    }
+  }
+
   private static class ParameterMappingTokenHandler extends BaseBuilder implements TokenHandler {
 
     private List<ParameterMapping> parameterMappings = new ArrayList<>();
@@ -64,12 +158,15 @@ public class SqlSourceBuilder extends BaseBuilder {
 
     @Override
     public String handleToken(String content) {
-      parameterMappings.add(buildParameterMapping(content));
+      parameterMappings.add(buildParameterMapping(parseParameterExpression(content)));
       return "?";
     }
 
-    private ParameterMapping buildParameterMapping(String content) {
-      Map<String, String> propertiesMap = parseParameterMapping(content);
+    private ParameterMapping buildParameterMapping(ParameterExpression propertiesMap) {
+      return buildParameterMapping(propertiesMap, resolvePropertyType(propertiesMap));
+    }
+
+    private Class<?> resolvePropertyType(ParameterExpression propertiesMap) {
       String property = propertiesMap.get("property");
       Class<?> propertyType;
       if (metaParameters.hasGetter(property)) { // issue #448 get type from additional params
@@ -88,6 +185,11 @@ public class SqlSourceBuilder extends BaseBuilder {
           propertyType = Object.class;
         }
       }
+      return propertyType;
+    }
+
+    private ParameterMapping buildParameterMapping(ParameterExpression propertiesMap, Class<?> propertyType) {
+      String property = propertiesMap.get("property");
       ParameterMapping.Builder builder = new ParameterMapping.Builder(configuration, property, propertyType);
       Class<?> javaType = propertyType;
       String typeHandlerAlias = null;
@@ -114,7 +216,7 @@ public class SqlSourceBuilder extends BaseBuilder {
         } else if ("expression".equals(name)) {
           throw new BuilderException("Expression based parameters are not supported yet");
         } else {
-          throw new BuilderException("An invalid property '" + name + "' was found in mapping #{" + content + "}.  Valid properties are " + PARAMETER_PROPERTIES);
+          throw new BuilderException("An invalid property '" + name + "' was found in mapping #{" + propertiesMap.getContent() + "}.  Valid properties are " + PARAMETER_PROPERTIES);
         }
       }
       if (typeHandlerAlias != null) {
@@ -122,16 +224,6 @@ public class SqlSourceBuilder extends BaseBuilder {
       }
       return builder.build();
     }
-
-    private Map<String, String> parseParameterMapping(String content) {
-      try {
-        return new ParameterExpression(content);
-      } catch (BuilderException ex) {
-        throw ex;
-      } catch (Exception ex) {
-        throw new BuilderException("Parsing error was found in mapping #{" + content + "}.  Check syntax #{property|(expression), var1=value1, var2=value2, ...} ", ex);
-      }
-    }
   }
 
 }
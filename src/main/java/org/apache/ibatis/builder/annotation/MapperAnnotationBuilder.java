@@ -357,7 +357,8 @@ public class MapperAnnotationBuilder {
                     null,
                     languageDriver,
                     // ResultSets
-                    options != null ? nullOrEmpty(options.resultSets()) : null);
+                    options != null ? nullOrEmpty(options.resultSets()) : null,
+                    options != null ? nullOrEmpty(options.cacheTags()) : null);
         }
     }
 
@@ -0,0 +1,304 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A compact binary snapshot of the parsed XML mapper documents, to start without parsing them again.
+ * <p>
+ * The snapshot is set with {@link org.apache.ibatis.session.Configuration#setMapperSnapshot(MapperSnapshot)}
+ * before the mappers are loaded. Each mapper resource is then read and checksummed: when the snapshot holds a
+ * document for the same resource and checksum, it is decoded instead of being parsed and validated again,
+ * otherwise the resource is parsed and the snapshot updated. A build step (or the first start) can write the
+ * snapshot with {@link #write(OutputStream)} and the following starts read it with {@link #read(InputStream)}.
+ * <p>
+ * The documents are stored rather than the built statements and result maps, which hold instances of
+ * application classes such as type handlers, plugins and caches. Unlike the mapper resources, the snapshot is
+ * not validated, it must be written by this class.
+ *
+ * @since 3.5.3
+ */
+public class MapperSnapshot {
+
+  private static final int MAGIC = 0x4D425353;
+  private static final int VERSION = 1;
+
+  private static final int END = 0;
+  private static final int ELEMENT = 1;
+  private static final int TEXT = 2;
+  private static final int CDATA = 3;
+
+  private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private volatile boolean modified;
+
+  /**
+   * Reads a snapshot written by {@link #write(OutputStream)}. The stream is not closed.
+   */
+  public static MapperSnapshot read(InputStream inputStream) throws IOException {
+    DataInputStream in = new DataInputStream(inputStream);
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a mapper snapshot.");
+    }
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported mapper snapshot version " + version + ".");
+    }
+    MapperSnapshot snapshot = new MapperSnapshot();
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      String resource = in.readUTF();
+      long checksum = in.readLong();
+      byte[] content = new byte[in.readInt()];
+      in.readFully(content);
+      snapshot.entries.put(resource, new Entry(checksum, content));
+    }
+    return snapshot;
+  }
+
+  /**
+   * Writes the documents of this snapshot. The stream is flushed but not closed.
+   */
+  public void write(OutputStream outputStream) throws IOException {
+    DataOutputStream out = new DataOutputStream(outputStream);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    Map<String, Entry> copy = new HashMap<>(entries);
+    out.writeInt(copy.size());
+    for (Map.Entry<String, Entry> entry : copy.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeLong(entry.getValue().checksum);
+      out.writeInt(entry.getValue().content.length);
+      out.write(entry.getValue().content);
+    }
+    out.flush();
+    modified = false;
+  }
+
+  /**
+   * @return whether a document has been added or replaced since the snapshot was created, read or written
+   */
+  public boolean isModified() {
+    return modified;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Decodes the document of a resource.
+   *
+   * @param resource the name of the resource
+   * @param content the current content of the resource
+   * @return the document, or null if the snapshot has no document for this content of the resource
+   */
+  Document getDocument(String resource, byte[] content) {
+    Entry entry = entries.get(resource);
+    if (entry == null || entry.checksum != checksum(content)) {
+      return null;
+    }
+    try {
+      Document document = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder().newDocument();
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.content));
+      List<String> names = new ArrayList<>();
+      readChildren(in, document, document, names);
+      return document;
+    } catch (Exception e) {
+      throw new BuilderException("Error decoding the snapshot of " + resource + ".  Cause: " + e, e);
+    }
+  }
+
+  /**
+   * Adds (or replaces) the document of a resource.
+   */
+  void putDocument(String resource, byte[] content, Element root) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 2);
+    try {
+      DataOutputStream out = new DataOutputStream(bytes);
+      writeNode(out, root, new HashMap<>());
+      out.writeByte(END);
+      out.flush();
+    } catch (IOException e) {
+      throw new BuilderException("Error encoding the snapshot of " + resource + ".  Cause: " + e, e);
+    }
+    entries.put(resource, new Entry(checksum(content), bytes.toByteArray()));
+    modified = true;
+  }
+
+  private static long checksum(byte[] content) {
+    CRC32 crc = new CRC32();
+    crc.update(content, 0, content.length);
+    // the length makes a collision of two versions of a resource even less likely
+    return (long) content.length << 32 | crc.getValue();
+  }
+
+  private static void writeNode(DataOutputStream out, Node node, Map<String, Integer> names) throws IOException {
+    switch (node.getNodeType()) {
+      case Node.ELEMENT_NODE:
+        out.writeByte(ELEMENT);
+        writeName(out, node.getNodeName(), names);
+        NamedNodeMap attributes = node.getAttributes();
+        writeVarInt(out, attributes.getLength());
+        for (int i = 0; i < attributes.getLength(); i++) {
+          Node attribute = attributes.item(i);
+          writeName(out, attribute.getNodeName(), names);
+          writeString(out, attribute.getNodeValue());
+        }
+        writeChildren(out, node, names);
+        out.writeByte(END);
+        break;
+      case Node.TEXT_NODE:
+        out.writeByte(TEXT);
+        writeString(out, node.getNodeValue());
+        break;
+      case Node.CDATA_SECTION_NODE:
+        out.writeByte(CDATA);
+        writeString(out, node.getNodeValue());
+        break;
+      case Node.ENTITY_REFERENCE_NODE:
+        writeChildren(out, node, names);
+        break;
+      default:
+        // comments and processing instructions are not used by the builders
+        break;
+    }
+  }
+
+  private static void writeChildren(DataOutputStream out, Node node, Map<String, Integer> names) throws IOException {
+    NodeList children = node.getChildNodes();
+    for (int i = 0; i < children.getLength(); i++) {
+      writeNode(out, children.item(i), names);
+    }
+  }
+
+  private static void readChildren(DataInputStream in, Document document, Node parent, List<String> names) throws IOException {
+    int type;
+    while ((type = in.readUnsignedByte()) != END) {
+      switch (type) {
+        case ELEMENT:
+          Element element = document.createElement(readName(in, names));
+          int attributes = readVarInt(in);
+          for (int i = 0; i < attributes; i++) {
+            element.setAttribute(readName(in, names), readString(in));
+          }
+          readChildren(in, document, element, names);
+          parent.appendChild(element);
+          break;
+        case TEXT:
+          parent.appendChild(document.createTextNode(readString(in)));
+          break;
+        case CDATA:
+          parent.appendChild(document.createCDATASection(readString(in)));
+          break;
+        default:
+          throw new IOException("Unknown node type " + type + ".");
+      }
+    }
+  }
+
+  /**
+   * Element and attribute names are written once per document, and referred to by index afterwards.
+   */
+  private static void writeName(DataOutputStream out, String name, Map<String, Integer> names) throws IOException {
+    Integer index = names.get(name);
+    if (index != null) {
+      writeVarInt(out, index + 1);
+    } else {
+      names.put(name, names.size());
+      writeVarInt(out, 0);
+      writeString(out, name);
+    }
+  }
+
+  private static String readName(DataInputStream in, List<String> names) throws IOException {
+    int index = readVarInt(in);
+    if (index == 0) {
+      String name = readString(in);
+      names.add(name);
+      return name;
+    }
+    return names.get(index - 1);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    // not writeUTF, which is limited to 64KB
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarInt(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[readVarInt(in)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarInt(DataInputStream in) throws IOException {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  private static class Entry {
+    private final long checksum;
+    private final byte[] content;
+
+    Entry(long checksum, byte[] content) {
+      this.checksum = checksum;
+      this.content = content;
+    }
+  }
+
+}
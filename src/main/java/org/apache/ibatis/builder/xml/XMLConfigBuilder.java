@@ -23,9 +23,17 @@ import org.apache.ibatis.transaction.TransactionFactory;
 import org.apache.ibatis.type.JdbcType;
 
 import javax.sql.DataSource;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Clinton Begin
@@ -257,6 +265,9 @@ public class XMLConfigBuilder extends BaseBuilder {
          * 一级缓存scope SESSION
          */
         configuration.setLocalCacheScope(LocalCacheScope.valueOf(props.getProperty("localCacheScope", "SESSION")));
+        configuration.setLocalCacheImpl(resolveClass(props.getProperty("localCacheImpl")));
+        configuration.setLocalCacheSize(integerValueOf(props.getProperty("localCacheSize"), 1024));
+        configuration.setLocalCacheMaximumWeight(longValueOf(props.getProperty("localCacheMaximumWeight"), null));
         configuration.setJdbcTypeForNull(JdbcType.valueOf(props.getProperty("jdbcTypeForNull", "OTHER")));
         configuration.setLazyLoadTriggerMethods(stringSetValueOf(props.getProperty("lazyLoadTriggerMethods"), "equals,clone,hashCode,toString"));
         configuration.setSafeResultHandlerEnabled(booleanValueOf(props.getProperty("safeResultHandlerEnabled"), true));
@@ -265,6 +276,13 @@ public class XMLConfigBuilder extends BaseBuilder {
         configuration.setCallSettersOnNulls(booleanValueOf(props.getProperty("callSettersOnNulls"), false));
         configuration.setUseActualParamName(booleanValueOf(props.getProperty("useActualParamName"), true));
         configuration.setReturnInstanceForEmptyRow(booleanValueOf(props.getProperty("returnInstanceForEmptyRow"), false));
+        configuration.setInferCacheTags(booleanValueOf(props.getProperty("inferCacheTags"), false));
+        configuration.setCacheStatisticsEnabled(booleanValueOf(props.getProperty("cacheStatisticsEnabled"), false));
+        configuration.setParallelMapperParsing(booleanValueOf(props.getProperty("parallelMapperParsing"), false));
+        configuration.setUseStaxMapperParser(booleanValueOf(props.getProperty("useStaxMapperParser"), false));
+        configuration.setCompileDynamicSql(booleanValueOf(props.getProperty("compileDynamicSql"), false));
+        configuration.setDynamicSqlShapeCacheSize(integerValueOf(props.getProperty("dynamicSqlShapeCacheSize"), 0));
+        configuration.setCompileExpressions(booleanValueOf(props.getProperty("compileExpressions"), false));
         configuration.setLogPrefix(props.getProperty("logPrefix"));
         configuration.setConfigurationFactory(resolveClass(props.getProperty("configurationFactory")));
     }
@@ -362,49 +380,138 @@ public class XMLConfigBuilder extends BaseBuilder {
 
     private void mapperElement(XNode parent) throws Exception {
         if (parent != null) {
-            for (XNode child : parent.getChildren()) {
-                if ("package".equals(child.getName())) {
-                    String mapperPackage = child.getStringAttribute("name");
-                    configuration.addMappers(mapperPackage);
-                } else {
-                    String resource = child.getStringAttribute("resource");
-                    String url = child.getStringAttribute("url");
-                    String mapperClass = child.getStringAttribute("class");
-                    /**
-                     * 直接写配置文件名称的方式
-                     * <mapper resource="my/test1/StudentMapper.xml"/>
-                     */
-                    if (resource != null && url == null && mapperClass == null) {
-                        ErrorContext.instance().resource(resource);
+            List<XNode> children = parent.getChildren();
+            ExecutorService parsers = configuration.isParallelMapperParsing() ? newMapperParsers(children) : null;
+            try {
+                mapperElement(children, parsers != null ? parseMapperDocuments(children, parsers) : null);
+            } finally {
+                if (parsers != null) {
+                    // also interrupts the documents left unparsed by a failure
+                    parsers.shutdownNow();
+                }
+            }
+        }
+    }
+
+    private void mapperElement(List<XNode> children, List<Future<XPathParser>> documents) throws Exception {
+        XMLMapperBuilder lastMapperParser = null;
+        for (int i = 0; i < children.size(); i++) {
+            XNode child = children.get(i);
+            if ("package".equals(child.getName())) {
+                String mapperPackage = child.getStringAttribute("name");
+                configuration.addMappers(mapperPackage);
+            } else {
+                String resource = child.getStringAttribute("resource");
+                String url = child.getStringAttribute("url");
+                String mapperClass = child.getStringAttribute("class");
+                /**
+                 * 直接写配置文件名称的方式
+                 * <mapper resource="my/test1/StudentMapper.xml"/>
+                 */
+                if (resource != null && url == null && mapperClass == null) {
+                    ErrorContext.instance().resource(resource);
+                    if (documents != null) {
+                        lastMapperParser = new XMLMapperBuilder(getDocument(documents.get(i)), configuration, resource, configuration.getSqlFragments());
+                        lastMapperParser.parseMapper();
+                    } else {
                         InputStream inputStream = Resources.getResourceAsStream(resource);
                         XMLMapperBuilder mapperParser = new XMLMapperBuilder(inputStream, configuration, resource, configuration.getSqlFragments());
                         mapperParser.parse();
                     }
-                    /**
-                     * url方式
-                     */
-                    else if (resource == null && url != null && mapperClass == null) {
-                        ErrorContext.instance().resource(url);
+                }
+                /**
+                 * url方式
+                 */
+                else if (resource == null && url != null && mapperClass == null) {
+                    ErrorContext.instance().resource(url);
+                    if (documents != null) {
+                        lastMapperParser = new XMLMapperBuilder(getDocument(documents.get(i)), configuration, url, configuration.getSqlFragments());
+                        lastMapperParser.parseMapper();
+                    } else {
                         InputStream inputStream = Resources.getUrlAsStream(url);
                         XMLMapperBuilder mapperParser = new XMLMapperBuilder(inputStream, configuration, url, configuration.getSqlFragments());
                         mapperParser.parse();
                     }
-                    /**
-                     *  <mapper class="my.test2.StudentMapper"/> 这种方式
-                     *  它和直接写配置文件名称的方式相比，多了
-                     *  1. 根据mapper接口类记载配置文件；
-                     *  2. 检查namespace和mapper接口类全路径名是否一致
-                     *  其实是为了把这个mapper接口类和这个mapper配置文件做对应放入mapperRegistry中，为后面使用getMapper做铺垫
-                     */
-                    else if (resource == null && url == null && mapperClass != null) {
-                        Class<?> mapperInterface = Resources.classForName(mapperClass);
-                        configuration.addMapper(mapperInterface);
-                    } else {
-                        throw new BuilderException("A mapper element may only specify a url, resource or class, but not more than one.");
-                    }
+                }
+                /**
+                 *  <mapper class="my.test2.StudentMapper"/> 这种方式
+                 *  它和直接写配置文件名称的方式相比，多了
+                 *  1. 根据mapper接口类记载配置文件；
+                 *  2. 检查namespace和mapper接口类全路径名是否一致
+                 *  其实是为了把这个mapper接口类和这个mapper配置文件做对应放入mapperRegistry中，为后面使用getMapper做铺垫
+                 */
+                else if (resource == null && url == null && mapperClass != null) {
+                    Class<?> mapperInterface = Resources.classForName(mapperClass);
+                    configuration.addMapper(mapperInterface);
+                } else {
+                    throw new BuilderException("A mapper element may only specify a url, resource or class, but not more than one.");
                 }
             }
         }
+        if (lastMapperParser != null) {
+            // the references between the mappers, resolved once they are all parsed
+            lastMapperParser.parseAllPending();
+        }
+    }
+
+    /**
+     * Creates the pool parsing the documents of the XML mappers, with at most one thread per processor. Its threads
+     * use the context class loader of the calling thread, which finds the resources.
+     */
+    private static ExecutorService newMapperParsers(List<XNode> children) {
+        int mappers = 0;
+        for (XNode child : children) {
+            if (isMapperDocument(child)) {
+                mappers++;
+            }
+        }
+        int threads = Math.max(1, Math.min(mappers, Runtime.getRuntime().availableProcessors()));
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "mybatis-mapper-parser-" + threadNumber.incrementAndGet());
+            thread.setContextClassLoader(classLoader);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts parsing the documents of the XML mappers, each task opening and closing the stream of its document.
+     * The mappers are still built one by one in the declared order, as the configuration is not thread safe.
+     *
+     * @return the parsing tasks, by index of the mapper element, null for the other elements
+     */
+    private List<Future<XPathParser>> parseMapperDocuments(List<XNode> children, ExecutorService parsers) {
+        List<Future<XPathParser>> documents = new ArrayList<>(children.size());
+        for (XNode child : children) {
+            if (!isMapperDocument(child)) {
+                documents.add(null);
+                continue;
+            }
+            String resource = child.getStringAttribute("resource");
+            String location = resource != null ? resource : child.getStringAttribute("url");
+            documents.add(parsers.submit(() -> {
+                try (InputStream inputStream = resource != null ? Resources.getResourceAsStream(resource) : Resources.getUrlAsStream(location)) {
+                    return XMLMapperBuilder.newParser(inputStream, configuration, location);
+                }
+            }));
+        }
+        return documents;
+    }
+
+    private static boolean isMapperDocument(XNode child) {
+        return "mapper".equals(child.getName()) && child.getStringAttribute("class") == null
+                && (child.getStringAttribute("resource") == null) != (child.getStringAttribute("url") == null);
+    }
+
+    private static XPathParser getDocument(Future<XPathParser> document) throws Exception {
+        try {
+            return document.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
     }
 
     private boolean isSpecifiedEnvironment(String id) {
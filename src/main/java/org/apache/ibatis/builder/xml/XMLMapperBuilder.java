@@ -5,6 +5,7 @@ import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.*;
+import org.apache.ibatis.parsing.StaxDocumentBuilder;
 import org.apache.ibatis.parsing.XNode;
 import org.apache.ibatis.parsing.XPathParser;
 import org.apache.ibatis.reflection.MetaClass;
@@ -12,6 +13,12 @@ import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeHandler;
 
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.util.*;
@@ -22,6 +29,8 @@ import java.util.*;
  */
 public class XMLMapperBuilder extends BaseBuilder {
 
+    private static final StaxDocumentBuilder STAX_DOCUMENT_BUILDER = new StaxDocumentBuilder(new XMLMapperEntityResolver());
+
     private final XPathParser parser;
     private final MapperBuilderAssistant builderAssistant;
     private final Map<String, XNode> sqlFragments;
@@ -45,11 +54,54 @@ public class XMLMapperBuilder extends BaseBuilder {
     }
 
     public XMLMapperBuilder(InputStream inputStream, Configuration configuration, String resource, Map<String, XNode> sqlFragments) {
-        this(new XPathParser(inputStream, true, configuration.getVariables(), new XMLMapperEntityResolver()),
-                configuration, resource, sqlFragments);
+        this(newParser(inputStream, configuration, resource), configuration, resource, sqlFragments);
+    }
+
+    /**
+     * Parses a mapper document with the parser chosen by {@link Configuration#isUseStaxMapperParser()}, or decodes
+     * it from the {@link Configuration#getMapperSnapshot() mapper snapshot} if the resource has not changed.
+     */
+    static XPathParser newParser(InputStream inputStream, Configuration configuration, String resource) {
+        MapperSnapshot snapshot = configuration.getMapperSnapshot();
+        if (snapshot == null) {
+            return newParser(inputStream, configuration);
+        }
+        byte[] content = readFully(inputStream, resource);
+        Document document = snapshot.getDocument(resource, content);
+        if (document != null) {
+            return new XPathParser(document, false, configuration.getVariables(), new XMLMapperEntityResolver());
+        }
+        XPathParser parser = newParser(new ByteArrayInputStream(content), configuration);
+        XNode mapper = parser.evalNode("/mapper");
+        if (mapper != null) {
+            snapshot.putDocument(resource, content, (Element) mapper.getNode());
+        }
+        return parser;
+    }
+
+    private static XPathParser newParser(InputStream inputStream, Configuration configuration) {
+        if (configuration.isUseStaxMapperParser()) {
+            return new XPathParser(STAX_DOCUMENT_BUILDER.parse(inputStream), false, configuration.getVariables(),
+                    new XMLMapperEntityResolver());
+        }
+        return new XPathParser(inputStream, true, configuration.getVariables(), new XMLMapperEntityResolver());
     }
 
-    private XMLMapperBuilder(XPathParser parser, Configuration configuration, String resource, Map<String, XNode> sqlFragments) {
+    private static byte[] readFully(InputStream inputStream, String resource) {
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                content.write(buffer, 0, n);
+            }
+            return content.toByteArray();
+        } catch (IOException e) {
+            throw new BuilderException("Error reading " + resource + ".  Cause: " + e, e);
+        }
+    }
+
+    XMLMapperBuilder(XPathParser parser, Configuration configuration, String resource, Map<String, XNode> sqlFragments) {
         super(configuration);
         this.builderAssistant = new MapperBuilderAssistant(configuration, resource);
         this.parser = parser;
@@ -58,15 +110,39 @@ public class XMLMapperBuilder extends BaseBuilder {
     }
 
     public void parse() {
+        parseMapper();
+        parsePendingResultMaps();
+        parsePendingCacheRefs();
+        parsePendingStatements();
+    }
+
+    /**
+     * Parses the mapper without retrying the elements left pending by the mappers parsed before.
+     */
+    void parseMapper() {
         if (!configuration.isResourceLoaded(resource)) {
             configurationElement(parser.evalNode("/mapper"));
             configuration.addLoadedResource(resource);
             bindMapperForNamespace();
         }
+    }
 
-        parsePendingResultMaps();
-        parsePendingCacheRefs();
-        parsePendingStatements();
+    /**
+     * Retries the pending result maps, cache refs and statements until none of them can be resolved anymore.
+     */
+    void parseAllPending() {
+        int pending;
+        do {
+            pending = countPending();
+            parsePendingResultMaps();
+            parsePendingCacheRefs();
+            parsePendingStatements();
+        } while (countPending() < pending);
+    }
+
+    private int countPending() {
+        return configuration.getIncompleteResultMaps().size() + configuration.getIncompleteCacheRefs().size()
+                + configuration.getIncompleteStatements().size();
     }
 
     public XNode getSqlFragment(String refid) {
@@ -97,4 +97,18 @@ public interface Cache {
     return null;
   }
 
+  /**
+   * Optional. Tells whether the cache can be used by several threads at once without any external locking.
+   * <p>
+   * The cache builder does not wrap a thread safe cache in a
+   * {@link org.apache.ibatis.cache.decorators.SynchronizedCache}. Decorators are thread safe if they do not
+   * keep any state of their own and their delegate is.
+   *
+   * @return true if the cache is thread safe
+   * @since 3.5.3
+   */
+  default boolean isThreadSafe() {
+    return false;
+  }
+
 }
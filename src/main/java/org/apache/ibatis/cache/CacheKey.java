@@ -2,56 +2,74 @@ package org.apache.ibatis.cache;
 
 import org.apache.ibatis.reflection.ArrayUtil;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.StringJoiner;
 
 /**
+ * The key of a cached query result: the statement id, row bounds, SQL, parameter values and environment.
+ * <p>
+ * The values are kept in a flat array and hashed as they are added into a 64 bit hash, so comparing two keys
+ * only walks the values when their hashes are equal, which is practically only when they are equal.
+ * <p>
+ * The serialized form is not stable across versions of MyBatis and the hashes it holds are only valid in the JVM
+ * that computed them, so a key sent elsewhere must be rebuilt from {@link #getUpdateValues()}, as
+ * {@link org.apache.ibatis.cache.distributed.DistributedCache} does.
+ *
  * @author Clinton Begin
  */
 public class CacheKey implements Cloneable, Serializable {
 
-    private static final long serialVersionUID = 1146682552656046210L;
+    private static final long serialVersionUID = -1797624478562549712L;
 
     public static final CacheKey NULL_CACHE_KEY = new NullCacheKey();
 
-    private static final int DEFAULT_MULTIPLYER = 37;
-    private static final int DEFAULT_HASHCODE = 17;
+    private static final Object[] EMPTY = new Object[0];
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final long SEED = 0x9E3779B97F4A7C15L;
 
-    private final int multiplier;
     private int hashcode;
     private long checksum;
     private int count;
     // 8/21/2017 - Sonarlint flags this as needing to be marked transient.  While true if content is not serializable, this is not always true and thus should not be marked transient.
-    private List<Object> updateList;
+    private Object[] updateList;
 
     public CacheKey() {
-        this.hashcode = DEFAULT_HASHCODE;
-        this.multiplier = DEFAULT_MULTIPLYER;
-        this.count = 0;
-        this.updateList = new ArrayList<>();
+        this.checksum = SEED;
+        this.hashcode = finish(SEED);
+        this.updateList = EMPTY;
     }
 
     public CacheKey(Object[] objects) {
         this();
+        this.updateList = new Object[objects.length];
         updateAll(objects);
     }
 
     public int getUpdateCount() {
-        return updateList.size();
+        return count;
+    }
+
+    /**
+     * @return the values this key was updated with, in order
+     * @since 3.5.3
+     */
+    public Object[] getUpdateValues() {
+        return Arrays.copyOf(updateList, count);
     }
 
     public void update(Object object) {
         int baseHashCode = object == null ? 1 : ArrayUtil.hashCode(object);
 
-        count++;
-        checksum += baseHashCode;
-        baseHashCode *= count;
+        checksum = mix(checksum, baseHashCode);
+        hashcode = finish(checksum);
 
-        hashcode = multiplier * hashcode + baseHashCode;
-
-        updateList.add(object);
+        if (count == updateList.length) {
+            updateList = Arrays.copyOf(updateList, Math.max(DEFAULT_CAPACITY, count << 1));
+        }
+        updateList[count++] = object;
     }
 
     public void updateAll(Object[] objects) {
@@ -71,9 +89,6 @@ public class CacheKey implements Cloneable, Serializable {
 
         final CacheKey cacheKey = (CacheKey) object;
 
-        if (hashcode != cacheKey.hashcode) {
-            return false;
-        }
         if (checksum != cacheKey.checksum) {
             return false;
         }
@@ -81,10 +96,10 @@ public class CacheKey implements Cloneable, Serializable {
             return false;
         }
 
-        for (int i = 0; i < updateList.size(); i++) {
-            Object thisObject = updateList.get(i);
-            Object thatObject = cacheKey.updateList.get(i);
-            if (!ArrayUtil.equals(thisObject, thatObject)) {
+        for (int i = 0; i < count; i++) {
+            Object thisObject = updateList[i];
+            Object thatObject = cacheKey.updateList[i];
+            if (thisObject != thatObject && !ArrayUtil.equals(thisObject, thatObject)) {
                 return false;
             }
         }
@@ -101,15 +116,42 @@ public class CacheKey implements Cloneable, Serializable {
         StringJoiner returnValue = new StringJoiner(":");
         returnValue.add(String.valueOf(hashcode));
         returnValue.add(String.valueOf(checksum));
-        updateList.stream().map(ArrayUtil::toString).forEach(returnValue::add);
+        for (int i = 0; i < count; i++) {
+            returnValue.add(ArrayUtil.toString(updateList[i]));
+        }
         return returnValue.toString();
     }
 
     @Override
     public CacheKey clone() throws CloneNotSupportedException {
         CacheKey clonedCacheKey = (CacheKey) super.clone();
-        clonedCacheKey.updateList = new ArrayList<>(updateList);
+        clonedCacheKey.updateList = count == 0 ? EMPTY : Arrays.copyOf(updateList, count);
         return clonedCacheKey;
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // equal keys must give equal bytes, e.g. to be looked up in a distributed cache
+        if (updateList.length != count) {
+            updateList = Arrays.copyOf(updateList, count);
+        }
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Adds a hash code to the running hash. The multiplication spreads it over all 64 bits and the rotation makes
+     * the result depend on the order of the values.
+     */
+    private static long mix(long hash, int value) {
+        long h = hash ^ ((value & 0xFFFFFFFFL) * SEED);
+        return Long.rotateLeft(h, 27) * 0xC2B2AE3D27D4EB4FL + 0x165667B19E3779F9L;
+    }
+
+    private static int finish(long hash) {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
 }
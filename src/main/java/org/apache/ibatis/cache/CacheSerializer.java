@@ -0,0 +1,47 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * Turns cached values into bytes and back, for caches that hand out copies of their values such as
+ * {@link org.apache.ibatis.cache.decorators.SerializedCache} (<code>readOnly="false"</code>) and
+ * {@link org.apache.ibatis.cache.impl.OffHeapCache}.
+ * <p>
+ * An implementation is set with the <code>serializer</code> cache property holding the fully qualified name of
+ * a class that has a no-arg constructor. It is shared by all the threads using the cache, so it must be thread
+ * safe.
+ *
+ * @since 3.5.3
+ * @see org.apache.ibatis.cache.serializer.ReflectiveCacheSerializer
+ * @see org.apache.ibatis.cache.serializer.JavaCacheSerializer
+ */
+public interface CacheSerializer {
+
+  /**
+   * @param value the value to store, may be null
+   * @return the value as bytes
+   * @throws CacheException if the value cannot be serialized
+   */
+  byte[] serialize(Object value);
+
+  /**
+   * @param data bytes returned by {@link #serialize(Object)}
+   * @return a new copy of the value
+   * @throws CacheException if the bytes cannot be deserialized
+   */
+  Object deserialize(byte[] data);
+
+}
@@ -0,0 +1,154 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of a second level cache, recorded by a {@link org.apache.ibatis.cache.decorators.StatisticsCache}
+ * and read from {@link org.apache.ibatis.session.Configuration#getCacheStatistics(String)}.
+ * <p>
+ * Counters are {@link LongAdder}s: recording never blocks, and a read is a sum that may miss the events
+ * recorded while it runs.
+ *
+ * @since 3.5.3
+ */
+public class CacheStatistics {
+
+  private final Cache cache;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder puts = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder clears = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder loadTime = new LongAdder();
+
+  /**
+   * @param cache the cache whose size is reported
+   */
+  public CacheStatistics(Cache cache) {
+    this.cache = cache;
+  }
+
+  public String getId() {
+    return cache.getId();
+  }
+
+  public void recordHit() {
+    hits.increment();
+  }
+
+  public void recordMiss() {
+    misses.increment();
+  }
+
+  /**
+   * A decorator found that a value counted as a hit is invalid, and returned nothing instead.
+   */
+  public void recordInvalidatedHit() {
+    hits.decrement();
+    misses.increment();
+  }
+
+  public void recordPut() {
+    puts.increment();
+  }
+
+  public void recordEviction() {
+    evictions.increment();
+  }
+
+  public void recordClear() {
+    clears.increment();
+  }
+
+  /**
+   * @param nanos how long reading a missing value from the database took
+   */
+  public void recordLoad(long nanos) {
+    loads.increment();
+    loadTime.add(nanos);
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getRequestCount() {
+    return getHitCount() + getMissCount();
+  }
+
+  /**
+   * @return the share of requests that were hits, between 0 and 1, or 0 if there was no request
+   */
+  public double getHitRatio() {
+    long hitCount = getHitCount();
+    long requestCount = hitCount + getMissCount();
+    return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+  }
+
+  public long getPutCount() {
+    return puts.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  public long getClearCount() {
+    return clears.sum();
+  }
+
+  public long getLoadCount() {
+    return loads.sum();
+  }
+
+  /**
+   * @return the total time spent reading missing values from the database, in nanoseconds
+   */
+  public long getTotalLoadTime() {
+    return loadTime.sum();
+  }
+
+  /**
+   * @return the mean time spent reading a missing value from the database, in nanoseconds
+   */
+  public long getAverageLoadTime() {
+    long count = getLoadCount();
+    return count == 0 ? 0 : getTotalLoadTime() / count;
+  }
+
+  /**
+   * @return the number of entries in the cache now
+   */
+  public int getSize() {
+    return cache.getSize();
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStatistics{id=" + getId() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+        + ", hitRatio=" + getHitRatio() + ", puts=" + getPutCount() + ", evictions=" + getEvictionCount()
+        + ", clears=" + getClearCount() + ", loads=" + getLoadCount() + ", averageLoadTime=" + getAverageLoadTime()
+        + ", size=" + getSize() + "}";
+  }
+
+}
@@ -0,0 +1,141 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for the cache tags of statements, which name the tables (or any other data) a statement reads or
+ * writes, so that a write only invalidates the cached results that depend on what it changes.
+ *
+ * @since 3.5.3
+ * @see org.apache.ibatis.cache.decorators.TaggedCache
+ */
+public final class CacheTags {
+
+  private static final Pattern TOKEN = Pattern.compile("'(?:[^']|'')*'|[\\w$.\"`\\[\\]]+|[(),;]");
+  private static final Set<String> TABLE_KEYWORDS = new HashSet<>(Arrays.asList("from", "join", "into", "update"));
+  private static final Set<String> CLAUSE_KEYWORDS = new HashSet<>(Arrays.asList(
+      "where", "set", "on", "using", "join", "inner", "left", "right", "full", "outer", "cross", "natural",
+      "straight_join", "group", "order", "having", "limit", "offset", "fetch", "union", "intersect", "except",
+      "minus", "values", "value", "select", "for", "window", "returning", "lateral", "with", "partition"));
+  private static final int MAX_INFERRED = 1024;
+  private static final Map<String, String[]> inferred = new ConcurrentHashMap<>();
+  private static final String[] NONE = new String[0];
+
+  private CacheTags() {
+    // Prevent Instantiation of Static Class
+  }
+
+  /**
+   * Turns a comma separated list of tags into an array of trimmed, lower case tags.
+   *
+   * @param tags the tags, may be null
+   * @return the tags, null if there are none
+   */
+  public static String[] parse(String tags) {
+    if (tags == null) {
+      return null;
+    }
+    Set<String> result = new LinkedHashSet<>();
+    for (String tag : tags.split(",")) {
+      String trimmed = tag.trim();
+      if (!trimmed.isEmpty()) {
+        result.add(trimmed.toLowerCase(Locale.ENGLISH));
+      }
+    }
+    return result.isEmpty() ? null : result.toArray(new String[0]);
+  }
+
+  /**
+   * Finds the tables a statement uses: the names that follow <code>FROM</code> (including comma separated lists),
+   * <code>JOIN</code>, <code>INTO</code> and <code>UPDATE</code>, in lower case and without schema or quotes.
+   * The result of a write also contains the tables it only reads. Only the names in the SQL are found: not the
+   * base tables of a view, nor the tables changed by cascades, triggers or procedures.
+   *
+   * @param sql the SQL of the statement
+   * @return the table names, null if none was found
+   */
+  public static String[] fromSql(String sql) {
+    String[] tables = inferred.get(sql);
+    if (tables == null) {
+      tables = findTables(sql);
+      if (inferred.size() >= MAX_INFERRED) {
+        // dynamic SQL may produce any number of different statements
+        inferred.clear();
+      }
+      inferred.put(sql, tables);
+    }
+    return tables.length == 0 ? null : tables;
+  }
+
+  private static String[] findTables(String sql) {
+    List<String> tokens = new ArrayList<>();
+    Matcher matcher = TOKEN.matcher(sql);
+    while (matcher.find()) {
+      String token = matcher.group();
+      if (token.charAt(0) != '\'') {
+        tokens.add(token);
+      }
+    }
+    Set<String> tables = new LinkedHashSet<>();
+    for (int i = 0; i < tokens.size(); i++) {
+      String keyword = tokens.get(i).toLowerCase(Locale.ENGLISH);
+      if (!TABLE_KEYWORDS.contains(keyword)) {
+        continue;
+      }
+      int j = i + 1;
+      while (j < tokens.size() && isName(tokens.get(j))) {
+        tables.add(tableName(tokens.get(j++)));
+        if (j < tokens.size() && "as".equalsIgnoreCase(tokens.get(j))) {
+          j++;
+        }
+        if (j < tokens.size() && isName(tokens.get(j))) {
+          // an alias
+          j++;
+        }
+        if (!"from".equals(keyword) || j >= tokens.size() || !",".equals(tokens.get(j))) {
+          break;
+        }
+        j++;
+      }
+    }
+    return tables.toArray(NONE);
+  }
+
+  private static boolean isName(String token) {
+    char first = token.charAt(0);
+    return first != '(' && first != ')' && first != ',' && first != ';'
+        && !CLAUSE_KEYWORDS.contains(token.toLowerCase(Locale.ENGLISH));
+  }
+
+  private static String tableName(String token) {
+    String name = token.replace("\"", "").replace("`", "").replace("[", "").replace("]", "");
+    int dot = name.lastIndexOf('.');
+    return name.substring(dot + 1).toLowerCase(Locale.ENGLISH);
+  }
+
+}
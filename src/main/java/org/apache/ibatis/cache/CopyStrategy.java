@@ -0,0 +1,38 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * How a read-write cache (<code>readOnly="false"</code>) copies its values, so that callers never share them.
+ * It is chosen per namespace with the <code>copyStrategy</code> cache property.
+ *
+ * @since 3.5.3
+ */
+public enum CopyStrategy {
+
+  /**
+   * Stores the values serialized by a {@link CacheSerializer} and deserializes them on every hit. This is the
+   * default.
+   */
+  SERIALIZE,
+
+  /**
+   * Stores a deep copy of the values and returns a new deep copy on every hit, walking the object graph once
+   * without going through bytes.
+   */
+  DEEP_COPY
+
+}
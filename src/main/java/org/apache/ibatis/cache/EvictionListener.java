@@ -0,0 +1,37 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * Told about the entries a cache drops to stay within its bounds, e.g. to count them.
+ * <p>
+ * It is set with <code>setEvictionListener</code> on the caches and decorators that evict:
+ * {@link org.apache.ibatis.cache.decorators.LruCache}, {@link org.apache.ibatis.cache.decorators.FifoCache},
+ * {@link org.apache.ibatis.cache.decorators.WeightedCache}, {@link org.apache.ibatis.cache.impl.ConcurrentCache}
+ * and {@link org.apache.ibatis.cache.impl.OffHeapCache}. It is called by the thread that caused the eviction,
+ * possibly while the cache is locked, so it must be thread safe and cheap.
+ *
+ * @since 3.5.3
+ */
+@FunctionalInterface
+public interface EvictionListener {
+
+  /**
+   * @param key the key of the evicted entry
+   */
+  void onEviction(Object key);
+
+}
@@ -16,14 +16,35 @@ public class TransactionalCacheManager {
         getTransactionalCache(cache).clear();
     }
 
+    /**
+     * @since 3.5.3
+     */
+    public void invalidate(Cache cache, String[] tags) {
+        getTransactionalCache(cache).invalidate(tags);
+    }
+
     public Object getObject(Cache cache, CacheKey key) {
         return getTransactionalCache(cache).getObject(key);
     }
 
+    /**
+     * @since 3.5.3
+     */
+    public Object getObject(Cache cache, CacheKey key, String[] tags) {
+        return getTransactionalCache(cache).getObject(key, tags);
+    }
+
     public void putObject(Cache cache, CacheKey key, Object value) {
         getTransactionalCache(cache).putObject(key, value);
     }
 
+    /**
+     * @since 3.5.3
+     */
+    public void putObject(Cache cache, CacheKey key, Object value, String[] tags) {
+        getTransactionalCache(cache).putObject(key, value, tags);
+    }
+
     public void commit() {
         for (TransactionalCache txCache : transactionalCaches.values()) {
             txCache.commit();
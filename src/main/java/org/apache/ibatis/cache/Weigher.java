@@ -0,0 +1,37 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * Estimates how much memory a cache entry takes, for caches bounded by weight rather than by
+ * number of entries.
+ * <p>
+ * Implementations must be thread safe and have a no-arg constructor to be configured by class name.
+ *
+ * @see org.apache.ibatis.cache.decorators.WeightedCache
+ * @since 3.5.3
+ */
+@FunctionalInterface
+public interface Weigher {
+
+  /**
+   * @param key the key of the entry
+   * @param value the cached value, may be null
+   * @return the weight of the entry, usually an estimate of its size in bytes, never negative
+   */
+  long weigh(Object key, Object value);
+
+}
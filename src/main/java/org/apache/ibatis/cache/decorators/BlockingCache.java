@@ -15,10 +15,11 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
@@ -29,6 +30,12 @@ import org.apache.ibatis.cache.CacheException;
  * Simple and inefficient version of EhCache's BlockingCache decorator.
  * It sets a lock over a cache key when the element is not found in cache.
  * This way, other threads will wait until this element is filled instead of hitting the database.
+ * <p>
+ * The first thread that misses a key loads it: until it puts the value (or removes the key, if it has none),
+ * the other threads that miss the key wait for a {@link CompletableFuture} shared by all of them, and then read
+ * the value from the cache. A load is forgotten as soon as it completes, and at most
+ * <code>maximumLoads</code> loads (10000 by default) are tracked at once; past that, misses are not blocked.
+ * Callers that should not block can get the future of a load with {@link #getLoad(Object)}.
  *
  * @author Eduardo Macarron
  *
@@ -36,12 +43,13 @@ import org.apache.ibatis.cache.CacheException;
 public class BlockingCache implements Cache {
 
   private long timeout;
+  private int maximumLoads = 10_000;
   private final Cache delegate;
-  private final ConcurrentHashMap<Object, ReentrantLock> locks;
+  private final ConcurrentHashMap<Object, Load> loads;
 
   public BlockingCache(Cache delegate) {
     this.delegate = delegate;
-    this.locks = new ConcurrentHashMap<>();
+    this.loads = new ConcurrentHashMap<>();
   }
 
   @Override
@@ -59,24 +67,51 @@ public class BlockingCache implements Cache {
     try {
       delegate.putObject(key, value);
     } finally {
-      releaseLock(key);
+      Load load = loads.get(key);
+      if (load != null) {
+        // whoever puts the value, the threads waiting for it can stop
+        complete(key, load, value);
+      }
     }
   }
 
   @Override
   public Object getObject(Object key) {
-    acquireLock(key);
-    Object value = delegate.getObject(key);
-    if (value != null) {
-      releaseLock(key);
+    while (true) {
+      Object value = delegate.getObject(key);
+      if (value != null) {
+        return value;
+      }
+      Load load = loads.get(key);
+      if (load == null) {
+        if (loads.size() >= maximumLoads) {
+          return null;
+        }
+        Load newLoad = new Load();
+        load = loads.putIfAbsent(key, newLoad);
+        if (load == null) {
+          // put meanwhile?
+          value = delegate.getObject(key);
+          if (value != null) {
+            complete(key, newLoad, value);
+          }
+          return value;
+        }
+      }
+      if (load.owner == Thread.currentThread()) {
+        return null;
+      }
+      await(key, load);
     }
-    return value;
   }
 
   @Override
   public Object removeObject(Object key) {
     // despite of its name, this method is called only to release locks
-    releaseLock(key);
+    Load load = loads.get(key);
+    if (load != null && load.owner == Thread.currentThread()) {
+      complete(key, load, null);
+    }
     return null;
   }
 
@@ -85,30 +120,47 @@ public class BlockingCache implements Cache {
     delegate.clear();
   }
 
-  private ReentrantLock getLockForKey(Object key) {
-    return locks.computeIfAbsent(key, k -> new ReentrantLock());
+  /**
+   * Returns the future of the load of a key, which completes with the value put in the cache, or with null if
+   * the loading thread had no value.
+   *
+   * @param key the key
+   * @return the future, null if the key is not being loaded
+   * @since 3.5.3
+   */
+  public CompletableFuture<Object> getLoad(Object key) {
+    Load load = loads.get(key);
+    return load == null ? null : load.future;
   }
 
-  private void acquireLock(Object key) {
-    Lock lock = getLockForKey(key);
-    if (timeout > 0) {
-      try {
-        boolean acquired = lock.tryLock(timeout, TimeUnit.MILLISECONDS);
-        if (!acquired) {
-          throw new CacheException("Couldn't get a lock in " + timeout + " for the key " +  key + " at the cache " + delegate.getId());
-        }
-      } catch (InterruptedException e) {
-        throw new CacheException("Got interrupted while trying to acquire lock for key " + key, e);
-      }
-    } else {
-      lock.lock();
-    }
+  /**
+   * @return the number of keys being loaded
+   * @since 3.5.3
+   */
+  public int getLoadCount() {
+    return loads.size();
   }
 
-  private void releaseLock(Object key) {
-    ReentrantLock lock = locks.get(key);
-    if (lock.isHeldByCurrentThread()) {
-      lock.unlock();
+  private void complete(Object key, Load load, Object value) {
+    loads.remove(key, load);
+    load.future.complete(value);
+  }
+
+  private void await(Object key, Load load) {
+    try {
+      if (timeout > 0) {
+        load.future.get(timeout, TimeUnit.MILLISECONDS);
+      } else {
+        load.future.get();
+      }
+    } catch (TimeoutException e) {
+      throw new CacheException("Couldn't get a lock in " + timeout + " for the key " +  key + " at the cache " + delegate.getId());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CacheException("Got interrupted while trying to acquire lock for key " + key, e);
+    } catch (ExecutionException e) {
+      // never completed exceptionally
+      throw new CacheException("Error waiting for the key " + key + " at the cache " + delegate.getId(), e);
     }
   }
 
@@ -119,4 +171,21 @@ public class BlockingCache implements Cache {
   public void setTimeout(long timeout) {
     this.timeout = timeout;
   }
+
+  public int getMaximumLoads() {
+    return maximumLoads;
+  }
+
+  /**
+   * @param maximumLoads the number of keys that can be loaded at once, past which misses are not blocked
+   * @since 3.5.3
+   */
+  public void setMaximumLoads(int maximumLoads) {
+    this.maximumLoads = maximumLoads;
+  }
+
+  private static class Load {
+    private final Thread owner = Thread.currentThread();
+    private final CompletableFuture<Object> future = new CompletableFuture<>();
+  }
 }
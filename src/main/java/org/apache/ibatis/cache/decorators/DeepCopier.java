@@ -0,0 +1,292 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.io.Externalizable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+
+/**
+ * Makes deep copies of result objects field by field, like {@link org.apache.ibatis.reflection.property.PropertyCopier}
+ * does for one level. Shared and circular references are copied once.
+ * <p>
+ * Immutable JDK values are shared instead of copied. Dates, arrays and the common collections are copied directly,
+ * and so are the classes that have a no-arg constructor and do not customize their serialization. Anything else
+ * (e.g. lazy loading proxies, or the other JDK classes) is copied with Java serialization.
+ */
+final class DeepCopier {
+
+  private enum Kind {
+    IMMUTABLE, DATE, ARRAY, COLLECTION, MAP, BEAN, SERIALIZE
+  }
+
+  private final ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+  private final CacheSerializer fallback = new JavaCacheSerializer();
+  private final ConcurrentMap<Class<?>, TypePlan> plans = new ConcurrentHashMap<>();
+
+  Object copy(Object value) {
+    return copy(value, new IdentityHashMap<>());
+  }
+
+  private Object copy(Object value, Map<Object, Object> copies) {
+    if (value == null) {
+      return null;
+    }
+    TypePlan plan = plan(value.getClass());
+    if (plan.kind == Kind.IMMUTABLE) {
+      return value;
+    }
+    Object copy = copies.get(value);
+    if (copy != null) {
+      return copy;
+    }
+    switch (plan.kind) {
+      case DATE:
+        copy = ((Date) value).clone();
+        copies.put(value, copy);
+        return copy;
+      case ARRAY:
+        return copyArray(value, copies);
+      case COLLECTION:
+        return copyCollection(value, copies);
+      case MAP:
+        return copyMap(value, copies);
+      case BEAN:
+        return copyBean(value, plan, copies);
+      default:
+        copy = fallback.deserialize(fallback.serialize(value));
+        copies.put(value, copy);
+        return copy;
+    }
+  }
+
+  private Object copyArray(Object value, Map<Object, Object> copies) {
+    Class<?> componentType = value.getClass().getComponentType();
+    int length = Array.getLength(value);
+    Object copy;
+    if (componentType.isPrimitive()) {
+      copy = Array.newInstance(componentType, length);
+      System.arraycopy(value, 0, copy, 0, length);
+      copies.put(value, copy);
+    } else {
+      Object[] source = (Object[]) value;
+      Object[] target = (Object[]) Array.newInstance(componentType, length);
+      copies.put(value, target);
+      for (int i = 0; i < length; i++) {
+        target[i] = copy(source[i], copies);
+      }
+      copy = target;
+    }
+    return copy;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object copyCollection(Object value, Map<Object, Object> copies) {
+    Collection<Object> source = (Collection<Object>) value;
+    Collection<Object> target;
+    Class<?> type = value.getClass();
+    if (type == ArrayList.class) {
+      target = new ArrayList<>(source.size());
+    } else if (type == LinkedList.class) {
+      target = new LinkedList<>();
+    } else if (type == HashSet.class) {
+      target = new HashSet<>(capacity(source.size()));
+    } else if (type == LinkedHashSet.class) {
+      target = new LinkedHashSet<>(capacity(source.size()));
+    } else {
+      target = new TreeSet<>(((TreeSet<Object>) value).comparator());
+    }
+    copies.put(value, target);
+    for (Object element : source) {
+      target.add(copy(element, copies));
+    }
+    return target;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object copyMap(Object value, Map<Object, Object> copies) {
+    Map<Object, Object> source = (Map<Object, Object>) value;
+    Map<Object, Object> target;
+    Class<?> type = value.getClass();
+    if (type == HashMap.class) {
+      target = new HashMap<>(capacity(source.size()));
+    } else if (type == LinkedHashMap.class) {
+      target = new LinkedHashMap<>(capacity(source.size()));
+    } else {
+      target = new TreeMap<>(((TreeMap<Object, Object>) value).comparator());
+    }
+    copies.put(value, target);
+    for (Map.Entry<Object, Object> entry : source.entrySet()) {
+      target.put(copy(entry.getKey(), copies), copy(entry.getValue(), copies));
+    }
+    return target;
+  }
+
+  private Object copyBean(Object value, TypePlan plan, Map<Object, Object> copies) {
+    try {
+      Object copy = plan.constructor.newInstance();
+      copies.put(value, copy);
+      Field[] fields = plan.fields;
+      for (int i = 0; i < fields.length; i++) {
+        Field field = fields[i];
+        field.set(copy, plan.immutable[i] ? field.get(value) : copy(field.get(value), copies));
+      }
+      return copy;
+    } catch (ReflectiveOperationException e) {
+      throw new CacheException("Error copying object of " + value.getClass() + ".  Cause: " + e, e);
+    }
+  }
+
+  private static int capacity(int size) {
+    return Math.max((int) (size / .75f) + 1, 16);
+  }
+
+  private TypePlan plan(Class<?> type) {
+    TypePlan plan = plans.get(type);
+    if (plan == null) {
+      plan = plans.computeIfAbsent(type, this::newPlan);
+    }
+    return plan;
+  }
+
+  private static boolean isImmutable(Class<?> type) {
+    return type.isPrimitive() || type == String.class || type == Integer.class || type == Long.class
+        || type == Short.class || type == Byte.class || type == Boolean.class || type == Character.class
+        || type == Double.class || type == Float.class || type == BigDecimal.class || type == BigInteger.class
+        || type == UUID.class || type == Locale.class || type == Class.class || Enum.class.isAssignableFrom(type)
+        || type.getName().startsWith("java.time.");
+  }
+
+  private TypePlan newPlan(Class<?> type) {
+    if (isImmutable(type)) {
+      return new TypePlan(Kind.IMMUTABLE);
+    }
+    if (type == Date.class || type == java.sql.Date.class || type == java.sql.Time.class
+        || type == java.sql.Timestamp.class) {
+      return new TypePlan(Kind.DATE);
+    }
+    if (type.isArray()) {
+      return new TypePlan(Kind.ARRAY);
+    }
+    if (type == ArrayList.class || type == LinkedList.class || type == HashSet.class
+        || type == LinkedHashSet.class || type == TreeSet.class) {
+      return new TypePlan(Kind.COLLECTION);
+    }
+    if (type == HashMap.class || type == LinkedHashMap.class || type == TreeMap.class) {
+      return new TypePlan(Kind.MAP);
+    }
+    String name = type.getName();
+    if (name.startsWith("java.") || name.startsWith("javax.")
+        || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)
+        || Externalizable.class.isAssignableFrom(type) || customizesSerialization(type)
+        || !Reflector.canControlMemberAccessible()) {
+      return new TypePlan(Kind.SERIALIZE);
+    }
+    Reflector reflector;
+    try {
+      reflector = reflectorFactory.findForClass(type);
+    } catch (ReflectionException e) {
+      return new TypePlan(Kind.SERIALIZE);
+    }
+    if (!reflector.hasDefaultConstructor()) {
+      return new TypePlan(Kind.SERIALIZE);
+    }
+    Constructor<?> constructor = reflector.getDefaultConstructor();
+    constructor.setAccessible(true);
+    List<Field> fields = new ArrayList<>();
+    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers())) {
+          field.setAccessible(true);
+          fields.add(field);
+        }
+      }
+    }
+    boolean[] immutable = new boolean[fields.size()];
+    for (int i = 0; i < immutable.length; i++) {
+      // the declared type is enough when it is final, BigDecimal and BigInteger are not
+      Class<?> fieldType = fields.get(i).getType();
+      immutable[i] = isImmutable(fieldType) && (fieldType.isPrimitive() || Modifier.isFinal(fieldType.getModifiers()));
+    }
+    return new TypePlan(constructor, fields.toArray(new Field[0]), immutable);
+  }
+
+  private static boolean customizesSerialization(Class<?> type) {
+    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+      for (Method method : c.getDeclaredMethods()) {
+        String name = method.getName();
+        int parameterCount = method.getParameterTypes().length;
+        if ((parameterCount == 0 && (name.equals("writeReplace") || name.equals("readResolve")))
+            || (parameterCount == 1 && (name.equals("writeObject") || name.equals("readObject")))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static final class TypePlan {
+    private final Kind kind;
+    private final Constructor<?> constructor;
+    private final Field[] fields;
+    private final boolean[] immutable;
+
+    TypePlan(Kind kind) {
+      this.kind = kind;
+      this.constructor = null;
+      this.fields = null;
+      this.immutable = null;
+    }
+
+    TypePlan(Constructor<?> constructor, Field[] fields, boolean[] immutable) {
+      this.kind = Kind.BEAN;
+      this.constructor = constructor;
+      this.fields = fields;
+      this.immutable = immutable;
+    }
+  }
+
+}
@@ -57,6 +57,12 @@ public class LoggingCache implements Cache {
         delegate.clear();
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        // the hit ratio is only logged, losing a concurrent update of its counters does not matter
+        return delegate.isThreadSafe();
+    }
+
     @Override
     public int hashCode() {
         return delegate.hashCode();
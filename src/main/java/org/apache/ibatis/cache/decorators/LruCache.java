@@ -19,6 +19,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.EvictionListener;
 
 /**
  * Lru (least recently used) cache decorator.
@@ -30,6 +31,7 @@ public class LruCache implements Cache {
   private final Cache delegate;
   private Map<Object, Object> keyMap;
   private Object eldestKey;
+  private EvictionListener evictionListener;
 
   public LruCache(Cache delegate) {
     this.delegate = delegate;
@@ -61,6 +63,14 @@ public class LruCache implements Cache {
     };
   }
 
+  /**
+   * @param evictionListener told about every evicted entry
+   * @since 3.5.3
+   */
+  public void setEvictionListener(EvictionListener evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     delegate.putObject(key, value);
@@ -88,6 +98,9 @@ public class LruCache implements Cache {
     keyMap.put(key, key);
     if (eldestKey != null) {
       delegate.removeObject(eldestKey);
+      if (evictionListener != null) {
+        evictionListener.onEviction(eldestKey);
+      }
       eldestKey = null;
     }
   }
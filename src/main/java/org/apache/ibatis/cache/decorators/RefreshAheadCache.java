@@ -0,0 +1,270 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Refreshes entries in the background instead of letting them expire all at once.
+ * <p>
+ * Every entry records when it was written. Once it is older than <code>refreshAfter</code> milliseconds, it is
+ * still returned, but the first read also starts reloading it in the background. Once it is older than
+ * <code>expireAfter</code> milliseconds (0, the default, means never), it is a miss. An entry is only reloaded
+ * if a {@link Reloader} was registered for its key, which {@link org.apache.ibatis.executor.CachingExecutor}
+ * does when a query misses: it runs the statement again with a copy of the parameter object and the same
+ * row bounds.
+ * <p>
+ * A reloaded value is dropped if its entry was removed or written again while it was being read, e.g. because
+ * the cache was cleared. Other entries do not affect it. The reloaders are kept apart from the entries and forgotten all at once when there are too many of them, after
+ * which the entries simply expire.
+ *
+ * @since 3.5.3
+ */
+public class RefreshAheadCache implements Cache {
+
+  private static final Log log = LogFactory.getLog(RefreshAheadCache.class);
+  private static final DeepCopier COPIER = new DeepCopier();
+  private static final int MAX_RELOADERS = 10_000;
+
+  private final Cache delegate;
+  private final Map<Object, Registration> reloaders = new ConcurrentHashMap<>();
+  private final Set<Object> reloading = ConcurrentHashMap.newKeySet();
+  // stamps every write, so that a reload can tell whether the entry it replaces was rewritten
+  private final AtomicLong writes = new AtomicLong();
+  private final ThreadLocal<Reload> currentReload = new ThreadLocal<>();
+  private long refreshAfter = TimeUnit.MINUTES.toMillis(1);
+  private long expireAfter;
+  private Executor executor;
+  private CacheStatistics statistics;
+
+  public RefreshAheadCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * Reads the value of a key again and puts it in the cache.
+   */
+  @FunctionalInterface
+  public interface Reloader {
+
+    /**
+     * @param parameter a copy of the parameter object the key was created for
+     * @throws Exception if the value could not be read, it is logged and the entry keeps its value
+     */
+    void reload(Object parameter) throws Exception;
+
+  }
+
+  public void setRefreshAfter(long refreshAfter) {
+    this.refreshAfter = refreshAfter;
+  }
+
+  public void setExpireAfter(long expireAfter) {
+    this.expireAfter = expireAfter;
+  }
+
+  /**
+   * @param executor the executor to reload entries on, by default a pool of two daemon threads shared by all
+   *        the caches
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * @param statistics the statistics of the cache below, an expired entry they counted as a hit is a miss
+   */
+  public void setStatistics(CacheStatistics statistics) {
+    this.statistics = statistics;
+  }
+
+  /**
+   * Remembers how to reload the value of a key.
+   *
+   * @param key the key
+   * @param parameter the parameter object the key was created for, it is copied
+   * @param reloader reads the value and puts it in the cache
+   */
+  public void register(Object key, Object parameter, Reloader reloader) {
+    Object copy;
+    try {
+      copy = COPIER.copy(parameter);
+    } catch (RuntimeException e) {
+      log.debug("The entries of cache " + getId() + " for " + parameter + " will not be refreshed, it could not be copied. Cause: " + e);
+      return;
+    }
+    if (reloaders.size() >= MAX_RELOADERS) {
+      reloaders.clear();
+    }
+    reloaders.put(key, new Registration(copy, reloader));
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object object) {
+    Reload reload = currentReload.get();
+    if (reload != null && reload.key.equals(key) && !reload.isCurrent(delegate.getObject(key))) {
+      // the entry was removed or rewritten while it was reloaded
+      return;
+    }
+    delegate.putObject(key, object == null ? null : new Entry(object, System.currentTimeMillis(), writes.incrementAndGet()));
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object object = delegate.getObject(key);
+    if (!(object instanceof Entry)) {
+      return object;
+    }
+    Entry entry = (Entry) object;
+    long age = System.currentTimeMillis() - entry.writeTime;
+    if (expireAfter > 0 && age >= expireAfter) {
+      removeObject(key);
+      if (statistics != null) {
+        statistics.recordInvalidatedHit();
+      }
+      return null;
+    }
+    if (age >= refreshAfter) {
+      scheduleReload(key, entry.generation);
+    }
+    return entry.value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    reloaders.remove(key);
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    reloaders.clear();
+    delegate.clear();
+  }
+
+  private void scheduleReload(Object key, long generation) {
+    Registration registration = reloaders.get(key);
+    if (registration == null || !reloading.add(key)) {
+      return;
+    }
+    try {
+      (executor != null ? executor : DefaultExecutor.INSTANCE).execute(() -> reload(new Reload(key, generation), registration));
+    } catch (RejectedExecutionException e) {
+      reloading.remove(key);
+    }
+  }
+
+  private void reload(Reload reload, Registration registration) {
+    currentReload.set(reload);
+    try {
+      registration.reloader.reload(registration.parameter);
+    } catch (Exception e) {
+      log.warn("Could not refresh an entry of cache " + getId() + ". Cause: " + e);
+    } finally {
+      currentReload.remove();
+      reloading.remove(reload.key);
+    }
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+  private static class Registration {
+    private final Object parameter;
+    private final Reloader reloader;
+
+    Registration(Object parameter, Reloader reloader) {
+      this.parameter = parameter;
+      this.reloader = reloader;
+    }
+  }
+
+  private static class Reload {
+    private final Object key;
+    private final long generation;
+
+    Reload(Object key, long generation) {
+      this.key = key;
+      this.generation = generation;
+    }
+
+    boolean isCurrent(Object object) {
+      return object instanceof Entry && ((Entry) object).generation == generation;
+    }
+  }
+
+  private static class Entry implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private Object value;
+    private long writeTime;
+    // the write that created the entry
+    private long generation;
+
+    Entry() {
+    }
+
+    Entry(Object value, long writeTime, long generation) {
+      this.value = value;
+      this.writeTime = writeTime;
+      this.generation = generation;
+    }
+  }
+
+  private static class DefaultExecutor {
+    private static final ExecutorService INSTANCE = Executors.newFixedThreadPool(2, runnable -> {
+      Thread thread = new Thread(runnable, "mybatis-cache-refresh");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+}
@@ -0,0 +1,120 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+
+/**
+ * Counts the hits, misses, puts and clears of a cache in its {@link CacheStatistics}.
+ * <p>
+ * The cache builder adds it when the <code>statistics</code> cache property or the
+ * <code>cacheStatisticsEnabled</code> setting is true, above the standard decorators, and also makes the evicting
+ * caches below it and the decorators above it report to the same statistics. The
+ * {@link org.apache.ibatis.executor.CachingExecutor} adds the time spent loading missing values.
+ *
+ * @since 3.5.3
+ */
+public class StatisticsCache implements Cache {
+
+  private final Cache delegate;
+  private final CacheStatistics statistics;
+
+  public StatisticsCache(Cache delegate) {
+    this.delegate = delegate;
+    this.statistics = new CacheStatistics(delegate);
+  }
+
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Looks for the statistics of a cache along its chain of decorators.
+   *
+   * @param cache the cache
+   * @return the statistics, null if the cache has none
+   */
+  public static CacheStatistics getStatistics(Cache cache) {
+    Object current = cache;
+    while (current instanceof Cache) {
+      if (current instanceof StatisticsCache) {
+        return ((StatisticsCache) current).getStatistics();
+      }
+      MetaObject metaCache = SystemMetaObject.forObject(current);
+      current = metaCache.hasGetter("delegate") ? metaCache.getValue("delegate") : null;
+    }
+    return null;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object object) {
+    delegate.putObject(key, object);
+    if (object != null) {
+      statistics.recordPut();
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    if (value == null) {
+      statistics.recordMiss();
+    } else {
+      statistics.recordHit();
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    statistics.recordClear();
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+}
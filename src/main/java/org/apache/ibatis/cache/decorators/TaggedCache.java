@@ -0,0 +1,186 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStatistics;
+
+/**
+ * Lets writes invalidate only the entries that read the tables (or other cache tags) they change, instead of
+ * clearing the whole namespace.
+ * <p>
+ * Every tag has a version, that {@link #invalidate(Collection)} increments. An entry is stored with the versions
+ * of the tags it was read with, and is a miss once one of them has changed. Entries read without tags depend on
+ * any invalidation. Nothing is indexed by tag, so an invalidated entry stays in the cache until it is replaced
+ * or evicted.
+ * <p>
+ * It is the outermost decorator of the caches built with the <code>tagInvalidation</code> cache property, and is
+ * used by {@link TransactionalCache} on commit.
+ *
+ * @since 3.5.3
+ */
+public class TaggedCache implements Cache {
+
+  private static final String ANY = "*";
+  private static final String[] NO_TAGS = { ANY };
+
+  private final Cache delegate;
+  private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+  private CacheStatistics statistics;
+
+  public TaggedCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * @return the decorated cache
+   */
+  public Cache getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * @param statistics the statistics of the cache below, an invalidated entry they counted as a hit is a miss
+   */
+  public void setStatistics(CacheStatistics statistics) {
+    this.statistics = statistics;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    if (value == null) {
+      delegate.putObject(key, null);
+    } else {
+      putObject(key, value, null, getVersions(null));
+    }
+  }
+
+  /**
+   * @param key the key
+   * @param value the value
+   * @param tags the tags the value was read with, null if unknown
+   * @param versions the versions of the tags, from {@link #getVersions(String[])} before the value was read
+   */
+  public void putObject(Object key, Object value, String[] tags, long[] versions) {
+    delegate.putObject(key, new TaggedValue(tags == null ? NO_TAGS : tags, versions, value));
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object object = delegate.getObject(key);
+    if (!(object instanceof TaggedValue)) {
+      return object;
+    }
+    TaggedValue taggedValue = (TaggedValue) object;
+    for (int i = 0; i < taggedValue.tags.length; i++) {
+      if (version(taggedValue.tags[i]).get() != taggedValue.versions[i]) {
+        if (statistics != null) {
+          statistics.recordInvalidatedHit();
+        }
+        return null;
+      }
+    }
+    return taggedValue.value;
+  }
+
+  /**
+   * @param tags tags, null if unknown
+   * @return the current versions of the tags
+   */
+  public long[] getVersions(String[] tags) {
+    String[] actualTags = tags == null ? NO_TAGS : tags;
+    long[] result = new long[actualTags.length];
+    for (int i = 0; i < actualTags.length; i++) {
+      result[i] = version(actualTags[i]).get();
+    }
+    return result;
+  }
+
+  /**
+   * Makes the entries read with any of the tags, or without tags, misses.
+   */
+  public void invalidate(Collection<String> tags) {
+    for (String tag : tags) {
+      version(tag).incrementAndGet();
+    }
+    version(ANY).incrementAndGet();
+  }
+
+  private AtomicLong version(String tag) {
+    AtomicLong version = versions.get(tag);
+    if (version == null) {
+      version = versions.computeIfAbsent(tag, k -> new AtomicLong());
+    }
+    return version;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+  private static class TaggedValue implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String[] tags;
+    private long[] versions;
+    private Object value;
+
+    TaggedValue() {
+    }
+
+    TaggedValue(String[] tags, long[] versions, Object value) {
+      this.tags = tags;
+      this.versions = versions;
+      this.value = value;
+    }
+  }
+
+}
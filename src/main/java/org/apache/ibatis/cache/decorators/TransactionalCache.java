@@ -4,8 +4,10 @@ import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -16,6 +18,9 @@ import java.util.Set;
  * Entries are sent to the cache when commit is called or discarded if the Session is rolled back.
  * Blocking cache support has been added. Therefore any get() that returns a cache miss
  * will be followed by a put() so any lock associated with the key can be released.
+ * <p>
+ * When the cache is a {@link TaggedCache}, statements can pass the cache tags they read or write: a write then
+ * only invalidates the tags it changes on commit, instead of clearing the whole cache.
  *
  * @author Clinton Begin
  * @author Eduardo Macarron
@@ -28,12 +33,20 @@ public class TransactionalCache implements Cache {
     private boolean clearOnCommit;
     private final Map<Object, Object> entriesToAddOnCommit;
     private final Set<Object> entriesMissedInCache;
+    private final TaggedCache taggedDelegate;
+    private final Set<String> tagsToInvalidateOnCommit;
+    private final Map<Object, String[]> tagsOfEntriesToAdd;
+    private final Map<Object, long[]> tagVersionsOfMissedEntries;
 
     public TransactionalCache(Cache delegate) {
         this.delegate = delegate;
         this.clearOnCommit = false;
         this.entriesToAddOnCommit = new HashMap<>();
         this.entriesMissedInCache = new HashSet<>();
+        this.taggedDelegate = delegate instanceof TaggedCache ? (TaggedCache) delegate : null;
+        this.tagsToInvalidateOnCommit = new HashSet<>();
+        this.tagsOfEntriesToAdd = new HashMap<>();
+        this.tagVersionsOfMissedEntries = new HashMap<>();
     }
 
     @Override
@@ -61,11 +74,47 @@ public class TransactionalCache implements Cache {
         }
     }
 
+    /**
+     * @param key the key
+     * @param tags the cache tags the statement reads, null if unknown
+     * @return the cached value, null if missing or if this session invalidated one of the tags
+     * @since 3.5.3
+     */
+    public Object getObject(Object key, String[] tags) {
+        if (taggedDelegate == null) {
+            return getObject(key);
+        }
+        Object object = delegate.getObject(key);
+        if (object == null) {
+            entriesMissedInCache.add(key);
+            // the versions before the database is read, so that a concurrent write makes the entry stale
+            tagVersionsOfMissedEntries.putIfAbsent(key, taggedDelegate.getVersions(tags));
+        }
+        if (clearOnCommit || isInvalidated(tags, tagsToInvalidateOnCommit)) {
+            return null;
+        } else {
+            return object;
+        }
+    }
+
     @Override
     public void putObject(Object key, Object object) {
         entriesToAddOnCommit.put(key, object);
     }
 
+    /**
+     * @param key the key
+     * @param object the value
+     * @param tags the cache tags the statement reads, null if unknown
+     * @since 3.5.3
+     */
+    public void putObject(Object key, Object object, String[] tags) {
+        entriesToAddOnCommit.put(key, object);
+        if (taggedDelegate != null) {
+            tagsOfEntriesToAdd.put(key, tags);
+        }
+    }
+
     @Override
     public Object removeObject(Object key) {
         return null;
@@ -75,11 +124,53 @@ public class TransactionalCache implements Cache {
     public void clear() {
         clearOnCommit = true;
         entriesToAddOnCommit.clear();
+        tagsOfEntriesToAdd.clear();
+    }
+
+    /**
+     * Invalidates the entries read with any of the tags on commit. Clears the cache if it is not a
+     * {@link TaggedCache} or if the tags are unknown.
+     *
+     * @param tags the cache tags the statement writes, null if unknown
+     * @since 3.5.3
+     */
+    public void invalidate(String[] tags) {
+        if (taggedDelegate == null || tags == null || tags.length == 0) {
+            clear();
+            return;
+        }
+        Set<String> invalidated = new HashSet<>(Arrays.asList(tags));
+        tagsToInvalidateOnCommit.addAll(invalidated);
+        Iterator<Object> keys = entriesToAddOnCommit.keySet().iterator();
+        while (keys.hasNext()) {
+            Object key = keys.next();
+            if (isInvalidated(tagsOfEntriesToAdd.get(key), invalidated)) {
+                keys.remove();
+                tagsOfEntriesToAdd.remove(key);
+            }
+        }
+    }
+
+    private static boolean isInvalidated(String[] tags, Set<String> invalidatedTags) {
+        if (invalidatedTags.isEmpty()) {
+            return false;
+        }
+        if (tags == null) {
+            return true;
+        }
+        for (String tag : tags) {
+            if (invalidatedTags.contains(tag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public void commit() {
         if (clearOnCommit) {
             delegate.clear();
+        } else if (!tagsToInvalidateOnCommit.isEmpty()) {
+            taggedDelegate.invalidate(tagsToInvalidateOnCommit);
         }
         flushPendingEntries();
         reset();
@@ -94,11 +185,21 @@ public class TransactionalCache implements Cache {
         clearOnCommit = false;
         entriesToAddOnCommit.clear();
         entriesMissedInCache.clear();
+        tagsToInvalidateOnCommit.clear();
+        tagsOfEntriesToAdd.clear();
+        tagVersionsOfMissedEntries.clear();
     }
 
     private void flushPendingEntries() {
         for (Map.Entry<Object, Object> entry : entriesToAddOnCommit.entrySet()) {
-            delegate.putObject(entry.getKey(), entry.getValue());
+            if (taggedDelegate != null && entry.getValue() != null) {
+                String[] tags = tagsOfEntriesToAdd.get(entry.getKey());
+                long[] versions = tagVersionsOfMissedEntries.get(entry.getKey());
+                taggedDelegate.putObject(entry.getKey(), entry.getValue(), tags,
+                        versions != null ? versions : taggedDelegate.getVersions(tags));
+            } else {
+                delegate.putObject(entry.getKey(), entry.getValue());
+            }
         }
         for (Object entry : entriesMissedInCache) {
             if (!entriesToAddOnCommit.containsKey(entry)) {
@@ -0,0 +1,172 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.EvictionListener;
+import org.apache.ibatis.cache.Weigher;
+
+/**
+ * Lru (least recently used) cache decorator bounded by the total weight of its entries instead of their number.
+ * <p>
+ * Unless a {@link Weigher} is set, the weight of an entry is estimated as the number of objects it holds (the rows
+ * of a list, or 1 for a single object) times <code>bytesPerObject</code>. Serialized values are weighed by their
+ * length. An entry heavier than the maximum weight on its own is not cached.
+ *
+ * @since 3.5.3
+ */
+public class WeightedCache implements Cache {
+
+  private static final long ENTRY_OVERHEAD = 64;
+
+  private final Cache delegate;
+  private final Map<Object, Long> keyMap = new LinkedHashMap<>(16, .75F, true);
+  private long maximumWeight = 64L * 1024 * 1024;
+  private int bytesPerObject = 256;
+  private Weigher weigher;
+  private EvictionListener evictionListener;
+  private long weight;
+
+  public WeightedCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  public void setMaximumWeight(long maximumWeight) {
+    this.maximumWeight = maximumWeight;
+  }
+
+  public long getMaximumWeight() {
+    return maximumWeight;
+  }
+
+  /**
+   * @param bytesPerObject the estimated size of one object (e.g. a row) when no weigher is set
+   */
+  public void setBytesPerObject(int bytesPerObject) {
+    this.bytesPerObject = bytesPerObject;
+  }
+
+  public void setWeigher(Weigher weigher) {
+    this.weigher = weigher;
+  }
+
+  /**
+   * @return the total weight of the cached entries
+   */
+  public long getWeight() {
+    return weight;
+  }
+
+  /**
+   * @param evictionListener told about every evicted entry
+   * @since 3.5.3
+   */
+  public void setEvictionListener(EvictionListener evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    long entryWeight = weigh(key, value);
+    discard(key);
+    if (entryWeight > maximumWeight) {
+      delegate.removeObject(key);
+      return;
+    }
+    delegate.putObject(key, value);
+    keyMap.put(key, entryWeight);
+    weight += entryWeight;
+    evictWhileTooHeavy();
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    keyMap.get(key); //touch
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    discard(key);
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    keyMap.clear();
+    weight = 0;
+  }
+
+  private void discard(Object key) {
+    Long previous = keyMap.remove(key);
+    if (previous != null) {
+      weight -= previous;
+    }
+  }
+
+  private void evictWhileTooHeavy() {
+    Iterator<Map.Entry<Object, Long>> eldest = keyMap.entrySet().iterator();
+    while (weight > maximumWeight && eldest.hasNext()) {
+      Map.Entry<Object, Long> entry = eldest.next();
+      eldest.remove();
+      weight -= entry.getValue();
+      delegate.removeObject(entry.getKey());
+      if (evictionListener != null) {
+        evictionListener.onEviction(entry.getKey());
+      }
+    }
+  }
+
+  private long weigh(Object key, Object value) {
+    if (weigher != null) {
+      return weigher.weigh(key, value);
+    }
+    if (value instanceof byte[]) {
+      return ENTRY_OVERHEAD + ((byte[]) value).length;
+    }
+    return ENTRY_OVERHEAD + (long) countObjects(value) * bytesPerObject;
+  }
+
+  private static int countObjects(Object value) {
+    if (value == null) {
+      return 0;
+    } else if (value instanceof Collection) {
+      return ((Collection<?>) value).size();
+    } else if (value instanceof Map) {
+      return ((Map<?, ?>) value).size();
+    } else if (value instanceof Object[]) {
+      return ((Object[]) value).length;
+    }
+    return 1;
+  }
+
+}
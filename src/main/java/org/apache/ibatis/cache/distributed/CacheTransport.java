@@ -0,0 +1,71 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.distributed;
+
+/**
+ * Connects a {@link DistributedCache} to the remote tier shared by all the nodes, e.g. a key value store, and
+ * to the bus on which the nodes tell each other to drop their near caches.
+ * <p>
+ * Keys and values are opaque bytes. An implementation is set with the <code>transport</code> cache property
+ * holding the fully qualified name of a class that has a no-arg constructor. It is shared by all the threads
+ * using the cache, so it must be thread safe. Failures should be reported as runtime exceptions: a failed read
+ * or write is treated as a miss, while a failed clear or publish fails the commit that caused it.
+ *
+ * @since 3.5.3
+ * @see LoopbackCacheTransport
+ */
+public interface CacheTransport {
+
+  /**
+   * @param cacheId the id of the cache
+   * @param key the serialized key
+   * @return the serialized value, null if the remote tier has none
+   */
+  byte[] get(String cacheId, byte[] key);
+
+  void put(String cacheId, byte[] key, byte[] value);
+
+  void remove(String cacheId, byte[] key);
+
+  /**
+   * Removes all the values of a cache from the remote tier.
+   *
+   * @param cacheId the id of the cache
+   */
+  void clear(String cacheId);
+
+  /**
+   * Sends a message to the listeners that subscribed to its cache on every node, possibly including the sender.
+   *
+   * @param message the message
+   */
+  void publish(InvalidationMessage message);
+
+  /**
+   * @param cacheId the id of the cache
+   * @param listener the listener to call for the messages of the cache, on any thread
+   */
+  void subscribe(String cacheId, InvalidationListener listener);
+
+  /**
+   * Stops calling a listener, e.g. because its cache belongs to a configuration that is discarded.
+   *
+   * @param cacheId the id of the cache
+   * @param listener a listener subscribed to the cache, unsubscribing any other is a no-op
+   */
+  void unsubscribe(String cacheId, InvalidationListener listener);
+
+}
@@ -0,0 +1,316 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.distributed;
+
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * A second level cache shared by several JVMs: a near cache in each JVM in front of a remote tier reached
+ * through a {@link CacheTransport}.
+ * <p>
+ * A read looks in the near cache, then in the remote tier, and keeps what it finds in the near cache. A write
+ * goes to both. When a transaction commits after changing data, {@link org.apache.ibatis.cache.decorators.TransactionalCache}
+ * clears the cache, which clears the remote tier and publishes an {@link InvalidationMessage} so that every
+ * other node drops its near cache. The near cache holds at most <code>nearCacheSize</code> values (1024 by
+ * default).
+ * <p>
+ * Values are kept serialized by the <code>serializer</code> (by default the same one as {@link SerializedCache}
+ * uses), so every read returns a new copy and values must be serializable. Keys are serialized with Java
+ * serialization. A {@link CacheKey} is sent as its values only: its hash code depends on the hash codes of its
+ * values, which may differ between JVMs (e.g. for enums), and is computed again by the node that reads it. The
+ * <code>null</code> values {@link org.apache.ibatis.cache.decorators.TransactionalCache} puts for the keys it
+ * missed are not sent to the remote tier.
+ * <p>
+ * The <code>transport</code> must be set, there is no default: a tier shared by every configuration of the JVM
+ * would mix up the rows of different databases. The cache listens to the invalidations of its id until it is
+ * {@link #close() closed} or garbage collected.
+ *
+ * @since 3.5.3
+ */
+public class DistributedCache implements Cache, InitializingObject {
+
+  private static final Log log = LogFactory.getLog(DistributedCache.class);
+
+  private final String id;
+  private final String nodeId = UUID.randomUUID().toString();
+  private final CacheSerializer keySerializer = new JavaCacheSerializer();
+  // bumped on every invalidation, so that a value read from the remote tier before it is not kept
+  private final AtomicLong generation = new AtomicLong();
+  private CacheSerializer serializer = SerializedCache.getDefaultSerializer();
+  private CacheTransport transport;
+  private InvalidationListener listener;
+  private ConcurrentCache nearCache;
+  private int nearCacheSize = 1024;
+
+  public DistributedCache(String id) {
+    this.id = id;
+  }
+
+  public DistributedCache(String id, CacheTransport transport) {
+    this(id);
+    this.transport = transport;
+    initialize();
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  public CacheTransport getTransport() {
+    return transport;
+  }
+
+  public void setTransport(CacheTransport transport) {
+    checkNotInitialized();
+    this.transport = transport;
+  }
+
+  public CacheSerializer getSerializer() {
+    return serializer;
+  }
+
+  public void setSerializer(CacheSerializer serializer) {
+    this.serializer = serializer;
+  }
+
+  public int getNearCacheSize() {
+    return nearCacheSize;
+  }
+
+  public void setNearCacheSize(int nearCacheSize) {
+    checkNotInitialized();
+    this.nearCacheSize = nearCacheSize;
+  }
+
+  /**
+   * @return the id this node puts in the messages it publishes
+   */
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  @Override
+  public synchronized void initialize() {
+    if (nearCache != null) {
+      return;
+    }
+    if (transport == null) {
+      throw new CacheException("Cache " + id + " requires a transport.");
+    }
+    ConcurrentCache near = new ConcurrentCache(id);
+    near.setSize(nearCacheSize);
+    nearCache = near;
+    listener = new WeakListener(this, transport);
+    transport.subscribe(id, listener);
+  }
+
+  /**
+   * Stops listening to the invalidations published by the other nodes. The cache must not be used anymore.
+   */
+  public synchronized void close() {
+    if (listener != null) {
+      transport.unsubscribe(id, listener);
+      listener = null;
+    }
+  }
+
+  private void checkNotInitialized() {
+    if (nearCache != null) {
+      throw new CacheException("Cache " + id + " is already initialized.");
+    }
+  }
+
+  private ConcurrentCache nearCache() {
+    ConcurrentCache near = nearCache;
+    if (near == null) {
+      initialize();
+      near = nearCache;
+    }
+    return near;
+  }
+
+  /**
+   * @return the number of values in the near cache of this node
+   */
+  @Override
+  public int getSize() {
+    return nearCache().getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    if (value == null) {
+      // a placeholder for a miss, nothing worth sharing
+      return;
+    }
+    byte[] data = serializer.serialize(value);
+    nearCache().putObject(key, data);
+    try {
+      transport.put(id, serializeKey(key), data);
+    } catch (RuntimeException e) {
+      log.warn("Could not write a value of cache " + id + " to the remote tier. Cause: " + e);
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    ConcurrentCache near = nearCache();
+    byte[] data = (byte[]) near.getObject(key);
+    if (data == null) {
+      long expectedGeneration = generation.get();
+      try {
+        data = transport.get(id, serializeKey(key));
+      } catch (RuntimeException e) {
+        log.warn("Could not read a value of cache " + id + " from the remote tier. Cause: " + e);
+        return null;
+      }
+      if (data == null) {
+        return null;
+      }
+      near.putObject(key, data);
+      if (generation.get() != expectedGeneration) {
+        // invalidated meanwhile, the value may be stale
+        near.removeObject(key);
+      }
+    }
+    return serializer.deserialize(data);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    byte[] serializedKey = serializeKey(key);
+    generation.incrementAndGet();
+    nearCache().removeObject(key);
+    transport.remove(id, serializedKey);
+    transport.publish(new InvalidationMessage(id, nodeId, serializedKey));
+    return null;
+  }
+
+  @Override
+  public void clear() {
+    generation.incrementAndGet();
+    nearCache().clear();
+    transport.clear(id);
+    transport.publish(new InvalidationMessage(id, nodeId, null));
+  }
+
+  private void onInvalidation(InvalidationMessage message) {
+    if (nodeId.equals(message.getOrigin()) || !id.equals(message.getCacheId())) {
+      return;
+    }
+    generation.incrementAndGet();
+    if (message.isClear()) {
+      nearCache().clear();
+    } else {
+      nearCache().removeObject(deserializeKey(message.getKey()));
+    }
+  }
+
+  private byte[] serializeKey(Object key) {
+    if (key instanceof CacheKey) {
+      return keySerializer.serialize(new KeyValues(((CacheKey) key).getUpdateValues()));
+    }
+    return keySerializer.serialize(key);
+  }
+
+  private Object deserializeKey(byte[] data) {
+    Object key = keySerializer.deserialize(data);
+    if (key instanceof KeyValues) {
+      return new CacheKey(((KeyValues) key).values);
+    }
+    return key;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  /**
+   * Holds the cache weakly, so that a transport outliving the configuration does not keep it and its near cache.
+   */
+  private static final class WeakListener implements InvalidationListener {
+    private final WeakReference<DistributedCache> cache;
+    private final CacheTransport transport;
+
+    WeakListener(DistributedCache cache, CacheTransport transport) {
+      this.cache = new WeakReference<>(cache);
+      this.transport = transport;
+    }
+
+    @Override
+    public void onInvalidation(InvalidationMessage message) {
+      DistributedCache target = cache.get();
+      if (target == null) {
+        transport.unsubscribe(message.getCacheId(), this);
+      } else {
+        target.onInvalidation(message);
+      }
+    }
+  }
+
+  /**
+   * The remote form of a {@link CacheKey}, without the hash code computed by the JVM that built it.
+   */
+  private static final class KeyValues implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final Object[] values;
+
+    KeyValues(Object[] values) {
+      this.values = values;
+    }
+  }
+
+}
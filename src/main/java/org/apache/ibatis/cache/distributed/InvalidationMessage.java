@@ -0,0 +1,65 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.distributed;
+
+import java.io.Serializable;
+
+/**
+ * Tells the nodes sharing a cache that some of its values changed: the value of one key, or all of them.
+ *
+ * @since 3.5.3
+ */
+public final class InvalidationMessage implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String cacheId;
+  private final String origin;
+  private final byte[] key;
+
+  /**
+   * @param cacheId the id of the cache
+   * @param origin the node that sends the message
+   * @param key the serialized key of the invalidated value, null if the whole cache is invalidated
+   */
+  public InvalidationMessage(String cacheId, String origin, byte[] key) {
+    this.cacheId = cacheId;
+    this.origin = origin;
+    this.key = key;
+  }
+
+  public String getCacheId() {
+    return cacheId;
+  }
+
+  public String getOrigin() {
+    return origin;
+  }
+
+  public byte[] getKey() {
+    return key;
+  }
+
+  public boolean isClear() {
+    return key == null;
+  }
+
+  @Override
+  public String toString() {
+    return "InvalidationMessage{cacheId=" + cacheId + ", origin=" + origin + ", clear=" + isClear() + "}";
+  }
+
+}
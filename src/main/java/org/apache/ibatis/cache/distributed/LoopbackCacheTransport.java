@@ -0,0 +1,109 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.distributed;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A transport that keeps the remote tier and the bus in memory, for running several nodes in one JVM,
+ * e.g. in tests.
+ * <p>
+ * Transports of the same channel share their values and messages, whatever the configuration they belong to.
+ * Messages are delivered synchronously to every listener, including the one of the sender. The values are
+ * kept until they are removed or their cache is cleared, without any bound.
+ *
+ * @since 3.5.3
+ */
+public class LoopbackCacheTransport implements CacheTransport {
+
+  public static final String DEFAULT_CHANNEL = "default";
+
+  private static final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+  private final Channel channel;
+
+  public LoopbackCacheTransport() {
+    this(DEFAULT_CHANNEL);
+  }
+
+  public LoopbackCacheTransport(String channel) {
+    this.channel = channels.computeIfAbsent(channel, k -> new Channel());
+  }
+
+  /**
+   * Drops the values and listeners of a channel, transports already using it become disconnected.
+   *
+   * @param channel the channel
+   */
+  public static void reset(String channel) {
+    channels.remove(channel);
+  }
+
+  @Override
+  public byte[] get(String cacheId, byte[] key) {
+    return values(cacheId).get(ByteBuffer.wrap(key));
+  }
+
+  @Override
+  public void put(String cacheId, byte[] key, byte[] value) {
+    values(cacheId).put(ByteBuffer.wrap(key), value);
+  }
+
+  @Override
+  public void remove(String cacheId, byte[] key) {
+    values(cacheId).remove(ByteBuffer.wrap(key));
+  }
+
+  @Override
+  public void clear(String cacheId) {
+    values(cacheId).clear();
+  }
+
+  @Override
+  public void publish(InvalidationMessage message) {
+    for (InvalidationListener listener : listeners(message.getCacheId())) {
+      listener.onInvalidation(message);
+    }
+  }
+
+  @Override
+  public void subscribe(String cacheId, InvalidationListener listener) {
+    listeners(cacheId).add(listener);
+  }
+
+  @Override
+  public void unsubscribe(String cacheId, InvalidationListener listener) {
+    listeners(cacheId).remove(listener);
+  }
+
+  private Map<ByteBuffer, byte[]> values(String cacheId) {
+    return channel.values.computeIfAbsent(cacheId, k -> new ConcurrentHashMap<>());
+  }
+
+  private List<InvalidationListener> listeners(String cacheId) {
+    return channel.listeners.computeIfAbsent(cacheId, k -> new CopyOnWriteArrayList<>());
+  }
+
+  private static class Channel {
+    private final Map<String, Map<ByteBuffer, byte[]>> values = new ConcurrentHashMap<>();
+    private final Map<String, List<InvalidationListener>> listeners = new ConcurrentHashMap<>();
+  }
+
+}
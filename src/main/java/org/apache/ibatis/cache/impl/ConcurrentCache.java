@@ -0,0 +1,258 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.EvictionListener;
+
+/**
+ * A bounded cache for namespaces that are read by many threads at once.
+ * <p>
+ * Entries are kept in a {@link ConcurrentHashMap}, so reads never lock. Once the cache holds more than
+ * <code>size</code> entries, writers evict in an approximation of least recently used order (CLOCK):
+ * a read flags its entry, and eviction gives a flagged entry a second chance instead of removing it.
+ * With the <code>TINY_LFU</code> eviction policy, a new entry is only kept if its key has been asked for
+ * at least as often lately as the key of the entry it would evict, so that a scan over many keys that are
+ * used once does not flush the popular entries.
+ * <p>
+ * As it evicts by itself, the cache builder applies no eviction decorator to it, and does not wrap it in a
+ * {@link org.apache.ibatis.cache.decorators.SynchronizedCache}.
+ *
+ * @since 3.5.3
+ */
+public class ConcurrentCache implements Cache {
+
+  public static final String LRU = "LRU";
+  public static final String TINY_LFU = "TINY_LFU";
+
+  private final String id;
+  private final ConcurrentHashMap<Object, Node> cache = new ConcurrentHashMap<>();
+  private final ConcurrentLinkedQueue<Node> evictionQueue = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final AtomicInteger retiredCount = new AtomicInteger();
+  private int size = 1024;
+  private String evictionPolicy = LRU;
+  private FrequencySketch sketch;
+  private EvictionListener evictionListener;
+
+  public ConcurrentCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    return cache.size();
+  }
+
+  public void setSize(int size) {
+    this.size = size;
+    updateSketch();
+  }
+
+  /**
+   * @param evictionPolicy <code>LRU</code> (the default) or <code>TINY_LFU</code>
+   */
+  public void setEvictionPolicy(String evictionPolicy) {
+    if (!LRU.equals(evictionPolicy) && !TINY_LFU.equals(evictionPolicy)) {
+      throw new CacheException("Unknown eviction policy '" + evictionPolicy + "' for cache " + id + ", expected " + LRU + " or " + TINY_LFU);
+    }
+    this.evictionPolicy = evictionPolicy;
+    updateSketch();
+  }
+
+  public String getEvictionPolicy() {
+    return evictionPolicy;
+  }
+
+  private void updateSketch() {
+    sketch = TINY_LFU.equals(evictionPolicy) ? new FrequencySketch(size) : null;
+  }
+
+  /**
+   * @param evictionListener told about every evicted entry
+   * @since 3.5.3
+   */
+  public void setEvictionListener(EvictionListener evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    Node node = new Node(key, value);
+    Node previous = cache.put(key, node);
+    if (previous != null) {
+      retire(previous);
+    }
+    evictionQueue.offer(node);
+    if (cache.size() > size) {
+      evict(node);
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    FrequencySketch sketch = this.sketch;
+    if (sketch != null) {
+      sketch.increment(key);
+    }
+    Node node = cache.get(key);
+    if (node == null) {
+      return null;
+    }
+    if (!node.referenced) {
+      node.referenced = true;
+    }
+    return node.value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Node node = cache.remove(key);
+    if (node == null) {
+      return null;
+    }
+    retire(node);
+    return node.value;
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+    evictionQueue.clear();
+    retiredCount.set(0);
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+  private void evict(Node candidate) {
+    evictionLock.lock();
+    try {
+      FrequencySketch sketch = this.sketch;
+      while (cache.size() > size) {
+        Node victim = nextVictim();
+        if (victim == null) {
+          // entries put while the cache was being cleared may be missing from the queue
+          Iterator<Node> nodes = cache.values().iterator();
+          if (!nodes.hasNext()) {
+            return;
+          }
+          victim = nodes.next();
+        } else if (sketch != null && victim != candidate && !candidate.retired
+            && sketch.frequency(candidate.key) < sketch.frequency(victim.key)) {
+          // the new entry is less popular than the one it would push out
+          evictionQueue.offer(victim);
+          victim = candidate;
+          retiredCount.incrementAndGet();
+        }
+        if (cache.remove(victim.key, victim) && evictionListener != null) {
+          evictionListener.onEviction(victim.key);
+        }
+        victim.retired = true;
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  private Node nextVictim() {
+    // readers can flag entries again meanwhile, so second chances are limited
+    int secondChances = 0;
+    while (true) {
+      Node node = evictionQueue.poll();
+      if (node == null) {
+        return null;
+      }
+      if (node.retired) {
+        retiredCount.decrementAndGet();
+      } else if (node.referenced && secondChances++ < size) {
+        node.referenced = false;
+        evictionQueue.offer(node);
+      } else {
+        return node;
+      }
+    }
+  }
+
+  private void retire(Node node) {
+    node.retired = true;
+    // removed and replaced entries stay in the queue until eviction reaches them, unless there are too many
+    if (retiredCount.incrementAndGet() > size) {
+      evictionLock.lock();
+      try {
+        if (retiredCount.get() > size) {
+          evictionQueue.removeIf(n -> n.retired);
+          retiredCount.set(0);
+        }
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  private static final class Node {
+
+    private final Object key;
+    private final Object value;
+    private volatile boolean referenced;
+    private volatile boolean retired;
+
+    Node(Object key, Object value) {
+      this.key = key;
+      this.value = value;
+    }
+
+  }
+
+}
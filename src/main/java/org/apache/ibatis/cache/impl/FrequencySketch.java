@@ -0,0 +1,107 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A count-min sketch estimating how often keys were used recently, for the TinyLFU admission policy
+ * of {@link ConcurrentCache}.
+ * <p>
+ * Each key is counted in four 4-bit counters, so an estimate is at most 15. Once the number of increments
+ * reaches ten times the cache size all counters are halved, so that old popularity fades away.
+ * Counters are updated with CAS, reading and counting never lock.
+ */
+final class FrequencySketch {
+
+  private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  private final AtomicLongArray table;
+  private final int tableMask;
+  private final int sampleSize;
+  private final AtomicInteger size = new AtomicInteger();
+
+  FrequencySketch(int maximumSize) {
+    int capacity = Math.max(maximumSize, 1);
+    int length = Integer.highestOneBit(Math.min(capacity, 1 << 30) - 1) << 1;
+    // small tables would make unrelated keys share most of their counters
+    this.table = new AtomicLongArray(Math.max(length, 64));
+    this.tableMask = table.length() - 1;
+    this.sampleSize = capacity <= Integer.MAX_VALUE / 10 ? capacity * 10 : Integer.MAX_VALUE;
+  }
+
+  int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    int frequency = 15;
+    for (int i = 0; i < 4; i++) {
+      long word = table.get(indexOf(hash, i));
+      int count = (int) ((word >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  void increment(Object key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && size.incrementAndGet() == sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    while (true) {
+      long word = table.get(index);
+      if ((word & mask) == mask) {
+        return false;
+      }
+      if (table.compareAndSet(index, word, word + (1L << offset))) {
+        return true;
+      }
+    }
+  }
+
+  private void reset() {
+    for (int i = 0; i < table.length(); i++) {
+      long word;
+      do {
+        word = table.get(i);
+      } while (!table.compareAndSet(i, word, (word >>> 1) & RESET_MASK));
+    }
+    size.addAndGet(-sampleSize / 2);
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return (int) h & tableMask;
+  }
+
+  private static int spread(int hash) {
+    int h = hash * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+
+}
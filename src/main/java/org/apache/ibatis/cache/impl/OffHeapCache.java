@@ -0,0 +1,374 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.Serializable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.EvictionListener;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+
+/**
+ * A cache that keeps its values serialized outside of the Java heap, so that a large second level cache
+ * does not add to garbage collection pauses.
+ * <p>
+ * Values are serialized with the <code>serializer</code> (by default the same one as {@link SerializedCache}
+ * uses), so every read returns a new copy and values must be {@link Serializable}. The <code>capacity</code>
+ * (in bytes, 64 MiB by default) is split into <code>segments</code> direct buffers, each guarded by its own
+ * lock. A segment is written as a ring: a new value is appended after the last one, and once the ring is full
+ * the oldest values are overwritten, so the cache evicts in first in, first out order by itself. Keys stay on
+ * the heap.
+ * <p>
+ * The memory is allocated on first use and released when the cache is garbage collected; {@link #clear()}
+ * only makes it reusable.
+ *
+ * @since 3.5.3
+ */
+public class OffHeapCache implements Cache, InitializingObject {
+
+  private final String id;
+  private CacheSerializer serializer = SerializedCache.getDefaultSerializer();
+  private long capacity = 64L * 1024 * 1024;
+  private int segmentCount = 16;
+  private volatile Segment[] segments;
+  private EvictionListener evictionListener;
+
+  public OffHeapCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  public CacheSerializer getSerializer() {
+    return serializer;
+  }
+
+  public void setSerializer(CacheSerializer serializer) {
+    this.serializer = serializer;
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @param capacity the number of bytes of memory to allocate for values
+   */
+  public void setCapacity(long capacity) {
+    checkNotAllocated();
+    this.capacity = capacity;
+  }
+
+  public int getSegments() {
+    return segmentCount;
+  }
+
+  /**
+   * @param segments the number of independently locked parts of the memory, rounded up to a power of two
+   */
+  public void setSegments(int segments) {
+    checkNotAllocated();
+    this.segmentCount = segments;
+  }
+
+  /**
+   * @param evictionListener told about every evicted entry
+   * @since 3.5.3
+   */
+  public void setEvictionListener(EvictionListener evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
+  @Override
+  public void initialize() {
+    segments();
+  }
+
+  private void checkNotAllocated() {
+    if (segments != null) {
+      throw new CacheException("The memory of cache " + id + " is already allocated.");
+    }
+  }
+
+  private Segment[] segments() {
+    Segment[] result = segments;
+    if (result == null) {
+      synchronized (this) {
+        result = segments;
+        if (result == null) {
+          result = allocate();
+          segments = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  private Segment[] allocate() {
+    if (capacity <= 0 || segmentCount <= 0) {
+      throw new CacheException("The capacity and segments of cache " + id + " must be positive.");
+    }
+    int count = Integer.highestOneBit(segmentCount);
+    if (count < segmentCount) {
+      count <<= 1;
+    }
+    long segmentCapacity = capacity / count;
+    if (segmentCapacity > Integer.MAX_VALUE) {
+      throw new CacheException("The capacity of cache " + id + " is too large for " + count
+          + " segments, a segment can hold at most " + Integer.MAX_VALUE + " bytes.");
+    }
+    if (segmentCapacity == 0) {
+      throw new CacheException("The capacity of cache " + id + " is smaller than its number of segments.");
+    }
+    Segment[] result = new Segment[count];
+    for (int i = 0; i < count; i++) {
+      result[i] = new Segment((int) segmentCapacity);
+    }
+    return result;
+  }
+
+  private Segment segmentFor(Object key) {
+    Segment[] segments = segments();
+    int h = key.hashCode();
+    h ^= h >>> 16;
+    return segments[h & (segments.length - 1)];
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    if (value != null && !(value instanceof Serializable)) {
+      throw new CacheException("OffHeapCache can only store serializable objects: " + value);
+    }
+    segmentFor(key).put(key, serializer.serialize(value), evictionListener);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    byte[] value = segmentFor(key).get(key);
+    return value == null ? null : serializer.deserialize(value);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    segmentFor(key).remove(key);
+    return null;
+  }
+
+  @Override
+  public void clear() {
+    for (Segment segment : segments()) {
+      segment.clear();
+    }
+  }
+
+  @Override
+  public int getSize() {
+    int size = 0;
+    for (Segment segment : segments()) {
+      size += segment.getSize();
+    }
+    return size;
+  }
+
+  /**
+   * @return the number of bytes taken by the values currently in the cache
+   */
+  public long getUsedMemory() {
+    long used = 0;
+    for (Segment segment : segments()) {
+      used += segment.getUsedMemory();
+    }
+    return used;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  private static class Entry {
+    private final Object key;
+    private final int offset;
+    private final int length;
+
+    Entry(Object key, int offset, int length) {
+      this.key = key;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /**
+   * A ring of values in one direct buffer. The written entries are queued in the order they were written,
+   * which is also the order of their offsets from the oldest one on, so the entries a write overwrites are
+   * always at the head of the queue. Replaced and removed entries stay queued until they are overwritten.
+   */
+  private static class Segment {
+    private final ByteBuffer buffer;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Object, Entry> index = new HashMap<>();
+    private final ArrayDeque<Entry> ring = new ArrayDeque<>();
+    private int position;
+    private long usedMemory;
+
+    Segment(int capacity) {
+      this.buffer = ByteBuffer.allocateDirect(capacity);
+    }
+
+    void put(Object key, byte[] value, EvictionListener listener) {
+      lock.writeLock().lock();
+      try {
+        unlink(index.remove(key));
+        if (value.length > buffer.capacity()) {
+          // would evict everything else and still not fit
+          return;
+        }
+        if (position + value.length > buffer.capacity()) {
+          // what is left after the position is too small, drop the entries there and start over
+          while (!ring.isEmpty() && ring.peekFirst().offset >= position) {
+            evict(ring.pollFirst(), listener);
+          }
+          position = 0;
+        }
+        int end = position + value.length;
+        while (!ring.isEmpty() && ring.peekFirst().offset >= position && ring.peekFirst().offset < end) {
+          evict(ring.pollFirst(), listener);
+        }
+        ByteBuffer target = buffer.duplicate();
+        // cast, so that the call compiled by a newer JDK still links on Java 8
+        ((Buffer) target).position(position);
+        target.put(value);
+        Entry entry = new Entry(key, position, value.length);
+        ring.addLast(entry);
+        index.put(key, entry);
+        usedMemory += value.length;
+        position = end;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    byte[] get(Object key) {
+      lock.readLock().lock();
+      try {
+        Entry entry = index.get(key);
+        if (entry == null) {
+          return null;
+        }
+        byte[] value = new byte[entry.length];
+        ByteBuffer source = buffer.duplicate();
+        ((Buffer) source).position(entry.offset);
+        source.get(value);
+        return value;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    void remove(Object key) {
+      lock.writeLock().lock();
+      try {
+        unlink(index.remove(key));
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    void clear() {
+      lock.writeLock().lock();
+      try {
+        index.clear();
+        ring.clear();
+        position = 0;
+        usedMemory = 0;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    int getSize() {
+      lock.readLock().lock();
+      try {
+        return index.size();
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    long getUsedMemory() {
+      lock.readLock().lock();
+      try {
+        return usedMemory;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    private void evict(Entry entry, EvictionListener listener) {
+      if (index.get(entry.key) == entry) {
+        index.remove(entry.key);
+        unlink(entry);
+        if (listener != null) {
+          listener.onEviction(entry.key);
+        }
+      }
+    }
+
+    private void unlink(Entry entry) {
+      if (entry != null) {
+        usedMemory -= entry.length;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,614 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.serializer;
+
+import java.io.Externalizable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.invoker.GetFieldInvoker;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.SetFieldInvoker;
+
+/**
+ * A compact binary serializer that copies result objects through the properties {@link Reflector} finds on
+ * them, instead of Java serialization. Caches use it when their <code>serializer</code> property names it.
+ * <p>
+ * Strings, boxed primitives, <code>BigDecimal</code>, <code>BigInteger</code>, the <code>java.util</code> and
+ * <code>java.sql</code> dates, enums, arrays, <code>ArrayList</code>, <code>LinkedList</code>,
+ * <code>HashSet</code>, <code>LinkedHashSet</code>, <code>HashMap</code> and <code>LinkedHashMap</code> are
+ * written directly. Any other class that has a no-arg constructor and does not customize its serialization
+ * (no <code>writeObject</code>, <code>writeReplace</code>, ... as lazy loading proxies have) is written as the
+ * values of its properties that have both a getter and a setter, leaving out static and transient fields.
+ * Everything else, including the other JDK classes, falls back to Java serialization.
+ * <p>
+ * Shared and circular references between the directly written objects are preserved.
+ *
+ * @since 3.5.3
+ */
+public class ReflectiveCacheSerializer implements CacheSerializer {
+
+  private static final byte NULL = 0;
+  private static final byte REFERENCE = 1;
+  private static final byte STRING = 2;
+  private static final byte INTEGER = 3;
+  private static final byte LONG = 4;
+  private static final byte SHORT = 5;
+  private static final byte BYTE = 6;
+  private static final byte BOOLEAN = 7;
+  private static final byte CHARACTER = 8;
+  private static final byte DOUBLE = 9;
+  private static final byte FLOAT = 10;
+  private static final byte BIG_DECIMAL = 11;
+  private static final byte BIG_INTEGER = 12;
+  private static final byte DATE = 13;
+  private static final byte TIMESTAMP = 14;
+  private static final byte ENUM = 15;
+  private static final byte BYTE_ARRAY = 16;
+  private static final byte ARRAY = 17;
+  private static final byte COLLECTION = 18;
+  private static final byte MAP = 19;
+  private static final byte BEAN = 20;
+  private static final byte JAVA = 21;
+
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+  private static final BeanType NOT_A_BEAN = new BeanType(null, null, null);
+
+  private final ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+  private final CacheSerializer fallback = new JavaCacheSerializer();
+  private final ConcurrentMap<Class<?>, BeanType> beanTypes = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Class<?>> classes = new ConcurrentHashMap<>();
+
+  @Override
+  public byte[] serialize(Object value) {
+    Writer writer = new Writer();
+    writer.write(value);
+    return writer.out.toByteArray();
+  }
+
+  @Override
+  public Object deserialize(byte[] data) {
+    return new Reader(data).read();
+  }
+
+  private BeanType beanType(Class<?> type) {
+    BeanType beanType = beanTypes.get(type);
+    if (beanType == null) {
+      beanType = beanTypes.computeIfAbsent(type, this::inspect);
+    }
+    return beanType;
+  }
+
+  private BeanType inspect(Class<?> type) {
+    String name = type.getName();
+    if (name.startsWith("java.") || name.startsWith("javax.")
+        || type.isInterface() || Modifier.isAbstract(type.getModifiers())
+        || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)
+        || Externalizable.class.isAssignableFrom(type) || customizesSerialization(type)) {
+      return NOT_A_BEAN;
+    }
+    Reflector reflector;
+    try {
+      reflector = reflectorFactory.findForClass(type);
+    } catch (ReflectionException e) {
+      // e.g. ambiguous getters
+      return NOT_A_BEAN;
+    }
+    if (!reflector.hasDefaultConstructor()) {
+      return NOT_A_BEAN;
+    }
+    Constructor<?> constructor = reflector.getDefaultConstructor();
+    try {
+      constructor.setAccessible(true);
+    } catch (SecurityException e) {
+      return NOT_A_BEAN;
+    }
+    List<String> properties = new ArrayList<>();
+    for (String property : reflector.getGetablePropertyNames()) {
+      if (reflector.hasSetter(property) && !isStaticOrTransientField(type, reflector, property)) {
+        properties.add(property);
+      }
+    }
+    // both sides must agree on the order
+    properties.sort(null);
+    Invoker[] getters = new Invoker[properties.size()];
+    Invoker[] setters = new Invoker[properties.size()];
+    for (int i = 0; i < getters.length; i++) {
+      getters[i] = reflector.getGetInvoker(properties.get(i));
+      setters[i] = reflector.getSetInvoker(properties.get(i));
+    }
+    return new BeanType(constructor, getters, setters);
+  }
+
+  private static boolean customizesSerialization(Class<?> type) {
+    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+      for (Method method : c.getDeclaredMethods()) {
+        String name = method.getName();
+        int parameterCount = method.getParameterTypes().length;
+        if ((parameterCount == 0 && (name.equals("writeReplace") || name.equals("readResolve") || name.equals("readObjectNoData")))
+            || (parameterCount == 1 && (name.equals("writeObject") || name.equals("readObject")))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isStaticOrTransientField(Class<?> type, Reflector reflector, String property) {
+    if (!(reflector.getGetInvoker(property) instanceof GetFieldInvoker)
+        && !(reflector.getSetInvoker(property) instanceof SetFieldInvoker)) {
+      return false;
+    }
+    for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if (field.getName().equals(property)) {
+          return (field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) != 0;
+        }
+      }
+    }
+    return false;
+  }
+
+  private Class<?> classForName(String name) {
+    Class<?> type = classes.get(name);
+    if (type == null) {
+      try {
+        type = Resources.classForName(name);
+      } catch (ClassNotFoundException e) {
+        throw new CacheException("Error deserializing object.  Cause: " + e, e);
+      }
+      classes.putIfAbsent(name, type);
+    }
+    return type;
+  }
+
+  private static boolean isCollection(Class<?> type) {
+    return type == ArrayList.class || type == LinkedList.class || type == HashSet.class || type == LinkedHashSet.class;
+  }
+
+  private static boolean isMap(Class<?> type) {
+    return type == HashMap.class || type == LinkedHashMap.class;
+  }
+
+  private static Collection<Object> newCollection(Class<?> type, int size) {
+    if (type == ArrayList.class) {
+      return new ArrayList<>(size);
+    } else if (type == LinkedList.class) {
+      return new LinkedList<>();
+    } else if (type == HashSet.class) {
+      return new HashSet<>(capacity(size));
+    } else {
+      return new LinkedHashSet<>(capacity(size));
+    }
+  }
+
+  private static Map<Object, Object> newMap(Class<?> type, int size) {
+    return type == HashMap.class ? new HashMap<>(capacity(size)) : new LinkedHashMap<>(capacity(size));
+  }
+
+  private static int capacity(int size) {
+    return Math.max((int) (size / .75f) + 1, 16);
+  }
+
+  private static final class BeanType {
+    private final Constructor<?> constructor;
+    private final Invoker[] getters;
+    private final Invoker[] setters;
+
+    BeanType(Constructor<?> constructor, Invoker[] getters, Invoker[] setters) {
+      this.constructor = constructor;
+      this.getters = getters;
+      this.setters = setters;
+    }
+  }
+
+  private final class Writer {
+    private final Output out = new Output();
+    private final Map<Object, Integer> handles = new IdentityHashMap<>();
+    private final Map<Class<?>, Integer> classIds = new HashMap<>();
+
+    void write(Object value) {
+      if (value == null) {
+        out.writeByte(NULL);
+        return;
+      }
+      Class<?> type = value.getClass();
+      if (type == String.class) {
+        out.writeByte(STRING);
+        out.writeString((String) value);
+      } else if (type == Integer.class) {
+        out.writeByte(INTEGER);
+        out.writeInt((Integer) value);
+      } else if (type == Long.class) {
+        out.writeByte(LONG);
+        out.writeLong((Long) value);
+      } else if (type == Short.class) {
+        out.writeByte(SHORT);
+        out.writeInt((Short) value);
+      } else if (type == Byte.class) {
+        out.writeByte(BYTE);
+        out.writeByte((Byte) value);
+      } else if (type == Boolean.class) {
+        out.writeByte(BOOLEAN);
+        out.writeByte((Boolean) value ? 1 : 0);
+      } else if (type == Character.class) {
+        out.writeByte(CHARACTER);
+        out.writeInt((Character) value);
+      } else if (type == Double.class) {
+        out.writeByte(DOUBLE);
+        out.writeLong(Double.doubleToRawLongBits((Double) value));
+      } else if (type == Float.class) {
+        out.writeByte(FLOAT);
+        out.writeInt(Float.floatToRawIntBits((Float) value));
+      } else if (type == BigDecimal.class) {
+        out.writeByte(BIG_DECIMAL);
+        out.writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+        out.writeInt(((BigDecimal) value).scale());
+      } else if (type == BigInteger.class) {
+        out.writeByte(BIG_INTEGER);
+        out.writeBytes(((BigInteger) value).toByteArray());
+      } else if (type == Date.class || type == java.sql.Date.class || type == Time.class) {
+        out.writeByte(DATE);
+        writeClass(type);
+        out.writeLong(((Date) value).getTime());
+      } else if (type == Timestamp.class) {
+        out.writeByte(TIMESTAMP);
+        out.writeLong(((Timestamp) value).getTime());
+        out.writeInt(((Timestamp) value).getNanos());
+      } else if (value instanceof Enum) {
+        out.writeByte(ENUM);
+        writeClass(((Enum<?>) value).getDeclaringClass());
+        out.writeString(((Enum<?>) value).name());
+      } else {
+        writeObject(value, type);
+      }
+    }
+
+    private void writeObject(Object value, Class<?> type) {
+      Integer handle = handles.get(value);
+      if (handle != null) {
+        out.writeByte(REFERENCE);
+        out.writeInt(handle);
+      } else if (type == byte[].class) {
+        handles.put(value, handles.size());
+        out.writeByte(BYTE_ARRAY);
+        out.writeBytes((byte[]) value);
+      } else if (type.isArray()) {
+        handles.put(value, handles.size());
+        out.writeByte(ARRAY);
+        writeClass(type);
+        int length = Array.getLength(value);
+        out.writeInt(length);
+        for (int i = 0; i < length; i++) {
+          write(Array.get(value, i));
+        }
+      } else if (isCollection(type)) {
+        handles.put(value, handles.size());
+        out.writeByte(COLLECTION);
+        writeClass(type);
+        Collection<?> collection = (Collection<?>) value;
+        out.writeInt(collection.size());
+        for (Object element : collection) {
+          write(element);
+        }
+      } else if (isMap(type)) {
+        handles.put(value, handles.size());
+        out.writeByte(MAP);
+        writeClass(type);
+        Map<?, ?> map = (Map<?, ?>) value;
+        out.writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          write(entry.getKey());
+          write(entry.getValue());
+        }
+      } else {
+        BeanType beanType = beanType(type);
+        if (beanType == NOT_A_BEAN) {
+          out.writeByte(JAVA);
+          out.writeBytes(fallback.serialize(value));
+          return;
+        }
+        handles.put(value, handles.size());
+        out.writeByte(BEAN);
+        writeClass(type);
+        for (Invoker getter : beanType.getters) {
+          try {
+            write(getter.invoke(value, NO_ARGUMENTS));
+          } catch (ReflectiveOperationException e) {
+            throw new CacheException("Error serializing object.  Cause: " + e, e);
+          }
+        }
+      }
+    }
+
+    private void writeClass(Class<?> type) {
+      Integer id = classIds.get(type);
+      if (id == null) {
+        classIds.put(type, classIds.size());
+        out.writeInt(-1);
+        out.writeString(type.getName());
+      } else {
+        out.writeInt(id);
+      }
+    }
+  }
+
+  private final class Reader {
+    private final Input in;
+    private final List<Object> handles = new ArrayList<>();
+    private final List<Class<?>> classIds = new ArrayList<>();
+
+    Reader(byte[] data) {
+      this.in = new Input(data);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    Object read() {
+      byte tag = in.readByte();
+      switch (tag) {
+        case NULL:
+          return null;
+        case REFERENCE:
+          return handles.get(in.readInt());
+        case STRING:
+          return in.readString();
+        case INTEGER:
+          return in.readInt();
+        case LONG:
+          return in.readLong();
+        case SHORT:
+          return (short) in.readInt();
+        case BYTE:
+          return in.readByte();
+        case BOOLEAN:
+          return in.readByte() != 0;
+        case CHARACTER:
+          return (char) in.readInt();
+        case DOUBLE:
+          return Double.longBitsToDouble(in.readLong());
+        case FLOAT:
+          return Float.intBitsToFloat(in.readInt());
+        case BIG_DECIMAL:
+          return new BigDecimal(new BigInteger(in.readBytes()), in.readInt());
+        case BIG_INTEGER:
+          return new BigInteger(in.readBytes());
+        case DATE: {
+          Class<?> type = readClass();
+          long time = in.readLong();
+          if (type == java.sql.Date.class) {
+            return new java.sql.Date(time);
+          } else if (type == Time.class) {
+            return new Time(time);
+          }
+          return new Date(time);
+        }
+        case TIMESTAMP: {
+          Timestamp timestamp = new Timestamp(in.readLong());
+          timestamp.setNanos(in.readInt());
+          return timestamp;
+        }
+        case ENUM:
+          return Enum.valueOf((Class) readClass(), in.readString());
+        case BYTE_ARRAY: {
+          byte[] bytes = in.readBytes();
+          handles.add(bytes);
+          return bytes;
+        }
+        case ARRAY: {
+          Class<?> type = readClass();
+          int length = in.readInt();
+          Object array = Array.newInstance(type.getComponentType(), length);
+          handles.add(array);
+          for (int i = 0; i < length; i++) {
+            Array.set(array, i, read());
+          }
+          return array;
+        }
+        case COLLECTION: {
+          Class<?> type = readClass();
+          int size = in.readInt();
+          Collection<Object> collection = newCollection(type, size);
+          handles.add(collection);
+          for (int i = 0; i < size; i++) {
+            collection.add(read());
+          }
+          return collection;
+        }
+        case MAP: {
+          Class<?> type = readClass();
+          int size = in.readInt();
+          Map<Object, Object> map = newMap(type, size);
+          handles.add(map);
+          for (int i = 0; i < size; i++) {
+            Object key = read();
+            map.put(key, read());
+          }
+          return map;
+        }
+        case BEAN:
+          return readBean(readClass());
+        case JAVA:
+          return fallback.deserialize(in.readBytes());
+        default:
+          throw new CacheException("Error deserializing object.  Cause: unknown tag " + tag);
+      }
+    }
+
+    private Object readBean(Class<?> type) {
+      BeanType beanType = beanType(type);
+      if (beanType == NOT_A_BEAN) {
+        throw new CacheException("Error deserializing object.  Cause: " + type.getName() + " cannot be copied through its properties");
+      }
+      try {
+        Object bean = beanType.constructor.newInstance();
+        handles.add(bean);
+        for (Invoker setter : beanType.setters) {
+          setter.invoke(bean, new Object[] { read() });
+        }
+        return bean;
+      } catch (ReflectiveOperationException e) {
+        throw new CacheException("Error deserializing object.  Cause: " + e, e);
+      }
+    }
+
+    private Class<?> readClass() {
+      int id = in.readInt();
+      if (id >= 0) {
+        return classIds.get(id);
+      }
+      Class<?> type = classForName(in.readString());
+      classIds.add(type);
+      return type;
+    }
+  }
+
+  private static final class Output {
+    private byte[] buffer = new byte[256];
+    private int count;
+
+    void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[count++] = (byte) value;
+    }
+
+    void writeInt(int value) {
+      ensureCapacity(4);
+      buffer[count++] = (byte) (value >>> 24);
+      buffer[count++] = (byte) (value >>> 16);
+      buffer[count++] = (byte) (value >>> 8);
+      buffer[count++] = (byte) value;
+    }
+
+    void writeLong(long value) {
+      writeInt((int) (value >>> 32));
+      writeInt((int) value);
+    }
+
+    void writeBytes(byte[] bytes) {
+      writeInt(bytes.length);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, count, bytes.length);
+      count += bytes.length;
+    }
+
+    void writeString(String value) {
+      int length = value.length();
+      ensureCapacity(4 + length);
+      int start = count;
+      count += 4;
+      for (int i = 0; i < length; i++) {
+        char c = value.charAt(i);
+        if (c >= 0x80) {
+          // not ASCII, a negative length tells the reader to decode UTF-8
+          count = start;
+          byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+          writeInt(-bytes.length - 1);
+          ensureCapacity(bytes.length);
+          System.arraycopy(bytes, 0, buffer, count, bytes.length);
+          count += bytes.length;
+          return;
+        }
+        buffer[count++] = (byte) c;
+      }
+      buffer[start] = (byte) (length >>> 24);
+      buffer[start + 1] = (byte) (length >>> 16);
+      buffer[start + 2] = (byte) (length >>> 8);
+      buffer[start + 3] = (byte) length;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, count);
+    }
+
+    private void ensureCapacity(int length) {
+      if (count + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, count + length));
+      }
+    }
+  }
+
+  private static final class Input {
+    private final byte[] buffer;
+    private int position;
+
+    Input(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    byte readByte() {
+      return buffer[position++];
+    }
+
+    int readInt() {
+      return (buffer[position++] & 0xff) << 24 | (buffer[position++] & 0xff) << 16
+          | (buffer[position++] & 0xff) << 8 | buffer[position++] & 0xff;
+    }
+
+    long readLong() {
+      return (long) readInt() << 32 | readInt() & 0xffffffffL;
+    }
+
+    byte[] readBytes() {
+      int length = readInt();
+      byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+      position += length;
+      return bytes;
+    }
+
+    String readString() {
+      int length = readInt();
+      String value;
+      if (length >= 0) {
+        value = new String(buffer, position, length, StandardCharsets.ISO_8859_1);
+      } else {
+        length = -length - 1;
+        value = new String(buffer, position, length, StandardCharsets.UTF_8);
+      }
+      position += length;
+      return value;
+    }
+  }
+
+}
@@ -0,0 +1,241 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A lock-free container for pooled items.
+ * <p>
+ * Items are claimed with a CAS on their own state, so borrowing and returning never take a shared lock.
+ * A borrowing thread first looks at the items it returned itself (thread-local affinity), then scans the
+ * shared list, and finally waits on a fair {@link SynchronousQueue} to which returning threads briefly try to
+ * hand their item over while somebody is waiting. A waiting thread also scans the shared list again every
+ * millisecond, in case a returned item was not handed over.
+ */
+class ConcurrentBag<T extends ConcurrentBag.BagEntry> {
+
+  static final int STATE_NOT_IN_USE = 0;
+  static final int STATE_IN_USE = 1;
+  static final int STATE_REMOVED = -1;
+  static final int STATE_RESERVED = -2;
+
+  private static final int MAX_THREAD_LOCAL_ITEMS = 16;
+  private static final int MAX_HANDOFF_ATTEMPTS = 64;
+  // how often a waiting thread looks for an item in the shared list
+  private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final CopyOnWriteArrayList<T> sharedList = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<List<WeakReference<T>>> threadList = ThreadLocal.withInitial(() -> new ArrayList<>(MAX_THREAD_LOCAL_ITEMS));
+  private final SynchronousQueue<T> handoffQueue = new SynchronousQueue<>(true);
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  /**
+   * Base class of the items held by a {@link ConcurrentBag}.
+   */
+  abstract static class BagEntry {
+
+    private static final AtomicIntegerFieldUpdater<BagEntry> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(BagEntry.class, "state");
+
+    private volatile int state = STATE_IN_USE;
+
+    int getState() {
+      return state;
+    }
+
+    void setState(int state) {
+      this.state = state;
+    }
+
+    boolean compareAndSetState(int expect, int update) {
+      return STATE_UPDATER.compareAndSet(this, expect, update);
+    }
+
+  }
+
+  /**
+   * Claims an item that is not in use, waiting up to <code>timeout</code> for one to be returned.
+   *
+   * @param timeout how long to wait, 0 to return immediately
+   * @param unit the unit of <code>timeout</code>
+   * @return the claimed item (now in use) or null if the timeout elapsed
+   * @throws InterruptedException if interrupted while waiting
+   */
+  T borrow(long timeout, TimeUnit unit) throws InterruptedException {
+    final List<WeakReference<T>> list = threadList.get();
+    for (int i = list.size() - 1; i >= 0; i--) {
+      final T entry = list.remove(i).get();
+      if (entry != null && entry.compareAndSetState(STATE_NOT_IN_USE, STATE_IN_USE)) {
+        return entry;
+      }
+    }
+
+    T entry = scan();
+    long remaining = unit.toNanos(timeout);
+    if (entry != null || remaining <= 0) {
+      return entry;
+    }
+
+    // only a thread about to poll counts as a waiter, requite() tries to hand its item over while there is one
+    waiters.incrementAndGet();
+    try {
+      final long deadline = System.nanoTime() + remaining;
+      do {
+        // an item returned while this thread was not polling stays in the shared list
+        entry = scan();
+        if (entry != null) {
+          return entry;
+        }
+        entry = handoffQueue.poll(Math.min(remaining, POLL_INTERVAL_NANOS), TimeUnit.NANOSECONDS);
+        if (entry != null && entry.compareAndSetState(STATE_NOT_IN_USE, STATE_IN_USE)) {
+          return entry;
+        }
+        remaining = deadline - System.nanoTime();
+      } while (remaining > 0);
+      return null;
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+
+  private T scan() {
+    for (T entry : sharedList) {
+      if (entry.compareAndSetState(STATE_NOT_IN_USE, STATE_IN_USE)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns a borrowed item, handing it over to a waiting thread if there is one. The hand-over is only tried
+   * {@value #MAX_HANDOFF_ATTEMPTS} times, the waiters also look for the item in the shared list.
+   *
+   * @param entry the item to return
+   */
+  void requite(T entry) {
+    entry.setState(STATE_NOT_IN_USE);
+
+    for (int i = 0; i < MAX_HANDOFF_ATTEMPTS && waiters.get() > 0; i++) {
+      if (entry.getState() != STATE_NOT_IN_USE || handoffQueue.offer(entry)) {
+        return;
+      }
+      Thread.yield();
+    }
+
+    final List<WeakReference<T>> list = threadList.get();
+    if (list.size() < MAX_THREAD_LOCAL_ITEMS) {
+      list.add(new WeakReference<>(entry));
+    }
+  }
+
+  /**
+   * Adds a new item. Items start in use, so the caller owns it until it is requited.
+   *
+   * @param entry the item to add
+   */
+  void add(T entry) {
+    sharedList.add(entry);
+  }
+
+  /**
+   * Removes an item that the caller has borrowed or reserved.
+   *
+   * @param entry the item to remove
+   * @return true if the item was removed
+   */
+  boolean remove(T entry) {
+    if (!entry.compareAndSetState(STATE_IN_USE, STATE_REMOVED) && !entry.compareAndSetState(STATE_RESERVED, STATE_REMOVED)) {
+      return false;
+    }
+    sharedList.remove(entry);
+    return true;
+  }
+
+  /**
+   * Removes an item whatever its state. Used when the whole pool is being closed.
+   *
+   * @param entry the item to remove
+   */
+  void forceRemove(T entry) {
+    entry.setState(STATE_REMOVED);
+    sharedList.remove(entry);
+  }
+
+  /**
+   * Marks an idle item as reserved so it can not be borrowed, e.g. while it is being validated.
+   *
+   * @param entry the item to reserve
+   * @return true if the item was idle and is now reserved
+   */
+  boolean reserve(T entry) {
+    return entry.compareAndSetState(STATE_NOT_IN_USE, STATE_RESERVED);
+  }
+
+  /**
+   * Makes a reserved item available again.
+   *
+   * @param entry the reserved item
+   */
+  void unreserve(T entry) {
+    if (entry.compareAndSetState(STATE_RESERVED, STATE_IN_USE)) {
+      requite(entry);
+    }
+  }
+
+  /**
+   * @return a snapshot of all the items, in the order they were added
+   */
+  List<T> values() {
+    return new ArrayList<>(sharedList);
+  }
+
+  List<T> values(int state) {
+    List<T> list = new ArrayList<>();
+    for (T entry : sharedList) {
+      if (entry.getState() == state) {
+        list.add(entry);
+      }
+    }
+    return list;
+  }
+
+  int getCount(int state) {
+    int count = 0;
+    for (T entry : sharedList) {
+      if (entry.getState() == state) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  int getWaitingThreadCount() {
+    return waiters.get();
+  }
+
+  int size() {
+    return sharedList.size();
+  }
+
+}
@@ -0,0 +1,38 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * The statistics of a {@link ConcurrentPooledDataSource}, which does not keep its connections in
+ * the lists of {@link PoolState}.
+ */
+public class ConcurrentPoolState extends PoolState {
+
+  public ConcurrentPoolState(ConcurrentPooledDataSource dataSource) {
+    super(dataSource);
+  }
+
+  @Override
+  public int getIdleConnectionCount() {
+    return ((ConcurrentPooledDataSource) dataSource).getIdleConnectionCount();
+  }
+
+  @Override
+  public int getActiveConnectionCount() {
+    return ((ConcurrentPooledDataSource) dataSource).getActiveConnectionCount();
+  }
+
+}
@@ -0,0 +1,357 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * A connection pool for highly concurrent applications.
+ * <p>
+ * It accepts the same settings as {@link PooledDataSource}, but does not serialize checkouts and returns
+ * on a single monitor. Connections are kept in a {@link ConcurrentBag}: a thread usually gets back the
+ * connection it returned last, waiting threads are handed returned connections in arrival order, and the
+ * statistics in {@link ConcurrentPoolState} are updated without locking.
+ *
+ * @since 3.5.3
+ */
+public class ConcurrentPooledDataSource extends PooledDataSource {
+
+  private static final Log log = LogFactory.getLog(ConcurrentPooledDataSource.class);
+
+  private final ConcurrentPoolState state = new ConcurrentPoolState(this);
+  private final ConcurrentBag<PooledConnection> bag = new ConcurrentBag<>();
+  private final AtomicInteger totalConnections = new AtomicInteger();
+  private final AtomicInteger activeConnections = new AtomicInteger();
+
+  public ConcurrentPooledDataSource() {
+    super();
+  }
+
+  public ConcurrentPooledDataSource(UnpooledDataSource dataSource) {
+    super(dataSource);
+  }
+
+  public ConcurrentPooledDataSource(String driver, String url, String username, String password) {
+    super(driver, url, username, password);
+  }
+
+  public ConcurrentPooledDataSource(String driver, String url, Properties driverProperties) {
+    super(driver, url, driverProperties);
+  }
+
+  public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url, String username, String password) {
+    super(driverClassLoader, driver, url, username, password);
+  }
+
+  public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url, Properties driverProperties) {
+    super(driverClassLoader, driver, url, driverProperties);
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return popConnection(dataSource.getUsername(), dataSource.getPassword()).getProxyConnection();
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return popConnection(username, password).getProxyConnection();
+  }
+
+  @Override
+  public PoolState getPoolState() {
+    return state;
+  }
+
+  int getActiveConnectionCount() {
+    return activeConnections.get();
+  }
+
+  int getIdleConnectionCount() {
+    return bag.getCount(ConcurrentBag.STATE_NOT_IN_USE);
+  }
+
+  /**
+   * Closes all active and idle connections in the pool.
+   */
+  @Override
+  public void forceCloseAll() {
+    stopHousekeeper();
+    expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+    for (PooledConnection conn : bag.values()) {
+      bag.forceRemove(conn);
+      totalConnections.decrementAndGet();
+      if (conn.checkin(conn.getGeneration())) {
+        activeConnections.decrementAndGet();
+      }
+      conn.invalidate();
+      try {
+        Connection realConn = conn.getRealConnection();
+        if (!realConn.getAutoCommit()) {
+          realConn.rollback();
+        }
+        realConn.close();
+      } catch (Exception e) {
+        // ignore
+      }
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("ConcurrentPooledDataSource forcefully closed/removed all connections.");
+    }
+  }
+
+  @Override
+  protected void pushConnection(PooledConnection conn) throws SQLException {
+    activeConnections.decrementAndGet();
+    state.recordCheckout(conn.getCheckoutNanos());
+    if (conn.isValid()) {
+      int idle = totalConnections.get() - activeConnections.get() - 1;
+      boolean wanted = idle < poolMaximumIdleConnections || bag.getWaitingThreadCount() > 0;
+      if (wanted && conn.getConnectionTypeCode() == expectedConnectionTypeCode && !isExpired(conn.getAge())) {
+        if (!conn.getRealConnection().getAutoCommit()) {
+          conn.getRealConnection().rollback();
+        }
+        bag.requite(conn);
+        if (log.isDebugEnabled()) {
+          log.debug("Returned connection " + conn.getRealHashCode() + " to pool.");
+        }
+      } else {
+        if (!conn.getRealConnection().getAutoCommit()) {
+          conn.getRealConnection().rollback();
+        }
+        discard(conn);
+        if (log.isDebugEnabled()) {
+          log.debug("Closed connection " + conn.getRealHashCode() + ".");
+        }
+      }
+    } else {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      discard(conn);
+      state.recordBadConnection();
+    }
+  }
+
+  private PooledConnection popConnection(String username, String password) throws SQLException {
+    startHousekeeperIfNeeded();
+    boolean countedWait = false;
+    long t = System.nanoTime();
+    int localBadConnectionCount = 0;
+
+    while (true) {
+      PooledConnection conn = null;
+      try {
+        conn = bag.borrow(0, TimeUnit.MILLISECONDS);
+        if (conn != null) {
+          if (log.isDebugEnabled()) {
+            log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
+          }
+        } else {
+          conn = createConnection();
+          if (conn != null) {
+            if (log.isDebugEnabled()) {
+              log.debug("Created connection " + conn.getRealHashCode() + ".");
+            }
+          } else {
+            conn = claimOverdueConnection();
+          }
+          if (conn == null) {
+            if (!countedWait) {
+              state.recordHadToWait();
+              countedWait = true;
+            }
+            if (log.isDebugEnabled()) {
+              log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+            }
+            long wt = System.nanoTime();
+            conn = bag.borrow(poolTimeToWait, TimeUnit.MILLISECONDS);
+            state.recordWait(System.nanoTime() - wt);
+            if (conn == null) {
+              continue;
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+
+      // ping to server and check the connection is valid or not
+      if (conn.isValid()) {
+        if (!conn.getRealConnection().getAutoCommit()) {
+          conn.getRealConnection().rollback();
+        }
+        conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+        conn.checkout();
+        conn.setLastUsedTimestamp(System.currentTimeMillis());
+        activeConnections.incrementAndGet();
+        state.recordRequest(System.nanoTime() - t);
+        return conn;
+      }
+
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+      }
+      discard(conn);
+      state.recordBadConnection();
+      localBadConnectionCount++;
+      if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
+        if (log.isDebugEnabled()) {
+          log.debug("ConcurrentPooledDataSource: Could not get a good connection to the database.");
+        }
+        throw new SQLException("ConcurrentPooledDataSource: Could not get a good connection to the database.");
+      }
+    }
+
+    if (log.isDebugEnabled()) {
+      log.debug("ConcurrentPooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+    }
+    throw new SQLException("ConcurrentPooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+  }
+
+  @Override
+  protected void housekeep() {
+    int idleCount = getIdleConnectionCount();
+    for (PooledConnection conn : bag.values(ConcurrentBag.STATE_NOT_IN_USE)) {
+      if (!bag.reserve(conn)) {
+        // borrowed meanwhile
+        continue;
+      }
+      long elapsed = conn.getTimeElapsedSinceLastUse();
+      if (isExpired(conn.getAge()) || (idleCount > poolMinimumIdleConnections && isIdleTimedOut(elapsed))) {
+        idleCount--;
+        discard(conn);
+        if (log.isDebugEnabled()) {
+          log.debug("Retired connection " + conn.getRealHashCode() + ".");
+        }
+      } else if (needsPing(elapsed)) {
+        if (pingConnection(conn, true)) {
+          bag.unreserve(conn);
+        } else {
+          idleCount--;
+          discard(conn);
+          state.recordBadConnection();
+        }
+      } else {
+        bag.unreserve(conn);
+      }
+    }
+
+    while (idleCount < poolMinimumIdleConnections && idleCount < poolMaximumIdleConnections) {
+      PooledConnection conn;
+      try {
+        conn = createConnection();
+      } catch (SQLException e) {
+        log.warn("Could not open a connection to fill the pool: " + e.getMessage());
+        return;
+      }
+      if (conn == null) {
+        return;
+      }
+      conn.setConnectionTypeCode(expectedConnectionTypeCode);
+      idleCount++;
+      bag.requite(conn);
+      if (log.isDebugEnabled()) {
+        log.debug("Created idle connection " + conn.getRealHashCode() + ".");
+      }
+    }
+  }
+
+  /**
+   * Opens a new connection if the pool has not reached its maximum size.
+   * The new connection is in use (but not checked out yet), the caller owns it.
+   */
+  private PooledConnection createConnection() throws SQLException {
+    int total;
+    do {
+      total = totalConnections.get();
+      if (total >= poolMaximumActiveConnections) {
+        return null;
+      }
+    } while (!totalConnections.compareAndSet(total, total + 1));
+
+    Connection realConnection;
+    try {
+      realConnection = openConnection();
+    } catch (SQLException | RuntimeException e) {
+      totalConnections.decrementAndGet();
+      throw e;
+    }
+    PooledConnection conn = new PooledConnection(realConnection, this);
+    bag.add(conn);
+    return conn;
+  }
+
+  /**
+   * Takes over the connection that has been checked out the longest, if that is longer than
+   * {@link #poolMaximumCheckoutTime}.
+   */
+  private PooledConnection claimOverdueConnection() {
+    PooledConnection oldest = null;
+    for (PooledConnection conn : bag.values(ConcurrentBag.STATE_IN_USE)) {
+      if (conn.isCheckedOut() && (oldest == null || conn.getCheckoutTimestamp() < oldest.getCheckoutTimestamp())) {
+        oldest = conn;
+      }
+    }
+    if (oldest == null) {
+      return null;
+    }
+    // read the generation first, checkout() sets the timestamp before publishing a new one
+    int generation = oldest.getGeneration();
+    long longestCheckoutTime = oldest.getCheckoutTime();
+    if (longestCheckoutTime <= poolMaximumCheckoutTime || !oldest.checkin(generation)) {
+      // not overdue, or returned meanwhile
+      return null;
+    }
+    // the proxy of the previous holder is stale from now on
+    PooledConnection conn = oldest;
+    activeConnections.decrementAndGet();
+    state.recordClaimedOverdueConnection(conn.getCheckoutNanos());
+    try {
+      if (!conn.getRealConnection().getAutoCommit()) {
+        conn.getRealConnection().rollback();
+      }
+    } catch (SQLException e) {
+      // the connection will be checked (and discarded if needed) before it is handed out
+      log.debug("Bad connection. Could not roll back");
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+    }
+    return conn;
+  }
+
+  private void discard(PooledConnection conn) {
+    if (bag.remove(conn)) {
+      totalConnections.decrementAndGet();
+    }
+    conn.invalidate();
+    try {
+      conn.getRealConnection().close();
+    } catch (SQLException e) {
+      // ignore
+    }
+  }
+
+}
@@ -0,0 +1,75 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * Receives the events of a pooled data source, to bridge them to a metrics library.
+ * <p>
+ * A tracker is set with {@link PooledDataSource#setPoolMetricsTracker(PoolMetricsTracker)}, or with the
+ * <code>poolMetricsTracker</code> data source property holding the fully qualified name of an implementation
+ * that has a no-arg constructor. Methods are called by the threads using the pool, so they must be
+ * thread safe and cheap. Gauges such as the number of active connections can be read from
+ * {@link PooledDataSource#getPoolState()}.
+ *
+ * @since 3.5.3
+ */
+public interface PoolMetricsTracker {
+
+  /**
+   * A request got a connection.
+   *
+   * @param nanos how long the request took, including any time spent waiting
+   */
+  default void recordRequestTime(long nanos) {
+  }
+
+  /**
+   * A request had to wait for a connection to be returned.
+   *
+   * @param nanos how long it waited
+   */
+  default void recordWaitTime(long nanos) {
+  }
+
+  /**
+   * A checkout ended, because the connection was returned or claimed as overdue.
+   *
+   * @param nanos how long the connection was checked out
+   */
+  default void recordCheckoutTime(long nanos) {
+  }
+
+  /**
+   * A physical connection was opened.
+   *
+   * @param nanos how long opening it took
+   */
+  default void recordConnectionCreationTime(long nanos) {
+  }
+
+  /**
+   * A connection that was checked out for too long was claimed by another request.
+   */
+  default void recordClaimedOverdueConnection() {
+  }
+
+  /**
+   * A connection was found to be unusable and discarded.
+   */
+  default void recordBadConnection() {
+  }
+
+}
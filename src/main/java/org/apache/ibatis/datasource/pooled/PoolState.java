@@ -17,8 +17,14 @@ package org.apache.ibatis.datasource.pooled;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * The statistics of a pool. Counters and histograms are updated and read without locking, so
+ * monitoring never contends with the threads using the pool. Durations are recorded in nanoseconds
+ * and the averages are reported in milliseconds.
+ *
  * @author Clinton Begin
  */
 public class PoolState {
@@ -27,63 +33,221 @@ public class PoolState {
 
   protected final List<PooledConnection> idleConnections = new ArrayList<>();
   protected final List<PooledConnection> activeConnections = new ArrayList<>();
+  protected final LongAdder requestCounter = new LongAdder();
+  protected final LongAdder accumulatedRequestTimeCounter = new LongAdder();
+  protected final LongAdder accumulatedCheckoutTimeCounter = new LongAdder();
+  protected final LongAdder claimedOverdueConnectionCounter = new LongAdder();
+  protected final LongAdder accumulatedCheckoutTimeOfOverdueConnectionsCounter = new LongAdder();
+  protected final LongAdder accumulatedWaitTimeCounter = new LongAdder();
+  protected final LongAdder hadToWaitCounter = new LongAdder();
+  protected final LongAdder badConnectionCounter = new LongAdder();
+  protected final LatencyHistogram requestTimeHistogram = new LatencyHistogram();
+  protected final LatencyHistogram waitTimeHistogram = new LatencyHistogram();
+  protected final LatencyHistogram checkoutTimeHistogram = new LatencyHistogram();
+  protected final LatencyHistogram connectionCreationTimeHistogram = new LatencyHistogram();
+
+  // The counters of earlier versions, in milliseconds. They are only updated while the pool holds the lock of
+  // this object, as PooledDataSource does, and must be read under it. The getters work for every pool.
+  /** @deprecated use {@link #getRequestCount()} */
+  @Deprecated
   protected long requestCount = 0;
+  /** @deprecated use {@link #getAverageRequestTime()} */
+  @Deprecated
   protected long accumulatedRequestTime = 0;
+  /** @deprecated use {@link #getAverageCheckoutTime()} */
+  @Deprecated
   protected long accumulatedCheckoutTime = 0;
+  /** @deprecated use {@link #getClaimedOverdueConnectionCount()} */
+  @Deprecated
   protected long claimedOverdueConnectionCount = 0;
+  /** @deprecated use {@link #getAverageOverdueCheckoutTime()} */
+  @Deprecated
   protected long accumulatedCheckoutTimeOfOverdueConnections = 0;
+  /** @deprecated use {@link #getAverageWaitTime()} */
+  @Deprecated
   protected long accumulatedWaitTime = 0;
+  /** @deprecated use {@link #getHadToWaitCount()} */
+  @Deprecated
   protected long hadToWaitCount = 0;
+  /** @deprecated use {@link #getBadConnectionCount()} */
+  @Deprecated
   protected long badConnectionCount = 0;
 
   public PoolState(PooledDataSource dataSource) {
     this.dataSource = dataSource;
   }
 
-  public synchronized long getRequestCount() {
-    return requestCount;
+  /**
+   * Records a request that got a connection.
+   *
+   * @param nanos how long the request took
+   */
+  protected void recordRequest(long nanos) {
+    requestCounter.increment();
+    accumulatedRequestTimeCounter.add(nanos);
+    requestTimeHistogram.record(nanos);
+    if (Thread.holdsLock(this)) {
+      requestCount++;
+      accumulatedRequestTime += toMillis(nanos);
+    }
+    dataSource.getPoolMetricsTracker().recordRequestTime(nanos);
+  }
+
+  /**
+   * Records a request having to wait. Call once per request, {@link #recordWait(long)} once per wait.
+   */
+  protected void recordHadToWait() {
+    hadToWaitCounter.increment();
+    if (Thread.holdsLock(this)) {
+      hadToWaitCount++;
+    }
+  }
+
+  /**
+   * Records the time a request spent waiting for a connection to be returned.
+   *
+   * @param nanos how long the request waited
+   */
+  protected void recordWait(long nanos) {
+    accumulatedWaitTimeCounter.add(nanos);
+    waitTimeHistogram.record(nanos);
+    if (Thread.holdsLock(this)) {
+      accumulatedWaitTime += toMillis(nanos);
+    }
+    dataSource.getPoolMetricsTracker().recordWaitTime(nanos);
+  }
+
+  /**
+   * Records the end of a checkout.
+   *
+   * @param nanos how long the connection was checked out
+   */
+  protected void recordCheckout(long nanos) {
+    accumulatedCheckoutTimeCounter.add(nanos);
+    checkoutTimeHistogram.record(nanos);
+    if (Thread.holdsLock(this)) {
+      accumulatedCheckoutTime += toMillis(nanos);
+    }
+    dataSource.getPoolMetricsTracker().recordCheckoutTime(nanos);
+  }
+
+  /**
+   * Records an overdue connection being claimed, which also ends its checkout.
+   *
+   * @param nanos how long the connection was checked out
+   */
+  protected void recordClaimedOverdueConnection(long nanos) {
+    claimedOverdueConnectionCounter.increment();
+    accumulatedCheckoutTimeOfOverdueConnectionsCounter.add(nanos);
+    if (Thread.holdsLock(this)) {
+      claimedOverdueConnectionCount++;
+      accumulatedCheckoutTimeOfOverdueConnections += toMillis(nanos);
+    }
+    dataSource.getPoolMetricsTracker().recordClaimedOverdueConnection();
+    recordCheckout(nanos);
   }
 
-  public synchronized long getAverageRequestTime() {
-    return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+  protected void recordConnectionCreation(long nanos) {
+    connectionCreationTimeHistogram.record(nanos);
+    dataSource.getPoolMetricsTracker().recordConnectionCreationTime(nanos);
   }
 
-  public synchronized long getAverageWaitTime() {
-    return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+  protected void recordBadConnection() {
+    badConnectionCounter.increment();
+    if (Thread.holdsLock(this)) {
+      badConnectionCount++;
+    }
+    dataSource.getPoolMetricsTracker().recordBadConnection();
+  }
 
+  public long getRequestCount() {
+    return requestCounter.sum();
   }
 
-  public synchronized long getHadToWaitCount() {
-    return hadToWaitCount;
+  public long getAverageRequestTime() {
+    return average(accumulatedRequestTimeCounter, requestCounter);
   }
 
-  public synchronized long getBadConnectionCount() {
-    return badConnectionCount;
+  public long getAverageWaitTime() {
+    return average(accumulatedWaitTimeCounter, hadToWaitCounter);
   }
 
-  public synchronized long getClaimedOverdueConnectionCount() {
-    return claimedOverdueConnectionCount;
+  public long getHadToWaitCount() {
+    return hadToWaitCounter.sum();
   }
 
-  public synchronized long getAverageOverdueCheckoutTime() {
-    return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+  public long getBadConnectionCount() {
+    return badConnectionCounter.sum();
   }
 
-  public synchronized long getAverageCheckoutTime() {
-    return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+  public long getClaimedOverdueConnectionCount() {
+    return claimedOverdueConnectionCounter.sum();
   }
 
+  public long getAverageOverdueCheckoutTime() {
+    return average(accumulatedCheckoutTimeOfOverdueConnectionsCounter, claimedOverdueConnectionCounter);
+  }
+
+  /**
+   * @return the checkout time accumulated by the connections, averaged over the requests as it always was
+   */
+  public long getAverageCheckoutTime() {
+    return average(accumulatedCheckoutTimeCounter, requestCounter);
+  }
 
-  public synchronized int getIdleConnectionCount() {
+  /**
+   * @return the time requests took to get a connection, including any time spent waiting
+   * @since 3.5.3
+   */
+  public LatencyHistogram getRequestTimeHistogram() {
+    return requestTimeHistogram;
+  }
+
+  /**
+   * @return the time requests spent waiting for a connection to be returned
+   * @since 3.5.3
+   */
+  public LatencyHistogram getWaitTimeHistogram() {
+    return waitTimeHistogram;
+  }
+
+  /**
+   * @return the time connections were checked out
+   * @since 3.5.3
+   */
+  public LatencyHistogram getCheckoutTimeHistogram() {
+    return checkoutTimeHistogram;
+  }
+
+  /**
+   * @return the time opening a physical connection took
+   * @since 3.5.3
+   */
+  public LatencyHistogram getConnectionCreationTimeHistogram() {
+    return connectionCreationTimeHistogram;
+  }
+
+  // the sizes are read without the pool lock, a slightly stale value is fine for monitoring
+
+  public int getIdleConnectionCount() {
     return idleConnections.size();
   }
 
-  public synchronized int getActiveConnectionCount() {
+  public int getActiveConnectionCount() {
     return activeConnections.size();
   }
 
+  private static long average(LongAdder accumulatedNanos, LongAdder count) {
+    long n = count.sum();
+    return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(accumulatedNanos.sum() / n);
+  }
+
+  private static long toMillis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
   @Override
-  public synchronized String toString() {
+  public String toString() {
     StringBuilder builder = new StringBuilder();
     builder.append("\n===CONFINGURATION==============================================");
     builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
@@ -102,11 +266,15 @@ public class PoolState {
     builder.append("\n idleConnections                ").append(getIdleConnectionCount());
     builder.append("\n requestCount                   ").append(getRequestCount());
     builder.append("\n averageRequestTime             ").append(getAverageRequestTime());
+    builder.append("\n 99thPercentileRequestTime      ").append(toMillis(requestTimeHistogram.getValueAtPercentile(99)));
     builder.append("\n averageCheckoutTime            ").append(getAverageCheckoutTime());
+    builder.append("\n 99thPercentileCheckoutTime     ").append(toMillis(checkoutTimeHistogram.getValueAtPercentile(99)));
     builder.append("\n claimedOverdue                 ").append(getClaimedOverdueConnectionCount());
     builder.append("\n averageOverdueCheckoutTime     ").append(getAverageOverdueCheckoutTime());
     builder.append("\n hadToWait                      ").append(getHadToWaitCount());
     builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
+    builder.append("\n 99thPercentileWaitTime         ").append(toMillis(waitTimeHistogram.getValueAtPercentile(99)));
+    builder.append("\n 99thPercentileCreationTime     ").append(toMillis(connectionCreationTimeHistogram.getValueAtPercentile(99)));
     builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
     builder.append("\n===============================================================");
     return builder.toString();
@@ -20,26 +20,38 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import org.apache.ibatis.reflection.ExceptionUtil;
 
 /**
+ * A physical connection held by a pool.
+ * <p>
+ * The same instance is recycled for as long as the real connection stays in the pool. Each checkout
+ * is handed a proxy bound to the current <em>generation</em>: the generation is odd while the connection
+ * is checked out and is incremented when the checkout ends, so the proxies of earlier checkouts can
+ * no longer be used (and closing them again is a no-op) without having to rebuild anything.
+ *
  * @author Clinton Begin
  */
-class PooledConnection implements InvocationHandler {
+class PooledConnection extends ConcurrentBag.BagEntry {
 
   private static final String CLOSE = "close";
   private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };
+  private static final AtomicIntegerFieldUpdater<PooledConnection> GENERATION_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(PooledConnection.class, "generation");
 
   private final int hashCode;
   private final PooledDataSource dataSource;
   private final Connection realConnection;
-  private final Connection proxyConnection;
-  private long checkoutTimestamp;
+  private volatile int generation;
+  private Connection proxyConnection;
+  private volatile long checkoutTimestamp;
+  private long checkoutNanoTime;
   private long createdTimestamp;
-  private long lastUsedTimestamp;
+  private volatile long lastUsedTimestamp;
   private int connectionTypeCode;
-  private boolean valid;
+  private volatile boolean valid;
 
   /**
    * Constructor for SimplePooledConnection that uses the Connection and PooledDataSource passed in.
@@ -54,11 +66,10 @@ class PooledConnection implements InvocationHandler {
     this.createdTimestamp = System.currentTimeMillis();
     this.lastUsedTimestamp = System.currentTimeMillis();
     this.valid = true;
-    this.proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES, this);
   }
 
   /**
-   * Invalidates the connection.
+   * Invalidates the connection, the proxies of all its checkouts can not be used anymore.
    */
   public void invalidate() {
     valid = false;
@@ -83,7 +94,7 @@ class PooledConnection implements InvocationHandler {
   }
 
   /**
-   * Getter for the proxy for the connection.
+   * Getter for the proxy for the current checkout of the connection.
    *
    * @return The proxy
    */
@@ -91,6 +102,37 @@ class PooledConnection implements InvocationHandler {
     return proxyConnection;
   }
 
+  /**
+   * Starts a checkout. The caller must own the connection, i.e. have taken it from the idle
+   * connections or have ended the previous checkout itself.
+   */
+  void checkout() {
+    // set before the generation is published, other threads look for overdue connections without any lock
+    checkoutTimestamp = System.currentTimeMillis();
+    checkoutNanoTime = System.nanoTime();
+    int current = GENERATION_UPDATER.incrementAndGet(this);
+    proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES, new Handle(this, current));
+  }
+
+  /**
+   * Ends the checkout of the given generation. Only one caller can succeed, whether it is the holder
+   * returning the connection or another thread claiming it as overdue.
+   *
+   * @param generation the generation of the checkout to end
+   * @return false if that checkout has already ended
+   */
+  boolean checkin(int generation) {
+    return (generation & 1) == 1 && GENERATION_UPDATER.compareAndSet(this, generation, generation + 1);
+  }
+
+  int getGeneration() {
+    return generation;
+  }
+
+  boolean isCheckedOut() {
+    return (generation & 1) == 1;
+  }
+
   /**
    * Gets the hashcode of the real connection (or 0 if it is null).
    *
@@ -199,6 +241,15 @@ class PooledConnection implements InvocationHandler {
     return System.currentTimeMillis() - checkoutTimestamp;
   }
 
+  /**
+   * Getter for the time that this connection has been checked out, with the precision of {@link System#nanoTime()}.
+   *
+   * @return the time in nanoseconds
+   */
+  long getCheckoutNanos() {
+    return System.nanoTime() - checkoutNanoTime;
+  }
+
   @Override
   public int hashCode() {
     return hashCode;
@@ -221,26 +272,20 @@ class PooledConnection implements InvocationHandler {
     }
   }
 
-  /**
-   * Required for InvocationHandler implementation.
-   *
-   * @param proxy  - not used
-   * @param method - the method to be executed
-   * @param args   - the parameters to be passed to the method
-   * @see java.lang.reflect.InvocationHandler#invoke(Object, java.lang.reflect.Method, Object[])
-   */
-  @Override
-  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+  private Object invoke(int handleGeneration, Method method, Object[] args) throws Throwable {
     String methodName = method.getName();
     if (CLOSE.hashCode() == methodName.hashCode() && CLOSE.equals(methodName)) {
-      dataSource.pushConnection(this);
+      // closing the proxy of an earlier checkout again is a no-op
+      if (checkin(handleGeneration)) {
+        dataSource.pushConnection(this);
+      }
       return null;
     }
     try {
       if (!Object.class.equals(method.getDeclaringClass())) {
         // issue #579 toString() should never fail
         // throw an SQLException instead of a Runtime
-        checkConnection();
+        checkConnection(handleGeneration);
       }
       return method.invoke(realConnection, args);
     } catch (Throwable t) {
@@ -249,10 +294,42 @@ class PooledConnection implements InvocationHandler {
 
   }
 
-  private void checkConnection() throws SQLException {
-    if (!valid) {
+  private void checkConnection(int handleGeneration) throws SQLException {
+    if (!valid || generation != handleGeneration) {
       throw new SQLException("Error accessing PooledConnection. Connection is invalid.");
     }
   }
 
+  /**
+   * The invocation handler of the proxy handed out for one checkout.
+   */
+  static final class Handle implements InvocationHandler {
+
+    private final PooledConnection pooledConnection;
+    private final int generation;
+
+    Handle(PooledConnection pooledConnection, int generation) {
+      this.pooledConnection = pooledConnection;
+      this.generation = generation;
+    }
+
+    PooledConnection getPooledConnection() {
+      return pooledConnection;
+    }
+
+    /**
+     * Required for InvocationHandler implementation.
+     *
+     * @param proxy  - not used
+     * @param method - the method to be executed
+     * @param args   - the parameters to be passed to the method
+     * @see java.lang.reflect.InvocationHandler#invoke(Object, java.lang.reflect.Method, Object[])
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      return pooledConnection.invoke(generation, method, args);
+    }
+
+  }
+
 }
@@ -16,13 +16,21 @@
 package org.apache.ibatis.datasource.pooled;
 
 import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
@@ -39,10 +47,12 @@ import org.apache.ibatis.logging.LogFactory;
 public class PooledDataSource implements DataSource {
 
   private static final Log log = LogFactory.getLog(PooledDataSource.class);
+  private static final PoolMetricsTracker NO_OP_METRICS_TRACKER = new PoolMetricsTracker() {
+  };
 
   private final PoolState state = new PoolState(this);
 
-  private final UnpooledDataSource dataSource;
+  protected final UnpooledDataSource dataSource;
 
   // OPTIONAL CONFIGURATION FIELDS
   protected int poolMaximumActiveConnections = 10;
@@ -53,8 +63,18 @@ public class PooledDataSource implements DataSource {
   protected String poolPingQuery = "NO PING QUERY SET";
   protected boolean poolPingEnabled;
   protected int poolPingConnectionsNotUsedFor;
+  protected int poolHousekeepingInterval;
+  protected int poolMinimumIdleConnections;
+  protected int poolMaximumLifetime;
+  protected int poolIdleTimeout;
+  protected volatile PoolMetricsTracker poolMetricsTracker = NO_OP_METRICS_TRACKER;
 
-  private int expectedConnectionTypeCode;
+  protected int expectedConnectionTypeCode;
+
+  private final Object housekeeperLock = new Object();
+  private ScheduledFuture<?> housekeeper;
+  // connections taken out of the idle list by the housekeeper, guarded by state
+  private int housekeepingConnectionCount;
 
   public PooledDataSource() {
     dataSource = new UnpooledDataSource();
@@ -247,6 +267,66 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /**
+   * How often the housekeeper runs, in milliseconds. 0 (the default) disables it.
+   * <p>
+   * The housekeeper pings idle connections, retires connections that have exceeded
+   * the maximum lifetime or idle timeout and opens connections up to the minimum idle count,
+   * all on a background thread. While it is enabled a checkout never runs the ping query.
+   *
+   * @param milliseconds the interval between two housekeeping runs
+   * @since 3.5.3
+   */
+  public void setPoolHousekeepingInterval(int milliseconds) {
+    this.poolHousekeepingInterval = milliseconds;
+    forceCloseAll();
+  }
+
+  /**
+   * The number of idle connections the housekeeper keeps open.
+   *
+   * @param poolMinimumIdleConnections The minimum number of idle connections
+   * @since 3.5.3
+   */
+  public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+    this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+    forceCloseAll();
+  }
+
+  /**
+   * The maximum time a connection stays in the pool, in milliseconds, after which it is closed
+   * once it is idle. 0 (the default) means no limit.
+   *
+   * @param milliseconds the maximum lifetime of a connection
+   * @since 3.5.3
+   */
+  public void setPoolMaximumLifetime(int milliseconds) {
+    this.poolMaximumLifetime = milliseconds;
+    forceCloseAll();
+  }
+
+  /**
+   * The time, in milliseconds, after which the housekeeper closes an unused connection,
+   * as long as more than the minimum idle connections remain. 0 (the default) means never.
+   *
+   * @param milliseconds the idle timeout
+   * @since 3.5.3
+   */
+  public void setPoolIdleTimeout(int milliseconds) {
+    this.poolIdleTimeout = milliseconds;
+    forceCloseAll();
+  }
+
+  /**
+   * The tracker the pool reports its events to, in addition to its {@link PoolState}.
+   *
+   * @param poolMetricsTracker the tracker, null for none
+   * @since 3.5.3
+   */
+  public void setPoolMetricsTracker(PoolMetricsTracker poolMetricsTracker) {
+    this.poolMetricsTracker = poolMetricsTracker == null ? NO_OP_METRICS_TRACKER : poolMetricsTracker;
+  }
+
   public String getDriver() {
     return dataSource.getDriver();
   }
@@ -314,10 +394,46 @@ public class PooledDataSource implements DataSource {
     return poolPingConnectionsNotUsedFor;
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolHousekeepingInterval() {
+    return poolHousekeepingInterval;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolMinimumIdleConnections() {
+    return poolMinimumIdleConnections;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolMaximumLifetime() {
+    return poolMaximumLifetime;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolIdleTimeout() {
+    return poolIdleTimeout;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public PoolMetricsTracker getPoolMetricsTracker() {
+    return poolMetricsTracker;
+  }
+
   /**
    * Closes all active and idle connections in the pool.
    */
   public void forceCloseAll() {
+    stopHousekeeper();
     synchronized (state) {
       expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
       for (int i = state.activeConnections.size(); i > 0; i--) {
@@ -358,31 +474,35 @@ public class PooledDataSource implements DataSource {
     return state;
   }
 
-  private int assembleConnectionTypeCode(String url, String username, String password) {
+  protected int assembleConnectionTypeCode(String url, String username, String password) {
     return ("" + url + username + password).hashCode();
   }
 
+  /**
+   * Puts a connection back into the pool, or closes it. The caller must have ended its checkout.
+   *
+   * @param conn the returned connection
+   * @throws SQLException if the connection could not be rolled back or closed
+   */
   protected void pushConnection(PooledConnection conn) throws SQLException {
 
     synchronized (state) {
       state.activeConnections.remove(conn);
       if (conn.isValid()) {
-        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
+        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode
+            && !isExpired(conn.getAge())) {
+          state.recordCheckout(conn.getCheckoutNanos());
           if (!conn.getRealConnection().getAutoCommit()) {
             conn.getRealConnection().rollback();
           }
-          PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
-          state.idleConnections.add(newConn);
-          newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
-          newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
-          conn.invalidate();
+          // the checkout has ended, so the same wrapper can be handed out again
+          state.idleConnections.add(conn);
           if (log.isDebugEnabled()) {
-            log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
+            log.debug("Returned connection " + conn.getRealHashCode() + " to pool.");
           }
           state.notifyAll();
         } else {
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
+          state.recordCheckout(conn.getCheckoutNanos());
           if (!conn.getRealConnection().getAutoCommit()) {
             conn.getRealConnection().rollback();
           }
@@ -396,15 +516,16 @@ public class PooledDataSource implements DataSource {
         if (log.isDebugEnabled()) {
           log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
         }
-        state.badConnectionCount++;
+        state.recordBadConnection();
       }
     }
   }
 
   private PooledConnection popConnection(String username, String password) throws SQLException {
+    startHousekeeperIfNeeded();
     boolean countedWait = false;
     PooledConnection conn = null;
-    long t = System.currentTimeMillis();
+    long t = System.nanoTime();
     int localBadConnectionCount = 0;
 
     while (conn == null) {
@@ -417,21 +538,22 @@ public class PooledDataSource implements DataSource {
           }
         } else {
           // Pool does not have available connection
-          if (state.activeConnections.size() < poolMaximumActiveConnections) {
+          if (state.activeConnections.size() + housekeepingConnectionCount < poolMaximumActiveConnections) {
             // Can create new connection
-            conn = new PooledConnection(dataSource.getConnection(), this);
+            conn = new PooledConnection(openConnection(), this);
             if (log.isDebugEnabled()) {
               log.debug("Created connection " + conn.getRealHashCode() + ".");
             }
           } else {
             // Cannot create new connection
-            PooledConnection oldestActiveConnection = state.activeConnections.get(0);
-            long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
-            if (longestCheckoutTime > poolMaximumCheckoutTime) {
+            // (the active list can be empty while the housekeeper is validating idle connections)
+            PooledConnection oldestActiveConnection = state.activeConnections.isEmpty() ? null : state.activeConnections.get(0);
+            long longestCheckoutTime = oldestActiveConnection == null ? 0 : oldestActiveConnection.getCheckoutTime();
+            // ending the checkout fails if the holder is returning the connection right now
+            if (oldestActiveConnection != null && longestCheckoutTime > poolMaximumCheckoutTime
+                && oldestActiveConnection.checkin(oldestActiveConnection.getGeneration())) {
               // Can claim overdue connection
-              state.claimedOverdueConnectionCount++;
-              state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-              state.accumulatedCheckoutTime += longestCheckoutTime;
+              state.recordClaimedOverdueConnection(oldestActiveConnection.getCheckoutNanos());
               state.activeConnections.remove(oldestActiveConnection);
               if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
                 try {
@@ -440,7 +562,7 @@ public class PooledDataSource implements DataSource {
                   /*
                      Just log a message for debug and continue to execute the following
                      statement like nothing happened.
-                     Wrap the bad connection with a new PooledConnection, this will help
+                     Reuse the bad connection for a new checkout, this will help
                      to not interrupt current executing thread and give current thread a
                      chance to join the next competition for another valid/good database
                      connection. At the end of this loop, bad {@link @conn} will be set as null.
@@ -448,10 +570,8 @@ public class PooledDataSource implements DataSource {
                   log.debug("Bad connection. Could not roll back");
                 }
               }
-              conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
-              conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
-              conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
-              oldestActiveConnection.invalidate();
+              // the proxy of the previous holder is stale from now on
+              conn = oldestActiveConnection;
               if (log.isDebugEnabled()) {
                 log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
               }
@@ -459,15 +579,15 @@ public class PooledDataSource implements DataSource {
               // Must wait
               try {
                 if (!countedWait) {
-                  state.hadToWaitCount++;
+                  state.recordHadToWait();
                   countedWait = true;
                 }
                 if (log.isDebugEnabled()) {
                   log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
                 }
-                long wt = System.currentTimeMillis();
+                long wt = System.nanoTime();
                 state.wait(poolTimeToWait);
-                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
+                state.recordWait(System.nanoTime() - wt);
               } catch (InterruptedException e) {
                 break;
               }
@@ -481,16 +601,15 @@ public class PooledDataSource implements DataSource {
               conn.getRealConnection().rollback();
             }
             conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
-            conn.setCheckoutTimestamp(System.currentTimeMillis());
+            conn.checkout();
             conn.setLastUsedTimestamp(System.currentTimeMillis());
             state.activeConnections.add(conn);
-            state.requestCount++;
-            state.accumulatedRequestTime += System.currentTimeMillis() - t;
+            state.recordRequest(System.nanoTime() - t);
           } else {
             if (log.isDebugEnabled()) {
               log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
             }
-            state.badConnectionCount++;
+            state.recordBadConnection();
             localBadConnectionCount++;
             conn = null;
             if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
@@ -522,6 +641,18 @@ public class PooledDataSource implements DataSource {
    * @return True if the connection is still usable
    */
   protected boolean pingConnection(PooledConnection conn) {
+    // the housekeeper pings idle connections so that the borrowing thread does not have to
+    return pingConnection(conn, !isHousekeepingEnabled());
+  }
+
+  /**
+   * Method to check to see if a connection is still usable
+   *
+   * @param conn - the connection to check
+   * @param runPingQuery - false to only check that the connection is not closed
+   * @return True if the connection is still usable
+   */
+  protected boolean pingConnection(PooledConnection conn, boolean runPingQuery) {
     boolean result = true;
 
     try {
@@ -533,7 +664,7 @@ public class PooledDataSource implements DataSource {
       result = false;
     }
 
-    if (result) {
+    if (result && runPingQuery) {
       if (poolPingEnabled) {
         if (poolPingConnectionsNotUsedFor >= 0 && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor) {
           try {
@@ -569,6 +700,148 @@ public class PooledDataSource implements DataSource {
     return result;
   }
 
+  protected boolean isHousekeepingEnabled() {
+    return poolHousekeepingInterval > 0;
+  }
+
+  protected boolean isExpired(long age) {
+    return poolMaximumLifetime > 0 && age > poolMaximumLifetime;
+  }
+
+  protected boolean isIdleTimedOut(long timeElapsedSinceLastUse) {
+    return poolIdleTimeout > 0 && timeElapsedSinceLastUse > poolIdleTimeout;
+  }
+
+  protected boolean needsPing(long timeElapsedSinceLastUse) {
+    return poolPingEnabled && poolPingConnectionsNotUsedFor >= 0 && timeElapsedSinceLastUse > poolPingConnectionsNotUsedFor;
+  }
+
+  protected void startHousekeeperIfNeeded() {
+    if (!isHousekeepingEnabled()) {
+      return;
+    }
+    synchronized (housekeeperLock) {
+      if (housekeeper == null) {
+        Housekeeper task = new Housekeeper(this);
+        housekeeper = HousekeeperExecutorHolder.EXECUTOR.scheduleWithFixedDelay(task, 0, poolHousekeepingInterval, TimeUnit.MILLISECONDS);
+        task.future = housekeeper;
+      }
+    }
+  }
+
+  protected void stopHousekeeper() {
+    synchronized (housekeeperLock) {
+      if (housekeeper != null) {
+        housekeeper.cancel(false);
+        housekeeper = null;
+      }
+    }
+  }
+
+  /**
+   * Runs one housekeeping pass: retires idle connections that have expired or timed out,
+   * pings the ones that have not been used for {@link #poolPingConnectionsNotUsedFor} and opens
+   * new connections until {@link #poolMinimumIdleConnections} are idle. Slow work is done
+   * without holding the pool lock.
+   */
+  protected void housekeep() {
+    List<PooledConnection> retired = new ArrayList<>();
+    List<PooledConnection> suspects = new ArrayList<>();
+    synchronized (state) {
+      int idleCount = state.idleConnections.size();
+      for (Iterator<PooledConnection> it = state.idleConnections.iterator(); it.hasNext();) {
+        PooledConnection conn = it.next();
+        long elapsed = conn.getTimeElapsedSinceLastUse();
+        if (isExpired(conn.getAge()) || (idleCount > poolMinimumIdleConnections && isIdleTimedOut(elapsed))) {
+          it.remove();
+          idleCount--;
+          retired.add(conn);
+        } else if (needsPing(elapsed)) {
+          it.remove();
+          suspects.add(conn);
+        }
+      }
+      housekeepingConnectionCount += suspects.size();
+    }
+
+    for (PooledConnection conn : retired) {
+      closeQuietly(conn);
+      if (log.isDebugEnabled()) {
+        log.debug("Retired connection " + conn.getRealHashCode() + ".");
+      }
+    }
+    for (PooledConnection conn : suspects) {
+      boolean good = pingConnection(conn, true);
+      synchronized (state) {
+        housekeepingConnectionCount--;
+        if (good) {
+          state.idleConnections.add(conn);
+          state.notifyAll();
+        } else {
+          state.recordBadConnection();
+        }
+      }
+      if (!good) {
+        closeQuietly(conn);
+      }
+    }
+
+    while (true) {
+      synchronized (state) {
+        if (state.idleConnections.size() >= poolMinimumIdleConnections
+            || state.idleConnections.size() >= poolMaximumIdleConnections
+            || state.activeConnections.size() + state.idleConnections.size() + housekeepingConnectionCount >= poolMaximumActiveConnections) {
+          return;
+        }
+        housekeepingConnectionCount++;
+      }
+      PooledConnection conn = null;
+      try {
+        conn = new PooledConnection(openConnection(), this);
+        conn.setConnectionTypeCode(expectedConnectionTypeCode);
+      } catch (SQLException e) {
+        log.warn("Could not open a connection to fill the pool: " + e.getMessage());
+      }
+      synchronized (state) {
+        housekeepingConnectionCount--;
+        if (conn == null) {
+          return;
+        }
+        state.idleConnections.add(conn);
+        state.notifyAll();
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Created idle connection " + conn.getRealHashCode() + ".");
+      }
+    }
+  }
+
+  /**
+   * Opens a physical connection, recording how long it took.
+   *
+   * @return the new connection
+   * @throws SQLException if the connection could not be opened
+   */
+  protected Connection openConnection() throws SQLException {
+    long start = System.nanoTime();
+    Connection connection = dataSource.getConnection();
+    getPoolState().recordConnectionCreation(System.nanoTime() - start);
+    return connection;
+  }
+
+  private void closeQuietly(PooledConnection conn) {
+    conn.invalidate();
+    try {
+      Connection realConn = conn.getRealConnection();
+      if (!realConn.getAutoCommit()) {
+        realConn.rollback();
+      }
+      realConn.close();
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
   /**
    * Unwraps a pooled connection to get to the 'real' connection
    *
@@ -578,8 +851,8 @@ public class PooledDataSource implements DataSource {
   public static Connection unwrapConnection(Connection conn) {
     if (Proxy.isProxyClass(conn.getClass())) {
       InvocationHandler handler = Proxy.getInvocationHandler(conn);
-      if (handler instanceof PooledConnection) {
-        return ((PooledConnection) handler).getRealConnection();
+      if (handler instanceof PooledConnection.Handle) {
+        return ((PooledConnection.Handle) handler).getPooledConnection().getRealConnection();
       }
     }
     return conn;
@@ -606,4 +879,43 @@ public class PooledDataSource implements DataSource {
     return Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
   }
 
+  /**
+   * The task scheduled for a pool. It only keeps a weak reference, so that an unreferenced pool
+   * can still be garbage collected (and finalized, which closes its connections).
+   */
+  private static class Housekeeper implements Runnable {
+
+    private final WeakReference<PooledDataSource> dataSourceRef;
+    private volatile ScheduledFuture<?> future;
+
+    Housekeeper(PooledDataSource dataSource) {
+      this.dataSourceRef = new WeakReference<>(dataSource);
+    }
+
+    @Override
+    public void run() {
+      PooledDataSource dataSource = dataSourceRef.get();
+      if (dataSource == null) {
+        if (future != null) {
+          future.cancel(false);
+        }
+        return;
+      }
+      try {
+        dataSource.housekeep();
+      } catch (Exception e) {
+        log.warn("Pool housekeeping failed: " + e.getMessage());
+      }
+    }
+  }
+
+  private static class HousekeeperExecutorHolder {
+    // a single daemon thread serves the housekeepers of all pools
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "mybatis-pool-housekeeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
 }
@@ -21,6 +21,7 @@ import javax.sql.DataSource;
 
 import org.apache.ibatis.datasource.DataSourceException;
 import org.apache.ibatis.datasource.DataSourceFactory;
+import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
 
@@ -74,8 +75,23 @@ public class UnpooledDataSourceFactory implements DataSourceFactory {
       convertedValue = Long.valueOf(value);
     } else if (targetType == Boolean.class || targetType == boolean.class) {
       convertedValue = Boolean.valueOf(value);
+    } else if (targetType.isInterface() && !targetType.isInstance(value)) {
+      // e.g. the poolMetricsTracker of a pooled data source
+      convertedValue = newInstance(propertyName, value, targetType);
     }
     return convertedValue;
   }
 
+  private Object newInstance(String propertyName, String className, Class<?> targetType) {
+    try {
+      Class<?> type = Resources.classForName(className);
+      if (!targetType.isAssignableFrom(type)) {
+        throw new DataSourceException(className + " is not a " + targetType.getName() + " (DataSource property: " + propertyName + ")");
+      }
+      return type.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new DataSourceException("Error creating an instance of " + className + " for DataSource property: " + propertyName + ". Cause: " + e, e);
+    }
+  }
+
 }
@@ -1,5 +1,6 @@
 package org.apache.ibatis.executor;
 
+import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.cursor.Cursor;
@@ -20,7 +21,9 @@ import org.apache.ibatis.type.TypeHandlerRegistry;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static org.apache.ibatis.executor.ExecutionPlaceholder.EXECUTION_PLACEHOLDER;
@@ -36,8 +39,10 @@ public abstract class BaseExecutor implements Executor {
     protected Executor wrapper;
 
     protected ConcurrentLinkedQueue<DeferredLoad> deferredLoads;
-    protected PerpetualCache localCache;
-    protected PerpetualCache localOutputParameterCache;
+    protected Cache localCache;
+    protected Cache localOutputParameterCache;
+    // the keys being queried, the local cache may have evicted their placeholders
+    private final Set<CacheKey> executingKeys = new HashSet<>();
     protected Configuration configuration;
 
     protected int queryStack;
@@ -46,13 +51,18 @@ public abstract class BaseExecutor implements Executor {
     protected BaseExecutor(Configuration configuration, Transaction transaction) {
         this.transaction = transaction;
         this.deferredLoads = new ConcurrentLinkedQueue<>();
-        this.localCache = new PerpetualCache("LocalCache");
-        this.localOutputParameterCache = new PerpetualCache("LocalOutputParameterCache");
+        this.localCache = newLocalCache(configuration, "LocalCache");
+        this.localOutputParameterCache = newLocalCache(configuration, "LocalOutputParameterCache");
         this.closed = false;
         this.configuration = configuration;
         this.wrapper = this;
     }
 
+    private static Cache newLocalCache(Configuration configuration, String id) {
+        // the executor of deserialized lazy loaders has no configuration
+        return configuration == null ? new PerpetualCache(id) : configuration.newLocalCache(id);
+    }
+
     @Override
     public Transaction getTransaction() {
         if (closed) {
@@ -113,10 +123,26 @@ public abstract class BaseExecutor implements Executor {
     @Override
     public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
         BoundSql boundSql = ms.getBoundSql(parameter);
-        CacheKey key = createCacheKey(ms, parameter, rowBounds, boundSql);
+        CacheKey key = isLocalCacheUsed(ms) ? createCacheKey(ms, parameter, rowBounds, boundSql) : null;
         return query(ms, parameter, rowBounds, resultHandler, key, boundSql);
     }
 
+    /**
+     * With the STATEMENT scope the local cache only lives as long as one statement, so a top level query only
+     * needs a key if nested queries of its result maps may look for it (e.g. circular references).
+     */
+    private boolean isLocalCacheUsed(MappedStatement ms) {
+        if (queryStack > 0 || configuration.getLocalCacheScope() != LocalCacheScope.STATEMENT) {
+            return true;
+        }
+        for (ResultMap resultMap : ms.getResultMaps()) {
+            if (resultMap.hasNestedQueries()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 以下是一级缓存相关的处理逻辑
      * 1. 一个sqlSession有一个Executor, 一个Executor有一个本地缓存(localCache);
@@ -139,7 +165,7 @@ public abstract class BaseExecutor implements Executor {
         List<E> list;
         try {
             queryStack++;
-            list = resultHandler == null ? (List<E>) localCache.getObject(key) : null;
+            list = resultHandler == null && key != null ? (List<E>) localCache.getObject(key) : null;
             if (list != null) {
                 /**
                  * 这里面是存储过程相关的，忽略
@@ -227,7 +253,12 @@ public abstract class BaseExecutor implements Executor {
 
     @Override
     public boolean isCached(MappedStatement ms, CacheKey key) {
-        return localCache.getObject(key) != null;
+        return executingKeys.contains(key) || localCache.getObject(key) != null;
+    }
+
+    @Override
+    public int getLocalCacheSize() {
+        return closed ? 0 : localCache.getSize();
     }
 
     @Override
@@ -317,14 +348,24 @@ public abstract class BaseExecutor implements Executor {
 
     private <E> List<E> queryFromDatabase(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
                                           CacheKey key, BoundSql boundSql) throws SQLException {
+        if (key == null) {
+            // not cached locally
+            return doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+        }
         List<E> list;
+        executingKeys.add(key);
         localCache.putObject(key, EXECUTION_PLACEHOLDER);
         try {
             list = doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
         } finally {
             localCache.removeObject(key);
+            executingKeys.remove(key);
         }
         localCache.putObject(key, list);
+        // the deferred loads keep the list, it could be evicted before they run
+        for (DeferredLoad deferredLoad : deferredLoads) {
+            deferredLoad.resolve(key, list);
+        }
         if (ms.getStatementType() == StatementType.CALLABLE) {
             localOutputParameterCache.putObject(key, parameter);
         }
@@ -352,15 +393,16 @@ public abstract class BaseExecutor implements Executor {
         private final String property;
         private final Class<?> targetType;
         private final CacheKey key;
-        private final PerpetualCache localCache;
+        private final Cache localCache;
         private final ObjectFactory objectFactory;
         private final ResultExtractor resultExtractor;
+        private List<?> list;
 
         // issue #781
         public DeferredLoad(MetaObject resultObject,
                             String property,
                             CacheKey key,
-                            PerpetualCache localCache,
+                            Cache localCache,
                             Configuration configuration,
                             Class<?> targetType) {
             this.resultObject = resultObject;
@@ -373,13 +415,19 @@ public abstract class BaseExecutor implements Executor {
         }
 
         public boolean canLoad() {
-            return localCache.getObject(key) != null && localCache.getObject(key) != EXECUTION_PLACEHOLDER;
+            return list != null || localCache.getObject(key) != null && localCache.getObject(key) != EXECUTION_PLACEHOLDER;
+        }
+
+        public void resolve(CacheKey key, List<?> list) {
+            if (this.list == null && this.key.equals(key)) {
+                this.list = list;
+            }
         }
 
         public void load() {
             @SuppressWarnings("unchecked")
             // we suppose we get back a List
-                    List<Object> list = (List<Object>) localCache.getObject(key);
+                    List<Object> list = (List<Object>) (this.list != null ? this.list : localCache.getObject(key));
             Object value = resultExtractor.extractObjectFromList(list, targetType);
             resultObject.setValue(property, value);
         }
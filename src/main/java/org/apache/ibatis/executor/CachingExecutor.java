@@ -2,10 +2,15 @@ package org.apache.ibatis.executor;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.CacheTags;
 import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.decorators.RefreshAheadCache;
+import org.apache.ibatis.cache.decorators.TaggedCache;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.mapping.*;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
@@ -53,12 +58,19 @@ public class CachingExecutor implements Executor {
 
     @Override
     public int update(MappedStatement ms, Object parameterObject) throws SQLException {
-        flushCacheIfRequired(ms);
+        Cache cache = ms.getCache();
+        if (cache != null && ms.isFlushCacheRequired()) {
+            tcm.invalidate(cache, getCacheTags(ms, cache, parameterObject, null));
+        }
         return delegate.update(ms, parameterObject);
     }
 
     @Override
     public <E> List<E> query(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
+        if (ms.getCache() == null) {
+            // no second level cache, the delegate creates a key only if it caches locally
+            return delegate.query(ms, parameterObject, rowBounds, resultHandler);
+        }
         BoundSql boundSql = ms.getBoundSql(parameterObject);
         CacheKey key = createCacheKey(ms, parameterObject, rowBounds, boundSql);
         return query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
@@ -96,11 +108,21 @@ public class CachingExecutor implements Executor {
                  */
                 ensureNoOutParams(ms, boundSql);
 
+                String[] tags = getCacheTags(ms, cache, parameterObject, boundSql);
                 @SuppressWarnings("unchecked")
-                List<E> list = (List<E>) tcm.getObject(cache, key);
+                List<E> list = (List<E>) tcm.getObject(cache, key, tags);
                 if (list == null) {
+                    long start = System.nanoTime();
                     list = delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
-                    tcm.putObject(cache, key, list); // issue #578 and #116
+                    CacheStatistics statistics = ms.getConfiguration().getCacheStatistics(cache.getId());
+                    if (statistics != null) {
+                        statistics.recordLoad(System.nanoTime() - start);
+                    }
+                    tcm.putObject(cache, key, list, tags); // issue #578 and #116
+                    RefreshAheadCache refreshAheadCache = getRefreshAheadCache(cache);
+                    if (refreshAheadCache != null) {
+                        refreshAheadCache.register(key, parameterObject, parameter -> reload(ms, cache, key, parameter, rowBounds));
+                    }
                 }
                 return list;
             }
@@ -160,6 +182,64 @@ public class CachingExecutor implements Executor {
         delegate.clearLocalCache();
     }
 
+    @Override
+    public int getLocalCacheSize() {
+        return delegate.getLocalCacheSize();
+    }
+
+    private static RefreshAheadCache getRefreshAheadCache(Cache cache) {
+        Cache outermost = cache instanceof TaggedCache ? ((TaggedCache) cache).getDelegate() : cache;
+        return outermost instanceof RefreshAheadCache ? (RefreshAheadCache) outermost : null;
+    }
+
+    /**
+     * Runs a cached query again on a connection of its own, outside of any session, and caches the result.
+     */
+    private static void reload(MappedStatement ms, Cache cache, CacheKey key, Object parameterObject, RowBounds rowBounds)
+            throws SQLException {
+        String[] tags = getCacheTags(ms, cache, parameterObject, null);
+        long[] versions = cache instanceof TaggedCache ? ((TaggedCache) cache).getVersions(tags) : null;
+        Configuration configuration = ms.getConfiguration();
+        Environment environment = configuration.getEnvironment();
+        Transaction transaction = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, true);
+        Executor executor = new SimpleExecutor(configuration, transaction);
+        List<Object> list;
+        try {
+            list = executor.query(ms, parameterObject, rowBounds, Executor.NO_RESULT_HANDLER);
+        } finally {
+            executor.close(false);
+        }
+        if (versions != null) {
+            ((TaggedCache) cache).putObject(key, list, tags, versions);
+        } else {
+            cache.putObject(key, list);
+        }
+    }
+
+    /**
+     * The declared cache tags of the statement, or the tables of its SQL if they are to be inferred.
+     * Null when the cache has no tag invalidation or the tags are unknown, which stands for any tag: a write then
+     * invalidates everything and a result depends on every write. That is always the case for a callable
+     * statement without declared tags, as the tables its procedures use are not in its SQL. The SQL is only built
+     * for a dynamic statement when the caller has not built it already, the tables of a static statement are
+     * inferred once.
+     */
+    private static String[] getCacheTags(MappedStatement ms, Cache cache, Object parameterObject, BoundSql boundSql) {
+        if (!(cache instanceof TaggedCache)) {
+            return null;
+        }
+        String[] tags = ms.getCacheTags();
+        if (tags == null && ms.getConfiguration().isInferCacheTags()
+                && ms.getStatementType() != StatementType.CALLABLE) {
+            if (ms.isStaticSql()) {
+                tags = ms.getInferredCacheTags();
+            } else {
+                tags = CacheTags.fromSql((boundSql != null ? boundSql : ms.getBoundSql(parameterObject)).getSql());
+            }
+        }
+        return tags;
+    }
+
     private void flushCacheIfRequired(MappedStatement ms) {
         Cache cache = ms.getCache();
         if (cache != null && ms.isFlushCacheRequired()) {
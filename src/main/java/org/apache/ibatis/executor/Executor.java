@@ -39,6 +39,15 @@ public interface Executor {
 
     void clearLocalCache();
 
+    /**
+     * @return the number of entries in the local (first level) cache, or -1 if it is unknown, which is what
+     *     executors that do not override this method report
+     * @since 3.5.3
+     */
+    default int getLocalCacheSize() {
+        return -1;
+    }
+
     void deferLoad(MappedStatement ms, MetaObject resultObject, String property, CacheKey key, Class<?> targetType);
 
     Transaction getTransaction();
@@ -24,13 +24,26 @@ import java.util.Properties;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.CacheStatistics;
+import org.apache.ibatis.cache.CopyStrategy;
+import org.apache.ibatis.cache.EvictionListener;
+import org.apache.ibatis.cache.Weigher;
 import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.DeepCopyCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.RefreshAheadCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.StatisticsCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.TaggedCache;
+import org.apache.ibatis.cache.decorators.WeightedCache;
+import org.apache.ibatis.cache.distributed.DistributedCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
 
@@ -42,6 +55,14 @@ public class CacheBuilder {
   private Class<? extends Cache> implementation;
   private final List<Class<? extends Cache>> decorators;
   private Integer size;
+  private Long maximumWeight;
+  private Weigher weigher;
+  private CacheSerializer serializer;
+  private CopyStrategy copyStrategy;
+  private boolean tagInvalidation;
+  private boolean statistics;
+  private Long refreshAfter;
+  private Long expireAfter;
   private Long clearInterval;
   private boolean readWrite;
   private Properties properties;
@@ -69,6 +90,97 @@ public class CacheBuilder {
     return this;
   }
 
+  /**
+   * Bounds the cache by the estimated size of its entries, adding a {@link WeightedCache} unless the eviction
+   * decorator is already one.
+   *
+   * @param maximumWeight the maximum total weight, usually in bytes
+   * @return this builder
+   * @since 3.5.3
+   */
+  public CacheBuilder maximumWeight(Long maximumWeight) {
+    this.maximumWeight = maximumWeight;
+    return this;
+  }
+
+  /**
+   * @param weigher the weigher used to bound the cache by weight, replaces the default estimate
+   * @return this builder
+   * @since 3.5.3
+   */
+  public CacheBuilder weigher(Weigher weigher) {
+    this.weigher = weigher;
+    return this;
+  }
+
+  /**
+   * @param serializer the serializer that copies the values of a read-write cache, replaces the default one.
+   *        It can also be set with the <code>serializer</code> cache property.
+   * @return this builder
+   * @since 3.5.3
+   */
+  public CacheBuilder serializer(CacheSerializer serializer) {
+    this.serializer = serializer;
+    return this;
+  }
+
+  /**
+   * @param copyStrategy how a read-write cache copies its values, {@link CopyStrategy#SERIALIZE} by default.
+   *        It can also be set with the <code>copyStrategy</code> cache property.
+   * @return this builder
+   * @since 3.5.3
+   */
+  public CacheBuilder copyStrategy(CopyStrategy copyStrategy) {
+    this.copyStrategy = copyStrategy;
+    return this;
+  }
+
+  /**
+   * @param tagInvalidation whether writes only invalidate the entries that read their cache tags, by wrapping the
+   *        cache in a {@link TaggedCache}. It can also be set with the <code>tagInvalidation</code> cache property.
+   * @return this builder
+   * @since 3.5.3
+   */
+  public CacheBuilder tagInvalidation(boolean tagInvalidation) {
+    this.tagInvalidation = tagInvalidation;
+    return this;
+  }
+
+  /**
+   * @param statistics whether to count the hits, misses, puts and evictions of the cache, by adding a
+   *        {@link StatisticsCache}. It can also be set with the <code>statistics</code> cache property.
+   * @return this builder
+   * @since 3.5.3
+   */
+  public CacheBuilder statistics(boolean statistics) {
+    this.statistics = statistics;
+    return this;
+  }
+
+  /**
+   * Makes entries older than the given age be reloaded in the background on their next read, by wrapping the
+   * cache in a {@link RefreshAheadCache}. It can also be set with the <code>refreshAfter</code> cache property.
+   *
+   * @param refreshAfter the age in milliseconds, null for no refresh
+   * @return this builder
+   * @since 3.5.3
+   */
+  public CacheBuilder refreshAfter(Long refreshAfter) {
+    this.refreshAfter = refreshAfter;
+    return this;
+  }
+
+  /**
+   * @param expireAfter the age in milliseconds after which an entry that is refreshed ahead is a miss, null
+   *        for never. It can also be set with the <code>expireAfter</code> cache property.
+   * @return this builder
+   * @since 3.5.3
+   */
+  public CacheBuilder expireAfter(Long expireAfter) {
+    this.expireAfter = expireAfter;
+    return this;
+  }
+
   public CacheBuilder clearInterval(Long clearInterval) {
     this.clearInterval = clearInterval;
     return this;
@@ -93,6 +205,7 @@ public class CacheBuilder {
     setDefaultImplementations();
     Cache cache = newBaseCacheInstance(implementation, id);
     setCacheProperties(cache);
+    Cache base = cache;
     // issue #352, do not apply decorators to custom caches
     if (PerpetualCache.class.equals(cache.getClass())) {
       for (Class<? extends Cache> decorator : decorators) {
@@ -100,12 +213,68 @@ public class CacheBuilder {
         setCacheProperties(cache);
       }
       cache = setStandardDecorators(cache);
+    } else if (ConcurrentCache.class.equals(cache.getClass())) {
+      // it evicts by itself, an eviction decorator would only add a cache that is not thread safe
+      cache = setStandardDecorators(cache);
     } else if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
       cache = new LoggingCache(cache);
     }
+    CacheStatistics cacheStatistics = null;
+    if (statistics || (properties != null && Boolean.parseBoolean(properties.getProperty("statistics")))) {
+      StatisticsCache statisticsCache = new StatisticsCache(cache);
+      cacheStatistics = statisticsCache.getStatistics();
+      setEvictionListeners(cache, cacheStatistics);
+      cache = statisticsCache;
+    }
+    cache = setRefreshAhead(cache);
+    if (cacheStatistics != null && cache instanceof RefreshAheadCache) {
+      ((RefreshAheadCache) cache).setStatistics(cacheStatistics);
+    }
+    if (tagInvalidation || (properties != null && Boolean.parseBoolean(properties.getProperty("tagInvalidation")))) {
+      if (base instanceof DistributedCache) {
+        // the tag versions live in one JVM, other nodes would not see them change
+        throw new CacheException("Tag invalidation is not supported by the distributed cache " + id + ".");
+      }
+      // outermost, so that the transactional cache can pass the tags to it
+      cache = new TaggedCache(cache);
+      if (cacheStatistics != null) {
+        ((TaggedCache) cache).setStatistics(cacheStatistics);
+      }
+    }
     return cache;
   }
 
+  private void setEvictionListeners(Cache cache, CacheStatistics cacheStatistics) {
+    EvictionListener listener = key -> cacheStatistics.recordEviction();
+    Object current = cache;
+    while (current instanceof Cache) {
+      MetaObject metaCache = SystemMetaObject.forObject(current);
+      if (metaCache.hasSetter("evictionListener")) {
+        metaCache.setValue("evictionListener", listener);
+      }
+      current = metaCache.hasGetter("delegate") ? metaCache.getValue("delegate") : null;
+    }
+  }
+
+  private Cache setRefreshAhead(Cache cache) {
+    Long refresh = refreshAfter != null ? refreshAfter : longProperty("refreshAfter");
+    if (refresh == null) {
+      return cache;
+    }
+    RefreshAheadCache refreshAheadCache = new RefreshAheadCache(cache);
+    refreshAheadCache.setRefreshAfter(refresh);
+    Long expire = expireAfter != null ? expireAfter : longProperty("expireAfter");
+    if (expire != null) {
+      refreshAheadCache.setExpireAfter(expire);
+    }
+    return refreshAheadCache;
+  }
+
+  private Long longProperty(String name) {
+    String value = properties == null ? null : properties.getProperty(name);
+    return value == null ? null : Long.valueOf(value);
+  }
+
   private void setDefaultImplementations() {
     if (implementation == null) {
       implementation = PerpetualCache.class;
@@ -121,15 +290,32 @@ public class CacheBuilder {
       if (size != null && metaCache.hasSetter("size")) {
         metaCache.setValue("size", size);
       }
+      if (maximumWeight != null) {
+        if (!metaCache.hasSetter("maximumWeight")) {
+          cache = new WeightedCache(cache);
+          metaCache = SystemMetaObject.forObject(cache);
+        }
+        metaCache.setValue("maximumWeight", maximumWeight);
+      }
+      if (weigher != null && metaCache.hasSetter("weigher")) {
+        metaCache.setValue("weigher", weigher);
+      }
       if (clearInterval != null) {
         cache = new ScheduledCache(cache);
         ((ScheduledCache) cache).setClearInterval(clearInterval);
       }
       if (readWrite) {
-        cache = new SerializedCache(cache);
+        if (resolveCopyStrategy() == CopyStrategy.DEEP_COPY) {
+          cache = new DeepCopyCache(cache);
+        } else {
+          CacheSerializer serializer = resolveSerializer();
+          cache = serializer == null ? new SerializedCache(cache) : new SerializedCache(cache, serializer);
+        }
       }
       cache = new LoggingCache(cache);
-      cache = new SynchronizedCache(cache);
+      if (!cache.isThreadSafe()) {
+        cache = new SynchronizedCache(cache);
+      }
       if (blocking) {
         cache = new BlockingCache(cache);
       }
@@ -139,6 +325,25 @@ public class CacheBuilder {
     }
   }
 
+  private CopyStrategy resolveCopyStrategy() {
+    if (copyStrategy == null && properties != null && properties.getProperty("copyStrategy") != null) {
+      String value = properties.getProperty("copyStrategy");
+      try {
+        copyStrategy = CopyStrategy.valueOf(value);
+      } catch (IllegalArgumentException e) {
+        throw new CacheException("Unknown copy strategy '" + value + "' for cache " + id + ". Cause: " + e, e);
+      }
+    }
+    return copyStrategy;
+  }
+
+  private CacheSerializer resolveSerializer() {
+    if (serializer == null && properties != null && properties.getProperty("serializer") != null) {
+      serializer = (CacheSerializer) newPropertyInstance("serializer", properties.getProperty("serializer"), CacheSerializer.class);
+    }
+    return serializer;
+  }
+
   private void setCacheProperties(Cache cache) {
     if (properties != null) {
       MetaObject metaCache = SystemMetaObject.forObject(cache);
@@ -170,6 +375,9 @@ public class CacheBuilder {
           } else if (double.class == type
               || Double.class == type) {
             metaCache.setValue(name, Double.valueOf(value));
+          } else if (type.isInterface()) {
+            // e.g. the weigher of a WeightedCache
+            metaCache.setValue(name, newPropertyInstance(name, value, type));
           } else {
             throw new CacheException("Unsupported property type for cache: '" + name + "' of type " + type);
           }
@@ -186,6 +394,23 @@ public class CacheBuilder {
     }
   }
 
+  private Object newPropertyInstance(String name, String className, Class<?> type) {
+    Class<?> implementation;
+    try {
+      implementation = Resources.classForName(className);
+    } catch (ClassNotFoundException e) {
+      throw new CacheException("Could not find class " + className + " for cache property '" + name + "'. Cause: " + e, e);
+    }
+    if (!type.isAssignableFrom(implementation)) {
+      throw new CacheException("Class " + className + " for cache property '" + name + "' is not a " + type.getName());
+    }
+    try {
+      return implementation.getDeclaredConstructor().newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Could not instantiate " + className + " for cache property '" + name + "'. Cause: " + e, e);
+    }
+  }
+
   private Cache newBaseCacheInstance(Class<? extends Cache> cacheClass, String id) {
     Constructor<? extends Cache> cacheConstructor = getBaseCacheConstructor(cacheClass);
     try {
@@ -1,12 +1,15 @@
 package org.apache.ibatis.mapping;
 
+import org.apache.ibatis.builder.StaticSqlSource;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheTags;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.scripting.LanguageDriver;
+import org.apache.ibatis.scripting.defaults.RawSqlSource;
 import org.apache.ibatis.session.Configuration;
 
 import java.util.ArrayList;
@@ -41,6 +44,9 @@ public final class MappedStatement {
     private Log statementLog;
     private LanguageDriver lang;
     private String[] resultSets;
+    private String[] cacheTags;
+    private boolean staticSql;
+    private String[] inferredCacheTags;
 
     MappedStatement() {
         // constructor disabled
@@ -159,6 +165,16 @@ public final class MappedStatement {
             return this;
         }
 
+        /**
+         * @param cacheTags comma separated tags (usually table names) the statement reads, or writes for an
+         *        insert, update or delete, see {@link org.apache.ibatis.cache.decorators.TaggedCache}
+         * @since 3.5.3
+         */
+        public Builder cacheTags(String cacheTags) {
+            mappedStatement.cacheTags = CacheTags.parse(cacheTags);
+            return this;
+        }
+
         /**
          * @deprecated Use {@link #resultSets}
          */
@@ -174,6 +190,14 @@ public final class MappedStatement {
             assert mappedStatement.sqlSource != null;
             assert mappedStatement.lang != null;
             mappedStatement.resultMaps = Collections.unmodifiableList(mappedStatement.resultMaps);
+            SqlSource sqlSource = mappedStatement.sqlSource;
+            mappedStatement.staticSql = sqlSource instanceof RawSqlSource || sqlSource instanceof StaticSqlSource;
+            if (mappedStatement.staticSql && mappedStatement.cacheTags == null
+                    && mappedStatement.statementType != StatementType.CALLABLE
+                    && mappedStatement.configuration.isInferCacheTags()) {
+                // the SQL is the same for every parameter, so are its tables
+                mappedStatement.inferredCacheTags = CacheTags.fromSql(sqlSource.getBoundSql(null).getSql());
+            }
             return mappedStatement;
         }
     }
@@ -270,6 +294,31 @@ public final class MappedStatement {
         return resultSets;
     }
 
+    /**
+     * @return the declared cache tags, null if there are none
+     * @since 3.5.3
+     */
+    public String[] getCacheTags() {
+        return cacheTags;
+    }
+
+    /**
+     * @return whether the SQL of the statement is the same for every parameter
+     * @since 3.5.3
+     */
+    public boolean isStaticSql() {
+        return staticSql;
+    }
+
+    /**
+     * @return the tables of the SQL of a static statement without declared cache tags, inferred when the statement
+     *     is built if {@link Configuration#isInferCacheTags()} is set, or null (always for a callable statement)
+     * @since 3.5.3
+     */
+    public String[] getInferredCacheTags() {
+        return inferredCacheTags;
+    }
+
     /**
      * @deprecated Use {@link #getResultSets()}
      */
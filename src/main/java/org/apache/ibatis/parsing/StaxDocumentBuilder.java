@@ -0,0 +1,159 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.parsing;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+/**
+ * Builds the DOM of a document with a StAX pull parser instead of a validating DOM parser.
+ * <p>
+ * The document is the one {@link XPathParser} builds, so {@link XNode} and the DOM based include and script
+ * processing work unchanged: comments are dropped, whitespace is kept, entity references are replaced, adjacent
+ * text is a single node and CDATA sections stay CDATA sections. The DTD is read for its entities, through the
+ * entity resolver, but the document is not validated against it.
+ * <p>
+ * Instances are thread safe, the factories are only used to create readers and documents.
+ *
+ * @since 3.5.3
+ */
+public class StaxDocumentBuilder {
+
+  private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+  // the JDK parser reports CDATA sections as text unless asked, Woodstox reports them by default
+  private static final String REPORT_CDATA_EVENT = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+  private final XMLInputFactory inputFactory;
+
+  /**
+   * @param entityResolver resolves the DTD, null to let the parser read it from its system id
+   */
+  public StaxDocumentBuilder(EntityResolver entityResolver) {
+    inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+    inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    inputFactory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+    inputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+    if (inputFactory.isPropertySupported(REPORT_CDATA_EVENT)) {
+      inputFactory.setProperty(REPORT_CDATA_EVENT, true);
+    }
+    if (entityResolver != null) {
+      inputFactory.setXMLResolver(resolver(entityResolver));
+    }
+  }
+
+  public Document parse(InputStream inputStream) {
+    try {
+      return build(inputFactory.createXMLStreamReader(inputStream));
+    } catch (XMLStreamException e) {
+      throw new BuilderException("Error creating document instance.  Cause: " + e, e);
+    }
+  }
+
+  public Document parse(Reader reader) {
+    try {
+      return build(inputFactory.createXMLStreamReader(reader));
+    } catch (XMLStreamException e) {
+      throw new BuilderException("Error creating document instance.  Cause: " + e, e);
+    }
+  }
+
+  private Document build(XMLStreamReader reader) throws XMLStreamException {
+    Document document;
+    try {
+      document = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder().newDocument();
+    } catch (Exception e) {
+      throw new BuilderException("Error creating document instance.  Cause: " + e, e);
+    }
+    Deque<Node> parents = new ArrayDeque<>();
+    parents.push(document);
+    try {
+      while (reader.hasNext()) {
+        switch (reader.next()) {
+          case XMLStreamConstants.START_ELEMENT:
+            Element element = document.createElement(reader.getLocalName());
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+              element.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            }
+            parents.peek().appendChild(element);
+            parents.push(element);
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            parents.pop();
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.SPACE:
+            appendText(document, parents.peek(), reader.getText());
+            break;
+          case XMLStreamConstants.CDATA:
+            if (parents.peek() != document) {
+              parents.peek().appendChild(document.createCDATASection(reader.getText()));
+            }
+            break;
+          default:
+            // comments, processing instructions and the DTD are not kept
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return document;
+  }
+
+  private static void appendText(Document document, Node parent, String text) {
+    if (parent == document) {
+      // whitespace around the root element
+      return;
+    }
+    Node last = parent.getLastChild();
+    if (last != null && last.getNodeType() == Node.TEXT_NODE) {
+      // the parser may split text, the script builder needs it whole to find ${} tokens
+      ((Text) last).appendData(text);
+    } else {
+      parent.appendChild(document.createTextNode(text));
+    }
+  }
+
+  private static XMLResolver resolver(EntityResolver entityResolver) {
+    return (publicId, systemId, baseUri, namespace) -> {
+      try {
+        InputSource source = entityResolver.resolveEntity(publicId, systemId);
+        return source == null ? null : source.getByteStream();
+      } catch (Exception e) {
+        throw new XMLStreamException("Could not resolve entity " + systemId, e);
+      }
+    };
+  }
+
+}
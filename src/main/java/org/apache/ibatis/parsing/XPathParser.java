@@ -199,6 +199,13 @@ public class XPathParser {
 
   public List<XNode> evalNodes(Object root, String expression) {
     List<XNode> xnodes = new ArrayList<>();
+    List<Node> elements = selectElements(root, expression, false);
+    if (elements != null) {
+      for (Node element : elements) {
+        xnodes.add(new XNode(this, element, variables));
+      }
+      return xnodes;
+    }
     NodeList nodes = (NodeList) evaluate(expression, root, XPathConstants.NODESET);
     for (int i = 0; i < nodes.getLength(); i++) {
       xnodes.add(new XNode(this, nodes.item(i), variables));
@@ -211,15 +218,101 @@ public class XPathParser {
   }
 
   public XNode evalNode(Object root, String expression) {
-    Node node = (Node) evaluate(expression, root, XPathConstants.NODE);
+    List<Node> elements = selectElements(root, expression, true);
+    Node node;
+    if (elements != null) {
+      node = elements.isEmpty() ? null : elements.get(0);
+    } else {
+      node = (Node) evaluate(expression, root, XPathConstants.NODE);
+    }
     if (node == null) {
       return null;
     }
     return new XNode(this, node, variables);
   }
 
+  /**
+   * Walks the child elements for the paths made of element names only, such as <code>/mapper/resultMap</code>
+   * or <code>select|insert|update|delete</code>, which are most of the lookups and do not need XPath.
+   *
+   * @return the elements in document order, null if the expression is not such a path
+   */
+  private static List<Node> selectElements(Object root, String expression, boolean first) {
+    if (!(root instanceof Node)) {
+      return null;
+    }
+    boolean absolute = expression.startsWith("/");
+    String[] steps = (absolute ? expression.substring(1) : expression).split("/", -1);
+    String[] alternatives = null;
+    if (expression.indexOf('|') >= 0) {
+      // a union of children only
+      if (absolute || steps.length > 1) {
+        return null;
+      }
+      alternatives = expression.split("\\|", -1);
+      steps = alternatives;
+    }
+    for (String step : steps) {
+      if (!isElementName(step)) {
+        return null;
+      }
+    }
+    Node context = (Node) root;
+    List<Node> current = new ArrayList<>(1);
+    if (absolute) {
+      Document owner = context.getNodeType() == Node.DOCUMENT_NODE ? (Document) context : context.getOwnerDocument();
+      current.add(owner);
+    } else {
+      current.add(context);
+    }
+    if (alternatives != null) {
+      return childElements(current, alternatives, first);
+    }
+    for (int i = 0; i < steps.length && !current.isEmpty(); i++) {
+      current = childElements(current, new String[] { steps[i] }, first && i == steps.length - 1);
+    }
+    return current;
+  }
+
+  private static List<Node> childElements(List<Node> parents, String[] names, boolean first) {
+    List<Node> result = new ArrayList<>();
+    for (Node parent : parents) {
+      for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child.getNodeType() != Node.ELEMENT_NODE) {
+          continue;
+        }
+        for (String name : names) {
+          if (name.equals(child.getNodeName())) {
+            result.add(child);
+            if (first) {
+              return result;
+            }
+            break;
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static boolean isElementName(String step) {
+    if (step.isEmpty() || !Character.isLetter(step.charAt(0)) && step.charAt(0) != '_') {
+      return false;
+    }
+    for (int i = 1; i < step.length(); i++) {
+      char c = step.charAt(i);
+      if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private Object evaluate(String expression, Object root, QName returnType) {
     try {
+      if (xpath == null) {
+        xpath = XPathFactory.newInstance().newXPath();
+      }
       return xpath.evaluate(expression, root, returnType);
     } catch (Exception e) {
       throw new BuilderException("Error evaluating XPath.  Cause: " + e, e);
@@ -265,8 +358,6 @@ public class XPathParser {
     this.validation = validation;
     this.entityResolver = entityResolver;
     this.variables = variables;
-    XPathFactory factory = XPathFactory.newInstance();
-    this.xpath = factory.newXPath();
   }
 
 }
@@ -0,0 +1,537 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ognl.OgnlException;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+
+/**
+ * An OGNL expression compiled to direct property accessors.
+ * <p>
+ * Only a common subset of OGNL is compiled: property paths, the <code>size()</code> and <code>isEmpty()</code>
+ * methods at the end of a path, <code>null</code>, <code>true</code>, <code>false</code>, string and decimal number
+ * literals, the comparison operators, <code>and</code>, <code>or</code>, <code>not</code> and parentheses. They
+ * return the values OGNL would return. Any other expression is evaluated by {@link OgnlCache}, as is a compiled
+ * expression that meets a value it does not handle, e.g. a list on the path or a string compared to a number.
+ * An exception thrown by a getter is reported as OGNL reports it, without evaluating the expression again.
+ *
+ * @since 3.5.3
+ * @see org.apache.ibatis.session.Configuration#isCompileExpressions()
+ */
+abstract class CompiledExpression {
+
+  private static final Map<String, CompiledExpression> expressionCache = new ConcurrentHashMap<>();
+  // stands for the expressions that are evaluated by OGNL
+  private static final CompiledExpression OGNL = new Literal(null);
+  private static final RuntimeException UNSUPPORTED = new UnsupportedExpressionException();
+  private static final DynamicContext.ContextAccessor CONTEXT_ACCESSOR = new DynamicContext.ContextAccessor();
+  // the properties OGNL reads from a map as the map's own
+  private static final Set<String> MAP_PROPERTIES = new HashSet<>(Arrays.asList("size", "isEmpty", "keys", "keySet", "values"));
+  private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+      "and", "or", "not", "eq", "neq", "lt", "lte", "gt", "gte", "in", "instanceof", "shl", "shr", "ushr", "band", "bor", "xor", "new"));
+
+  static Object getValue(String expression, Object root, ReflectorFactory reflectorFactory) {
+    CompiledExpression compiled = expressionCache.computeIfAbsent(expression, CompiledExpression::compile);
+    if (compiled != OGNL) {
+      try {
+        return compiled.evaluate(root, reflectorFactory);
+      } catch (UnsupportedExpressionException e) {
+        // a value this expression does not handle
+      } catch (GetterException e) {
+        OgnlException cause = new OgnlException(e.property, e.getCause());
+        throw new BuilderException("Error evaluating expression '" + expression + "'. Cause: " + cause, cause);
+      }
+    }
+    return OgnlCache.getValue(expression, root);
+  }
+
+  abstract Object evaluate(Object root, ReflectorFactory reflectorFactory);
+
+  private static CompiledExpression compile(String expression) {
+    try {
+      Parser parser = new Parser(expression);
+      CompiledExpression compiled = parser.parseOr();
+      if (!parser.atEnd()) {
+        return OGNL;
+      }
+      return compiled;
+    } catch (UnsupportedExpressionException e) {
+      return OGNL;
+    }
+  }
+
+  /**
+   * Mirrors <code>OgnlOps.booleanValue</code>, which differs from {@link ExpressionEvaluator#evaluateBoolean}.
+   */
+  private static boolean booleanValue(Object value) {
+    if (value == null) {
+      return false;
+    }
+    Class<?> type = value.getClass();
+    if (type == Boolean.class) {
+      return (Boolean) value;
+    }
+    if (type == String.class) {
+      return Boolean.parseBoolean((String) value);
+    }
+    if (type == Character.class) {
+      return (Character) value != 0;
+    }
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue() != 0;
+    }
+    return true;
+  }
+
+  private static boolean isNumber(Object value) {
+    Class<?> type = value.getClass();
+    return type == Integer.class || type == Long.class || type == Short.class || type == Byte.class
+        || type == Double.class || type == Float.class;
+  }
+
+  private static boolean isReal(Object value) {
+    return value instanceof Double || value instanceof Float;
+  }
+
+  /**
+   * Mirrors <code>OgnlOps.equal</code> for the values it compares without conversion.
+   */
+  private static boolean equal(Object left, Object right) {
+    if (left == null || right == null) {
+      return left == right;
+    }
+    if (left.getClass().isArray()) {
+      throw UNSUPPORTED;
+    }
+    if (left.equals(right)) {
+      return true;
+    }
+    if (isNumber(left) && isNumber(right)) {
+      return ((Number) left).doubleValue() == ((Number) right).doubleValue();
+    }
+    if (left.getClass() == right.getClass() && (left instanceof String || left instanceof Boolean)) {
+      return false;
+    }
+    throw UNSUPPORTED;
+  }
+
+  /**
+   * Mirrors <code>OgnlOps.compareWithConversion</code> for the values it compares without conversion.
+   */
+  private static int compare(Object left, Object right) {
+    if (left == null || right == null) {
+      throw UNSUPPORTED;
+    }
+    if (isNumber(left) && isNumber(right)) {
+      if (isReal(left) || isReal(right)) {
+        double l = ((Number) left).doubleValue();
+        double r = ((Number) right).doubleValue();
+        return l == r ? 0 : l < r ? -1 : 1;
+      }
+      return Long.compare(((Number) left).longValue(), ((Number) right).longValue());
+    }
+    if (left instanceof String && right instanceof String) {
+      return ((String) left).compareTo((String) right);
+    }
+    throw UNSUPPORTED;
+  }
+
+  private static Object getProperty(Object target, String name, ReflectorFactory reflectorFactory) {
+    if (target instanceof DynamicContext.ContextMap) {
+      return CONTEXT_ACCESSOR.getProperty(null, target, name);
+    }
+    if (target instanceof Map) {
+      if (MAP_PROPERTIES.contains(name)) {
+        throw UNSUPPORTED;
+      }
+      return ((Map<?, ?>) target).get(name);
+    }
+    if (target == null || target instanceof Collection || target instanceof Iterator || target instanceof Enumeration
+        || target.getClass().isArray()) {
+      throw UNSUPPORTED;
+    }
+    Reflector reflector = reflectorFactory.findForClass(target.getClass());
+    if (!reflector.hasGetter(name)) {
+      throw UNSUPPORTED;
+    }
+    try {
+      return reflector.getGetInvoker(name).invoke(target, null);
+    } catch (InvocationTargetException e) {
+      throw new GetterException(name, e.getTargetException());
+    } catch (ReflectiveOperationException e) {
+      throw UNSUPPORTED;
+    }
+  }
+
+  private static final class Literal extends CompiledExpression {
+    private final Object value;
+
+    Literal(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    Object evaluate(Object root, ReflectorFactory reflectorFactory) {
+      return value;
+    }
+  }
+
+  private static final class Path extends CompiledExpression {
+    private final String[] names;
+    // size or isEmpty, called on the value of the path
+    private final String method;
+
+    Path(List<String> names, String method) {
+      this.names = names.toArray(new String[0]);
+      this.method = method;
+    }
+
+    @Override
+    Object evaluate(Object root, ReflectorFactory reflectorFactory) {
+      Object value = root;
+      for (String name : names) {
+        value = getProperty(value, name, reflectorFactory);
+      }
+      if (method == null) {
+        return value;
+      }
+      boolean size = "size".equals(method);
+      if (value instanceof Collection) {
+        return size ? (Object) ((Collection<?>) value).size() : (Object) ((Collection<?>) value).isEmpty();
+      }
+      if (value instanceof Map) {
+        return size ? (Object) ((Map<?, ?>) value).size() : (Object) ((Map<?, ?>) value).isEmpty();
+      }
+      if (value instanceof String && !size) {
+        return ((String) value).isEmpty();
+      }
+      throw UNSUPPORTED;
+    }
+  }
+
+  private static final class Not extends CompiledExpression {
+    private final CompiledExpression operand;
+
+    Not(CompiledExpression operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    Object evaluate(Object root, ReflectorFactory reflectorFactory) {
+      return !booleanValue(operand.evaluate(root, reflectorFactory));
+    }
+  }
+
+  /**
+   * Like in OGNL, <code>and</code> and <code>or</code> return the value of the last operand they evaluate.
+   */
+  private static final class Junction extends CompiledExpression {
+    private final boolean and;
+    private final CompiledExpression left;
+    private final CompiledExpression right;
+
+    Junction(boolean and, CompiledExpression left, CompiledExpression right) {
+      this.and = and;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Object evaluate(Object root, ReflectorFactory reflectorFactory) {
+      Object value = left.evaluate(root, reflectorFactory);
+      if (booleanValue(value) != and) {
+        return value;
+      }
+      return right.evaluate(root, reflectorFactory);
+    }
+  }
+
+  private static final class Comparison extends CompiledExpression {
+    private final String operator;
+    private final CompiledExpression left;
+    private final CompiledExpression right;
+
+    Comparison(String operator, CompiledExpression left, CompiledExpression right) {
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Object evaluate(Object root, ReflectorFactory reflectorFactory) {
+      Object l = left.evaluate(root, reflectorFactory);
+      Object r = right.evaluate(root, reflectorFactory);
+      switch (operator) {
+        case "==":
+          return equal(l, r);
+        case "!=":
+          return !equal(l, r);
+        case "<":
+          return compare(l, r) < 0;
+        case "<=":
+          return compare(l, r) <= 0;
+        case ">":
+          return compare(l, r) > 0;
+        default:
+          return compare(l, r) >= 0;
+      }
+    }
+  }
+
+  /**
+   * A recursive descent parser of the compiled subset, with the precedence of OGNL. It throws
+   * {@link #UNSUPPORTED} on anything else.
+   */
+  private static final class Parser {
+    private final String expression;
+    private int position;
+    // the current operator or identifier, null for a literal and at the end
+    private String token;
+    private CompiledExpression literal;
+
+    Parser(String expression) {
+      this.expression = expression;
+      next();
+    }
+
+    boolean atEnd() {
+      return token == null && literal == null;
+    }
+
+    CompiledExpression parseOr() {
+      CompiledExpression expression = parseAnd();
+      while ("or".equals(token) || "||".equals(token)) {
+        next();
+        expression = new Junction(false, expression, parseAnd());
+      }
+      return expression;
+    }
+
+    private CompiledExpression parseAnd() {
+      CompiledExpression expression = parseEquality();
+      while ("and".equals(token) || "&&".equals(token)) {
+        next();
+        expression = new Junction(true, expression, parseEquality());
+      }
+      return expression;
+    }
+
+    private CompiledExpression parseEquality() {
+      CompiledExpression expression = parseRelational();
+      String operator;
+      while ((operator = operator("==", "eq", "!=", "neq")) != null) {
+        next();
+        expression = new Comparison(operator, expression, parseRelational());
+      }
+      return expression;
+    }
+
+    private CompiledExpression parseRelational() {
+      CompiledExpression expression = parseUnary();
+      String operator;
+      while ((operator = operator("<", "lt", "<=", "lte", ">", "gt", ">=", "gte")) != null) {
+        next();
+        expression = new Comparison(operator, expression, parseUnary());
+      }
+      return expression;
+    }
+
+    /**
+     * @param alternatives pairs of an operator symbol and its word form
+     * @return the symbol of the current operator if it is one of them
+     */
+    private String operator(String... alternatives) {
+      for (int i = 0; i < alternatives.length; i += 2) {
+        if (alternatives[i].equals(token) || alternatives[i + 1].equals(token)) {
+          return alternatives[i];
+        }
+      }
+      return null;
+    }
+
+    private CompiledExpression parseUnary() {
+      if ("!".equals(token) || "not".equals(token)) {
+        next();
+        return new Not(parseUnary());
+      }
+      if (literal != null) {
+        CompiledExpression value = literal;
+        next();
+        return value;
+      }
+      if ("(".equals(token)) {
+        next();
+        CompiledExpression expression = parseOr();
+        expect(")");
+        return expression;
+      }
+      return parsePath();
+    }
+
+    private CompiledExpression parsePath() {
+      List<String> names = new ArrayList<>();
+      names.add(identifier());
+      while (".".equals(token)) {
+        next();
+        String name = identifier();
+        if ("(".equals(token)) {
+          if (!"size".equals(name) && !"isEmpty".equals(name)) {
+            throw UNSUPPORTED;
+          }
+          next();
+          expect(")");
+          return new Path(names, name);
+        }
+        names.add(name);
+      }
+      return new Path(names, null);
+    }
+
+    private String identifier() {
+      String name = token;
+      if (name == null || !Character.isJavaIdentifierStart(name.charAt(0)) || KEYWORDS.contains(name)) {
+        throw UNSUPPORTED;
+      }
+      next();
+      return name;
+    }
+
+    private void expect(String symbol) {
+      if (!symbol.equals(token)) {
+        throw UNSUPPORTED;
+      }
+      next();
+    }
+
+    private void next() {
+      token = null;
+      literal = null;
+      int length = expression.length();
+      while (position < length && Character.isWhitespace(expression.charAt(position))) {
+        position++;
+      }
+      if (position == length) {
+        return;
+      }
+      int start = position;
+      char c = expression.charAt(position);
+      if (Character.isJavaIdentifierStart(c)) {
+        do {
+          position++;
+        } while (position < length && Character.isJavaIdentifierPart(expression.charAt(position)));
+        token = expression.substring(start, position);
+        if ("null".equals(token)) {
+          literal = new Literal(null);
+        } else if ("true".equals(token) || "false".equals(token)) {
+          literal = new Literal(Boolean.valueOf(token));
+        }
+        if (literal != null) {
+          token = null;
+        }
+      } else if (c >= '0' && c <= '9') {
+        literal = new Literal(number(start));
+      } else if (c == '\'' || c == '"') {
+        int end = expression.indexOf(c, start + 1);
+        // escapes, and single quoted characters, which are not strings in OGNL
+        if (end < 0 || expression.lastIndexOf('\\', end) > start || (c == '\'' && end == start + 2)) {
+          throw UNSUPPORTED;
+        }
+        position = end + 1;
+        literal = new Literal(expression.substring(start + 1, end));
+      } else {
+        String pair = position + 1 < length ? expression.substring(position, position + 2) : null;
+        if ("==".equals(pair) || "!=".equals(pair) || "<=".equals(pair) || ">=".equals(pair) || "&&".equals(pair)
+            || "||".equals(pair)) {
+          token = pair;
+        } else if ("!<>().".indexOf(c) >= 0) {
+          token = String.valueOf(c);
+        } else {
+          throw UNSUPPORTED;
+        }
+        position += token.length();
+      }
+    }
+
+    /**
+     * Reads a decimal literal: an <code>Integer</code>, or a <code>Double</code> if it has a fraction. Octal
+     * literals, exponents and type suffixes are not compiled.
+     */
+    private Object number(int start) {
+      int length = expression.length();
+      while (position < length && Character.isDigit(expression.charAt(position))) {
+        position++;
+      }
+      boolean real = position + 1 < length && expression.charAt(position) == '.'
+          && Character.isDigit(expression.charAt(position + 1));
+      if (real) {
+        position++;
+        while (position < length && Character.isDigit(expression.charAt(position))) {
+          position++;
+        }
+      }
+      if (position < length && Character.isJavaIdentifierPart(expression.charAt(position))
+          || expression.charAt(start) == '0' && position > start + 1 && !real) {
+        throw UNSUPPORTED;
+      }
+      String text = expression.substring(start, position);
+      if (real) {
+        return Double.valueOf(text);
+      }
+      try {
+        return Integer.valueOf(text);
+      } catch (NumberFormatException e) {
+        throw UNSUPPORTED;
+      }
+    }
+  }
+
+  /**
+   * Carries the exception a getter threw up to {@link #getValue(String, Object, ReflectorFactory)}.
+   */
+  private static final class GetterException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final String property;
+
+    GetterException(String property, Throwable cause) {
+      super(cause);
+      this.property = property;
+    }
+  }
+
+  private static final class UnsupportedExpressionException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedExpressionException() {
+      super(null, null, false, false);
+    }
+  }
+
+}
@@ -15,7 +15,10 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.StringJoiner;
 
@@ -23,6 +26,7 @@ import ognl.OgnlContext;
 import ognl.OgnlRuntime;
 import ognl.PropertyAccessor;
 
+import org.apache.ibatis.builder.ParameterExpression;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 
@@ -40,9 +44,19 @@ public class DynamicContext {
 
   private final ContextMap bindings;
   private final StringJoiner sqlBuilder = new StringJoiner(" ");
+  private final List<ParameterExpression> parameterExpressions;
   private int uniqueNumber = 0;
 
   public DynamicContext(Configuration configuration, Object parameterObject) {
+    this(configuration, parameterObject, false);
+  }
+
+  /**
+   * @param compiled whether the <code>#{}</code> placeholders are parsed as the SQL is appended, see
+   *        {@link #getParameterExpressions()}
+   */
+  DynamicContext(Configuration configuration, Object parameterObject, boolean compiled) {
+    parameterExpressions = compiled ? new ArrayList<>() : null;
     if (parameterObject != null && !(parameterObject instanceof Map)) {
       MetaObject metaObject = configuration.newMetaObject(parameterObject);
       boolean existsTypeHandler = configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass());
@@ -63,13 +77,47 @@ public class DynamicContext {
   }
 
   public void appendSql(String sql) {
-    sqlBuilder.add(sql);
+    if (parameterExpressions != null && sql != null && sql.contains("#{")) {
+      appendSql(SqlTemplate.parse(sql));
+    } else {
+      sqlBuilder.add(sql);
+    }
+  }
+
+  /**
+   * Appends a piece of SQL whose placeholders have already been parsed. The contexts that wrap another one
+   * override it along with {@link #appendSql(String)} and {@link #isCompiled()}.
+   */
+  void appendSql(SqlTemplate template) {
+    if (parameterExpressions == null) {
+      appendSql(template.getText());
+    } else {
+      sqlBuilder.add(template.getSql());
+      Collections.addAll(parameterExpressions, template.getParameters());
+    }
+  }
+
+  /**
+   * @return whether the SQL nodes may append {@link SqlTemplate}s to this context
+   */
+  boolean isCompiled() {
+    return parameterExpressions != null;
   }
 
+  /**
+   * Returns the SQL, in which the placeholders have been replaced by <code>?</code> if this context is compiled.
+   */
   public String getSql() {
     return sqlBuilder.toString().trim();
   }
 
+  /**
+   * @return the placeholders of a compiled context, in the order of their <code>?</code> in the SQL
+   */
+  List<ParameterExpression> getParameterExpressions() {
+    return parameterExpressions;
+  }
+
   public int getUniqueNumber() {
     return uniqueNumber++;
   }
@@ -15,6 +15,7 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import org.apache.ibatis.builder.SqlShapeCache;
 import org.apache.ibatis.builder.SqlSourceBuilder;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.SqlSource;
@@ -27,19 +28,29 @@ public class DynamicSqlSource implements SqlSource {
 
   private final Configuration configuration;
   private final SqlNode rootSqlNode;
+  private final SqlShapeCache shapeCache;
 
   public DynamicSqlSource(Configuration configuration, SqlNode rootSqlNode) {
     this.configuration = configuration;
     this.rootSqlNode = rootSqlNode;
+    int shapeCacheSize = configuration.getDynamicSqlShapeCacheSize();
+    this.shapeCache = shapeCacheSize > 0 ? new SqlShapeCache(shapeCacheSize) : null;
   }
 
   @Override
   public BoundSql getBoundSql(Object parameterObject) {
-    DynamicContext context = new DynamicContext(configuration, parameterObject);
+    boolean compiled = configuration.isCompileDynamicSql();
+    DynamicContext context = new DynamicContext(configuration, parameterObject, compiled);
     rootSqlNode.apply(context);
     SqlSourceBuilder sqlSourceParser = new SqlSourceBuilder(configuration);
     Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
-    SqlSource sqlSource = sqlSourceParser.parse(context.getSql(), parameterType, context.getBindings());
+    SqlSource sqlSource;
+    if (compiled) {
+      // the placeholders were parsed by the nodes
+      sqlSource = sqlSourceParser.build(context.getSql(), context.getParameterExpressions(), parameterType, context.getBindings(), shapeCache);
+    } else {
+      sqlSource = sqlSourceParser.parse(context.getSql(), parameterType, context.getBindings(), shapeCache);
+    }
     BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
     context.getBindings().forEach(boundSql::setAdditionalParameter);
     return boundSql;
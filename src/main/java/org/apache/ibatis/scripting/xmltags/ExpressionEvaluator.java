@@ -22,14 +22,32 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.session.Configuration;
 
 /**
  * @author Clinton Begin
  */
 public class ExpressionEvaluator {
 
+  // the factory of the reflectors the compiled expressions use, null if the expressions are evaluated by OGNL only
+  private final ReflectorFactory reflectorFactory;
+
+  public ExpressionEvaluator() {
+    this.reflectorFactory = null;
+  }
+
+  /**
+   * Creates an evaluator that compiles the expressions it can if {@link Configuration#isCompileExpressions()} is set.
+   *
+   * @since 3.5.3
+   */
+  public ExpressionEvaluator(Configuration configuration) {
+    this.reflectorFactory = configuration.isCompileExpressions() ? configuration.getReflectorFactory() : null;
+  }
+
   public boolean evaluateBoolean(String expression, Object parameterObject) {
-    Object value = OgnlCache.getValue(expression, parameterObject);
+    Object value = getValue(expression, parameterObject);
     if (value instanceof Boolean) {
       return (Boolean) value;
     }
@@ -40,7 +58,7 @@ public class ExpressionEvaluator {
   }
 
   public Iterable<?> evaluateIterable(String expression, Object parameterObject) {
-    Object value = OgnlCache.getValue(expression, parameterObject);
+    Object value = getValue(expression, parameterObject);
     if (value == null) {
       throw new BuilderException("The expression '" + expression + "' evaluated to a null value.");
     }
@@ -65,4 +83,11 @@ public class ExpressionEvaluator {
     throw new BuilderException("Error evaluating expression '" + expression + "'.  Return value (" + value + ") was not iterable.");
   }
 
+  private Object getValue(String expression, Object parameterObject) {
+    if (reflectorFactory == null) {
+      return OgnlCache.getValue(expression, parameterObject);
+    }
+    return CompiledExpression.getValue(expression, parameterObject, reflectorFactory);
+  }
+
 }
@@ -0,0 +1,49 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+/**
+ * How a <code>foreach</code> binds the elements of its collection, set with its <code>binding</code> attribute.
+ * <p>
+ * With {@link #EACH} the text of the statement depends on the size of the collection, so a large <code>IN</code>
+ * list is a new statement for the driver and the database (and for the <code>REUSE</code> executor) every time its
+ * size changes. The other modes keep the number of distinct statements small.
+ *
+ * @since 3.5.3
+ */
+public enum ForEachBinding {
+
+  /**
+   * The contents are applied once for each element. This is the default.
+   */
+  EACH,
+
+  /**
+   * The contents are applied once for each element, then again for the last element until the count is a power of
+   * two. Repeating the last element must not change the result, as in an <code>IN</code> list. Note that the padded
+   * list can exceed a limit of the database on the number of elements or parameters.
+   */
+  PADDED,
+
+  /**
+   * The contents are ignored and the whole collection is bound as a single JDBC array parameter, created with
+   * <code>Connection.createArrayOf</code> by the {@link org.apache.ibatis.type.ArrayTypeHandler}. Both the driver
+   * and the SQL must support arrays, e.g. <code>id = ANY(#{...})</code> on PostgreSQL or
+   * <code>id IN (UNNEST(#{...}))</code> on HSQLDB, written with <code>open</code> and <code>close</code>.
+   */
+  ARRAY
+
+}
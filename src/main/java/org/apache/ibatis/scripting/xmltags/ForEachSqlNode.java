@@ -15,10 +15,17 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import java.lang.reflect.Array;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.ibatis.builder.ParameterExpression;
 import org.apache.ibatis.parsing.GenericTokenParser;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.ArrayTypeHandler;
 
 /**
  * @author Clinton Begin
@@ -26,6 +33,9 @@ import org.apache.ibatis.session.Configuration;
 public class ForEachSqlNode implements SqlNode {
   public static final String ITEM_PREFIX = "__frch_";
 
+  private static final String ARRAY_ITEM = "array";
+  private static final char MARKER = '\uffff';
+
   private final ExpressionEvaluator evaluator;
   private final String collectionExpression;
   private final SqlNode contents;
@@ -35,9 +45,19 @@ public class ForEachSqlNode implements SqlNode {
   private final String item;
   private final String index;
   private final Configuration configuration;
+  private final ForEachBinding binding;
+  // the texts of contents made of static text only, rewritten for each element without wrapping the context
+  private final ItemText[] staticContents;
 
   public ForEachSqlNode(Configuration configuration, SqlNode contents, String collectionExpression, String index, String item, String open, String close, String separator) {
-    this.evaluator = new ExpressionEvaluator();
+    this(configuration, contents, collectionExpression, index, item, open, close, separator, ForEachBinding.EACH);
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public ForEachSqlNode(Configuration configuration, SqlNode contents, String collectionExpression, String index, String item, String open, String close, String separator, ForEachBinding binding) {
+    this.evaluator = new ExpressionEvaluator(configuration);
     this.collectionExpression = collectionExpression;
     this.contents = contents;
     this.open = open;
@@ -46,6 +66,8 @@ public class ForEachSqlNode implements SqlNode {
     this.index = index;
     this.item = item;
     this.configuration = configuration;
+    this.binding = binding;
+    this.staticContents = staticContents(contents);
   }
 
   @Override
@@ -55,8 +77,22 @@ public class ForEachSqlNode implements SqlNode {
     if (!iterable.iterator().hasNext()) {
       return true;
     }
-    boolean first = true;
     applyOpen(context);
+    if (binding == ForEachBinding.ARRAY) {
+      applyArray(context, iterable);
+    } else if (staticContents != null) {
+      applyStaticContents(context, binding == ForEachBinding.PADDED ? padded(iterable) : iterable);
+    } else {
+      applyContents(context, binding == ForEachBinding.PADDED ? padded(iterable) : iterable);
+    }
+    applyClose(context);
+    context.getBindings().remove(item);
+    context.getBindings().remove(index);
+    return true;
+  }
+
+  private void applyContents(DynamicContext context, Iterable<?> iterable) {
+    boolean first = true;
     int i = 0;
     for (Object o : iterable) {
       DynamicContext oldContext = context;
@@ -83,10 +119,119 @@ public class ForEachSqlNode implements SqlNode {
       context = oldContext;
       i++;
     }
-    applyClose(context);
-    context.getBindings().remove(item);
-    context.getBindings().remove(index);
-    return true;
+  }
+
+  /**
+   * Does what {@link #applyContents(DynamicContext, Iterable)} does when the contents are static text, e.g. for
+   * <code>IN</code> lists and multi-row inserts: the placeholders have been parsed once, and the names of the
+   * bound variables are built once per element.
+   */
+  private void applyStaticContents(DynamicContext context, Iterable<?> iterable) {
+    boolean compiled = context.isCompiled();
+    boolean first = true;
+    int i = 0;
+    for (Object o : iterable) {
+      int uniqueNumber = context.getUniqueNumber();
+      String itemName = item == null ? null : itemizeItem(item, uniqueNumber);
+      String indexName = index == null ? null : itemizeItem(index, uniqueNumber);
+      Object key;
+      Object value;
+      // Issue #709
+      if (o instanceof Map.Entry) {
+        Map.Entry<?, ?> mapEntry = (Map.Entry<?, ?>) o;
+        key = mapEntry.getKey();
+        value = mapEntry.getValue();
+      } else {
+        key = i;
+        value = o;
+      }
+      if (index != null) {
+        context.bind(index, key);
+        context.bind(indexName, key);
+      }
+      if (item != null) {
+        context.bind(item, value);
+        context.bind(itemName, value);
+      }
+      boolean prefixApplied = false;
+      for (ItemText text : staticContents) {
+        if (!prefixApplied && !text.blank) {
+          context.appendSql(first || separator == null ? "" : separator);
+          prefixApplied = true;
+        }
+        if (compiled) {
+          context.appendSql(text.itemize(itemName, indexName));
+        } else {
+          context.appendSql(text.rewrite(itemName, indexName));
+        }
+      }
+      if (first) {
+        first = !prefixApplied;
+      }
+      i++;
+    }
+  }
+
+  /**
+   * Binds the elements (or the values of a map) as a single array, typed after the elements if they are all of the
+   * same class.
+   */
+  private void applyArray(DynamicContext context, Iterable<?> iterable) {
+    List<Object> values = new ArrayList<>();
+    Class<?> type = null;
+    for (Object o : iterable) {
+      Object value = o instanceof Map.Entry ? ((Map.Entry<?, ?>) o).getValue() : o;
+      if (value != null) {
+        type = type == null || type == value.getClass() ? value.getClass() : Object.class;
+      }
+      values.add(value);
+    }
+    Object[] array = (Object[]) Array.newInstance(type == null ? Object.class : type, values.size());
+    String name = itemizeItem(ARRAY_ITEM, context.getUniqueNumber());
+    context.bind(name, values.toArray(array));
+    context.appendSql("#{" + name + ",typeHandler=" + ArrayTypeHandler.class.getName() + "}");
+  }
+
+  /**
+   * @return the elements as index/value entries (unless they are entries already), followed by the last one as many
+   *     times as needed to reach the next power of two
+   */
+  private static List<Object> padded(Iterable<?> iterable) {
+    List<Object> elements = new ArrayList<>();
+    int i = 0;
+    for (Object o : iterable) {
+      elements.add(o instanceof Map.Entry ? o : new AbstractMap.SimpleImmutableEntry<>(i, o));
+      i++;
+    }
+    int size = Integer.highestOneBit(elements.size());
+    if (size < elements.size()) {
+      size <<= 1;
+    }
+    Object last = elements.get(elements.size() - 1);
+    while (elements.size() < size) {
+      elements.add(last);
+    }
+    return elements;
+  }
+
+  private ItemText[] staticContents(SqlNode contents) {
+    List<SqlNode> nodes;
+    if (contents instanceof MixedSqlNode) {
+      nodes = ((MixedSqlNode) contents).getContents();
+    } else {
+      nodes = Collections.singletonList(contents);
+    }
+    ItemText[] texts = new ItemText[nodes.size()];
+    for (int i = 0; i < texts.length; i++) {
+      if (!(nodes.get(i) instanceof StaticTextSqlNode)) {
+        return null;
+      }
+      texts[i] = ItemText.parse((StaticTextSqlNode) nodes.get(i), item, index);
+      if (texts[i] == null) {
+        return null;
+      }
+    }
+    return texts;
   }
 
   private void applyIndex(DynamicContext context, Object o, int i) {
@@ -119,6 +264,152 @@ public class ForEachSqlNode implements SqlNode {
     return ITEM_PREFIX + item + "_" + i;
   }
 
+  /**
+   * Finds the item (or index) variable a placeholder refers to. The variable must come first, after whitespace if
+   * any, and be followed by a '.', ',', ':', a whitespace or nothing.
+   *
+   * @return the end of the variable in the content of the placeholder, -1 if it does not refer to it
+   */
+  static int variableEnd(String content, String variable) {
+    if (variable == null) {
+      return -1;
+    }
+    int start = 0;
+    while (start < content.length() && isWhitespace(content.charAt(start))) {
+      start++;
+    }
+    if (!content.startsWith(variable, start)) {
+      return -1;
+    }
+    int end = start + variable.length();
+    if (end < content.length()) {
+      char c = content.charAt(end);
+      if (c != '.' && c != ',' && c != ':' && !isWhitespace(c)) {
+        return -1;
+      }
+    }
+    return end;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  /**
+   * Renames the variable of a parsed placeholder, whose content ends with the variable at <code>end</code>.
+   */
+  private static ParameterExpression itemize(ParameterExpression parameter, String variable, int end, String itemized) {
+    String property = parameter.get("property");
+    return parameter.withProperty(itemized + property.substring(variable.length()), itemized + parameter.getContent().substring(end));
+  }
+
+  /**
+   * A static text of the contents, with its placeholders parsed and matched to the item and index variables.
+   */
+  private static final class ItemText {
+    private static final int NONE = 0;
+    private static final int ITEM = 1;
+    private static final int INDEX = 2;
+
+    private final StaticTextSqlNode node;
+    private final String item;
+    private final String index;
+    private final boolean blank;
+    private final String[] literals;
+    private final String[] contents;
+    private final int[] variables;
+    private final int[] ends;
+
+    private ItemText(StaticTextSqlNode node, String item, String index, String[] literals, String[] contents) {
+      this.node = node;
+      this.item = item;
+      this.index = index;
+      this.blank = node.getText() == null || node.getText().trim().isEmpty();
+      this.literals = literals;
+      this.contents = contents;
+      this.variables = new int[contents.length];
+      this.ends = new int[contents.length];
+      for (int i = 0; i < contents.length; i++) {
+        int end = variableEnd(contents[i], item);
+        if (end != -1) {
+          variables[i] = ITEM;
+        } else if (index != null && (end = variableEnd(contents[i], index)) != -1) {
+          variables[i] = INDEX;
+        }
+        ends[i] = end;
+      }
+    }
+
+    /**
+     * @return the parsed text, or null if it cannot be split on its placeholders
+     */
+    static ItemText parse(StaticTextSqlNode node, String item, String index) {
+      if (node.getText() == null) {
+        return null;
+      }
+      List<String> contents = new ArrayList<>();
+      String text = new GenericTokenParser("#{", "}", content -> {
+        contents.add(content);
+        return String.valueOf(MARKER);
+      }).parse(node.getText());
+      List<String> literals = new ArrayList<>(contents.size() + 1);
+      int offset = 0;
+      int marker;
+      while ((marker = text.indexOf(MARKER, offset)) != -1) {
+        literals.add(text.substring(offset, marker));
+        offset = marker + 1;
+      }
+      literals.add(text.substring(offset));
+      if (literals.size() != contents.size() + 1) {
+        return null;
+      }
+      return new ItemText(node, item, index, literals.toArray(new String[0]), contents.toArray(new String[0]));
+    }
+
+    /**
+     * @return the text with the placeholders that refer to the variables renamed, as the interpreted path does
+     */
+    String rewrite(String itemName, String indexName) {
+      if (contents.length == 0) {
+        return literals[0];
+      }
+      StringBuilder sql = new StringBuilder(node.getText().length() + contents.length * 16);
+      for (int i = 0; i < contents.length; i++) {
+        sql.append(literals[i]).append("#{");
+        if (variables[i] == ITEM) {
+          sql.append(itemName).append(contents[i], ends[i], contents[i].length());
+        } else if (variables[i] == INDEX) {
+          sql.append(indexName).append(contents[i], ends[i], contents[i].length());
+        } else {
+          sql.append(contents[i]);
+        }
+        sql.append('}');
+      }
+      sql.append(literals[contents.length]);
+      return sql.toString();
+    }
+
+    /**
+     * @return the compiled text with the placeholders that refer to the variables renamed
+     */
+    SqlTemplate itemize(String itemName, String indexName) {
+      SqlTemplate template = node.getTemplate();
+      ParameterExpression[] parameters = template.getParameters();
+      if (parameters.length == 0) {
+        return template;
+      }
+      ParameterExpression[] itemized = parameters.clone();
+      for (int i = 0; i < parameters.length; i++) {
+        if (variables[i] == ITEM) {
+          itemized[i] = ForEachSqlNode.itemize(parameters[i], item, ends[i], itemName);
+        } else if (variables[i] == INDEX) {
+          itemized[i] = ForEachSqlNode.itemize(parameters[i], index, ends[i], indexName);
+        }
+      }
+      return template.withParameters(itemized);
+    }
+  }
+
   private static class FilteredDynamicContext extends DynamicContext {
     private final DynamicContext delegate;
     private final int index;
@@ -150,17 +441,51 @@ public class ForEachSqlNode implements SqlNode {
 
     @Override
     public void appendSql(String sql) {
+      if (isCompiled()) {
+        appendSql(SqlTemplate.parse(sql));
+        return;
+      }
       GenericTokenParser parser = new GenericTokenParser("#{", "}", content -> {
-        String newContent = content.replaceFirst("^\\s*" + item + "(?![^.,:\\s])", itemizeItem(item, index));
-        if (itemIndex != null && newContent.equals(content)) {
-          newContent = content.replaceFirst("^\\s*" + itemIndex + "(?![^.,:\\s])", itemizeItem(itemIndex, index));
+        int end = variableEnd(content, item);
+        if (end != -1) {
+          return "#{" + itemizeItem(item, index) + content.substring(end) + "}";
+        }
+        if (itemIndex != null && (end = variableEnd(content, itemIndex)) != -1) {
+          return "#{" + itemizeItem(itemIndex, index) + content.substring(end) + "}";
         }
-        return "#{" + newContent + "}";
+        return "#{" + content + "}";
       });
 
       delegate.appendSql(parser.parse(sql));
     }
 
+    @Override
+    void appendSql(SqlTemplate template) {
+      ParameterExpression[] parameters = template.getParameters();
+      ParameterExpression[] itemized = null;
+      for (int i = 0; i < parameters.length; i++) {
+        ParameterExpression parameter = parameters[i];
+        int end = variableEnd(parameter.getContent(), item);
+        if (end != -1) {
+          parameter = itemize(parameter, item, end, itemizeItem(item, index));
+        } else if (itemIndex != null && (end = variableEnd(parameter.getContent(), itemIndex)) != -1) {
+          parameter = itemize(parameter, itemIndex, end, itemizeItem(itemIndex, index));
+        }
+        if (parameter != parameters[i]) {
+          if (itemized == null) {
+            itemized = parameters.clone();
+          }
+          itemized[i] = parameter;
+        }
+      }
+      delegate.appendSql(itemized == null ? template : template.withParameters(itemized));
+    }
+
+    @Override
+    boolean isCompiled() {
+      return delegate.isCompiled();
+    }
+
     @Override
     public int getUniqueNumber() {
       return delegate.getUniqueNumber();
@@ -204,6 +529,20 @@ public class ForEachSqlNode implements SqlNode {
       delegate.appendSql(sql);
     }
 
+    @Override
+    void appendSql(SqlTemplate template) {
+      if (!prefixApplied && template.getSql().trim().length() > 0) {
+        delegate.appendSql(prefix);
+        prefixApplied = true;
+      }
+      delegate.appendSql(template);
+    }
+
+    @Override
+    boolean isCompiled() {
+      return delegate.isCompiled();
+    }
+
     @Override
     public String getSql() {
       return delegate.getSql();
@@ -15,6 +15,8 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import org.apache.ibatis.session.Configuration;
+
 /**
  * @author Clinton Begin
  */
@@ -29,6 +31,15 @@ public class IfSqlNode implements SqlNode {
     this.evaluator = new ExpressionEvaluator();
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public IfSqlNode(Configuration configuration, SqlNode contents, String test) {
+    this.test = test;
+    this.contents = contents;
+    this.evaluator = new ExpressionEvaluator(configuration);
+  }
+
   @Override
   public boolean apply(DynamicContext context) {
     if (evaluator.evaluateBoolean(test, context.getBindings())) {
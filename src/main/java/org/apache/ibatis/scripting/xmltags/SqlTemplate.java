@@ -0,0 +1,123 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.builder.ParameterExpression;
+import org.apache.ibatis.builder.SqlSourceBuilder;
+import org.apache.ibatis.parsing.GenericTokenParser;
+
+/**
+ * A piece of SQL whose <code>#{}</code> placeholders are parsed once, when dynamic SQL is compiled.
+ * <p>
+ * Each placeholder is replaced by a <code>?</code> and kept as a {@link ParameterExpression}, so the SQL built
+ * from the templates does not need to be parsed again.
+ *
+ * @see org.apache.ibatis.session.Configuration#isCompileDynamicSql()
+ */
+final class SqlTemplate {
+
+  // cannot appear in an XML document
+  private static final char MARKER = '\uffff';
+  private static final int[] NO_POSITIONS = new int[0];
+  private static final ParameterExpression[] NO_PARAMETERS = new ParameterExpression[0];
+
+  private final String sql;
+  private final int[] positions;
+  private final ParameterExpression[] parameters;
+
+  SqlTemplate(String sql, int[] positions, ParameterExpression[] parameters) {
+    this.sql = sql;
+    this.positions = positions;
+    this.parameters = parameters;
+  }
+
+  static SqlTemplate parse(String text) {
+    List<ParameterExpression> parameters = new ArrayList<>();
+    String sql = new GenericTokenParser("#{", "}", content -> {
+      parameters.add(SqlSourceBuilder.parseParameterExpression(content));
+      return String.valueOf(MARKER);
+    }).parse(text);
+    if (parameters.isEmpty()) {
+      return new SqlTemplate(sql, NO_POSITIONS, NO_PARAMETERS);
+    }
+    char[] chars = sql.toCharArray();
+    int[] positions = new int[parameters.size()];
+    int n = 0;
+    for (int i = 0; i < chars.length; i++) {
+      if (chars[i] == MARKER && n < positions.length) {
+        chars[i] = '?';
+        positions[n++] = i;
+      }
+    }
+    return new SqlTemplate(new String(chars), positions, parameters.toArray(NO_PARAMETERS));
+  }
+
+  /**
+   * @return the SQL, with a <code>?</code> for each placeholder
+   */
+  String getSql() {
+    return sql;
+  }
+
+  /**
+   * @return the offsets of the <code>?</code> of the placeholders in the SQL
+   */
+  int[] getPositions() {
+    return positions;
+  }
+
+  ParameterExpression[] getParameters() {
+    return parameters;
+  }
+
+  /**
+   * @return the SQL with its <code>#{}</code> placeholders, as it would be parsed by {@link SqlSourceBuilder}
+   */
+  String getText() {
+    StringBuilder text = new StringBuilder(sql.length() + 16 * parameters.length);
+    int offset = 0;
+    for (int i = 0; i < positions.length; i++) {
+      appendEscaped(text, sql.substring(offset, positions[i]), "#{");
+      text.append("#{");
+      appendEscaped(text, parameters[i].getContent(), "}");
+      text.append('}');
+      offset = positions[i] + 1;
+    }
+    appendEscaped(text, sql.substring(offset), "#{");
+    return text.toString();
+  }
+
+  private static void appendEscaped(StringBuilder text, String value, String token) {
+    int offset = 0;
+    int start;
+    while ((start = value.indexOf(token, offset)) != -1) {
+      text.append(value, offset, start).append('\\').append(token);
+      offset = start + token.length();
+    }
+    text.append(value, offset, value.length());
+  }
+
+  /**
+   * Returns this template with the given parameters, which replace the parameters at the same positions.
+   */
+  SqlTemplate withParameters(ParameterExpression[] parameters) {
+    return new SqlTemplate(sql, positions, parameters);
+  }
+
+}
@@ -20,6 +20,7 @@ package org.apache.ibatis.scripting.xmltags;
  */
 public class StaticTextSqlNode implements SqlNode {
   private final String text;
+  private SqlTemplate template;
 
   public StaticTextSqlNode(String text) {
     this.text = text;
@@ -27,8 +28,26 @@ public class StaticTextSqlNode implements SqlNode {
 
   @Override
   public boolean apply(DynamicContext context) {
-    context.appendSql(text);
+    if (context.isCompiled()) {
+      context.appendSql(getTemplate());
+    } else {
+      context.appendSql(text);
+    }
     return true;
   }
 
+  String getText() {
+    return text;
+  }
+
+  SqlTemplate getTemplate() {
+    // parsed on first use, racing threads parse the same template
+    SqlTemplate result = template;
+    if (result == null) {
+      result = SqlTemplate.parse(text);
+      template = result;
+    }
+    return result;
+  }
+
 }
\ No newline at end of file
@@ -16,12 +16,14 @@
 package org.apache.ibatis.scripting.xmltags;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.StringTokenizer;
 
+import org.apache.ibatis.builder.ParameterExpression;
 import org.apache.ibatis.session.Configuration;
 
 /**
@@ -74,6 +76,9 @@ public class TrimSqlNode implements SqlNode {
     private boolean prefixApplied;
     private boolean suffixApplied;
     private StringBuilder sqlBuffer;
+    // the placeholders of a compiled context, and the offsets of their ? in the buffer
+    private List<ParameterExpression> parameters;
+    private int[] positions;
 
     public FilteredDynamicContext(DynamicContext delegate) {
       super(configuration, null);
@@ -81,16 +86,34 @@ public class TrimSqlNode implements SqlNode {
       this.prefixApplied = false;
       this.suffixApplied = false;
       this.sqlBuffer = new StringBuilder();
+      if (delegate.isCompiled()) {
+        this.parameters = new ArrayList<>();
+        this.positions = new int[8];
+      }
     }
 
     public void applyAll() {
-      sqlBuffer = new StringBuilder(sqlBuffer.toString().trim());
+      String sql = sqlBuffer.toString();
+      int shift = 0;
+      while (shift < sql.length() && sql.charAt(shift) <= ' ') {
+        shift++;
+      }
+      sqlBuffer = new StringBuilder(sql.trim());
+      shift = -shift;
       String trimmedUppercaseSql = sqlBuffer.toString().toUpperCase(Locale.ENGLISH);
       if (trimmedUppercaseSql.length() > 0) {
-        applyPrefix(sqlBuffer, trimmedUppercaseSql);
+        shift += applyPrefix(sqlBuffer, trimmedUppercaseSql);
         applySuffix(sqlBuffer, trimmedUppercaseSql);
       }
-      delegate.appendSql(sqlBuffer.toString());
+      if (parameters == null) {
+        delegate.appendSql(sqlBuffer.toString());
+      } else {
+        int[] shifted = new int[parameters.size()];
+        for (int i = 0; i < shifted.length; i++) {
+          shifted[i] = positions[i] + shift;
+        }
+        delegate.appendSql(new SqlTemplate(sqlBuffer.toString(), shifted, parameters.toArray(new ParameterExpression[0])));
+      }
     }
 
     @Override
@@ -110,7 +133,34 @@ public class TrimSqlNode implements SqlNode {
 
     @Override
     public void appendSql(String sql) {
-      sqlBuffer.append(sql);
+      if (parameters != null && sql != null && sql.contains("#{")) {
+        appendSql(SqlTemplate.parse(sql));
+      } else {
+        sqlBuffer.append(sql);
+      }
+    }
+
+    @Override
+    void appendSql(SqlTemplate template) {
+      if (parameters == null) {
+        sqlBuffer.append(template.getText());
+        return;
+      }
+      int count = parameters.size();
+      int[] offsets = template.getPositions();
+      if (count + offsets.length > positions.length) {
+        positions = Arrays.copyOf(positions, Math.max(positions.length * 2, count + offsets.length));
+      }
+      for (int i = 0; i < offsets.length; i++) {
+        positions[count + i] = sqlBuffer.length() + offsets[i];
+      }
+      Collections.addAll(parameters, template.getParameters());
+      sqlBuffer.append(template.getSql());
+    }
+
+    @Override
+    boolean isCompiled() {
+      return delegate.isCompiled();
     }
 
     @Override
@@ -118,13 +168,18 @@ public class TrimSqlNode implements SqlNode {
       return delegate.getSql();
     }
 
-    private void applyPrefix(StringBuilder sql, String trimmedUppercaseSql) {
+    /**
+     * @return how far the rest of the SQL has moved
+     */
+    private int applyPrefix(StringBuilder sql, String trimmedUppercaseSql) {
+      int shift = 0;
       if (!prefixApplied) {
         prefixApplied = true;
         if (prefixesToOverride != null) {
           for (String toRemove : prefixesToOverride) {
             if (trimmedUppercaseSql.startsWith(toRemove)) {
               sql.delete(0, toRemove.trim().length());
+              shift -= toRemove.trim().length();
               break;
             }
           }
@@ -132,8 +187,10 @@ public class TrimSqlNode implements SqlNode {
         if (prefix != null) {
           sql.insert(0, " ");
           sql.insert(0, prefix);
+          shift += prefix.length() + 1;
         }
       }
+      return shift;
     }
 
     private void applySuffix(StringBuilder sql, String trimmedUppercaseSql) {
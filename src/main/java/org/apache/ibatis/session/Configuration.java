@@ -5,14 +5,23 @@ import org.apache.ibatis.builder.CacheRefResolver;
 import org.apache.ibatis.builder.IncompleteElementException;
 import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
+import org.apache.ibatis.builder.xml.MapperSnapshot;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheStatistics;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
+import org.apache.ibatis.cache.decorators.StatisticsCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.decorators.WeightedCache;
+import org.apache.ibatis.cache.distributed.DistributedCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
+import org.apache.ibatis.datasource.pooled.ConcurrentPooledDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
 import org.apache.ibatis.executor.*;
@@ -42,6 +51,7 @@ import org.apache.ibatis.plugin.InterceptorChain;
 import org.apache.ibatis.reflection.DefaultReflectorFactory;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.SystemMetaObject;
 import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
 import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
@@ -59,6 +69,7 @@ import org.apache.ibatis.type.TypeHandler;
 import org.apache.ibatis.type.TypeHandlerRegistry;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 
 /**
@@ -79,11 +90,22 @@ public class Configuration {
     protected boolean callSettersOnNulls;
     protected boolean useActualParamName = true;
     protected boolean returnInstanceForEmptyRow;
+    protected boolean inferCacheTags;
+    protected boolean cacheStatisticsEnabled;
+    protected boolean parallelMapperParsing;
+    protected boolean useStaxMapperParser;
+    protected boolean compileDynamicSql;
+    protected int dynamicSqlShapeCacheSize;
+    protected boolean compileExpressions;
+    protected MapperSnapshot mapperSnapshot;
 
     protected String logPrefix;
     protected Class<? extends Log> logImpl;
     protected Class<? extends VFS> vfsImpl;
     protected LocalCacheScope localCacheScope = LocalCacheScope.SESSION;
+    protected Class<? extends Cache> localCacheImpl = PerpetualCache.class;
+    protected Integer localCacheSize = 1024;
+    protected Long localCacheMaximumWeight;
     protected JdbcType jdbcTypeForNull = JdbcType.OTHER;
     protected Set<String> lazyLoadTriggerMethods = new HashSet<>(Arrays.asList("equals", "clone", "hashCode", "toString"));
     protected Integer defaultStatementTimeout;
@@ -129,6 +151,7 @@ public class Configuration {
             .conflictMessageProducer((savedValue, targetValue) ->
                     ". please check " + savedValue.getResource() + " and " + targetValue.getResource());
     protected final Map<String, Cache> caches = new StrictMap<>("Caches collection");
+    protected final Map<String, CacheStatistics> cacheStatistics = new ConcurrentHashMap<>();
     protected final Map<String, ResultMap> resultMaps = new StrictMap<>("Result Maps collection");
     protected final Map<String, ParameterMap> parameterMaps = new StrictMap<>("Parameter Maps collection");
     protected final Map<String, KeyGenerator> keyGenerators = new StrictMap<>("Key Generators collection");
@@ -159,13 +182,18 @@ public class Configuration {
 
         typeAliasRegistry.registerAlias("JNDI", JndiDataSourceFactory.class);
         typeAliasRegistry.registerAlias("POOLED", PooledDataSourceFactory.class);
+        typeAliasRegistry.registerAlias("CONCURRENT_POOLED", ConcurrentPooledDataSourceFactory.class);
         typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
 
         typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
+        typeAliasRegistry.registerAlias("CONCURRENT", ConcurrentCache.class);
+        typeAliasRegistry.registerAlias("OFF_HEAP", OffHeapCache.class);
+        typeAliasRegistry.registerAlias("DISTRIBUTED", DistributedCache.class);
         typeAliasRegistry.registerAlias("FIFO", FifoCache.class);
         typeAliasRegistry.registerAlias("LRU", LruCache.class);
         typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
         typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
+        typeAliasRegistry.registerAlias("WEIGHT", WeightedCache.class);
 
         typeAliasRegistry.registerAlias("DB_VENDOR", VendorDatabaseIdProvider.class);
 
@@ -257,6 +285,156 @@ public class Configuration {
         this.configurationFactory = configurationFactory;
     }
 
+    /**
+     * @since 3.5.3
+     */
+    public boolean isInferCacheTags() {
+        return inferCacheTags;
+    }
+
+    /**
+     * Whether statements without declared cache tags get the tables of their SQL as tags, when their cache has
+     * tag invalidation.
+     * <p>
+     * Only the table names written in the SQL are found, so cached results may be stale when:
+     * <ul>
+     * <li>a select reads a view, which is not invalidated by writes to its base tables</li>
+     * <li>a write changes other tables through <code>ON DELETE CASCADE</code> or triggers</li>
+     * </ul>
+     * Declare the <code>cacheTags</code> of these statements. Callable statements, and statements whose SQL names
+     * no table, get no tags: their writes invalidate the whole cache and their results depend on every write.
+     *
+     * @since 3.5.3
+     */
+    public void setInferCacheTags(boolean inferCacheTags) {
+        this.inferCacheTags = inferCacheTags;
+    }
+
+    /**
+     * @since 3.5.3
+     */
+    public boolean isCacheStatisticsEnabled() {
+        return cacheStatisticsEnabled;
+    }
+
+    /**
+     * Whether the second level caches count their hits, misses, puts, evictions and load times, which are read
+     * from {@link #getCacheStatistics(String)}. A cache can also enable them with its <code>statistics</code>
+     * property.
+     *
+     * @since 3.5.3
+     */
+    public void setCacheStatisticsEnabled(boolean cacheStatisticsEnabled) {
+        this.cacheStatisticsEnabled = cacheStatisticsEnabled;
+    }
+
+    /**
+     * @since 3.5.3
+     */
+    public boolean isParallelMapperParsing() {
+        return parallelMapperParsing;
+    }
+
+    /**
+     * Whether the XML configuration parses the documents of its XML mappers in parallel, before building them
+     * in the declared order. The references between the mappers are then resolved once they are all built.
+     *
+     * @since 3.5.3
+     */
+    public void setParallelMapperParsing(boolean parallelMapperParsing) {
+        this.parallelMapperParsing = parallelMapperParsing;
+    }
+
+    /**
+     * @since 3.5.3
+     */
+    public boolean isUseStaxMapperParser() {
+        return useStaxMapperParser;
+    }
+
+    /**
+     * Whether the XML mappers are read with a StAX pull parser, which is faster and lighter than the validating
+     * DOM parser but does not validate them against the mapper DTD.
+     *
+     * @since 3.5.3
+     * @see org.apache.ibatis.parsing.StaxDocumentBuilder
+     */
+    public void setUseStaxMapperParser(boolean useStaxMapperParser) {
+        this.useStaxMapperParser = useStaxMapperParser;
+    }
+
+    /**
+     * @since 3.5.3
+     */
+    public boolean isCompileDynamicSql() {
+        return compileDynamicSql;
+    }
+
+    /**
+     * Whether the <code>#{}</code> placeholders of dynamic SQL are parsed once, when a statement is first used,
+     * rather than in the SQL built for every execution. The parameter mappings are then built from the parsed
+     * placeholders.
+     *
+     * @since 3.5.3
+     */
+    public void setCompileDynamicSql(boolean compileDynamicSql) {
+        this.compileDynamicSql = compileDynamicSql;
+    }
+
+    /**
+     * @since 3.5.3
+     */
+    public int getDynamicSqlShapeCacheSize() {
+        return dynamicSqlShapeCacheSize;
+    }
+
+    /**
+     * Sets how many distinct SQL shapes each dynamic statement keeps the parameter mappings of, 0 (the default)
+     * builds them on every execution. It applies to the statements built afterwards.
+     *
+     * @since 3.5.3
+     * @see org.apache.ibatis.builder.SqlShapeCache
+     */
+    public void setDynamicSqlShapeCacheSize(int dynamicSqlShapeCacheSize) {
+        this.dynamicSqlShapeCacheSize = dynamicSqlShapeCacheSize;
+    }
+
+    /**
+     * @since 3.5.3
+     */
+    public boolean isCompileExpressions() {
+        return compileExpressions;
+    }
+
+    /**
+     * Whether the <code>test</code> and <code>collection</code> expressions of dynamic SQL are compiled to direct
+     * property accessors rather than evaluated by OGNL. The expressions outside the subset the compiler supports are
+     * still evaluated by OGNL. It applies to the statements built afterwards.
+     *
+     * @since 3.5.3
+     * @see org.apache.ibatis.scripting.xmltags.ExpressionEvaluator#ExpressionEvaluator(Configuration)
+     */
+    public void setCompileExpressions(boolean compileExpressions) {
+        this.compileExpressions = compileExpressions;
+    }
+
+    /**
+     * @since 3.5.3
+     */
+    public MapperSnapshot getMapperSnapshot() {
+        return mapperSnapshot;
+    }
+
+    /**
+     * Sets the snapshot the XML mapper documents are decoded from when their resources have not changed, and
+     * added to otherwise. It must be set before the mappers are loaded.
+     *
+     * @since 3.5.3
+     */
+    public void setMapperSnapshot(MapperSnapshot mapperSnapshot) {
+        this.mapperSnapshot = mapperSnapshot;
+    }
+
     public boolean isSafeResultHandlerEnabled() {
         return safeResultHandlerEnabled;
     }
@@ -438,6 +616,60 @@ public class Configuration {
         this.localCacheScope = localCacheScope;
     }
 
+    /**
+     * @since 3.5.3
+     */
+    public Class<? extends Cache> getLocalCacheImpl() {
+        return localCacheImpl;
+    }
+
+    /**
+     * The cache implementation of the local (first level) caches, which needs a constructor taking the cache id.
+     * A {@link PerpetualCache} is bounded with {@link #setLocalCacheSize(Integer)} or
+     * {@link #setLocalCacheMaximumWeight(Long)}, other implementations only get their <code>size</code> set.
+     *
+     * @param localCacheImpl the implementation, null for {@link PerpetualCache}
+     * @since 3.5.3
+     */
+    public void setLocalCacheImpl(Class<? extends Cache> localCacheImpl) {
+        this.localCacheImpl = localCacheImpl == null ? PerpetualCache.class : localCacheImpl;
+    }
+
+    /**
+     * @since 3.5.3
+     */
+    public Integer getLocalCacheSize() {
+        return localCacheSize;
+    }
+
+    /**
+     * The number of entries a local cache keeps, the least recently used ones are evicted. The default is 1024.
+     *
+     * @param localCacheSize the number of entries, null or 0 for no bound
+     * @since 3.5.3
+     */
+    public void setLocalCacheSize(Integer localCacheSize) {
+        this.localCacheSize = localCacheSize;
+    }
+
+    /**
+     * @since 3.5.3
+     */
+    public Long getLocalCacheMaximumWeight() {
+        return localCacheMaximumWeight;
+    }
+
+    /**
+     * The estimated size of the entries a local cache keeps, usually in bytes. When set, it bounds the local
+     * caches instead of {@link #setLocalCacheSize(Integer)}.
+     *
+     * @param localCacheMaximumWeight the maximum total weight, null for none
+     * @since 3.5.3
+     */
+    public void setLocalCacheMaximumWeight(Long localCacheMaximumWeight) {
+        this.localCacheMaximumWeight = localCacheMaximumWeight;
+    }
+
     public JdbcType getJdbcTypeForNull() {
         return jdbcTypeForNull;
     }
@@ -547,6 +779,40 @@ public class Configuration {
         return getDefaultScriptingLanguageInstance();
     }
 
+    /**
+     * Creates a local (first level) cache of an executor.
+     *
+     * @param id the id of the cache
+     * @return the cache, bounded as configured
+     * @since 3.5.3
+     */
+    public Cache newLocalCache(String id) {
+        Cache cache;
+        try {
+            cache = localCacheImpl.getConstructor(String.class).newInstance(id);
+        } catch (Exception e) {
+            throw new CacheException("Could not instantiate local cache implementation (" + localCacheImpl + "). Cause: " + e, e);
+        }
+        if (!PerpetualCache.class.equals(cache.getClass())) {
+            MetaObject metaCache = SystemMetaObject.forObject(cache);
+            if (localCacheSize != null && localCacheSize > 0 && metaCache.hasSetter("size")) {
+                metaCache.setValue("size", localCacheSize);
+            }
+            return cache;
+        }
+        if (localCacheMaximumWeight != null) {
+            WeightedCache weightedCache = new WeightedCache(cache);
+            weightedCache.setMaximumWeight(localCacheMaximumWeight);
+            return weightedCache;
+        }
+        if (localCacheSize != null && localCacheSize > 0) {
+            LruCache lruCache = new LruCache(cache);
+            lruCache.setSize(localCacheSize);
+            return lruCache;
+        }
+        return cache;
+    }
+
     public MetaObject newMetaObject(Object object) {
         return MetaObject.forObject(object, objectFactory, objectWrapperFactory, reflectorFactory);
     }
@@ -618,6 +884,10 @@ public class Configuration {
 
     public void addCache(Cache cache) {
         caches.put(cache.getId(), cache);
+        CacheStatistics statistics = StatisticsCache.getStatistics(cache);
+        if (statistics != null) {
+            cacheStatistics.put(cache.getId(), statistics);
+        }
     }
 
     public Collection<String> getCacheNames() {
@@ -632,6 +902,23 @@ public class Configuration {
         return caches.get(id);
     }
 
+    /**
+     * @param id the id of a cache, usually its namespace
+     * @return the statistics of the cache, null if it does not count them
+     * @since 3.5.3
+     */
+    public CacheStatistics getCacheStatistics(String id) {
+        return cacheStatistics.get(id);
+    }
+
+    /**
+     * @return the statistics of the caches that count them, by cache id
+     * @since 3.5.3
+     */
+    public Map<String, CacheStatistics> getCacheStatistics() {
+        return Collections.unmodifiableMap(cacheStatistics);
+    }
+
     public boolean hasCache(String id) {
         return caches.containsKey(id);
     }
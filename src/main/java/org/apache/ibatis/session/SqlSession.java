@@ -269,6 +269,17 @@ public interface SqlSession extends Closeable {
      */
     void clearCache();
 
+    /**
+     * Retrieves the number of entries in the local session cache.
+     *
+     * @return the number of entries, or -1 if it is unknown, which is what sessions that do not override this
+     *     method report
+     * @since 3.5.3
+     */
+    default int getCacheSize() {
+        return -1;
+    }
+
     /**
      * Retrieves current configuration.
      *
@@ -5,6 +5,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.util.Properties;
 
+import org.apache.ibatis.builder.xml.MapperSnapshot;
 import org.apache.ibatis.builder.xml.XMLConfigBuilder;
 import org.apache.ibatis.exceptions.ExceptionFactory;
 import org.apache.ibatis.executor.ErrorContext;
@@ -58,8 +59,20 @@ public class SqlSessionFactoryBuilder {
     }
 
     public SqlSessionFactory build(InputStream inputStream, String environment, Properties properties) {
+        return build(inputStream, environment, properties, null);
+    }
+
+    /**
+     * Builds the factory, decoding the XML mappers from the snapshot when their resources have not changed. The
+     * mappers that have changed are parsed and replace their documents in the snapshot, which can then be written
+     * again if {@link MapperSnapshot#isModified()}.
+     *
+     * @since 3.5.3
+     */
+    public SqlSessionFactory build(InputStream inputStream, String environment, Properties properties, MapperSnapshot snapshot) {
         try {
             XMLConfigBuilder parser = new XMLConfigBuilder(inputStream, environment, properties);
+            parser.getConfiguration().setMapperSnapshot(snapshot);
             return build(parser.parse());
         } catch (Exception e) {
             throw ExceptionFactory.wrapException("Error building SqlSession.", e);
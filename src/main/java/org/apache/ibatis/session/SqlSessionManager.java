@@ -279,6 +279,15 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
         sqlSession.clearCache();
     }
 
+    @Override
+    public int getCacheSize() {
+        final SqlSession sqlSession = localSqlSession.get();
+        if (sqlSession == null) {
+            throw new SqlSessionException("Error:  Cannot get the cache size.  No managed session is started.");
+        }
+        return sqlSession.getCacheSize();
+    }
+
     @Override
     public void commit() {
         final SqlSession sqlSession = localSqlSession.get();
@@ -286,6 +286,11 @@ public class DefaultSqlSession implements SqlSession {
         executor.clearLocalCache();
     }
 
+    @Override
+    public int getCacheSize() {
+        return executor.getLocalCacheSize();
+    }
+
     private <T> void registerCursor(Cursor<T> cursor) {
         if (cursorList == null) {
             cursorList = new ArrayList<>();
@@ -0,0 +1,102 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
+import org.apache.ibatis.scripting.xmltags.ForEachSqlNode;
+import org.apache.ibatis.scripting.xmltags.MixedSqlNode;
+import org.apache.ibatis.scripting.xmltags.SqlNode;
+import org.apache.ibatis.scripting.xmltags.StaticTextSqlNode;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.junit.jupiter.api.Test;
+
+class SqlShapeCacheTest {
+
+  @Test
+  void shouldReuseTheParameterMappingsOfTheSameShape() {
+    Configuration configuration = new Configuration();
+    SqlShapeCache shapeCache = new SqlShapeCache(16);
+    SqlSourceBuilder builder = new SqlSourceBuilder(configuration);
+    Map<String, Object> additionalParameters = Collections.singletonMap("id", 1);
+
+    BoundSql first = builder.parse("select * from blog where id = #{id} and title = #{title,jdbcType=VARCHAR}", Map.class,
+        additionalParameters, shapeCache).getBoundSql(null);
+    BoundSql second = builder.parse("select * from blog where id = #{id} and title = #{title,jdbcType=VARCHAR}", Map.class,
+        additionalParameters, shapeCache).getBoundSql(null);
+
+    assertEquals("select * from blog where id = ? and title = ?", second.getSql());
+    assertEquals(1, shapeCache.getSize());
+    assertNotSame(first.getParameterMappings(), second.getParameterMappings());
+    assertSame(first.getParameterMappings().get(0), second.getParameterMappings().get(0));
+    assertSame(first.getParameterMappings().get(1), second.getParameterMappings().get(1));
+    assertEquals(Integer.class, second.getParameterMappings().get(0).getJavaType());
+  }
+
+  @Test
+  void shouldBuildOtherParameterMappingsForOtherParameterTypes() {
+    SqlNode sqlNode = new MixedSqlNode(Arrays.asList(new StaticTextSqlNode("select * from blog where id in"),
+        new ForEachSqlNode(new Configuration(), new StaticTextSqlNode("#{id}"), "ids", null, "id", "(", ")", ",")));
+    for (boolean compiled : new boolean[] { false, true }) {
+      Configuration configuration = new Configuration();
+      configuration.setCompileDynamicSql(compiled);
+      configuration.setDynamicSqlShapeCacheSize(16);
+      DynamicSqlSource sqlSource = new DynamicSqlSource(configuration, sqlNode);
+
+      List<ParameterMapping> integers = sqlSource.getBoundSql(ids(1, 2)).getParameterMappings();
+      List<ParameterMapping> strings = sqlSource.getBoundSql(ids("1", "2")).getParameterMappings();
+      List<ParameterMapping> integersAgain = sqlSource.getBoundSql(ids(3, 4)).getParameterMappings();
+
+      assertEquals(IntegerTypeHandler.class, integers.get(1).getTypeHandler().getClass());
+      assertEquals(StringTypeHandler.class, strings.get(1).getTypeHandler().getClass());
+      assertSame(integers.get(1), integersAgain.get(1));
+    }
+  }
+
+  @Test
+  void shouldBoundTheNumberOfShapes() {
+    Configuration configuration = new Configuration();
+    SqlShapeCache shapeCache = new SqlShapeCache(4);
+    SqlSourceBuilder builder = new SqlSourceBuilder(configuration);
+    for (int i = 0; i < 100; i++) {
+      BoundSql boundSql = builder.parse("select * from blog where id = #{id} and " + i + " = " + i, Object.class,
+          new HashMap<>(), shapeCache).getBoundSql(null);
+      assertEquals("select * from blog where id = ? and " + i + " = " + i, boundSql.getSql());
+    }
+    assertTrue(shapeCache.getSize() <= 4);
+  }
+
+  private static Map<String, Object> ids(Object... ids) {
+    Map<String, Object> parameter = new HashMap<>();
+    parameter.put("ids", Arrays.asList(ids));
+    return parameter;
+  }
+
+}
@@ -41,6 +41,7 @@ import org.apache.ibatis.io.JBoss6VFS;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.logging.slf4j.Slf4jImpl;
 import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ResultSetType;
 import org.apache.ibatis.scripting.defaults.RawLanguageDriver;
 import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
@@ -61,6 +62,8 @@ import org.junit.jupiter.api.Test;
 import static com.googlecode.catchexception.apis.BDDCatchException.*;
 import static org.assertj.core.api.BDDAssertions.then;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -302,4 +305,69 @@ class XmlConfigBuilderTest {
       .hasMessageContaining("The properties element cannot specify both a URL and a resource based property file reference.  Please specify one or the other.");
   }
 
+  @Test
+  void shouldBuildTheSameMappersWhenParsingThemInParallel() {
+    Configuration sequential = new XMLConfigBuilder(new StringReader(mapperConfig(false))).parse();
+    Configuration parallel = new XMLConfigBuilder(new StringReader(mapperConfig(true))).parse();
+    assertTrue(parallel.isParallelMapperParsing());
+    assertThat(parallel.getIncompleteStatements()).isEmpty();
+    assertThat(parallel.getIncompleteResultMaps()).isEmpty();
+    assertThat(parallel.getIncompleteCacheRefs()).isEmpty();
+    assertThat(parallel.getMappedStatementNames()).containsExactlyInAnyOrderElementsOf(sequential.getMappedStatementNames());
+    assertThat(parallel.getResultMapNames()).containsExactlyInAnyOrderElementsOf(sequential.getResultMapNames());
+    assertThat(parallel.getCacheNames()).containsExactlyInAnyOrderElementsOf(sequential.getCacheNames());
+    for (String id : sequential.getMappedStatementNames()) {
+      if (!id.contains(".")) {
+        // short names may be ambiguous
+        continue;
+      }
+      MappedStatement expected = sequential.getMappedStatement(id);
+      MappedStatement actual = parallel.getMappedStatement(id);
+      assertEquals(expected.getId(), actual.getId());
+      assertEquals(expected.getCache() == null ? null : expected.getCache().getId(), actual.getCache() == null ? null : actual.getCache().getId());
+      assertEquals(expected.getResultMaps().size(), actual.getResultMaps().size());
+      for (int i = 0; i < expected.getResultMaps().size(); i++) {
+        assertEquals(expected.getResultMaps().get(i).getId(), actual.getResultMaps().get(i).getId());
+      }
+    }
+  }
+
+  @Test
+  void shouldStopParsingInParallelWhenAMapperIsMissing() throws Exception {
+    String config = mapperConfig(true).replace("<mappers>\n",
+        "<mappers>\n    <mapper resource=\"org/apache/ibatis/builder/MissingMapper.xml\"/>\n");
+    XMLConfigBuilder builder = new XMLConfigBuilder(new StringReader(config));
+    when(builder).parse();
+    then(caughtException()).isInstanceOf(BuilderException.class)
+      .hasMessageContaining("Could not find resource org/apache/ibatis/builder/MissingMapper.xml");
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().startsWith("mybatis-mapper-parser-")) {
+        // the pool is shut down with the build, its threads only finish their current document
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+      }
+    }
+  }
+
+  private static String mapperConfig(boolean parallelMapperParsing) {
+    // the mappers referenced by the others come last, so that the references are resolved at the end
+    return "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+        + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+        + "<configuration>\n"
+        + "  <settings>\n"
+        + "    <setting name=\"parallelMapperParsing\" value=\"" + parallelMapperParsing + "\"/>\n"
+        + "  </settings>\n"
+        + "  <typeAliases>\n"
+        + "    <package name=\"org.apache.ibatis.domain.blog\"/>\n"
+        + "  </typeAliases>\n"
+        + "  <mappers>\n"
+        + "    <mapper resource=\"org/apache/ibatis/builder/NestedBlogMapper.xml\"/>\n"
+        + "    <mapper resource=\"org/apache/ibatis/builder/PostMapper.xml\"/>\n"
+        + "    <mapper resource=\"org/apache/ibatis/builder/CachedAuthorMapper.xml\"/>\n"
+        + "    <mapper resource=\"org/apache/ibatis/builder/BlogMapper.xml\"/>\n"
+        + "    <mapper resource=\"org/apache/ibatis/builder/AuthorMapper.xml\"/>\n"
+        + "  </mappers>\n"
+        + "</configuration>\n";
+  }
+
 }
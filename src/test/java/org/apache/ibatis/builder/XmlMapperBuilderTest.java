@@ -16,6 +16,7 @@
 package org.apache.ibatis.builder;
 
 import java.io.InputStream;
+import java.util.HashMap;
 import java.util.regex.Pattern;
 
 import org.apache.ibatis.builder.xml.XMLMapperBuilder;
@@ -45,6 +46,36 @@ class XmlMapperBuilderTest {
     }
   }
 
+  @Test
+  void shouldBuildTheSameStatementsWithTheStaxParser() throws Exception {
+    for (String resource : new String[] { "org/apache/ibatis/builder/AuthorMapper.xml",
+        "org/apache/ibatis/submitted/awful_table/AwfulTableMapper.xml", "org/apache/ibatis/submitted/multidb/MultiDbMapper.xml" }) {
+      Configuration dom = new Configuration();
+      Configuration stax = new Configuration();
+      stax.setUseStaxMapperParser(true);
+      for (Configuration configuration : new Configuration[] { dom, stax }) {
+        try (InputStream inputStream = Resources.getResourceAsStream(resource)) {
+          new XMLMapperBuilder(inputStream, configuration, resource, configuration.getSqlFragments()).parse();
+        }
+      }
+      assertThat(stax.getMappedStatementNames()).containsExactlyInAnyOrderElementsOf(dom.getMappedStatementNames());
+      for (String id : dom.getMappedStatementNames()) {
+        if (id.contains(".")) {
+          assertThat(sqlOf(stax.getMappedStatement(id))).isEqualTo(sqlOf(dom.getMappedStatement(id)));
+        }
+      }
+    }
+  }
+
+  private static String sqlOf(MappedStatement mappedStatement) {
+    try {
+      return mappedStatement.getBoundSql(new HashMap<String, Object>()).getSql();
+    } catch (RuntimeException e) {
+      // e.g. a foreach without collection
+      return e.getClass().getName();
+    }
+  }
+
   @Test
   void mappedStatementWithOptions() throws Exception {
     Configuration configuration = new Configuration();
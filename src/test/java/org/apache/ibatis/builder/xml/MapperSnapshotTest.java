@@ -0,0 +1,147 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.parsing.XPathParser;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+class MapperSnapshotTest {
+
+  private static final String AUTHOR_MAPPER = "org/apache/ibatis/builder/AuthorMapper.xml";
+
+  @Test
+  void shouldBuildTheSameConfigurationFromTheSnapshot() throws Exception {
+    MapperSnapshot snapshot = new MapperSnapshot();
+    Configuration parsed = build(snapshot);
+    assertTrue(snapshot.isModified());
+    assertThat(snapshot.size()).isEqualTo(3);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    snapshot.write(bytes);
+    assertFalse(snapshot.isModified());
+    MapperSnapshot read = MapperSnapshot.read(new ByteArrayInputStream(bytes.toByteArray()));
+    Configuration decoded = build(read);
+    assertFalse(read.isModified());
+
+    assertThat(decoded.getMappedStatementNames()).containsExactlyInAnyOrderElementsOf(parsed.getMappedStatementNames());
+    assertThat(decoded.getResultMapNames()).containsExactlyInAnyOrderElementsOf(parsed.getResultMapNames());
+    assertThat(decoded.getCacheNames()).containsExactlyInAnyOrderElementsOf(parsed.getCacheNames());
+    for (String id : parsed.getMappedStatementNames()) {
+      if (id.contains(".")) {
+        assertThat(sqlOf(decoded.getMappedStatement(id))).isEqualTo(sqlOf(parsed.getMappedStatement(id)));
+      }
+    }
+  }
+
+  @Test
+  void shouldDecodeTheParsedDocument() throws Exception {
+    byte[] content = read(AUTHOR_MAPPER);
+    Configuration configuration = new Configuration();
+    configuration.setMapperSnapshot(new MapperSnapshot());
+    XPathParser parser = XMLMapperBuilder.newParser(new ByteArrayInputStream(content), configuration, AUTHOR_MAPPER);
+
+    Document document = configuration.getMapperSnapshot().getDocument(AUTHOR_MAPPER, content);
+    assertNotNull(document);
+    Node expected = parser.evalNode("/mapper").getNode();
+    assertTrue(expected.isEqualNode(document.getDocumentElement()));
+  }
+
+  @Test
+  void shouldParseAgainTheResourcesThatHaveChanged() throws Exception {
+    byte[] content = read(AUTHOR_MAPPER);
+    byte[] changed = new String(content, StandardCharsets.UTF_8).replace("selectAllAuthors", "selectEveryAuthor")
+        .getBytes(StandardCharsets.UTF_8);
+    MapperSnapshot snapshot = new MapperSnapshot();
+    Configuration configuration = new Configuration();
+    configuration.setMapperSnapshot(snapshot);
+    XMLMapperBuilder.newParser(new ByteArrayInputStream(content), configuration, AUTHOR_MAPPER);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    snapshot.write(bytes);
+
+    assertNull(snapshot.getDocument(AUTHOR_MAPPER, changed));
+    configuration.setMapperSnapshot(snapshot = MapperSnapshot.read(new ByteArrayInputStream(bytes.toByteArray())));
+    new XMLMapperBuilder(new ByteArrayInputStream(changed), configuration, AUTHOR_MAPPER, configuration.getSqlFragments()).parse();
+    assertTrue(snapshot.isModified());
+    assertThat(configuration.getMappedStatementNames()).contains("selectEveryAuthor").doesNotContain("selectAllAuthors");
+    assertNotNull(snapshot.getDocument(AUTHOR_MAPPER, changed));
+    assertNull(snapshot.getDocument(AUTHOR_MAPPER, content));
+  }
+
+  @Test
+  void shouldRejectWhatIsNotASnapshot() {
+    byte[] content = "<mapper/>".getBytes(StandardCharsets.UTF_8);
+    assertThrows(IOException.class, () -> MapperSnapshot.read(new ByteArrayInputStream(content)));
+  }
+
+  private static Configuration build(MapperSnapshot snapshot) throws IOException {
+    String config = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+        + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+        + "<configuration>\n"
+        + "  <typeAliases>\n"
+        + "    <package name=\"org.apache.ibatis.domain.blog\"/>\n"
+        + "  </typeAliases>\n"
+        + "  <mappers>\n"
+        + "    <mapper resource=\"org/apache/ibatis/builder/BlogMapper.xml\"/>\n"
+        + "    <mapper resource=\"org/apache/ibatis/builder/CachedAuthorMapper.xml\"/>\n"
+        + "    <mapper resource=\"" + AUTHOR_MAPPER + "\"/>\n"
+        + "  </mappers>\n"
+        + "</configuration>\n";
+    InputStream inputStream = new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8));
+    return new SqlSessionFactoryBuilder().build(inputStream, null, null, snapshot).getConfiguration();
+  }
+
+  private static byte[] read(String resource) throws IOException {
+    try (InputStream inputStream = Resources.getResourceAsStream(resource)) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int n;
+      while ((n = inputStream.read(buffer)) != -1) {
+        bytes.write(buffer, 0, n);
+      }
+      return bytes.toByteArray();
+    }
+  }
+
+  private static String sqlOf(MappedStatement mappedStatement) {
+    try {
+      return mappedStatement.getBoundSql(new HashMap<String, Object>()).getSql();
+    } catch (RuntimeException e) {
+      // e.g. a foreach without collection
+      return e.getClass().getName();
+    }
+  }
+
+}
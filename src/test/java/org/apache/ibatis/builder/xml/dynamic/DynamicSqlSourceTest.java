@@ -27,20 +27,27 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.builder.BuilderException;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.scripting.xmltags.ChooseSqlNode;
 import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
+import org.apache.ibatis.scripting.xmltags.ForEachBinding;
 import org.apache.ibatis.scripting.xmltags.ForEachSqlNode;
 import org.apache.ibatis.scripting.xmltags.IfSqlNode;
 import org.apache.ibatis.scripting.xmltags.MixedSqlNode;
 import org.apache.ibatis.scripting.xmltags.SetSqlNode;
 import org.apache.ibatis.scripting.xmltags.SqlNode;
+import org.apache.ibatis.scripting.xmltags.StaticTextSqlNode;
 import org.apache.ibatis.scripting.xmltags.TextSqlNode;
+import org.apache.ibatis.scripting.xmltags.TrimSqlNode;
 import org.apache.ibatis.scripting.xmltags.WhereSqlNode;
+import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.type.ArrayTypeHandler;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -376,6 +383,163 @@ class DynamicSqlSourceTest extends BaseDataTest {
     assertEquals("__frch_u_0", boundSql.getParameterMappings().get(3).getProperty());
   }
 
+  @Test
+  void shouldBuildTheSameSqlWhenCompiled() {
+    final Map<String, Object> param = new HashMap<>();
+    param.put("name", "Steve");
+    param.put("column", "NAME");
+    param.put("ids", Arrays.asList(1, 2, 3));
+    param.put("beans", Arrays.asList(new Bean("a"), new Bean("b")));
+    final Map<String, Integer> codes = new HashMap<>();
+    codes.put("x", 1);
+    codes.put("y", 2);
+    param.put("codes", codes);
+
+    assertSameBoundSql(param,
+        new StaticTextSqlNode("SELECT * FROM BLOG"),
+        new WhereSqlNode(new Configuration(), mixedContents(
+            new IfSqlNode(mixedContents(new StaticTextSqlNode("AND name = #{name,jdbcType=VARCHAR}")), "name != null"),
+            new IfSqlNode(mixedContents(new StaticTextSqlNode("AND title = #{title}")), "title != null"),
+            new ForEachSqlNode(new Configuration(), mixedContents(new StaticTextSqlNode("#{item}")), "ids", "i", "item",
+                "AND id in (", ")", ","))));
+    assertSameBoundSql(param,
+        new StaticTextSqlNode("UPDATE BLOG"),
+        new SetSqlNode(new Configuration(), mixedContents(
+            new StaticTextSqlNode("name = #{ name },"),
+            new TextSqlNode("${column} = #{name},"))),
+        new StaticTextSqlNode("WHERE id = #{id} AND note <> '\\#{not a placeholder}'"));
+    assertSameBoundSql(param,
+        new StaticTextSqlNode("INSERT INTO BLOG (ID, NAME) VALUES"),
+        new ForEachSqlNode(new Configuration(), mixedContents(
+            new TrimSqlNode(new Configuration(), mixedContents(new StaticTextSqlNode("#{i}, #{bean.id:VARCHAR}, #{beans[0].id},")),
+                "(", null, ")", ",")), "beans", "i", "bean", null, null, ","));
+    assertSameBoundSql(param,
+        new StaticTextSqlNode("SELECT * FROM BLOG WHERE"),
+        new ChooseSqlNode(Arrays.asList(
+            new IfSqlNode(mixedContents(new StaticTextSqlNode("title = #{title}")), "title != null"),
+            new IfSqlNode(mixedContents(new ForEachSqlNode(new Configuration(),
+                mixedContents(new StaticTextSqlNode("(code = #{key} AND value = #{value})")), "codes", "key", "value", "(", ")", "OR")),
+                "codes.size() > 1")),
+            mixedContents(new StaticTextSqlNode("1 = 1"))));
+  }
+
+  @Test
+  void shouldRewriteStaticForEachContentsAsTheInterpretedPath() {
+    final Map<String, Object> param = new HashMap<>();
+    final Map<String, String> uuu = new HashMap<>();
+    uuu.put("u", "xyz");
+    List<Bean> uuuu = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      uuuu.add(new Bean("bean " + i));
+    }
+    param.put("uuu", uuu);
+    param.put("uuuu", uuuu);
+    for (boolean compiled : new boolean[] { false, true }) {
+      Configuration configuration = new Configuration();
+      configuration.setCompileDynamicSql(compiled);
+      for (String separator : new String[] { ",", null }) {
+        // nested contents are not static text, they are applied through the wrapping contexts
+        SqlNode[] contents = {
+            new StaticTextSqlNode("  "),
+            new StaticTextSqlNode("(#{uuu.u}, #{u.id}, #{ u,typeHandler=org.apache.ibatis.type.StringTypeHandler},"
+                + " #{u.id:VARCHAR}, #{uu}, #{uuu}, #{uu , javaType=int})") };
+        BoundSql expected = new DynamicSqlSource(configuration, mixedContents(
+            new StaticTextSqlNode("INSERT INTO BLOG (NAME, ID, NOTE, COMMENT, PK, DATA) VALUES"),
+            new ForEachSqlNode(configuration, mixedContents(mixedContents(contents)), "uuuu", "uu", "u", null, null, separator)))
+            .getBoundSql(param);
+        BoundSql actual = new DynamicSqlSource(configuration, mixedContents(
+            new StaticTextSqlNode("INSERT INTO BLOG (NAME, ID, NOTE, COMMENT, PK, DATA) VALUES"),
+            new ForEachSqlNode(configuration, mixedContents(contents), "uuuu", "uu", "u", null, null, separator)))
+            .getBoundSql(param);
+        assertSameBoundSql(expected, actual);
+        assertEquals(10000 * 7, actual.getParameterMappings().size());
+        assertEquals("__frch_u_9999.id", actual.getParameterMappings().get(9999 * 7 + 1).getProperty());
+        assertEquals("__frch_uu_9999", actual.getParameterMappings().get(9999 * 7 + 6).getProperty());
+        assertEquals("bean 9999", ((Bean) actual.getAdditionalParameter("__frch_u_9999")).getId());
+      }
+    }
+  }
+
+  @Test
+  void shouldPadForEachToThePowerOfTwo() {
+    final Map<String, Object> param = new HashMap<>();
+    param.put("ids", Arrays.asList(1, 2, 3, 4, 5));
+    for (boolean compiled : new boolean[] { false, true }) {
+      Configuration configuration = new Configuration();
+      configuration.setCompileDynamicSql(compiled);
+      BoundSql boundSql = new DynamicSqlSource(configuration, mixedContents(
+          new StaticTextSqlNode("SELECT * FROM BLOG WHERE ID IN"),
+          new ForEachSqlNode(configuration, mixedContents(new StaticTextSqlNode("#{id}")), "ids", "i", "id", "(", ")", ",",
+              ForEachBinding.PADDED))).getBoundSql(param);
+      assertEquals("SELECT * FROM BLOG WHERE ID IN (  ? , ? , ? , ? , ? , ? , ? , ? )", boundSql.getSql());
+      assertEquals(8, boundSql.getParameterMappings().size());
+      for (int i = 0; i < 8; i++) {
+        String property = boundSql.getParameterMappings().get(i).getProperty();
+        assertEquals(Math.min(i + 1, 5), boundSql.getAdditionalParameter(property));
+      }
+    }
+    param.put("ids", Arrays.asList(1, 2, 3, 4));
+    BoundSql boundSql = new DynamicSqlSource(new Configuration(), mixedContents(
+        new StaticTextSqlNode("SELECT * FROM BLOG WHERE ID IN"),
+        new ForEachSqlNode(new Configuration(), mixedContents(new StaticTextSqlNode("#{i} + #{id}")), "ids", "i", "id", "(",
+            ")", ",", ForEachBinding.PADDED))).getBoundSql(param);
+    assertEquals("SELECT * FROM BLOG WHERE ID IN (  ? + ? , ? + ? , ? + ? , ? + ? )", boundSql.getSql());
+    assertEquals(3, boundSql.getAdditionalParameter(boundSql.getParameterMappings().get(6).getProperty()));
+  }
+
+  @Test
+  void shouldBindForEachAsASingleArray() {
+    final Map<String, Object> param = new HashMap<>();
+    param.put("ids", Arrays.asList(1, 2, 3));
+    for (boolean compiled : new boolean[] { false, true }) {
+      Configuration configuration = new Configuration();
+      configuration.setCompileDynamicSql(compiled);
+      BoundSql boundSql = new DynamicSqlSource(configuration, mixedContents(
+          new StaticTextSqlNode("SELECT * FROM BLOG WHERE ID = ANY("),
+          new ForEachSqlNode(configuration, mixedContents(new StaticTextSqlNode("#{id}")), "ids", null, "id", null, null, ",",
+              ForEachBinding.ARRAY),
+          new StaticTextSqlNode(")"))).getBoundSql(param);
+      assertEquals("SELECT * FROM BLOG WHERE ID = ANY( ? )", boundSql.getSql());
+      assertEquals(1, boundSql.getParameterMappings().size());
+      ParameterMapping mapping = boundSql.getParameterMappings().get(0);
+      assertEquals(Integer[].class, mapping.getJavaType());
+      assertEquals(ArrayTypeHandler.class, mapping.getTypeHandler().getClass());
+      Assertions.assertArrayEquals(new Integer[] { 1, 2, 3 }, (Integer[]) boundSql.getAdditionalParameter(mapping.getProperty()));
+    }
+  }
+
+  @Test
+  void shouldNameTheAllowedForEachBindingsWhenUnknown() {
+    BuilderException e = Assertions.assertThrows(BuilderException.class, () -> new XMLLanguageDriver().createSqlSource(
+        new Configuration(), "<script>SELECT * FROM BLOG WHERE ID IN"
+            + "<foreach collection=\"ids\" item=\"id\" binding=\"padded\">#{id}</foreach></script>", null));
+    Assertions.assertTrue(e.getMessage().contains("'padded', expected one of [EACH, PADDED, ARRAY]"), e.getMessage());
+  }
+
+  private void assertSameBoundSql(Object parameterObject, SqlNode... contents) {
+    Configuration compiledConfiguration = new Configuration();
+    compiledConfiguration.setCompileDynamicSql(true);
+    BoundSql expected = new DynamicSqlSource(new Configuration(), mixedContents(contents)).getBoundSql(parameterObject);
+    BoundSql actual = new DynamicSqlSource(compiledConfiguration, mixedContents(contents)).getBoundSql(parameterObject);
+    assertSameBoundSql(expected, actual);
+  }
+
+  private void assertSameBoundSql(BoundSql expected, BoundSql actual) {
+    assertEquals(expected.getSql(), actual.getSql());
+    assertEquals(expected.getParameterMappings().size(), actual.getParameterMappings().size());
+    for (int i = 0; i < expected.getParameterMappings().size(); i++) {
+      ParameterMapping expectedMapping = expected.getParameterMappings().get(i);
+      ParameterMapping actualMapping = actual.getParameterMappings().get(i);
+      assertEquals(expectedMapping.getProperty(), actualMapping.getProperty());
+      assertEquals(expectedMapping.getJavaType(), actualMapping.getJavaType());
+      assertEquals(expectedMapping.getJdbcType(), actualMapping.getJdbcType());
+      assertEquals(expectedMapping.getTypeHandler().getClass(), actualMapping.getTypeHandler().getClass());
+      if (expected.hasAdditionalParameter(expectedMapping.getProperty())) {
+        assertEquals(expected.getAdditionalParameter(expectedMapping.getProperty()), actual.getAdditionalParameter(actualMapping.getProperty()));
+      }
+    }
+  }
+
   private DynamicSqlSource createDynamicSqlSource(SqlNode... contents) throws IOException, SQLException {
     createBlogDataSource();
     final String resource = "org/apache/ibatis/builder/MapperConfig.xml";
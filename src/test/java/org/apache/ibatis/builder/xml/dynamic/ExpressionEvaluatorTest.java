@@ -17,11 +17,17 @@ package org.apache.ibatis.builder.xml.dynamic;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 
+import org.apache.ibatis.builder.BuilderException;
 import org.apache.ibatis.domain.blog.Author;
 import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.scripting.xmltags.DynamicContext;
 import org.apache.ibatis.scripting.xmltags.ExpressionEvaluator;
+import org.apache.ibatis.session.Configuration;
 import org.junit.jupiter.api.Test;
 
 class ExpressionEvaluatorTest {
@@ -85,5 +91,56 @@ class ExpressionEvaluatorTest {
     }
   }
 
+  @Test
+  void shouldEvaluateCompiledExpressionsLikeOgnl() {
+    Configuration configuration = new Configuration();
+    configuration.setCompileExpressions(true);
+    ExpressionEvaluator compiled = new ExpressionEvaluator(configuration);
+    Map<String, Object> parameter = new HashMap<>();
+    parameter.put("author", new Author(1, "cbegin", null, "cbegin@apache.org", "", Section.NEWS));
+    parameter.put("ids", Arrays.asList(1, 2, 3));
+    parameter.put("empty", Collections.emptyMap());
+    parameter.put("flag", "true");
+    parameter.put("amount", 2.5d);
+    parameter.put("big", 3L);
+    Map<String, Object> bindings = new DynamicContext(configuration, parameter).getBindings();
+    String[] expressions = {
+        "author != null and author.username != ''", "author.password != null or author.bio == ''",
+        "author.username == \"cbegin\"", "author.username neq 'norm'", "author.username < 'dd'",
+        "author.id == 1", "author.id eq 1.0", "author.id >= big", "amount > author.id", "amount lte 2.5",
+        "big gt 2 && !(big >= 4)", "not author.favouriteSection", "author.username", "author.password",
+        "ids != null and ids.size() > 2", "empty.isEmpty()", "flag and author.username", "flag || false",
+        "author.username and author.id", "_parameter.ids.size() == 3", "missing == null", "_databaseId == null",
+        // evaluated by OGNL
+        "author.username.length() == 6", "ids[0] == 1", "author.favouriteSection.name() == 'NEWS'", "amount == '2.5'",
+        "author.id == '1'", "big + 1 == 4", "empty.size == 0", "author.id in {1, 2}", "ids.size() > 0 ? true : false" };
+    for (String expression : expressions) {
+      assertEquals(evaluator.evaluateBoolean(expression, bindings), compiled.evaluateBoolean(expression, bindings), expression);
+    }
+    assertEquals(Arrays.asList(1, 2, 3), compiled.evaluateIterable("_parameter.ids", bindings));
+    Author author = new Author(0, "jdoe", null, "", "", Section.NEWS);
+    assertTrue(compiled.evaluateBoolean("username == 'jdoe' and not id", author));
+    assertThrows(BuilderException.class, () -> compiled.evaluateBoolean("author.username.foo", bindings));
+  }
+
+  @Test
+  void shouldReportGetterFailuresOfCompiledExpressionsLikeOgnl() {
+    Configuration configuration = new Configuration();
+    configuration.setCompileExpressions(true);
+    ExpressionEvaluator compiled = new ExpressionEvaluator(configuration);
+    int[] calls = new int[1];
+    Author author = new Author(1, "cbegin", null, "", "", Section.NEWS) {
+      @Override
+      public String getUsername() {
+        calls[0]++;
+        throw new IllegalStateException("lazy loading failed");
+      }
+    };
+    BuilderException expected = assertThrows(BuilderException.class, () -> evaluator.evaluateBoolean("username != null", author));
+    BuilderException actual = assertThrows(BuilderException.class, () -> compiled.evaluateBoolean("username != null", author));
+    assertEquals(expected.getMessage(), actual.getMessage());
+    // once by OGNL and once by the compiled expression, which does not run it again through OGNL
+    assertEquals(2, calls[0]);
+  }
 
 }
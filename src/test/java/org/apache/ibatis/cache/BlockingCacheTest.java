@@ -0,0 +1,107 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class BlockingCacheTest {
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  @AfterEach
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void shouldLetOneThreadLoadAMissingKey() throws Exception {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    assertNull(cache.getObject("key"));
+    // the loading thread is not blocked by its own load
+    assertNull(cache.getObject("key"));
+    CompletableFuture<Object> load = cache.getLoad("key");
+    assertNotNull(load);
+
+    Future<Object> waiter = executor.submit(() -> cache.getObject("key"));
+    Thread.sleep(50);
+    assertFalse(waiter.isDone());
+    cache.putObject("key", "value");
+    assertEquals("value", waiter.get(5, TimeUnit.SECONDS));
+    assertEquals("value", load.getNow(null));
+    assertEquals(0, cache.getLoadCount());
+  }
+
+  @Test
+  void shouldHandTheLoadOverWhenTheLoaderHasNoValue() throws Exception {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    assertNull(cache.getObject("key"));
+    Future<Object> waiter = executor.submit(() -> cache.getObject("key"));
+    Thread.sleep(50);
+    cache.removeObject("key");
+    // the waiter becomes the loader
+    assertNull(waiter.get(5, TimeUnit.SECONDS));
+    assertEquals(1, cache.getLoadCount());
+    executor.submit(() -> cache.putObject("key", "value")).get();
+    assertEquals(0, cache.getLoadCount());
+  }
+
+  @Test
+  void shouldForgetCompletedLoads() {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    for (int i = 0; i < 1000; i++) {
+      assertNull(cache.getObject(i));
+      cache.putObject(i, i);
+    }
+    assertEquals(0, cache.getLoadCount());
+    assertNull(cache.getLoad(1));
+  }
+
+  @Test
+  void shouldNotBlockMissesPastTheMaximumLoads() throws Exception {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    cache.setMaximumLoads(1);
+    assertNull(cache.getObject("key1"));
+    assertNull(executor.submit(() -> cache.getObject("key2")).get(5, TimeUnit.SECONDS));
+    assertEquals(1, cache.getLoadCount());
+  }
+
+  @Test
+  void shouldTimeOut() throws Exception {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    cache.setTimeout(10);
+    assertNull(cache.getObject("key"));
+    Future<Object> waiter = executor.submit(() -> cache.getObject("key"));
+    try {
+      waiter.get(5, TimeUnit.SECONDS);
+      fail("should have timed out");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof CacheException);
+    }
+  }
+
+}
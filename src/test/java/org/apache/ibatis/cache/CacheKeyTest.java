@@ -26,6 +26,8 @@ import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
 
 class CacheKeyTest {
 
@@ -87,6 +89,41 @@ class CacheKeyTest {
     assertEquals(key1, key2);
   }
 
+  @Test
+  void shouldGrowBeyondTheInitialCapacity() {
+    CacheKey key1 = new CacheKey();
+    CacheKey key2 = new CacheKey();
+    for (int i = 0; i < 100; i++) {
+      key1.update(i);
+      key2.update(i);
+    }
+    assertEquals(100, key1.getUpdateCount());
+    assertEquals(key1, key2);
+    key2.update(100);
+    assertNotEquals(key1, key2);
+  }
+
+  @Test
+  void shouldNotShareValuesWithClones() throws Exception {
+    CacheKey key = new CacheKey(new Object[] { 1, "hello" });
+    CacheKey clone = key.clone();
+    assertEquals(key, clone);
+    clone.update("world");
+    assertNotEquals(key, clone);
+    assertEquals(2, key.getUpdateCount());
+    assertEquals(3, clone.getUpdateCount());
+  }
+
+  @Test
+  void shouldSpreadSimilarKeys() {
+    Set<Integer> hashCodes = new HashSet<>();
+    for (int i = 0; i < 10000; i++) {
+      hashCodes.add(new CacheKey(new Object[] { "selectAuthor", 0, Integer.MAX_VALUE, i }).hashCode());
+      hashCodes.add(new CacheKey(new Object[] { "selectAuthor", 0, i, Integer.MAX_VALUE }).hashCode());
+    }
+    assertEquals(20000, hashCodes.size());
+  }
+
   @Test
   void serializationExceptionTest() {
     CacheKey cacheKey = new CacheKey();
@@ -0,0 +1,132 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.ibatis.cache.decorators.DeepCopyCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class DeepCopyCacheTest {
+
+  @Test
+  void shouldHandOutIndependentCopies() {
+    Cache cache = new DeepCopyCache(new PerpetualCache("default"));
+    Blog blog = new Blog(1, "title");
+    blog.posts.add(new Post(blog, "first"));
+    cache.putObject("key", blog);
+    blog.title = "changed after put";
+
+    Blog first = (Blog) cache.getObject("key");
+    Blog second = (Blog) cache.getObject("key");
+    assertNotSame(first, second);
+    assertNotSame(first.posts, second.posts);
+    assertEquals("title", first.title);
+    first.posts.get(0).subject = "changed after get";
+    assertEquals("first", second.posts.get(0).subject);
+  }
+
+  @Test
+  void shouldKeepSharedAndCircularReferences() {
+    Cache cache = new DeepCopyCache(new PerpetualCache("default"));
+    Blog blog = new Blog(1, "title");
+    blog.posts.add(new Post(blog, "first"));
+    blog.posts.add(new Post(blog, "second"));
+    cache.putObject("key", new ArrayList<>(Arrays.asList(blog, blog)));
+
+    @SuppressWarnings("unchecked")
+    List<Blog> copy = (List<Blog>) cache.getObject("key");
+    Blog blogCopy = copy.get(0);
+    assertSame(blogCopy, copy.get(1));
+    assertSame(blogCopy, blogCopy.posts.get(0).blog);
+    assertSame(blogCopy, blogCopy.posts.get(1).blog);
+  }
+
+  @Test
+  void shouldCopyValuesOfEveryKind() {
+    Cache cache = new DeepCopyCache(new PerpetualCache("default"));
+    Timestamp timestamp = new Timestamp(1000L);
+    timestamp.setNanos(5);
+    Map<String, Object> map = new HashMap<>();
+    map.put("timestamp", timestamp);
+    map.put("date", LocalDate.of(2019, 1, 1));
+    map.put("ints", new int[] { 1, 2 });
+    map.put("sorted", new TreeSet<>(Arrays.asList("b", "a")));
+    map.put("unmodifiable", Collections.unmodifiableList(new ArrayList<>(Arrays.asList(1, 2))));
+    map.put("null", null);
+    cache.putObject("key", map);
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> copy = (Map<String, Object>) cache.getObject("key");
+    assertEquals(timestamp, copy.get("timestamp"));
+    assertNotSame(map.get("timestamp"), copy.get("timestamp"));
+    assertSame(map.get("date"), copy.get("date"));
+    assertArrayEquals((int[]) map.get("ints"), (int[]) copy.get("ints"));
+    assertNotSame(map.get("ints"), copy.get("ints"));
+    assertEquals(map.get("sorted"), copy.get("sorted"));
+    assertEquals(map.get("unmodifiable"), copy.get("unmodifiable"));
+    assertNotSame(map.get("unmodifiable"), copy.get("unmodifiable"));
+    assertTrue(copy.containsKey("null"));
+  }
+
+  @Test
+  void shouldStoreNullValues() {
+    Cache cache = new DeepCopyCache(new PerpetualCache("default"));
+    cache.putObject("key", null);
+    assertNull(cache.getObject("key"));
+    assertNull(cache.getObject("missing"));
+    assertEquals(1, cache.getSize());
+  }
+
+  static class Blog {
+    private int id;
+    private String title;
+    private final List<Post> posts = new ArrayList<>();
+
+    Blog() {
+    }
+
+    Blog(int id, String title) {
+      this.id = id;
+      this.title = title;
+    }
+  }
+
+  static class Post {
+    private Blog blog;
+    private String subject;
+
+    Post() {
+    }
+
+    Post(Blog blog, String subject) {
+      this.blog = blog;
+      this.subject = subject;
+    }
+  }
+
+}
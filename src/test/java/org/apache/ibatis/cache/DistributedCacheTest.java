@@ -0,0 +1,196 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.distributed.DistributedCache;
+import org.apache.ibatis.cache.distributed.LoopbackCacheTransport;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
+import org.apache.ibatis.domain.blog.Section;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class DistributedCacheTest {
+
+  private static final String CHANNEL = "DistributedCacheTest";
+
+  @AfterEach
+  void resetChannel() {
+    LoopbackCacheTransport.reset(CHANNEL);
+  }
+
+  @Test
+  void shouldShareValuesBetweenNodes() {
+    DistributedCache node1 = node();
+    DistributedCache node2 = node();
+    node1.putObject(key("selectBlog", 1), new ArrayList<>(Arrays.asList("blog 1")));
+    assertEquals(0, node2.getSize());
+    assertEquals(Arrays.asList("blog 1"), node2.getObject(key("selectBlog", 1)));
+    // kept in the near cache of the second node
+    assertEquals(1, node2.getSize());
+    assertNull(node2.getObject(key("selectBlog", 2)));
+  }
+
+  @Test
+  void shouldReturnCopies() {
+    DistributedCache node = node();
+    List<String> value = new ArrayList<>(Arrays.asList("blog 1"));
+    node.putObject(key("selectBlog", 1), value);
+    Object first = node.getObject(key("selectBlog", 1));
+    assertEquals(value, first);
+    assertNotSame(value, first);
+    assertNotSame(first, node.getObject(key("selectBlog", 1)));
+  }
+
+  @Test
+  void shouldInvalidateTheNearCachesOfOtherNodesOnCommit() {
+    DistributedCache node1 = node();
+    DistributedCache node2 = node();
+    node1.putObject(key("selectBlog", 1), "blog 1");
+    assertEquals("blog 1", node2.getObject(key("selectBlog", 1)));
+
+    TransactionalCache transaction = new TransactionalCache(node1);
+    transaction.clear();
+    // nothing is visible to the other nodes before the commit
+    assertEquals("blog 1", node2.getObject(key("selectBlog", 1)));
+    transaction.commit();
+    assertEquals(0, node2.getSize());
+    assertNull(node2.getObject(key("selectBlog", 1)));
+  }
+
+  @Test
+  void shouldInvalidateOneKeyOnOtherNodes() {
+    DistributedCache node1 = node();
+    DistributedCache node2 = node();
+    node1.putObject(key("selectBlog", 1), "blog 1");
+    node1.putObject(key("selectBlog", 2), "blog 2");
+    node2.getObject(key("selectBlog", 1));
+    node2.getObject(key("selectBlog", 2));
+    node1.removeObject(key("selectBlog", 1));
+    assertNull(node2.getObject(key("selectBlog", 1)));
+    assertEquals("blog 2", node2.getObject(key("selectBlog", 2)));
+  }
+
+  @Test
+  void shouldFindKeysBuiltDifferently() {
+    DistributedCache node1 = node();
+    DistributedCache node2 = node();
+    CacheKey grown = new CacheKey();
+    grown.update("selectBlog");
+    grown.update(1);
+    node1.putObject(grown, "blog 1");
+    assertEquals("blog 1", node2.getObject(new CacheKey(new Object[] { "selectBlog", 1 })));
+  }
+
+  @Test
+  void shouldFindKeysHashedByAnotherJvm() throws Exception {
+    DistributedCache node1 = node();
+    DistributedCache node2 = node();
+    CacheKey key = new CacheKey(new Object[] { "selectBlogs", Section.NEWS });
+    node1.putObject(key, "news");
+    CacheKey received = (CacheKey) new JavaCacheSerializer().deserialize(new JavaCacheSerializer().serialize(key));
+    // enums hash by identity, so another JVM computes other hash codes for the same values
+    setField(received, "hashcode", key.hashCode() + 1);
+    setField(received, "checksum", 42L);
+    assertEquals("news", node2.getObject(received));
+    node2.removeObject(received);
+    assertNull(node1.getObject(key));
+  }
+
+  @Test
+  void shouldNotPublishMissedKeys() {
+    AtomicInteger puts = new AtomicInteger();
+    DistributedCache node = new DistributedCache("blog", new LoopbackCacheTransport(CHANNEL) {
+      @Override
+      public void put(String cacheId, byte[] key, byte[] value) {
+        puts.incrementAndGet();
+        super.put(cacheId, key, value);
+      }
+    });
+    TransactionalCache transaction = new TransactionalCache(node);
+    assertNull(transaction.getObject(key("selectBlog", 1)));
+    transaction.commit();
+    assertEquals(0, puts.get());
+    assertEquals(0, node.getSize());
+    assertNull(node().getObject(key("selectBlog", 1)));
+  }
+
+  @Test
+  void shouldTreatTransportFailuresAsMisses() {
+    DistributedCache node = new DistributedCache("blog", new LoopbackCacheTransport(CHANNEL) {
+      @Override
+      public byte[] get(String cacheId, byte[] key) {
+        throw new IllegalStateException("unreachable");
+      }
+    });
+    node.putObject(key("selectBlog", 1), "blog 1");
+    assertEquals("blog 1", node.getObject(key("selectBlog", 1)));
+    assertNull(node.getObject(key("selectBlog", 2)));
+  }
+
+  @Test
+  void shouldKeepCachesApart() {
+    DistributedCache blogs = node();
+    DistributedCache authors = new DistributedCache("author", new LoopbackCacheTransport(CHANNEL));
+    blogs.putObject(key("select", 1), "blog 1");
+    authors.putObject(key("select", 1), "author 1");
+    blogs.clear();
+    assertNull(blogs.getObject(key("select", 1)));
+    assertEquals("author 1", authors.getObject(key("select", 1)));
+  }
+
+  @Test
+  void shouldRequireATransport() {
+    DistributedCache cache = new DistributedCache("blog");
+    CacheException e = assertThrows(CacheException.class, cache::initialize);
+    assertEquals("Cache blog requires a transport.", e.getMessage());
+  }
+
+  @Test
+  void shouldStopListeningOnceClosed() {
+    DistributedCache node1 = node();
+    DistributedCache node2 = node();
+    node1.putObject(key("selectBlog", 1), "blog 1");
+    assertEquals("blog 1", node2.getObject(key("selectBlog", 1)));
+    node2.close();
+    node1.clear();
+    // no longer told to drop its near cache
+    assertEquals(1, node2.getSize());
+  }
+
+  private static DistributedCache node() {
+    return new DistributedCache("blog", new LoopbackCacheTransport(CHANNEL));
+  }
+
+  private static void setField(Object target, String name, Object value) throws Exception {
+    Field field = CacheKey.class.getDeclaredField(name);
+    field.setAccessible(true);
+    field.set(target, value);
+  }
+
+  private static CacheKey key(String statement, int id) {
+    return new CacheKey(new Object[] { statement, id });
+  }
+
+}
@@ -0,0 +1,145 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.ibatis.cache.impl.OffHeapCache;
+import org.junit.jupiter.api.Test;
+
+class OffHeapCacheTest {
+
+  @Test
+  void shouldReturnACopyOfTheStoredValue() {
+    OffHeapCache cache = new OffHeapCache("default");
+    List<String> value = new ArrayList<>(Arrays.asList("a", "b"));
+    cache.putObject("key", value);
+    Object copy = cache.getObject("key");
+    assertEquals(value, copy);
+    assertNotSame(value, copy);
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  void shouldStoreNullValues() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.putObject("key", null);
+    assertNull(cache.getObject("key"));
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  void shouldRejectValuesThatAreNotSerializable() {
+    OffHeapCache cache = new OffHeapCache("default");
+    assertThrows(CacheException.class, () -> cache.putObject("key", new Object()));
+  }
+
+  @Test
+  void shouldEvictTheOldestValuesWhenFull() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(1000);
+    cache.setSegments(1);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, i);
+    }
+    assertTrue(cache.getSize() > 0 && cache.getSize() < 100);
+    assertTrue(cache.getUsedMemory() <= 1000);
+    assertEquals(99, cache.getObject(99));
+    assertEquals(98, cache.getObject(98));
+    assertNull(cache.getObject(0));
+  }
+
+  @Test
+  void shouldReplaceAndRemoveValues() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.putObject("key", "first");
+    long used = cache.getUsedMemory();
+    cache.putObject("key", "other");
+    assertEquals("other", cache.getObject("key"));
+    assertEquals(1, cache.getSize());
+    assertEquals(used, cache.getUsedMemory());
+    cache.removeObject("key");
+    assertNull(cache.getObject("key"));
+    assertEquals(0, cache.getSize());
+    assertEquals(0, cache.getUsedMemory());
+  }
+
+  @Test
+  void shouldNotCacheValuesLargerThanASegment() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(100);
+    cache.setSegments(1);
+    cache.putObject("small", 1);
+    cache.putObject("large", new byte[1000]);
+    assertNull(cache.getObject("large"));
+    assertEquals(1, cache.getObject("small"));
+  }
+
+  @Test
+  void shouldClearAndReuseTheMemory() {
+    OffHeapCache cache = new OffHeapCache("default");
+    for (int i = 0; i < 10; i++) {
+      cache.putObject(i, i);
+    }
+    cache.clear();
+    assertEquals(0, cache.getSize());
+    assertEquals(0, cache.getUsedMemory());
+    cache.putObject(1, 1);
+    assertEquals(1, cache.getObject(1));
+  }
+
+  @Test
+  void shouldNotResizeAllocatedMemory() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.initialize();
+    assertThrows(CacheException.class, () -> cache.setCapacity(1024));
+  }
+
+  @Test
+  void shouldStayConsistentUnderConcurrentAccess() throws Exception {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(16 * 1024);
+    cache.setSegments(4);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10000; i++) {
+            int key = i % 500;
+            cache.putObject(key, "value" + key);
+            Object value = cache.getObject(key);
+            assertTrue(value == null || value.equals("value" + key));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(cache.getUsedMemory() <= 16 * 1024);
+  }
+
+}
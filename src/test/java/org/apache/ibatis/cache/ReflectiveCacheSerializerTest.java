@@ -0,0 +1,203 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
+import org.apache.ibatis.cache.serializer.ReflectiveCacheSerializer;
+import org.junit.jupiter.api.Test;
+
+class ReflectiveCacheSerializerTest {
+
+  private final CacheSerializer serializer = new ReflectiveCacheSerializer();
+
+  @SuppressWarnings("unchecked")
+  private <T> T copy(T value) {
+    return (T) serializer.deserialize(serializer.serialize(value));
+  }
+
+  @Test
+  void shouldCopySimpleValues() {
+    Timestamp timestamp = new Timestamp(1234567890123L);
+    timestamp.setNanos(123456789);
+    List<Object> values = Arrays.asList(null, "text é中", 1, 2L, (short) 3, (byte) 4, true, 'c', 1.5d, 2.5f,
+        new BigDecimal("12345678901234567890.0123"), new BigInteger("-98765432109876543210"), new Date(1000L),
+        new java.sql.Date(2000L), new java.sql.Time(3000L), timestamp, Thread.State.BLOCKED);
+    for (Object value : values) {
+      Object copy = copy(value);
+      assertEquals(value, copy);
+      if (value != null) {
+        assertEquals(value.getClass(), copy.getClass());
+      }
+    }
+  }
+
+  @Test
+  void shouldCopyArraysCollectionsAndMaps() {
+    int[] ints = { 1, 2, 3 };
+    assertArrayEquals(ints, copy(ints));
+    byte[] bytes = { 1, 2, 3 };
+    assertArrayEquals(bytes, copy(bytes));
+    String[] strings = { "a", null, "b" };
+    assertArrayEquals(strings, copy(strings));
+    LinkedHashSet<String> set = new LinkedHashSet<>(Arrays.asList("c", "b", "a"));
+    assertEquals(new ArrayList<>(set), new ArrayList<>(copy(set)));
+    Map<String, Object> map = new HashMap<>();
+    map.put("list", new ArrayList<>(Arrays.asList(1, 2)));
+    map.put("null", null);
+    Map<String, Object> copy = copy(map);
+    assertEquals(map, copy);
+    assertNotSame(map.get("list"), copy.get("list"));
+  }
+
+  @Test
+  void shouldCopyBeansThroughTheirProperties() {
+    Author author = new Author();
+    author.setName("Jane");
+    author.setBorn(LocalDate.of(1970, 1, 1));
+    author.setTags(new String[] { "x", "y" });
+    author.cachedHash = 42;
+    Author.count = 7;
+    Author copy = copy(author);
+    assertNotSame(author, copy);
+    assertEquals("Jane", copy.getName());
+    assertEquals(LocalDate.of(1970, 1, 1), copy.getBorn());
+    assertArrayEquals(new String[] { "x", "y" }, copy.getTags());
+    assertEquals(0, copy.cachedHash);
+    assertEquals(7, Author.count);
+  }
+
+  @Test
+  void shouldKeepSharedAndCircularReferences() {
+    Author author = new Author();
+    author.setName("Jane");
+    Post first = new Post();
+    first.author = author;
+    Post second = new Post();
+    second.author = author;
+    author.setPosts(new ArrayList<>(Arrays.asList(first, second)));
+
+    Author copy = copy(author);
+    assertEquals(2, copy.getPosts().size());
+    assertSame(copy, copy.getPosts().get(0).author);
+    assertSame(copy, copy.getPosts().get(1).author);
+  }
+
+  @Test
+  void shouldFallBackToJavaSerializationForOtherClasses() {
+    TreeMap<String, Integer> sorted = new TreeMap<>();
+    sorted.put("b", 2);
+    sorted.put("a", 1);
+    assertEquals(sorted, copy(sorted));
+    assertEquals(Arrays.asList(1, 2), copy(Arrays.asList(1, 2)));
+
+    CustomSerialized custom = new CustomSerialized();
+    custom.value = "value";
+    assertEquals("value written", copy(custom).value);
+  }
+
+  @Test
+  void shouldFailForValuesJavaSerializationCannotCopy() {
+    assertThrows(CacheException.class, () -> serializer.serialize(new Thread()));
+  }
+
+  @Test
+  void shouldWriteLessThanJavaSerialization() {
+    Author author = new Author();
+    author.setName("Jane");
+    author.setPosts(new ArrayList<>(Arrays.asList(new Post(), new Post())));
+    assertTrue(serializer.serialize(author).length < new JavaCacheSerializer().serialize(author).length);
+  }
+
+  public static class Author implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static int count;
+    private String name;
+    private LocalDate born;
+    private String[] tags;
+    private List<Post> posts;
+    private transient int cachedHash;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public LocalDate getBorn() {
+      return born;
+    }
+
+    public void setBorn(LocalDate born) {
+      this.born = born;
+    }
+
+    public String[] getTags() {
+      return tags;
+    }
+
+    public void setTags(String[] tags) {
+      this.tags = tags;
+    }
+
+    public List<Post> getPosts() {
+      return posts;
+    }
+
+    public void setPosts(List<Post> posts) {
+      this.posts = posts;
+    }
+
+    public String getDisplayName() {
+      return "Author " + name;
+    }
+  }
+
+  public static class Post implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private Author author;
+  }
+
+  public static class CustomSerialized implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String value;
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+      value += " written";
+      out.defaultWriteObject();
+    }
+  }
+
+}
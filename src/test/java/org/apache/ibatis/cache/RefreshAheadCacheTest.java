@@ -0,0 +1,137 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.decorators.RefreshAheadCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RefreshAheadCacheTest {
+
+  private final List<Runnable> tasks = new ArrayList<>();
+  private RefreshAheadCache cache;
+
+  @BeforeEach
+  void setUp() {
+    cache = new RefreshAheadCache(new PerpetualCache("default"));
+    cache.setExecutor(tasks::add);
+    cache.setRefreshAfter(0);
+  }
+
+  @Test
+  void shouldServeStaleValuesWhileReloading() {
+    cache.putObject("key", "old");
+    cache.register("key", null, parameter -> cache.putObject("key", "new"));
+    assertEquals("old", cache.getObject("key"));
+    assertEquals("old", cache.getObject("key"));
+    // one reload at a time
+    assertEquals(1, tasks.size());
+    tasks.remove(0).run();
+    assertEquals("new", cache.getObject("key"));
+  }
+
+  @Test
+  void shouldNotReloadFreshValues() {
+    cache.setRefreshAfter(60_000);
+    cache.putObject("key", "value");
+    cache.register("key", null, parameter -> fail("reloaded a fresh value"));
+    assertEquals("value", cache.getObject("key"));
+    assertTrue(tasks.isEmpty());
+  }
+
+  @Test
+  void shouldExpireValues() throws Exception {
+    cache.setExpireAfter(1);
+    cache.putObject("key", "value");
+    Thread.sleep(10);
+    assertNull(cache.getObject("key"));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void shouldDropValuesReloadedWhileTheCacheWasCleared() {
+    cache.putObject("key", "old");
+    cache.register("key", null, parameter -> {
+      cache.clear();
+      cache.putObject("key", "new");
+    });
+    cache.getObject("key");
+    tasks.remove(0).run();
+    assertNull(cache.getObject("key"));
+  }
+
+  @Test
+  void shouldDropValuesReloadedWhileTheEntryWasRewritten() {
+    cache.putObject("key", "old");
+    cache.register("key", null, parameter -> {
+      // written by a query of another session
+      Thread writer = new Thread(() -> cache.putObject("key", "written"));
+      writer.start();
+      writer.join();
+      cache.putObject("key", "reloaded");
+    });
+    cache.getObject("key");
+    tasks.remove(0).run();
+    assertEquals("written", cache.getObject("key"));
+  }
+
+  @Test
+  void shouldKeepValuesReloadedWhileOtherEntriesWereRemoved() {
+    cache.putObject("key", "old");
+    cache.putObject("other", "value");
+    cache.register("key", null, parameter -> {
+      cache.removeObject("other");
+      cache.putObject("key", "new");
+    });
+    cache.getObject("key");
+    tasks.remove(0).run();
+    assertEquals("new", cache.getObject("key"));
+  }
+
+  @Test
+  void shouldReloadWithACopyOfTheParameter() {
+    Map<String, Object> parameter = new HashMap<>();
+    parameter.put("id", 1);
+    List<Object> reloadedWith = new ArrayList<>();
+    cache.putObject("key", "value");
+    cache.register("key", parameter, reloadedWith::add);
+    parameter.put("id", 2);
+    cache.getObject("key");
+    tasks.remove(0).run();
+    assertEquals(1, reloadedWith.size());
+    assertEquals(1, ((Map<?, ?>) reloadedWith.get(0)).get("id"));
+  }
+
+  @Test
+  void shouldKeepTheValueWhenTheReloadFails() {
+    cache.putObject("key", "value");
+    cache.register("key", null, parameter -> {
+      throw new IllegalStateException("database down");
+    });
+    cache.getObject("key");
+    tasks.remove(0).run();
+    assertEquals("value", cache.getObject("key"));
+  }
+
+}
@@ -0,0 +1,113 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.Properties;
+
+import org.apache.ibatis.cache.decorators.StatisticsCache;
+import org.apache.ibatis.cache.decorators.TaggedCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class StatisticsCacheTest {
+
+  @Test
+  void shouldCountHitsMissesPutsAndClears() {
+    StatisticsCache cache = new StatisticsCache(new PerpetualCache("default"));
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals(0, statistics.getHitRatio(), 0);
+    assertNull(cache.getObject("a"));
+    cache.putObject("a", "1");
+    cache.putObject("b", null);
+    assertEquals("1", cache.getObject("a"));
+    assertEquals("1", cache.getObject("a"));
+    cache.clear();
+    assertEquals(2, statistics.getHitCount());
+    assertEquals(1, statistics.getMissCount());
+    assertEquals(3, statistics.getRequestCount());
+    assertEquals(2.0 / 3, statistics.getHitRatio(), 0.0001);
+    assertEquals(1, statistics.getPutCount());
+    assertEquals(1, statistics.getClearCount());
+    assertEquals(0, statistics.getSize());
+  }
+
+  @Test
+  void shouldAverageLoadTimes() {
+    CacheStatistics statistics = new CacheStatistics(new PerpetualCache("default"));
+    assertEquals(0, statistics.getAverageLoadTime());
+    statistics.recordLoad(100);
+    statistics.recordLoad(300);
+    assertEquals(2, statistics.getLoadCount());
+    assertEquals(400, statistics.getTotalLoadTime());
+    assertEquals(200, statistics.getAverageLoadTime());
+  }
+
+  @Test
+  void shouldCountEvictionsOfTheEvictionDecorator() {
+    Cache cache = new CacheBuilder("default").size(2).statistics(true).build();
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    CacheStatistics statistics = StatisticsCache.getStatistics(cache);
+    assertEquals(5, statistics.getPutCount());
+    assertEquals(3, statistics.getEvictionCount());
+    assertEquals(2, statistics.getSize());
+  }
+
+  @Test
+  void shouldCountEvictionsOfTheConcurrentCache() {
+    Properties properties = new Properties();
+    properties.setProperty("statistics", "true");
+    properties.setProperty("size", "10");
+    Cache cache = new CacheBuilder("default").implementation(ConcurrentCache.class).properties(properties).build();
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, i);
+    }
+    CacheStatistics statistics = StatisticsCache.getStatistics(cache);
+    assertEquals(100 - cache.getSize(), statistics.getEvictionCount());
+  }
+
+  @Test
+  void shouldCountInvalidatedEntriesAsMisses() {
+    Cache cache = new CacheBuilder("default").statistics(true).tagInvalidation(true).build();
+    TaggedCache taggedCache = (TaggedCache) cache;
+    String[] tags = { "blog" };
+    taggedCache.putObject("blogs", "b", tags, taggedCache.getVersions(tags));
+    assertEquals("b", cache.getObject("blogs"));
+    taggedCache.invalidate(Collections.singleton("blog"));
+    assertNull(cache.getObject("blogs"));
+    CacheStatistics statistics = StatisticsCache.getStatistics(cache);
+    assertEquals(1, statistics.getHitCount());
+    assertEquals(1, statistics.getMissCount());
+  }
+
+  @Test
+  void shouldRegisterTheStatisticsInTheConfiguration() {
+    Configuration configuration = new Configuration();
+    configuration.addCache(new CacheBuilder("counted").statistics(true).tagInvalidation(true).build());
+    configuration.addCache(new CacheBuilder("uncounted").build());
+    assertNotNull(configuration.getCacheStatistics("counted"));
+    assertNull(configuration.getCacheStatistics("uncounted"));
+    assertEquals(Collections.singleton("counted"), configuration.getCacheStatistics().keySet());
+  }
+
+}
@@ -0,0 +1,163 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.decorators.TaggedCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class TaggedCacheTest {
+
+  private static final String[] BLOG = { "blog" };
+  private static final String[] AUTHOR = { "author" };
+
+  @Test
+  void shouldParseTags() {
+    assertArrayEquals(new String[] { "blog", "author" }, CacheTags.parse(" Blog, author ,,blog"));
+    assertNull(CacheTags.parse(" , "));
+    assertNull(CacheTags.parse(null));
+  }
+
+  @Test
+  void shouldFindTablesInSql() {
+    assertArrayEquals(new String[] { "blog", "author" },
+        CacheTags.fromSql("select * from Blog b join \"public\".author a on b.author_id = a.id where b.id = ?"));
+    assertArrayEquals(new String[] { "blog", "post" },
+        CacheTags.fromSql("SELECT * FROM blog AS b, post p WHERE p.blog_id = b.id AND p.subject = 'from comment'"));
+    assertArrayEquals(new String[] { "author" }, CacheTags.fromSql("update author set username = ? where id = ?"));
+    assertArrayEquals(new String[] { "post", "blog" },
+        CacheTags.fromSql("insert into post (blog_id) select id from blog where id = ?"));
+    assertArrayEquals(new String[] { "comment" }, CacheTags.fromSql("delete from `comment` where id = ?"));
+    assertNull(CacheTags.fromSql("call refresh_everything()"));
+  }
+
+  @Test
+  void shouldInferTheTagsOfStaticStatementsOnce() {
+    Configuration configuration = new Configuration();
+    configuration.setInferCacheTags(true);
+    SqlSource staticSql = new StaticSqlSource(configuration, "update author set username = ? where id = ?");
+    MappedStatement update = new MappedStatement.Builder(configuration, "updateAuthor", staticSql,
+        SqlCommandType.UPDATE).build();
+    assertTrue(update.isStaticSql());
+    assertArrayEquals(AUTHOR, update.getInferredCacheTags());
+
+    MappedStatement declared = new MappedStatement.Builder(configuration, "updateBlog", staticSql,
+        SqlCommandType.UPDATE).cacheTags("blog").build();
+    assertArrayEquals(BLOG, declared.getCacheTags());
+    assertNull(declared.getInferredCacheTags());
+
+    SqlSource dynamicSql = parameter -> {
+      throw new AssertionError("the SQL of a dynamic statement is not built up front");
+    };
+    MappedStatement dynamic = new MappedStatement.Builder(configuration, "deleteAuthor", dynamicSql,
+        SqlCommandType.DELETE).build();
+    assertFalse(dynamic.isStaticSql());
+    assertNull(dynamic.getInferredCacheTags());
+  }
+
+  @Test
+  void shouldInferNoTagsForCallableStatements() {
+    Configuration configuration = new Configuration();
+    configuration.setInferCacheTags(true);
+    // the procedure may change any table
+    SqlSource sql = new StaticSqlSource(configuration, "begin update author set username = ? where id = ?; archive_posts(); end;");
+    MappedStatement callable = new MappedStatement.Builder(configuration, "renameAuthor", sql, SqlCommandType.UPDATE)
+        .statementType(StatementType.CALLABLE).build();
+    assertNull(callable.getInferredCacheTags());
+  }
+
+  @Test
+  void shouldOnlyInvalidateEntriesWithTheGivenTags() {
+    TaggedCache cache = new TaggedCache(new PerpetualCache("default"));
+    cache.putObject("blogs", "b", BLOG, cache.getVersions(BLOG));
+    cache.putObject("authors", "a", AUTHOR, cache.getVersions(AUTHOR));
+    cache.invalidate(Collections.singleton("blog"));
+    assertNull(cache.getObject("blogs"));
+    assertEquals("a", cache.getObject("authors"));
+  }
+
+  @Test
+  void shouldInvalidateUntaggedEntriesOnAnyInvalidation() {
+    TaggedCache cache = new TaggedCache(new PerpetualCache("default"));
+    cache.putObject("untagged", "u");
+    cache.putObject("authors", "a", AUTHOR, cache.getVersions(AUTHOR));
+    cache.invalidate(Collections.singleton("blog"));
+    assertNull(cache.getObject("untagged"));
+    assertEquals("a", cache.getObject("authors"));
+  }
+
+  @Test
+  void shouldNotCacheResultsReadBeforeAnInvalidation() {
+    TaggedCache cache = new TaggedCache(new PerpetualCache("default"));
+    long[] versions = cache.getVersions(BLOG);
+    cache.invalidate(Collections.singleton("blog"));
+    cache.putObject("blogs", "stale", BLOG, versions);
+    assertNull(cache.getObject("blogs"));
+  }
+
+  @Test
+  void shouldInvalidateTagsOnCommit() {
+    TaggedCache cache = new TaggedCache(new PerpetualCache("default"));
+    TransactionalCache tx = new TransactionalCache(cache);
+    tx.putObject("blogs", "b", BLOG);
+    tx.putObject("authors", "a", AUTHOR);
+    tx.commit();
+
+    tx.invalidate(BLOG);
+    assertNull(tx.getObject("blogs", BLOG));
+    assertEquals("a", tx.getObject("authors", AUTHOR));
+    // not visible to other sessions before the commit
+    assertEquals("b", cache.getObject("blogs"));
+    tx.commit();
+    assertNull(cache.getObject("blogs"));
+    assertEquals("a", cache.getObject("authors"));
+  }
+
+  @Test
+  void shouldDropPendingEntriesWithInvalidatedTags() {
+    TaggedCache cache = new TaggedCache(new PerpetualCache("default"));
+    TransactionalCache tx = new TransactionalCache(cache);
+    tx.putObject("blogs", "b", BLOG);
+    tx.putObject("authors", "a", AUTHOR);
+    tx.invalidate(BLOG);
+    tx.commit();
+    assertNull(cache.getObject("blogs"));
+    assertEquals("a", cache.getObject("authors"));
+  }
+
+  @Test
+  void shouldClearWithoutTags() {
+    TaggedCache cache = new TaggedCache(new PerpetualCache("default"));
+    TransactionalCache tx = new TransactionalCache(cache);
+    tx.putObject("authors", "a", AUTHOR);
+    tx.commit();
+    tx.invalidate(null);
+    tx.commit();
+    assertEquals(0, cache.getSize());
+  }
+
+}
@@ -0,0 +1,99 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.ibatis.cache.decorators.WeightedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class WeightedCacheTest {
+
+  @Test
+  void shouldEvictLeastRecentlyUsedItemsBeyondTheMaximumWeight() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.setWeigher((key, value) -> (Integer) value);
+    cache.setMaximumWeight(100);
+    cache.putObject(0, 40);
+    cache.putObject(1, 40);
+    assertEquals(40, cache.getObject(0));
+    cache.putObject(2, 40);
+    assertEquals(40, cache.getObject(0));
+    assertNull(cache.getObject(1));
+    assertEquals(80, cache.getWeight());
+    assertEquals(2, cache.getSize());
+  }
+
+  @Test
+  void shouldEstimateTheWeightFromTheNumberOfRows() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.setBytesPerObject(100);
+    cache.putObject(0, Arrays.asList("a", "b", "c"));
+    cache.putObject(1, "d");
+    cache.putObject(2, Collections.emptyList());
+    cache.putObject(3, new byte[1000]);
+    assertEquals(64 + 300 + 64 + 100 + 64 + 64 + 1000, cache.getWeight());
+  }
+
+  @Test
+  void shouldNotCacheAnItemHeavierThanTheMaximumWeight() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.setWeigher((key, value) -> (Integer) value);
+    cache.setMaximumWeight(100);
+    cache.putObject(0, 10);
+    cache.putObject(1, 500);
+    assertNull(cache.getObject(1));
+    assertEquals(10, cache.getObject(0));
+    assertEquals(10, cache.getWeight());
+  }
+
+  @Test
+  void shouldUpdateTheWeightOfAReplacedItem() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.setWeigher((key, value) -> (Integer) value);
+    cache.putObject(0, 10);
+    cache.putObject(0, 30);
+    assertEquals(30, cache.getWeight());
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  void shouldRemoveItemOnDemand() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getWeight());
+  }
+
+  @Test
+  void shouldFlushAllItemsOnDemand() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+    assertEquals(0, cache.getWeight());
+  }
+
+}
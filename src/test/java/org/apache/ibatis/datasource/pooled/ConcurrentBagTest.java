@@ -0,0 +1,77 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class ConcurrentBagTest {
+
+  @Test
+  void shouldNotCountANonBlockingBorrowAsAWaiter() throws Exception {
+    ConcurrentBag<Item> bag = new ConcurrentBag<>();
+    Item item = new Item();
+    bag.add(item);
+    assertNull(bag.borrow(0, TimeUnit.MILLISECONDS));
+    assertEquals(0, bag.getWaitingThreadCount());
+    bag.requite(item);
+    assertSame(item, bag.borrow(0, TimeUnit.MILLISECONDS));
+    assertEquals(0, bag.getWaitingThreadCount());
+  }
+
+  @Test
+  void shouldHandOverAReturnedItemToAWaitingThread() throws Exception {
+    ConcurrentBag<Item> bag = new ConcurrentBag<>();
+    Item item = new Item();
+    bag.add(item);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Item> borrowed = executor.submit(() -> bag.borrow(5, TimeUnit.SECONDS));
+      while (bag.getWaitingThreadCount() == 0) {
+        Thread.sleep(1);
+      }
+      bag.requite(item);
+      assertSame(item, borrowed.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldNotSpinWhenTheWaitersAreNotPolling() throws Exception {
+    ConcurrentBag<Item> bag = new ConcurrentBag<>();
+    Item item = new Item();
+    bag.add(item);
+    Field waiters = ConcurrentBag.class.getDeclaredField("waiters");
+    waiters.setAccessible(true);
+    ((AtomicInteger) waiters.get(bag)).incrementAndGet();
+    assertTimeoutPreemptively(Duration.ofSeconds(1), () -> bag.requite(item));
+    assertSame(item, bag.borrow(0, TimeUnit.MILLISECONDS));
+  }
+
+  private static class Item extends ConcurrentBag.BagEntry {
+  }
+
+}
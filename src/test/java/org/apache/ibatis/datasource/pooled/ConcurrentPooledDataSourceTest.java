@@ -0,0 +1,250 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConcurrentPooledDataSourceTest extends BaseDataTest {
+
+  private ConcurrentPooledDataSource ds;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    Properties props = Resources.getResourceAsProperties(JPETSTORE_PROPERTIES);
+    ds = new ConcurrentPooledDataSource();
+    ds.setDriver(props.getProperty("driver"));
+    ds.setUrl(props.getProperty("url"));
+    ds.setUsername(props.getProperty("username"));
+    ds.setPassword(props.getProperty("password"));
+  }
+
+  @AfterEach
+  void tearDown() {
+    ds.forceCloseAll();
+  }
+
+  @Test
+  void shouldProperlyMaintainPoolOf3ActiveAnd2IdleConnections() throws Exception {
+    ds.setPoolMaximumActiveConnections(3);
+    ds.setPoolMaximumIdleConnections(2);
+    List<Connection> connections = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      connections.add(ds.getConnection());
+    }
+    assertEquals(3, ds.getPoolState().getActiveConnectionCount());
+    for (Connection c : connections) {
+      c.close();
+    }
+    assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+    assertEquals(3, ds.getPoolState().getRequestCount());
+    assertEquals(0, ds.getPoolState().getBadConnectionCount());
+    assertEquals(0, ds.getPoolState().getHadToWaitCount());
+    assertEquals(0, ds.getPoolState().getClaimedOverdueConnectionCount());
+    assertNotNull(ds.getPoolState().toString());
+  }
+
+  @Test
+  void shouldInvalidateConnectionOnceReturned() throws Exception {
+    Connection c = ds.getConnection();
+    c.close();
+    assertThrows(SQLException.class, c::createStatement);
+    // issue #579 toString() should never fail
+    assertNotNull(c.toString());
+  }
+
+  @Test
+  void shouldReuseTheConnectionReturnedByTheSameThread() throws Exception {
+    Connection c = ds.getConnection();
+    Connection realConnection = PooledDataSource.unwrapConnection(c);
+    c.close();
+    c = ds.getConnection();
+    assertSame(realConnection, PooledDataSource.unwrapConnection(c));
+    c.close();
+    assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+  }
+
+  @Test
+  void shouldIgnoreClosingTheProxyOfAnEarlierCheckout() throws Exception {
+    Connection stale = ds.getConnection();
+    stale.close();
+    Connection c = ds.getConnection();
+    // a double close, e.g. in a finally block and by try-with-resources
+    stale.close();
+    assertNotSame(stale, c);
+    assertThrows(SQLException.class, stale::createStatement);
+    assertEquals(1, ds.getPoolState().getActiveConnectionCount());
+    assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+    assertEquals(0, ds.getPoolState().getBadConnectionCount());
+    c.createStatement().close();
+    c.close();
+    assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+  }
+
+  @Test
+  void shouldInvalidateTheProxyOfAClaimedOverdueConnection() throws Exception {
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolMaximumCheckoutTime(10);
+    ds.setPoolTimeToWait(20);
+    Connection overdue = ds.getConnection();
+    Thread.sleep(50);
+    Connection c = ds.getConnection();
+    assertNotSame(overdue, c);
+    assertThrows(SQLException.class, overdue::createStatement);
+    overdue.close();
+    assertEquals(1, ds.getPoolState().getActiveConnectionCount());
+    c.createStatement().close();
+    c.close();
+    assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+    assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+  }
+
+  @Test
+  void shouldHandOverReturnedConnectionToWaitingThread() throws Exception {
+    ds.setPoolMaximumActiveConnections(1);
+    Connection c = ds.getConnection();
+    Connection realConnection = PooledDataSource.unwrapConnection(c);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CountDownLatch started = new CountDownLatch(1);
+      Future<Connection> waiter = executor.submit(() -> {
+        started.countDown();
+        try (Connection other = ds.getConnection()) {
+          return PooledDataSource.unwrapConnection(other);
+        }
+      });
+      started.await();
+      while (ds.getPoolState().getHadToWaitCount() == 0) {
+        Thread.sleep(10);
+      }
+      c.close();
+      assertSame(realConnection, waiter.get(5, TimeUnit.SECONDS));
+      assertEquals(1, ds.getPoolState().getHadToWaitCount());
+      assertEquals(2, ds.getPoolState().getRequestCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldClaimOverdueConnection() throws Exception {
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolMaximumCheckoutTime(10);
+    Connection overdue = ds.getConnection();
+    Thread.sleep(50);
+    Connection c = ds.getConnection();
+    assertSame(PooledDataSource.unwrapConnection(overdue), PooledDataSource.unwrapConnection(c));
+    assertThrows(SQLException.class, overdue::createStatement);
+    assertEquals(1, ds.getPoolState().getClaimedOverdueConnectionCount());
+    overdue.close();
+    c.close();
+    assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+  }
+
+  @Test
+  void shouldPrefillMinimumIdleConnectionsInTheBackground() throws Exception {
+    ds.setPoolMinimumIdleConnections(3);
+    ds.setPoolHousekeepingInterval(20);
+    ds.getConnection().close();
+    waitUntil(() -> ds.getPoolState().getIdleConnectionCount() >= 3);
+    assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+  }
+
+  @Test
+  void shouldRetireIdleConnectionsAboveTheMinimum() throws Exception {
+    ds.setPoolMinimumIdleConnections(1);
+    ds.setPoolIdleTimeout(30);
+    ds.setPoolHousekeepingInterval(20);
+    Connection c1 = ds.getConnection();
+    Connection c2 = ds.getConnection();
+    c1.close();
+    c2.close();
+    waitUntil(() -> ds.getPoolState().getIdleConnectionCount() == 1);
+    Thread.sleep(100);
+    assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+  }
+
+  @Test
+  void shouldDiscardIdleConnectionsThatFailThePing() throws Exception {
+    ds.setPoolPingEnabled(true);
+    ds.setPoolPingConnectionsNotUsedFor(0);
+    ds.setPoolPingQuery("SELECT * FROM NOT_A_TABLE");
+    ds.setPoolHousekeepingInterval(20);
+    ds.getConnection().close();
+    waitUntil(() -> ds.getPoolState().getBadConnectionCount() == 1);
+    assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+  }
+
+  @Test
+  void shouldNeverExceedMaximumActiveConnectionsUnderContention() throws Exception {
+    ds.setPoolMaximumActiveConnections(4);
+    ds.setPoolMaximumIdleConnections(4);
+    int threads = 16;
+    int iterations = 200;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < iterations; j++) {
+            try (Connection c = ds.getConnection()) {
+              assertTrue(ds.getPoolState().getActiveConnectionCount() <= 4);
+              c.getAutoCommit();
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(threads * iterations, ds.getPoolState().getRequestCount());
+    assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    assertEquals(0, ds.getPoolState().getBadConnectionCount());
+    assertTrue(ds.getPoolState().getIdleConnectionCount() <= 4);
+  }
+
+  private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the housekeeper");
+      Thread.sleep(10);
+    }
+  }
+
+}
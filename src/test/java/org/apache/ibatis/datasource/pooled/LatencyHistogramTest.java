@@ -0,0 +1,81 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  void shouldReportZeroWhenEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMean());
+    assertEquals(0, histogram.getMax());
+    assertEquals(0, histogram.getValueAtPercentile(99));
+  }
+
+  @Test
+  void shouldReportPercentilesWithinTheBucketPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getMax());
+    assertEquals(500500, histogram.getMean());
+    assertWithinPrecision(TimeUnit.MICROSECONDS.toNanos(500), histogram.getValueAtPercentile(50));
+    assertWithinPrecision(TimeUnit.MICROSECONDS.toNanos(990), histogram.getValueAtPercentile(99));
+    assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  void shouldPutEveryValueIntoABucketThatCoversIt() {
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+      long upperBound = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(value));
+      assertTrue(value <= upperBound, value + " > " + upperBound);
+      assertTrue(upperBound - value <= value / 8, upperBound + " is too far from " + value);
+    }
+    assertEquals(Long.MAX_VALUE, LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(Long.MAX_VALUE)));
+  }
+
+  @Test
+  void shouldRecordNegativeDurationsAsZero() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    assertEquals(1, histogram.getCount());
+    assertEquals(0, histogram.getValueAtPercentile(50));
+  }
+
+  @Test
+  void shouldRejectInvalidPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+    assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(-1));
+  }
+
+  private static void assertWithinPrecision(long expected, long actual) {
+    assertTrue(actual >= expected && actual <= expected + expected / 8, actual + " is not within 12.5% above " + expected);
+  }
+
+}
@@ -0,0 +1,66 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class PoolStateTest {
+
+  @Test
+  @SuppressWarnings("deprecation")
+  void shouldReportTheStatisticsOfEarlierVersions() {
+    PoolState state = new PooledDataSource().getPoolState();
+    synchronized (state) {
+      // two requests, the first one waited twice, one connection returned and one claimed overdue
+      state.recordHadToWait();
+      state.recordWait(millis(5));
+      state.recordWait(millis(7));
+      state.recordRequest(millis(20));
+      state.recordRequest(millis(40));
+      state.recordCheckout(millis(100));
+      state.recordClaimedOverdueConnection(millis(50));
+      state.recordBadConnection();
+    }
+
+    assertEquals(2, state.getRequestCount());
+    assertEquals(30, state.getAverageRequestTime());
+    assertEquals(1, state.getHadToWaitCount());
+    assertEquals(12, state.getAverageWaitTime());
+    // averaged over the requests, not the checkouts
+    assertEquals(75, state.getAverageCheckoutTime());
+    assertEquals(1, state.getClaimedOverdueConnectionCount());
+    assertEquals(50, state.getAverageOverdueCheckoutTime());
+    assertEquals(1, state.getBadConnectionCount());
+
+    assertEquals(2, state.requestCount);
+    assertEquals(60, state.accumulatedRequestTime);
+    assertEquals(1, state.hadToWaitCount);
+    assertEquals(12, state.accumulatedWaitTime);
+    assertEquals(150, state.accumulatedCheckoutTime);
+    assertEquals(1, state.claimedOverdueConnectionCount);
+    assertEquals(50, state.accumulatedCheckoutTimeOfOverdueConnections);
+    assertEquals(1, state.badConnectionCount);
+  }
+
+  private static long millis(long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+}
@@ -17,8 +17,15 @@ package org.apache.ibatis.executor;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 import java.util.HashMap;
 import java.util.List;
@@ -35,6 +42,7 @@ import org.apache.ibatis.domain.blog.Post;
 import org.apache.ibatis.domain.blog.Section;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheScope;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
 import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
@@ -461,6 +469,70 @@ class BaseExecutorTest extends BaseDataTest {
     }
   }
 
+  @Test
+  void shouldNotCreateCacheKeysWhenTheLocalCacheIsNotUsed() throws Exception {
+    config.setLocalCacheScope(LocalCacheScope.STATEMENT);
+    Executor executor = spy(new SimpleExecutor(config, new JdbcTransaction(ds, null, false)));
+    try {
+      MappedStatement selectAuthor = ExecutorTestHelper.prepareSelectOneAuthorMappedStatement(config);
+      List<Author> authors = executor.query(selectAuthor, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals(1, authors.size());
+      verify(executor, never()).createCacheKey(any(), any(), any(), any());
+
+      // nested queries may need the local cache
+      MappedStatement selectBlog = ExecutorTestHelper.prepareComplexSelectBlogMappedStatement(config);
+      MappedStatement selectPosts = ExecutorTestHelper.prepareSelectPostsForBlogMappedStatement(config);
+      config.addMappedStatement(selectBlog);
+      config.addMappedStatement(selectPosts);
+      List<Post> posts = executor.query(selectPosts, 1, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals(2, posts.size());
+      assertEquals(1, posts.get(1).getBlog().getId());
+      verify(executor, atLeastOnce()).createCacheKey(any(), any(), any(), any());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldBoundTheLocalCache() throws Exception {
+    config.setLocalCacheSize(2);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement selectStatement = ExecutorTestHelper.prepareSelectAllAuthorsAutoMappedStatement(config);
+      List<Author> first = executor.query(selectStatement, null, new RowBounds(0, 1), Executor.NO_RESULT_HANDLER);
+      assertSame(first, executor.query(selectStatement, null, new RowBounds(0, 1), Executor.NO_RESULT_HANDLER));
+      executor.query(selectStatement, null, new RowBounds(0, 2), Executor.NO_RESULT_HANDLER);
+      executor.query(selectStatement, null, new RowBounds(1, 1), Executor.NO_RESULT_HANDLER);
+      assertEquals(2, executor.getLocalCacheSize());
+      assertNotSame(first, executor.query(selectStatement, null, new RowBounds(0, 1), Executor.NO_RESULT_HANDLER));
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldResolveCircularReferencesWhenTheLocalCacheEvicts() throws Exception {
+    config.setLazyLoadingEnabled(false);
+    config.setLocalCacheSize(1);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement selectBlog = ExecutorTestHelper.prepareComplexSelectBlogMappedStatement(config);
+      MappedStatement selectPosts = ExecutorTestHelper.prepareSelectPostsForBlogMappedStatement(config);
+      config.addMappedStatement(selectBlog);
+      config.addMappedStatement(selectPosts);
+      List<Post> posts = executor.query(selectPosts, 1, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals(2, posts.size());
+      assertNotNull(posts.get(1).getBlog());
+      assertEquals(1, posts.get(1).getBlog().getId());
+      assertEquals(1, executor.getLocalCacheSize());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
   protected Executor createExecutor(Transaction transaction) {
     return new SimpleExecutor(config, transaction);
   }
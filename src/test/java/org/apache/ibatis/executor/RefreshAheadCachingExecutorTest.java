@@ -0,0 +1,86 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.decorators.RefreshAheadCache;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.Test;
+
+class RefreshAheadCachingExecutorTest extends BaseDataTest {
+
+  @Test
+  void shouldReloadStaleEntriesFromTheDatabase() throws Exception {
+    DataSource ds = createBlogDataSource();
+    Configuration config = new Configuration(new Environment("test", new JdbcTransactionFactory(), ds));
+    List<Runnable> reloads = new ArrayList<>();
+    Cache cache = new CacheBuilder("author").refreshAfter(0L).build();
+    ((RefreshAheadCache) cache).setExecutor(reloads::add);
+    List<ParameterMapping> parameterMappings = Collections.singletonList(
+        new ParameterMapping.Builder(config, "id", config.getTypeHandlerRegistry().getTypeHandler(int.class)).build());
+    MappedStatement selectAuthor = new MappedStatement.Builder(config, "selectAuthor",
+        new StaticSqlSource(config, "SELECT * FROM author WHERE id = ?", parameterMappings), SqlCommandType.SELECT)
+        .resultMaps(Collections.singletonList(new ResultMap.Builder(config, "authorMap", Author.class, new ArrayList<>()).build()))
+        .cache(cache).useCache(true).build();
+
+    Executor executor = new CachingExecutor(new SimpleExecutor(config, new JdbcTransaction(ds, null, false)));
+    try {
+      assertEquals("jim", username(executor.query(selectAuthor, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER)));
+      executor.commit(true);
+      try (Connection connection = ds.getConnection();
+           PreparedStatement ps = connection.prepareStatement("UPDATE author SET username = 'james' WHERE id = 101")) {
+        ps.executeUpdate();
+      }
+
+      // stale, but reloaded in the background
+      assertEquals("jim", username(executor.query(selectAuthor, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER)));
+      assertEquals(1, reloads.size());
+      reloads.get(0).run();
+      executor.clearLocalCache();
+      assertEquals("james", username(executor.query(selectAuthor, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER)));
+    } finally {
+      executor.close(false);
+    }
+  }
+
+  private static String username(List<Object> authors) {
+    assertEquals(1, authors.size());
+    return ((Author) authors.get(0)).getUsername();
+  }
+
+}
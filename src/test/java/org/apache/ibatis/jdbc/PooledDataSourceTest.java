@@ -25,9 +25,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.pooled.PoolMetricsTracker;
+import org.apache.ibatis.datasource.pooled.PoolState;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
+import org.apache.ibatis.io.Resources;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -91,6 +97,176 @@ class PooledDataSourceTest extends BaseDataTest {
     c.close();
   }
 
+  @Test
+  void shouldRecycleReturnedConnectionAndInvalidateItsOldProxy() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      Connection stale = ds.getConnection();
+      Connection realConnection = PooledDataSource.unwrapConnection(stale);
+      stale.close();
+      Connection c = ds.getConnection();
+      assertSame(realConnection, PooledDataSource.unwrapConnection(c));
+      assertNotSame(stale, c);
+      assertThrows(SQLException.class, stale::createStatement);
+      // closing the old proxy again must not return the connection of the current holder
+      stale.close();
+      assertEquals(1, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+      c.createStatement().close();
+      c.close();
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldInvalidateTheProxyOfAClaimedOverdueConnection() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolMaximumCheckoutTime(10);
+      Connection overdue = ds.getConnection();
+      Thread.sleep(50);
+      Connection c = ds.getConnection();
+      assertSame(PooledDataSource.unwrapConnection(overdue), PooledDataSource.unwrapConnection(c));
+      assertThrows(SQLException.class, overdue::createStatement);
+      assertEquals(1, ds.getPoolState().getClaimedOverdueConnectionCount());
+      overdue.close();
+      assertEquals(1, ds.getPoolState().getActiveConnectionCount());
+      c.close();
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldRecordHistogramsAndReportToTheMetricsTracker() throws Exception {
+    Properties props = Resources.getResourceAsProperties(JPETSTORE_PROPERTIES);
+    props.setProperty("poolMetricsTracker", RecordingMetricsTracker.class.getName());
+    PooledDataSourceFactory factory = new PooledDataSourceFactory();
+    factory.setProperties(props);
+    PooledDataSource ds = (PooledDataSource) factory.getDataSource();
+    try {
+      Connection c1 = ds.getConnection();
+      Connection c2 = ds.getConnection();
+      c1.close();
+      c2.close();
+      ds.getConnection().close();
+
+      RecordingMetricsTracker tracker = (RecordingMetricsTracker) ds.getPoolMetricsTracker();
+      assertEquals(3, tracker.requests.get());
+      assertEquals(3, tracker.checkouts.get());
+      assertEquals(2, tracker.creations.get());
+      PoolState state = ds.getPoolState();
+      assertEquals(3, state.getRequestTimeHistogram().getCount());
+      assertEquals(3, state.getCheckoutTimeHistogram().getCount());
+      assertEquals(2, state.getConnectionCreationTimeHistogram().getCount());
+      assertEquals(0, state.getWaitTimeHistogram().getCount());
+      assertTrue(state.getRequestTimeHistogram().getValueAtPercentile(99) <= state.getRequestTimeHistogram().getMax());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  public static class RecordingMetricsTracker implements PoolMetricsTracker {
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger checkouts = new AtomicInteger();
+    private final AtomicInteger creations = new AtomicInteger();
+
+    @Override
+    public void recordRequestTime(long nanos) {
+      requests.incrementAndGet();
+    }
+
+    @Override
+    public void recordCheckoutTime(long nanos) {
+      checkouts.incrementAndGet();
+    }
+
+    @Override
+    public void recordConnectionCreationTime(long nanos) {
+      creations.incrementAndGet();
+    }
+
+  }
+
+  @Test
+  void shouldPrefillMinimumIdleConnectionsInTheBackground() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMinimumIdleConnections(3);
+      ds.setPoolHousekeepingInterval(20);
+      ds.getConnection().close();
+      waitUntil(() -> ds.getPoolState().getIdleConnectionCount() >= 3);
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldRetireConnectionsPastTheirMaximumLifetime() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumLifetime(50);
+      ds.setPoolHousekeepingInterval(20);
+      Connection c = ds.getConnection();
+      Connection realConnection = PooledDataSource.unwrapConnection(c);
+      c.close();
+      waitUntil(() -> isClosed(realConnection));
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+      c = ds.getConnection();
+      assertNotSame(realConnection, PooledDataSource.unwrapConnection(c));
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldNotPingOnCheckoutWhenHousekeepingIsEnabled() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolPingEnabled(true);
+      ds.setPoolPingConnectionsNotUsedFor(0);
+      ds.setPoolPingQuery("SELECT * FROM NOT_A_TABLE");
+      ds.setPoolHousekeepingInterval(60000);
+      Connection c = ds.getConnection();
+      Connection realConnection = PooledDataSource.unwrapConnection(c);
+      // let the first housekeeping run pass, the next one is a minute away
+      Thread.sleep(100);
+      c.close();
+      Thread.sleep(5);
+      c = ds.getConnection();
+      assertSame(realConnection, PooledDataSource.unwrapConnection(c));
+      c.close();
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+      assertEquals(2, ds.getPoolState().getRequestCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  private static boolean isClosed(Connection connection) {
+    try {
+      return connection.isClosed();
+    } catch (SQLException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the housekeeper");
+      Thread.sleep(10);
+    }
+  }
+
   @Disabled("See the comments")
   @Test
   void shouldReconnectWhenServerKilledLeakedConnection() throws Exception {
@@ -18,11 +18,25 @@ package org.apache.ibatis.mapping;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.Weigher;
+import org.apache.ibatis.cache.decorators.DeepCopyCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.RefreshAheadCache;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.TaggedCache;
+import org.apache.ibatis.cache.decorators.WeightedCache;
+import org.apache.ibatis.cache.distributed.DistributedCache;
+import org.apache.ibatis.cache.distributed.LoopbackCacheTransport;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
+import org.apache.ibatis.cache.serializer.ReflectiveCacheSerializer;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
+import java.util.Properties;
 
 import static com.googlecode.catchexception.apis.BDDCatchException.*;
 import static org.assertj.core.api.BDDAssertions.then;
@@ -43,6 +57,129 @@ class CacheBuilderTest {
       .hasMessage("Failed cache initialization for 'test' on 'org.apache.ibatis.mapping.CacheBuilderTest$InitializingFailureCache'");
   }
 
+  @Test
+  void shouldSynchronizeCachesThatAreNotThreadSafe() {
+    Cache cache = new CacheBuilder("test").implementation(PerpetualCache.class).addDecorator(LruCache.class).build();
+
+    Assertions.assertThat(cache).isInstanceOf(SynchronizedCache.class);
+  }
+
+  @Test
+  void shouldNotSynchronizeThreadSafeCaches() {
+    Properties properties = new Properties();
+    properties.setProperty("evictionPolicy", ConcurrentCache.TINY_LFU);
+    Cache cache = new CacheBuilder("test").implementation(ConcurrentCache.class).addDecorator(LruCache.class)
+      .size(10).readWrite(true).clearInterval(1000L).properties(properties).build();
+
+    Assertions.assertThat(cache).isNotInstanceOf(SynchronizedCache.class);
+    Assertions.assertThat(cache.isThreadSafe()).isTrue();
+    Cache delegate = cache;
+    while (!(delegate instanceof ConcurrentCache)) {
+      Assertions.assertThat(delegate).isNotInstanceOf(LruCache.class);
+      delegate = unwrap(delegate);
+    }
+    ConcurrentCache concurrentCache = (ConcurrentCache) delegate;
+    Assertions.assertThat(concurrentCache.getEvictionPolicy()).isEqualTo(ConcurrentCache.TINY_LFU);
+    for (int i = 0; i < 20; i++) {
+      cache.putObject(i, i);
+    }
+    Assertions.assertThat(concurrentCache.getSize()).isEqualTo(10);
+  }
+
+  @Test
+  void shouldAddWeightedCacheWhenAMaximumWeightIsSet() {
+    Cache cache = new CacheBuilder("test").implementation(PerpetualCache.class).addDecorator(LruCache.class)
+      .maximumWeight(1000L).weigher((key, value) -> 400).build();
+
+    WeightedCache weightedCache = unwrap(unwrap(cache));
+    Assertions.assertThat(weightedCache.getMaximumWeight()).isEqualTo(1000L);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    Assertions.assertThat(weightedCache.getWeight()).isEqualTo(800L);
+    Assertions.assertThat(cache.getSize()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldConfigureWeigherByClassName() {
+    Properties properties = new Properties();
+    properties.setProperty("maximumWeight", "100");
+    properties.setProperty("weigher", FixedWeigher.class.getName());
+    Cache cache = new CacheBuilder("test").implementation(PerpetualCache.class).addDecorator(WeightedCache.class)
+      .properties(properties).build();
+
+    WeightedCache weightedCache = unwrap(unwrap(cache));
+    cache.putObject(1, 1);
+    Assertions.assertThat(weightedCache.getMaximumWeight()).isEqualTo(100L);
+    Assertions.assertThat(weightedCache.getWeight()).isEqualTo(10L);
+  }
+
+  @Test
+  void shouldConfigureSerializerByClassName() {
+    Properties properties = new Properties();
+    properties.setProperty("serializer", ReflectiveCacheSerializer.class.getName());
+    Cache cache = new CacheBuilder("test").implementation(PerpetualCache.class).addDecorator(LruCache.class)
+      .readWrite(true).properties(properties).build();
+
+    SerializedCache serializedCache = unwrap(unwrap(cache));
+    Assertions.assertThat(serializedCache.getSerializer()).isInstanceOf(ReflectiveCacheSerializer.class);
+    cache.putObject("key", "value");
+    Assertions.assertThat(cache.getObject("key")).isEqualTo("value");
+  }
+
+  @Test
+  void shouldUseJavaSerializationByDefault() {
+    Cache cache = new CacheBuilder("test").readWrite(true).build();
+
+    SerializedCache serializedCache = unwrap(unwrap(cache));
+    Assertions.assertThat(serializedCache.getSerializer()).isInstanceOf(JavaCacheSerializer.class);
+  }
+
+  @Test
+  void shouldSelectTheCopyStrategyByProperty() {
+    Properties properties = new Properties();
+    properties.setProperty("copyStrategy", "DEEP_COPY");
+    Cache cache = new CacheBuilder("test").readWrite(true).properties(properties).build();
+
+    Assertions.assertThat((Cache) unwrap(unwrap(cache))).isInstanceOf(DeepCopyCache.class);
+  }
+
+  @Test
+  void shouldRejectAnUnknownCopyStrategy() {
+    Properties properties = new Properties();
+    properties.setProperty("copyStrategy", "CLONE");
+    when(new CacheBuilder("test").readWrite(true).properties(properties)).build();
+    then(caughtException()).isInstanceOf(CacheException.class).hasMessageContaining("Unknown copy strategy 'CLONE'");
+  }
+
+  @Test
+  void shouldWrapTheCacheForTagInvalidation() {
+    Properties properties = new Properties();
+    properties.setProperty("tagInvalidation", "true");
+    Cache cache = new CacheBuilder("test").properties(properties).build();
+    Assertions.assertThat(cache).isInstanceOf(TaggedCache.class);
+    Assertions.assertThat(new CacheBuilder("test").build()).isNotInstanceOf(TaggedCache.class);
+  }
+
+  @Test
+  void shouldRejectTagInvalidationForDistributedCaches() {
+    Properties properties = new Properties();
+    properties.setProperty("transport", LoopbackCacheTransport.class.getName());
+    when(new CacheBuilder("test").implementation(DistributedCache.class).properties(properties).tagInvalidation(true))
+      .build();
+    then(caughtException()).isInstanceOf(CacheException.class).hasMessageContaining("not supported");
+  }
+
+  @Test
+  void shouldRefreshAheadUnderTagInvalidation() {
+    Properties properties = new Properties();
+    properties.setProperty("refreshAfter", "60000");
+    properties.setProperty("tagInvalidation", "true");
+    Cache cache = new CacheBuilder("test").properties(properties).build();
+    Assertions.assertThat(cache).isInstanceOf(TaggedCache.class);
+    Assertions.assertThat(((TaggedCache) cache).getDelegate()).isInstanceOf(RefreshAheadCache.class);
+  }
+
   @SuppressWarnings("unchecked")
   private <T> T unwrap(Cache cache) {
     Field field;
@@ -61,6 +198,15 @@ class CacheBuilderTest {
     }
   }
 
+  public static class FixedWeigher implements Weigher {
+
+    @Override
+    public long weigh(Object key, Object value) {
+      return 10;
+    }
+
+  }
+
   private static class InitializingCache extends PerpetualCache implements InitializingObject {
 
     private boolean initialized;
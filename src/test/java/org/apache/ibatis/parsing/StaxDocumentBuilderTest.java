@@ -0,0 +1,96 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.parsing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.builder.xml.XMLMapperEntityResolver;
+import org.apache.ibatis.io.Resources;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+class StaxDocumentBuilderTest {
+
+  private final StaxDocumentBuilder builder = new StaxDocumentBuilder(new XMLMapperEntityResolver());
+
+  @Test
+  void shouldBuildTheDocumentOfTheDomParser() throws Exception {
+    for (String resource : new String[] { "org/apache/ibatis/builder/PostMapper.xml",
+        "org/apache/ibatis/builder/AuthorMapper.xml", "org/apache/ibatis/submitted/include_property/Mapper.xml" }) {
+      Document expected;
+      Document actual;
+      try (InputStream inputStream = Resources.getResourceAsStream(resource)) {
+        expected = new XPathParser(inputStream, true, null, new XMLMapperEntityResolver()).evalNode("/mapper").getNode().getOwnerDocument();
+      }
+      try (InputStream inputStream = Resources.getResourceAsStream(resource)) {
+        actual = builder.parse(inputStream);
+      }
+      assertSameTree(expected.getDocumentElement(), actual.getDocumentElement());
+    }
+  }
+
+  @Test
+  void shouldKeepTextWholeAndCdataApart() {
+    Document document = builder.parse(new StringReader("<?xml version=\"1.0\"?>\n"
+        + "<!DOCTYPE script [<!ENTITY table \"blog\">]>\n"
+        + "<script><!-- dropped -->select * from &table; where id = ${id} <![CDATA[and rank < 3]]></script>"));
+    Node script = document.getDocumentElement();
+    assertEquals(2, script.getChildNodes().getLength());
+    assertEquals(Node.TEXT_NODE, script.getFirstChild().getNodeType());
+    assertEquals("select * from blog where id = ${id} ", script.getFirstChild().getNodeValue());
+    assertEquals(Node.CDATA_SECTION_NODE, script.getLastChild().getNodeType());
+    assertEquals("and rank < 3", script.getLastChild().getNodeValue());
+  }
+
+  private static void assertSameTree(Node expected, Node actual) {
+    assertEquals(expected.getNodeType(), actual.getNodeType());
+    assertEquals(expected.getNodeName(), actual.getNodeName());
+    assertEquals(expected.getNodeValue(), actual.getNodeValue());
+    NamedNodeMap expectedAttributes = expected.getAttributes();
+    if (expectedAttributes != null) {
+      NamedNodeMap actualAttributes = actual.getAttributes();
+      assertEquals(expectedAttributes.getLength(), actualAttributes.getLength(), expected.getNodeName());
+      for (int i = 0; i < expectedAttributes.getLength(); i++) {
+        Node attribute = expectedAttributes.item(i);
+        assertEquals(attribute.getNodeValue(), actualAttributes.getNamedItem(attribute.getNodeName()).getNodeValue());
+      }
+    }
+    List<Node> expectedChildren = children(expected);
+    List<Node> actualChildren = children(actual);
+    assertEquals(expectedChildren.size(), actualChildren.size(), expected.getNodeName());
+    for (int i = 0; i < expectedChildren.size(); i++) {
+      assertSameTree(expectedChildren.get(i), actualChildren.get(i));
+    }
+  }
+
+  private static List<Node> children(Node node) {
+    List<Node> children = new ArrayList<>();
+    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() != Node.PROCESSING_INSTRUCTION_NODE) {
+        children.add(child);
+      }
+    }
+    return children;
+  }
+
+}
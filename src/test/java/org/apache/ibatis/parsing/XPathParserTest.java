@@ -16,6 +16,7 @@
 package org.apache.ibatis.parsing;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -23,6 +24,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.List;
 
 import org.apache.ibatis.builder.BuilderException;
 import org.apache.ibatis.io.Resources;
@@ -178,6 +180,25 @@ class XPathParserTest {
     }
   }
 
+  @Test
+  void shouldSelectElementsWithoutXPath() throws IOException {
+    try (InputStream inputStream = Resources.getResourceAsStream(resource)) {
+      XPathParser parser = new XPathParser(inputStream);
+      XNode employee = parser.evalNode("/employee");
+      assertEquals("6", parser.evalNode("/employee/birth_date/month").getStringBody());
+      assertEquals("6", employee.evalNode("birth_date/month").getStringBody());
+      List<XNode> nodes = employee.evalNodes("weight|blah|height");
+      assertEquals(3, nodes.size());
+      assertEquals("blah", nodes.get(0).getName());
+      assertEquals("height", nodes.get(1).getName());
+      assertEquals("weight", nodes.get(2).getName());
+      assertEquals(3, employee.evalNodes("birth_date/*").size());
+      assertNull(employee.evalNode("missing"));
+      assertEquals(0, parser.evalNodes("/employee/missing/year").size());
+      assertEquals(0, parser.evalNodes("/other/birth_date").size());
+    }
+  }
+
   private void testEvalMethod(XPathParser parser) {
     assertEquals((Long) 1970L, parser.evalLong("/employee/birth_date/year"));
     assertEquals((short) 6, (short) parser.evalShort("/employee/birth_date/month"));
@@ -139,4 +139,23 @@ class ForEachTest {
     }
   }
 
+  @Test
+  void shouldPadTheIds() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      Assertions.assertEquals(1, mapper.countByPaddedIds(Collections.singletonList(2)));
+      Assertions.assertEquals(3, mapper.countByPaddedIds(Arrays.asList(1, 3, 5)));
+      Assertions.assertEquals(5, mapper.countByPaddedIds(Arrays.asList(1, 2, 3, 4, 6, 7)));
+    }
+  }
+
+  @Test
+  void shouldBindTheIdsAsAnArray() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      Assertions.assertEquals(1, mapper.countByIdArray(Collections.singletonList(2)));
+      Assertions.assertEquals(3, mapper.countByIdArray(Arrays.asList(1, 3, 5, 7)));
+    }
+  }
+
 }
@@ -29,6 +29,10 @@ public interface Mapper {
 
   String selectWithNullItemCheck(List<User> users);
 
+  int countByPaddedIds(List<Integer> ids);
+
+  int countByIdArray(List<Integer> ids);
+
   int typoInItemProperty(List<User> users);
 
   int itemVariableConflict(@Param("id") Integer id, @Param("ids") List<Integer> ids, @Param("ids2") List<Integer> ids2);